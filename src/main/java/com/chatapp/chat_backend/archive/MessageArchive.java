@@ -0,0 +1,450 @@
+package com.chatapp.chat_backend.archive;
+
+import com.chatapp.chat_backend.dtos.MessageResponseDto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only archive of cold messages, one directory per room. A room's
+ * numbered segment files hold blocks of messages, oldest first:
+ *
+ *   magic | count | first id | last id | raw length | compressed length
+ *   | CRC32 of the compressed bytes | deflated JSON array of messages
+ *
+ * The sparse index keeps one entry per block and is built by walking block
+ * headers only. A page read decompresses just the blocks it touches, from
+ * memory-mapped segments. A torn block at the end of the last segment, left
+ * by a crash mid-append, is ignored by readers and cut off by the next
+ * append. The directory may be shared by several nodes; readers pick up
+ * blocks appended elsewhere on their next read.
+ */
+@Slf4j
+@Component
+public class MessageArchive
+{
+    private static final int BLOCK_MAGIC = 0x4D534742;
+    private static final int HEADER_BYTES = 36;
+    private static final TypeReference<List<MessageResponseDto>> MESSAGES = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper;
+    private final Path root;
+    private final int blockMessages;
+    private final long segmentMaxBytes;
+    private final int maxOpenRooms;
+
+    private final ConcurrentHashMap<Long, RoomArchive> rooms = new ConcurrentHashMap<>();
+    private final LongAdder blocksRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+
+    public MessageArchive(
+            ObjectMapper objectMapper,
+            @Value("${app.archive.dir:data/archive}") String dir,
+            @Value("${app.archive.block-messages:64}") int blockMessages,
+            @Value("${app.archive.segment-max-bytes:67108864}") long segmentMaxBytes,
+            @Value("${app.archive.max-open-rooms:10000}") int maxOpenRooms
+    ) {
+        this.objectMapper = objectMapper;
+        this.root = Paths.get(dir);
+        this.blockMessages = blockMessages;
+        this.segmentMaxBytes = segmentMaxBytes;
+        this.maxOpenRooms = maxOpenRooms;
+    }
+
+    /**
+     * Number of archived messages of a room
+     */
+    public long count(Long chatRoomId) {
+        RoomArchive archive = room(chatRoomId, false);
+        return archive != null ? archive.refresh().total() : 0;
+    }
+
+    /**
+     * Highest archived message id of a room, or 0
+     */
+    public long lastArchivedId(Long chatRoomId) {
+        RoomArchive archive = room(chatRoomId, false);
+        return archive != null ? archive.refresh().lastId() : 0;
+    }
+
+    /**
+     * A page of archived messages, newest first, skipping the newest offset ones
+     */
+    public List<MessageResponseDto> readNewestFirst(Long chatRoomId, long offset, int limit) {
+        List<MessageResponseDto> page = new ArrayList<>();
+        RoomArchive archive = room(chatRoomId, false);
+        if (archive == null || limit <= 0) {
+            return page;
+        }
+
+        // Positions count from the oldest archived message
+        Index index = archive.refresh();
+        long end = index.total() - offset;
+        long start = Math.max(0, end - limit);
+        if (end <= 0) {
+            return page;
+        }
+
+        for (int i = index.blockAt(start); i < index.blocks().size(); i++) {
+            Block block = index.blocks().get(i);
+            if (block.startPosition() >= end) {
+                break;
+            }
+            List<MessageResponseDto> messages = archive.read(block);
+            int from = (int) Math.max(0, start - block.startPosition());
+            int to = (int) Math.min(block.count(), end - block.startPosition());
+            page.addAll(messages.subList(from, to));
+        }
+        Collections.reverse(page);
+        return page;
+    }
+
+    /**
+     * One archived message of a room, decompressing only the block that
+     * holds it
+     */
+    public Optional<MessageResponseDto> find(Long chatRoomId, Long messageId) {
+        RoomArchive archive = room(chatRoomId, false);
+        if (archive == null) {
+            return Optional.empty();
+        }
+
+        Index index = archive.refresh();
+        int i = index.blockWithId(messageId);
+        if (i < 0) {
+            return Optional.empty();
+        }
+        return archive.read(index.blocks().get(i)).stream()
+                .filter(message -> messageId.equals(message.getId()))
+                .findFirst();
+    }
+
+    /**
+     * Ids of the rooms that have an archive
+     */
+    public List<Long> archivedRoomIds() {
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (Stream<Path> dirs = Files.list(root)) {
+            return dirs.map(dir -> dir.getFileName().toString())
+                    .filter(name -> name.matches("room-\\d+"))
+                    .map(name -> Long.valueOf(name.substring("room-".length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list message archive " + root, e);
+        }
+    }
+
+    /**
+     * Append messages, oldest first, and force them to disk before returning
+     */
+    public void append(Long chatRoomId, List<MessageResponseDto> messages) {
+        if (!messages.isEmpty()) {
+            room(chatRoomId, true).append(messages);
+        }
+    }
+
+    public long getBlocksRead() {
+        return blocksRead.sum();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public int getOpenRooms() {
+        return rooms.size();
+    }
+
+    private RoomArchive room(Long chatRoomId, boolean create) {
+        RoomArchive archive = rooms.get(chatRoomId);
+        if (archive != null) {
+            return archive;
+        }
+
+        Path dir = root.resolve("room-" + chatRoomId);
+        if (!create && !Files.isDirectory(dir)) {
+            return null;
+        }
+        if (rooms.size() >= maxOpenRooms) {
+            Iterator<Long> open = rooms.keySet().iterator();
+            if (open.hasNext()) {
+                open.next();
+                open.remove();
+            }
+        }
+        return rooms.computeIfAbsent(chatRoomId, id -> new RoomArchive(dir));
+    }
+
+    private byte[] encode(List<MessageResponseDto> messages) throws IOException {
+        byte[] raw = objectMapper.writeValueAsBytes(messages);
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 64);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+        } finally {
+            deflater.end();
+        }
+        byte[] payload = compressed.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return ByteBuffer.allocate(HEADER_BYTES + payload.length)
+                .putInt(BLOCK_MAGIC)
+                .putInt(messages.size())
+                .putLong(messages.get(0).getId())
+                .putLong(messages.get(messages.size() - 1).getId())
+                .putInt(raw.length)
+                .putInt(payload.length)
+                .putInt((int) crc.getValue())
+                .put(payload)
+                .array();
+    }
+
+    /**
+     * One room's segments and sparse index
+     */
+    private final class RoomArchive
+    {
+        private final Path dir;
+        private final Map<Path, MappedByteBuffer> mapped = new ConcurrentHashMap<>();
+        private volatile Index index = Index.EMPTY;
+        private int segment = 1;
+        private long scannedTo;
+
+        private RoomArchive(Path dir) {
+            this.dir = dir;
+        }
+
+        /**
+         * Index any blocks appended since the last call, by this or another node
+         */
+        private synchronized Index refresh() {
+            List<Block> added = new ArrayList<>();
+            long position = index.total();
+            try {
+                while (true) {
+                    Path current = segmentPath(segment);
+                    if (Files.exists(current) && Files.size(current) > scannedTo) {
+                        position = scan(current, position, added);
+                    }
+                    if (!Files.exists(segmentPath(segment + 1))) {
+                        break;
+                    }
+                    segment++;
+                    scannedTo = 0;
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read message archive " + dir, e);
+            }
+
+            if (!added.isEmpty()) {
+                List<Block> blocks = new ArrayList<>(index.blocks());
+                blocks.addAll(added);
+                index = new Index(List.copyOf(blocks));
+            }
+            return index;
+        }
+
+        private long scan(Path file, long position, List<Block> added) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                while (scannedTo + HEADER_BYTES <= size) {
+                    header.clear();
+                    if (channel.read(header, scannedTo) < HEADER_BYTES || header.flip().getInt() != BLOCK_MAGIC) {
+                        break;
+                    }
+                    int count = header.getInt();
+                    long firstId = header.getLong();
+                    long lastId = header.getLong();
+                    int rawLength = header.getInt();
+                    int compressedLength = header.getInt();
+                    int crc = header.getInt();
+                    if (compressedLength < 0 || scannedTo + HEADER_BYTES + compressedLength > size) {
+                        break; // torn tail
+                    }
+
+                    added.add(new Block(file, scannedTo, count, firstId, lastId, rawLength, compressedLength, crc, position));
+                    position += count;
+                    scannedTo += HEADER_BYTES + compressedLength;
+                }
+            }
+            return position;
+        }
+
+        private List<MessageResponseDto> read(Block block) {
+            long end = block.offset() + HEADER_BYTES + block.compressedLength();
+            MappedByteBuffer buffer = mapped.compute(block.segment(), (file, current) -> {
+                if (current != null && current.capacity() >= end) {
+                    return current;
+                }
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to map archive segment " + file, e);
+                }
+            });
+
+            byte[] payload = new byte[block.compressedLength()];
+            buffer.duplicate().position((int) (block.offset() + HEADER_BYTES)).get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != block.crc()) {
+                throw new RuntimeException("Corrupt archive block at " + block.offset() + " in " + block.segment());
+            }
+
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(payload);
+                byte[] raw = new byte[block.rawLength()];
+                int length = 0;
+                while (length < raw.length && !inflater.finished()) {
+                    length += inflater.inflate(raw, length, raw.length - length);
+                }
+                blocksRead.increment();
+                return objectMapper.readValue(raw, 0, length, MESSAGES);
+            } catch (DataFormatException | IOException e) {
+                throw new RuntimeException("Failed to decode archive block at " + block.offset() + " in " + block.segment(), e);
+            } finally {
+                inflater.end();
+            }
+        }
+
+        private synchronized void append(List<MessageResponseDto> messages) {
+            refresh();
+            int current = segment;
+            long position = scannedTo;
+            FileChannel channel = null;
+            try {
+                Files.createDirectories(dir);
+                for (int from = 0; from < messages.size(); from += blockMessages) {
+                    byte[] block = encode(messages.subList(from, Math.min(messages.size(), from + blockMessages)));
+                    boolean roll = position > 0 && position + block.length > segmentMaxBytes;
+                    if (channel == null || roll) {
+                        if (channel != null) {
+                            channel.force(true);
+                            channel.close();
+                        }
+                        if (roll) {
+                            current++;
+                            position = 0;
+                        }
+                        channel = FileChannel.open(segmentPath(current), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                        // Cut off a torn block left by an earlier crash
+                        channel.truncate(position);
+                    }
+
+                    ByteBuffer buffer = ByteBuffer.wrap(block);
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    bytesWritten.add(block.length);
+                }
+                channel.force(true);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to append to message archive " + dir, e);
+            } finally {
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        log.warn("Failed to close archive segment in {}", dir, e);
+                    }
+                }
+            }
+            refresh();
+        }
+
+        private Path segmentPath(int number) {
+            return dir.resolve(String.format("%08d.seg", number));
+        }
+    }
+
+    private record Block(Path segment, long offset, int count, long firstId, long lastId,
+                         int rawLength, int compressedLength, int crc, long startPosition) {}
+
+    private record Index(List<Block> blocks)
+    {
+        static final Index EMPTY = new Index(List.of());
+
+        long total() {
+            if (blocks.isEmpty()) {
+                return 0;
+            }
+            Block last = blocks.get(blocks.size() - 1);
+            return last.startPosition() + last.count();
+        }
+
+        long lastId() {
+            return blocks.isEmpty() ? 0 : blocks.get(blocks.size() - 1).lastId();
+        }
+
+        /**
+         * Index of the block whose id range covers the id, or -1; ids only
+         * grow from block to block
+         */
+        int blockWithId(long id) {
+            int low = 0;
+            int high = blocks.size() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                Block block = blocks.get(mid);
+                if (block.lastId() < id) {
+                    low = mid + 1;
+                } else if (block.firstId() > id) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Index of the block holding a position
+         */
+        int blockAt(long position) {
+            int low = 0;
+            int high = blocks.size() - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (blocks.get(mid).startPosition() <= position) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.chatapp.chat_backend.attachment;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Content-addressed attachment files on local disk, under
+ * app.attachments.dir. Each distinct content is stored once, named by its
+ * SHA-256 and spread over 256 subdirectories. An upload is moved from
+ * the container's multipart spool into a staging directory, hashed there
+ * through a small fixed buffer, then forced and either renamed into place
+ * or, when that content is already stored, dropped. A file under its final name is always complete.
+ * Renditions such as thumbnails are cached beside it under the same hash.
+ */
+@Slf4j
+@Component
+public class AttachmentStorage
+{
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final String TEMP_DIR = "tmp";
+    private static final String RENDITION_DIR = "renditions";
+
+    private final Path root;
+    private final long maxBytes;
+
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+    private final LongAdder dedupHits = new LongAdder();
+    private final LongAdder bytesDeduplicated = new LongAdder();
+    private final LongAdder bytesReclaimed = new LongAdder();
+
+    public AttachmentStorage(
+            @Value("${app.attachments.dir:data/attachments}") String dir,
+            @Value("${app.attachments.max-bytes:1073741824}") long maxBytes
+    ) {
+        this.root = Paths.get(dir).toAbsolutePath();
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Move an upload into the staging directory and hash it there. The
+     * container has already spooled the part to disk; transferTo renames
+     * that file when it can, so the content is written only once.
+     */
+    public TempFile stage(MultipartFile file) {
+        if (file.getSize() > maxBytes) {
+            throw new RuntimeException("Attachment exceeds the maximum size of " + maxBytes + " bytes");
+        }
+        Path temp = root.resolve(TEMP_DIR).resolve(UUID.randomUUID() + ".part");
+        MessageDigest digest = sha256();
+        long size = 0;
+        try {
+            Files.createDirectories(temp.getParent());
+            file.transferTo(temp.toFile());
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+                int read;
+                while ((read = channel.read(buffer)) >= 0) {
+                    digest.update(buffer.array(), 0, read);
+                    size += read;
+                    buffer.clear();
+                }
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new RuntimeException("Failed to store attachment", e);
+        }
+        if (size > maxBytes) {
+            deleteQuietly(temp);
+            throw new RuntimeException("Attachment exceeds the maximum size of " + maxBytes + " bytes");
+        }
+        bytesWritten.add(size);
+        return new TempFile(temp, size, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    /**
+     * Move a temporary file under its content name, or drop it when that
+     * content is already stored. True when the file was new.
+     */
+    public boolean install(TempFile temp) {
+        Path target = resolve(temp.sha256());
+        try {
+            if (Files.exists(target)) {
+                Files.delete(temp.path());
+                dedupHits.increment();
+                bytesDeduplicated.add(temp.size());
+                return false;
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(temp.path(), target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to store attachment", e);
+        }
+    }
+
+    public void discard(TempFile temp) {
+        deleteQuietly(temp.path());
+    }
+
+    public Path resolve(String sha256) {
+        return root.resolve(sha256.substring(0, 2)).resolve(sha256);
+    }
+
+    /**
+     * Where a rendition of some content (thumbnail, preview) is cached
+     */
+    public Path resolveRendition(String sha256, String rendition) {
+        return root.resolve(RENDITION_DIR).resolve(sha256.substring(0, 2)).resolve(sha256 + "-" + rendition + ".jpg");
+    }
+
+    /**
+     * Delete a blob's file along with its cached renditions
+     */
+    public void delete(String sha256, long size) {
+        if (deleteQuietly(resolve(sha256))) {
+            bytesReclaimed.add(size);
+        }
+        try (DirectoryStream<Path> renditions = Files.newDirectoryStream(
+                root.resolve(RENDITION_DIR).resolve(sha256.substring(0, 2)), sha256 + "-*")) {
+            renditions.forEach(AttachmentStorage::deleteQuietly);
+        } catch (NoSuchFileException e) {
+            // nothing was rendered
+        } catch (IOException e) {
+            log.warn("Failed to delete renditions of {}", sha256, e);
+        }
+    }
+
+    /**
+     * Visit every stored file last written before the cutoff with its hash
+     * and size, for the sweep of files no blob row owns
+     */
+    public void forEachStoredBefore(Instant cutoff, BiConsumer<String, Long> action) {
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (DirectoryStream<Path> prefixes = Files.newDirectoryStream(root, "[0-9a-f][0-9a-f]")) {
+            for (Path prefix : prefixes) {
+                try (DirectoryStream<Path> files = Files.newDirectoryStream(prefix)) {
+                    for (Path file : files) {
+                        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                        if (attributes.lastModifiedTime().toInstant().isBefore(cutoff)) {
+                            action.accept(file.getFileName().toString(), attributes.size());
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list attachment store " + root, e);
+        }
+    }
+
+    /**
+     * Delete staging files left behind by uploads that died before their
+     * rename; returns how many went
+     */
+    public int sweepTemp(Instant cutoff) {
+        int swept = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(root.resolve(TEMP_DIR), "*.part")) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(cutoff) && deleteQuietly(file)) {
+                    swept++;
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // nothing was ever staged
+        } catch (IOException e) {
+            log.warn("Failed to sweep attachment staging directory", e);
+        }
+        return swept;
+    }
+
+    public void recordServed(long bytes) {
+        bytesServed.add(bytes);
+    }
+
+    /**
+     * Count an upload skipped because the client's content was already stored
+     */
+    public void recordReused(long bytes) {
+        dedupHits.increment();
+        bytesDeduplicated.add(bytes);
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    public long getBytesServed() {
+        return bytesServed.sum();
+    }
+
+    public long getDedupHits() {
+        return dedupHits.sum();
+    }
+
+    public long getBytesDeduplicated() {
+        return bytesDeduplicated.sum();
+    }
+
+    public long getBytesReclaimed() {
+        return bytesReclaimed.sum();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean deleteQuietly(Path path) {
+        try {
+            return Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete attachment file {}", path, e);
+            return false;
+        }
+    }
+
+    public record TempFile(Path path, long size, String sha256) {}
+}
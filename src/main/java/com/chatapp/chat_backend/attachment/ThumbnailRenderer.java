@@ -0,0 +1,261 @@
+package com.chatapp.chat_backend.attachment;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders a small thumbnail and a low-resolution preview, both JPEG, for
+ * image attachments, and for videos when app.thumbnails.ffmpeg-path points
+ * at an ffmpeg binary to grab a frame with. Images are decoded with source
+ * subsampling, so a large photo never has to fit in the heap at full size.
+ * Output is written to a temporary file and renamed into the cache.
+ */
+@Slf4j
+@Component
+public class ThumbnailRenderer
+{
+    public static final String THUMBNAIL = "thumb";
+    public static final String PREVIEW = "preview";
+
+    private final AttachmentStorage storage;
+    private final int thumbnailSize;
+    private final int previewSize;
+    private final long maxPixels;
+    private final float quality;
+    private final String ffmpegPath;
+    private final long ffmpegTimeoutMs;
+
+    public ThumbnailRenderer(
+            AttachmentStorage storage,
+            @Value("${app.thumbnails.thumbnail-size:320}") int thumbnailSize,
+            @Value("${app.thumbnails.preview-size:1280}") int previewSize,
+            @Value("${app.thumbnails.max-pixels:100000000}") long maxPixels,
+            @Value("${app.thumbnails.quality:0.8}") float quality,
+            @Value("${app.thumbnails.ffmpeg-path:}") String ffmpegPath,
+            @Value("${app.thumbnails.ffmpeg-timeout-ms:30000}") long ffmpegTimeoutMs
+    ) {
+        this.storage = storage;
+        this.thumbnailSize = thumbnailSize;
+        this.previewSize = previewSize;
+        this.maxPixels = maxPixels;
+        this.quality = quality;
+        this.ffmpegPath = ffmpegPath;
+        this.ffmpegTimeoutMs = ffmpegTimeoutMs;
+    }
+
+    public boolean canRender(String contentType) {
+        return contentType.startsWith("image/") || (contentType.startsWith("video/") && StringUtils.hasText(ffmpegPath));
+    }
+
+    /**
+     * Render both sizes for some content unless they are cached already;
+     * returns the thumbnail's dimensions
+     */
+    public Dimension render(String sha256, String contentType) throws IOException {
+        Path thumbnail = storage.resolveRendition(sha256, THUMBNAIL);
+        if (Files.exists(thumbnail) && Files.exists(storage.resolveRendition(sha256, PREVIEW))) {
+            return readSize(thumbnail);
+        }
+
+        Path source = storage.resolve(sha256);
+        Path frame = null;
+        try {
+            if (contentType.startsWith("video/")) {
+                frame = grabFrame(source);
+                source = frame;
+            }
+            BufferedImage image = decode(source);
+            write(scale(image, previewSize), storage.resolveRendition(sha256, PREVIEW));
+            BufferedImage small = scale(image, thumbnailSize);
+            write(small, thumbnail);
+            return new Dimension(small.getWidth(), small.getHeight());
+        } finally {
+            if (frame != null) {
+                Files.deleteIfExists(frame);
+            }
+        }
+    }
+
+    /**
+     * Decode an image, subsampled to no less than the preview size
+     */
+    private BufferedImage decode(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IOException("Image too large to render: " + width + "x" + height);
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.max(width, height) / previewSize);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image, int maxSize) {
+        double factor = Math.min(1.0, (double) maxSize / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * factor));
+
+        // JPEG has no alpha, so transparent areas go white
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private void write(BufferedImage image, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".part");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            writer.dispose();
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Dimension readSize(Path file) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Unreadable cached thumbnail " + file);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Grab one frame a second in, or the first frame of a shorter clip.
+     * ffmpeg is told the container, sniffed from the file's own bytes and
+     * limited to a whitelist, and may only open local files, so an upload
+     * cannot pick a demuxer or make it fetch a URL from a playlist.
+     */
+    private Path grabFrame(Path video) throws IOException {
+        String format = sniffContainer(video);
+        if (format == null) {
+            throw new IOException("Unsupported video container");
+        }
+        Path frame = Files.createTempFile("frame-", ".jpg");
+        try {
+            // Clips shorter than a second have no frame at 1s
+            if (!extractFrame(video, format, true, frame) && !extractFrame(video, format, false, frame)) {
+                throw new IOException("ffmpeg could not extract a frame");
+            }
+            return frame;
+        } catch (IOException e) {
+            Files.deleteIfExists(frame);
+            throw e;
+        }
+    }
+
+    private boolean extractFrame(Path video, String format, boolean seek, Path frame) throws IOException {
+        List<String> command = new ArrayList<>(List.of(ffmpegPath, "-v", "error", "-y", "-protocol_whitelist", "file"));
+        if (seek) {
+            command.addAll(List.of("-ss", "1"));
+        }
+        command.addAll(List.of("-f", format, "-i", "file:" + video, "-frames:v", "1",
+                "-vf", "scale='min(" + previewSize + ",iw)':-2", frame.toString()));
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            if (!process.waitFor(ffmpegTimeoutMs, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("ffmpeg timed out");
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while extracting a frame", e);
+        }
+        return process.exitValue() == 0 && Files.size(frame) > 0;
+    }
+
+    /**
+     * The ffmpeg demuxer for a video file, judged by its magic bytes, or
+     * null when it is not a container we hand to ffmpeg
+     */
+    static String sniffContainer(Path video) throws IOException {
+        byte[] header = new byte[12];
+        int read;
+        try (InputStream in = Files.newInputStream(video)) {
+            read = in.readNBytes(header, 0, header.length);
+        }
+        if (read >= 8 && matches(header, 4, "ftyp")) {
+            return "mov"; // MP4, MOV, M4V and 3GP share the ISO base media format
+        }
+        if (read >= 4 && (header[0] & 0xff) == 0x1a && (header[1] & 0xff) == 0x45
+                && (header[2] & 0xff) == 0xdf && (header[3] & 0xff) == 0xa3) {
+            return "matroska"; // also WebM
+        }
+        if (read >= 12 && matches(header, 0, "RIFF") && matches(header, 8, "AVI ")) {
+            return "avi";
+        }
+        if (read >= 4 && matches(header, 0, "OggS")) {
+            return "ogg";
+        }
+        return null;
+    }
+
+    private static boolean matches(byte[] header, int offset, String magic) {
+        for (int i = 0; i < magic.length(); i++) {
+            if (header[offset + i] != (byte) magic.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
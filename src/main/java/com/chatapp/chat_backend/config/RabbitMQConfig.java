@@ -1,10 +1,13 @@
 package com.chatapp.chat_backend.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -16,6 +19,8 @@ public class RabbitMQConfig
     public static final String NOTIFICATION_QUEUE = "chat.notification.queue";
     public static final String MESSAGE_ROUTING_KEY = "chat.message";
     public static final String NOTIFICATION_ROUTING_KEY = "chat.notification";
+    public static final String CLUSTER_ROUTING_KEY = "chat.cluster";
+    public static final String CLUSTER_QUEUE_PREFIX = "chat.cluster.node.";
 
     @Bean
     public DirectExchange chatExchange() {
@@ -50,15 +55,56 @@ public class RabbitMQConfig
                 .with(NOTIFICATION_ROUTING_KEY);
     }
 
+    // Exclusive, auto-delete queue per node; every node bound with the same
+    // key receives each cluster event batch
     @Bean
-    public MessageConverter messageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public Queue clusterNodeQueue() {
+        return new AnonymousQueue(new Base64UrlNamingStrategy(CLUSTER_QUEUE_PREFIX));
     }
 
     @Bean
-    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+    public Binding clusterNodeBinding(Queue clusterNodeQueue, DirectExchange chatExchange) {
+        return BindingBuilder.bind(clusterNodeQueue)
+                .to(chatExchange)
+                .with(CLUSTER_ROUTING_KEY);
+    }
+
+    @Bean
+    public MessageConverter messageConverter(ObjectMapper objectMapper) {
+        // Share the web ObjectMapper so dates match the WebSocket JSON
+        Jackson2JsonMessageConverter converter = new Jackson2JsonMessageConverter(objectMapper);
+        converter.setAlwaysConvertToInferredType(true);
+        return converter;
+    }
+
+    // Publisher confirms for cluster fan-out come from
+    // spring.rabbitmq.publisher-confirm-type=correlated, not from this bean
+    @Bean
+    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory, MessageConverter messageConverter) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
-        rabbitTemplate.setMessageConverter(messageConverter());
+        rabbitTemplate.setMessageConverter(messageConverter);
         return rabbitTemplate;
     }
+
+    // Batch consumer for notifications: each listener call gets up to
+    // batch-size events so they can be folded per recipient
+    @Bean
+    public SimpleRabbitListenerContainerFactory notificationListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            MessageConverter messageConverter,
+            @Value("${app.notifications.prefetch:250}") int prefetch,
+            @Value("${app.notifications.concurrency:2}") int concurrency,
+            @Value("${app.notifications.batch-size:100}") int batchSize
+    ) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(messageConverter);
+        factory.setPrefetchCount(prefetch);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(100L);
+        return factory;
+    }
 }
@@ -0,0 +1,33 @@
+package com.chatapp.chat_backend.config;
+
+import com.chatapp.chat_backend.service.TwoLevelCache;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+@Configuration
+@ConditionalOnProperty(name = "app.cache.redis.enabled", havingValue = "true")
+public class RedisConfig
+{
+    /**
+     * Subscribes to cache invalidations published by every node. The
+     * container resubscribes on its own after Redis comes back.
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(
+            RedisConnectionFactory connectionFactory,
+            TwoLevelCache twoLevelCache
+    ) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> twoLevelCache.onInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(TwoLevelCache.INVALIDATION_CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,83 @@
+package com.chatapp.chat_backend.config;
+
+import com.chatapp.chat_backend.datasource.ReadYourWrites;
+import com.chatapp.chat_backend.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Primary plus read replicas. The primary comes from spring.datasource.*
+ * and the replicas from app.datasource.replicas.urls. All pools take
+ * their settings from spring.datasource.hikari.*; replicas then get their
+ * own pool size and are read-only. Without
+ * app.datasource.replicas.enabled, Spring Boot's single DataSource is used.
+ * Message sharding takes precedence when both are enabled.
+ */
+@Configuration
+@ConditionalOnExpression("${app.datasource.replicas.enabled:false} and !${app.datasource.shards.enabled:false}")
+public class ReplicaDataSourceConfig
+{
+    private static final String HIKARI_PROPERTIES = "spring.datasource.hikari";
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            DataSourceProperties properties,
+            Environment environment,
+            ReadYourWrites readYourWrites,
+            @Value("${app.datasource.replicas.urls}") List<String> replicaUrls,
+            @Value("${app.datasource.replicas.username:${spring.datasource.username:}}") String username,
+            @Value("${app.datasource.replicas.password:${spring.datasource.password:}}") String password,
+            @Value("${app.datasource.replicas.pool-size:10}") int poolSize,
+            @Value("${app.datasource.replicas.max-lag-seconds:2}") long maxLagSeconds,
+            @Value("${app.datasource.replicas.lag-query:SHOW REPLICA STATUS}") String lagQuery,
+            @Value("${app.datasource.replicas.lag-column:Seconds_Behind_Source}") String lagColumn
+    ) {
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind(HIKARI_PROPERTIES, Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(replicaUrls.get(i).trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            binder.bind(HIKARI_PROPERTIES, Bindable.ofInstance(replica));
+            replica.setPoolName("replica-" + i);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setReadOnly(true);
+            replicas.put(replica.getPoolName(), replica);
+        }
+
+        return new ReplicaRoutingDataSource(primary, replicas, readYourWrites, maxLagSeconds, lagQuery, lagColumn);
+    }
+
+    /**
+     * Defer the physical connection until the first statement, by which
+     * time the transaction's read-only flag is known
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
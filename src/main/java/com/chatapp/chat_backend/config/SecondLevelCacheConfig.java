@@ -0,0 +1,77 @@
+package com.chatapp.chat_backend.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate second-level cache backed by Caffeine through JCache. Every
+ * region is created here with an explicit size bound. Hibernate is set to
+ * fail on a region that is not declared, so no unbounded default cache can
+ * appear.
+ */
+@Configuration
+public class SecondLevelCacheConfig
+{
+    public static final String USERS_REGION = "users";
+    public static final String USERS_BY_USERNAME_REGION = "users-by-username";
+    public static final String CHAT_ROOMS_REGION = "chat-rooms";
+    public static final String CHAT_ROOM_MEMBERS_REGION = "chat-room-members";
+
+    public static final List<String> REGIONS = List.of(
+            USERS_REGION, USERS_BY_USERNAME_REGION, CHAT_ROOMS_REGION, CHAT_ROOM_MEMBERS_REGION);
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(
+            @Value("${app.cache.users.max-size:50000}") long usersMaxSize,
+            @Value("${app.cache.chat-rooms.max-size:20000}") long chatRoomsMaxSize,
+            @Value("${app.cache.chat-room-members.max-size:20000}") long membersMaxSize,
+            @Value("${app.cache.ttl-ms:600000}") long ttlMs
+    ) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("chat-backend-hibernate"), getClass().getClassLoader());
+
+        createRegion(cacheManager, USERS_REGION, usersMaxSize, ttlMs);
+        createRegion(cacheManager, USERS_BY_USERNAME_REGION, usersMaxSize, ttlMs);
+        createRegion(cacheManager, CHAT_ROOMS_REGION, chatRoomsMaxSize, ttlMs);
+        createRegion(cacheManager, CHAT_ROOM_MEMBERS_REGION, membersMaxSize, ttlMs);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(
+            CacheManager hibernateCacheManager,
+            @Value("${app.cache.statistics:true}") boolean statisticsEnabled
+    ) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            properties.put(AvailableSettings.GENERATE_STATISTICS, statisticsEnabled);
+        };
+    }
+
+    private static void createRegion(CacheManager cacheManager, String name, long maxSize, long ttlMs) {
+        if (cacheManager.getCache(name) != null) {
+            return;
+        }
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(ttlMs)));
+        configuration.setStatisticsEnabled(true);
+        cacheManager.createCache(name, configuration);
+    }
+}
@@ -0,0 +1,67 @@
+package com.chatapp.chat_backend.config;
+
+import com.chatapp.chat_backend.datasource.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Message shards. Shard 0 is spring.datasource.* and also holds the global
+ * tables; app.datasource.shards.urls adds shards 1..N-1. Each shard needs
+ * the full schema, users/chat_rooms/chat_room_members replicated from
+ * shard 0, and its own auto_increment_offset so message ids stay unique
+ * across shards. Replaces the read replica routing while enabled.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.shards.enabled", havingValue = "true")
+public class ShardDataSourceConfig
+{
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(
+            DataSourceProperties properties,
+            @Value("${app.datasource.shards.urls}") List<String> shardUrls,
+            @Value("${app.datasource.shards.username:${spring.datasource.username:}}") String username,
+            @Value("${app.datasource.shards.password:${spring.datasource.password:}}") String password,
+            @Value("${app.datasource.shards.pool-size:10}") int poolSize
+    ) {
+        List<DataSource> shards = new ArrayList<>();
+        HikariDataSource global = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        global.setPoolName("shard-0");
+        shards.add(global);
+
+        for (String url : shardUrls) {
+            HikariDataSource shard = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url.trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            shard.setPoolName("shard-" + shards.size());
+            shard.setMaximumPoolSize(poolSize);
+            shards.add(shard);
+        }
+
+        return new ShardRoutingDataSource(shards);
+    }
+
+    /**
+     * Defer the physical connection until the first statement, by which
+     * time the request has bound its room's shard
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+}
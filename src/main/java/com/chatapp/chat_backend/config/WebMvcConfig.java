@@ -0,0 +1,41 @@
+package com.chatapp.chat_backend.config;
+
+import com.chatapp.chat_backend.datasource.ShardBindingHandlerInterceptor;
+import jakarta.servlet.MultipartConfigElement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.MultipartConfigFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@RequiredArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer
+{
+    private final ShardBindingHandlerInterceptor shardBindingHandlerInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Message endpoints run against the room's message shard
+        registry.addInterceptor(shardBindingHandlerInterceptor)
+                .addPathPatterns("/api/chatrooms/*/messages", "/api/chatrooms/*/messages/**");
+    }
+
+    /**
+     * Multipart limits sized for attachments. Parts are always spooled to
+     * disk (threshold 0), so large uploads never sit in the heap.
+     */
+    @Bean
+    public MultipartConfigElement multipartConfigElement(
+            @Value("${app.attachments.max-bytes:1073741824}") long maxBytes
+    ) {
+        MultipartConfigFactory factory = new MultipartConfigFactory();
+        factory.setFileSizeThreshold(DataSize.ofBytes(0));
+        factory.setMaxFileSize(DataSize.ofBytes(maxBytes));
+        factory.setMaxRequestSize(DataSize.ofBytes(maxBytes + 1024 * 1024));
+        return factory.createMultipartConfig();
+    }
+}
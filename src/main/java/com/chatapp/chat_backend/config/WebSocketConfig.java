@@ -1,16 +1,34 @@
 package com.chatapp.chat_backend.config;
 
+import com.chatapp.chat_backend.websocket.OutboundQueueMonitor;
+import com.chatapp.chat_backend.websocket.RateLimitInterceptor;
+import com.chatapp.chat_backend.websocket.RoomAuthorizationInterceptor;
+import com.chatapp.chat_backend.websocket.ShardBindingInterceptor;
+import com.chatapp.chat_backend.websocket.SlowConsumerHandlerDecorator;
+import com.chatapp.chat_backend.websocket.StompAuthInterceptor;
+import com.chatapp.chat_backend.websocket.WireFormatInterceptor;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer
 {
+    private final StompAuthInterceptor stompAuthInterceptor;
+    private final RoomAuthorizationInterceptor roomAuthorizationInterceptor;
+    private final RateLimitInterceptor rateLimitInterceptor;
+    private final OutboundQueueMonitor outboundQueueMonitor;
+    private final WireFormatInterceptor wireFormatInterceptor;
+    private final ShardBindingInterceptor shardBindingInterceptor;
+
     @Value("${app.websocket.allowed-origins}")
     private String allowedOrigins;
 
@@ -37,4 +55,26 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer
         registry.addEndpoint("/ws")
                 .setAllowedOrigins(allowedOrigins.split(","));
     }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // Authenticate at CONNECT first, then only room members may
+        // subscribe to or send into a room, and only their sends draw on the
+        // room's rate limit. Room frames are handled against the room's
+        // message shard.
+        registration.interceptors(stompAuthInterceptor, roomAuthorizationInterceptor, rateLimitInterceptor,
+                wireFormatInterceptor, shardBindingInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Re-encode frames for sessions that negotiated CBOR at CONNECT
+        registration.interceptors(wireFormatInterceptor);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // Per-session bounded outbound queues with conflation for slow clients
+        registration.addDecoratorFactory(handler -> new SlowConsumerHandlerDecorator(handler, outboundQueueMonitor));
+    }
 }
@@ -0,0 +1,204 @@
+package com.chatapp.chat_backend.controller;
+
+
+import com.chatapp.chat_backend.dtos.ApiResponse;
+import com.chatapp.chat_backend.dtos.ArchiveStatsDto;
+import com.chatapp.chat_backend.dtos.AttachmentStatsDto;
+import com.chatapp.chat_backend.dtos.CacheStatsDto;
+import com.chatapp.chat_backend.dtos.ClusterStatsDto;
+import com.chatapp.chat_backend.dtos.CompactionStatsDto;
+import com.chatapp.chat_backend.dtos.DataSourceRoutingStatsDto;
+import com.chatapp.chat_backend.dtos.NotificationStatsDto;
+import com.chatapp.chat_backend.dtos.OutboundQueueStatsDto;
+import com.chatapp.chat_backend.dtos.SessionStatsDto;
+import com.chatapp.chat_backend.dtos.ShardMoveResultDto;
+import com.chatapp.chat_backend.dtos.ThumbnailStatsDto;
+import com.chatapp.chat_backend.dtos.TwoLevelCacheStatsDto;
+import com.chatapp.chat_backend.dtos.UserSessionDto;
+import com.chatapp.chat_backend.dtos.WalStatsDto;
+import com.chatapp.chat_backend.datasource.ReplicaRoutingDataSource;
+import com.chatapp.chat_backend.service.AttachmentService;
+import com.chatapp.chat_backend.service.CacheStatisticsService;
+import com.chatapp.chat_backend.service.ClusterFanoutService;
+import com.chatapp.chat_backend.service.MessageArchiver;
+import com.chatapp.chat_backend.service.MessageCompactor;
+import com.chatapp.chat_backend.service.NotificationService;
+import com.chatapp.chat_backend.service.ShardRebalancer;
+import com.chatapp.chat_backend.service.ThumbnailService;
+import com.chatapp.chat_backend.service.TwoLevelCache;
+import com.chatapp.chat_backend.service.WalMessageService;
+import com.chatapp.chat_backend.websocket.OutboundQueueMonitor;
+import com.chatapp.chat_backend.websocket.StompSessionRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class AdminController
+{
+    private final StompSessionRegistry sessionRegistry;
+    private final OutboundQueueMonitor outboundQueueMonitor;
+    private final ClusterFanoutService clusterFanoutService;
+    private final NotificationService notificationService;
+    private final CacheStatisticsService cacheStatisticsService;
+    private final TwoLevelCache twoLevelCache;
+    private final ObjectProvider<ReplicaRoutingDataSource> replicaRoutingDataSource;
+    private final ShardRebalancer shardRebalancer;
+    private final MessageArchiver messageArchiver;
+    private final WalMessageService walMessageService;
+    private final MessageCompactor messageCompactor;
+    private final AttachmentService attachmentService;
+    private final ThumbnailService thumbnailService;
+
+    /**
+     * Get live WebSocket session, subscription and device counts
+     * GET /api/admin/websocket/sessions
+     */
+    @GetMapping("/websocket/sessions")
+    public ResponseEntity<ApiResponse<SessionStatsDto>> getSessionStats() {
+        SessionStatsDto stats = sessionRegistry.getStats();
+        return ResponseEntity.ok(ApiResponse.success("Session stats retrieved successfully", stats));
+    }
+
+    /**
+     * Get the live WebSocket sessions of a single user
+     * GET /api/admin/websocket/users/{userId}/sessions
+     */
+    @GetMapping("/websocket/users/{userId}/sessions")
+    public ResponseEntity<ApiResponse<List<UserSessionDto>>> getUserSessions(@PathVariable Long userId) {
+        List<UserSessionDto> sessions = sessionRegistry.getUserSessions(userId);
+        return ResponseEntity.ok(ApiResponse.success("User sessions retrieved successfully", sessions));
+    }
+
+    /**
+     * Get outbound queue depth, conflation and slow-consumer disconnect counts
+     * GET /api/admin/websocket/outbound
+     */
+    @GetMapping("/websocket/outbound")
+    public ResponseEntity<ApiResponse<OutboundQueueStatsDto>> getOutboundQueueStats() {
+        OutboundQueueStatsDto stats = outboundQueueMonitor.getStats();
+        return ResponseEntity.ok(ApiResponse.success("Outbound queue stats retrieved successfully", stats));
+    }
+
+    /**
+     * Get cluster fan-out publish, confirm and receive counters for this node
+     * GET /api/admin/cluster
+     */
+    @GetMapping("/cluster")
+    public ResponseEntity<ApiResponse<ClusterStatsDto>> getClusterStats() {
+        ClusterStatsDto stats = clusterFanoutService.getStats();
+        return ResponseEntity.ok(ApiResponse.success("Cluster stats retrieved successfully", stats));
+    }
+
+    /**
+     * Get notification pipeline throughput counters
+     * GET /api/admin/notifications
+     */
+    @GetMapping("/notifications")
+    public ResponseEntity<ApiResponse<NotificationStatsDto>> getNotificationStats() {
+        NotificationStatsDto stats = notificationService.getStats();
+        return ResponseEntity.ok(ApiResponse.success("Notification stats retrieved successfully", stats));
+    }
+
+    /**
+     * Get second-level cache region hit/miss counts and statement totals
+     * GET /api/admin/cache
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<ApiResponse<CacheStatsDto>> getCacheStats() {
+        CacheStatsDto stats = cacheStatisticsService.getStats();
+        return ResponseEntity.ok(ApiResponse.success("Cache stats retrieved successfully", stats));
+    }
+
+    /**
+     * Get shared two-level cache hit counts and Redis availability
+     * GET /api/admin/cache/shared
+     */
+    @GetMapping("/cache/shared")
+    public ResponseEntity<ApiResponse<TwoLevelCacheStatsDto>> getSharedCacheStats() {
+        TwoLevelCacheStatsDto stats = twoLevelCache.getStats();
+        return ResponseEntity.ok(ApiResponse.success("Shared cache stats retrieved successfully", stats));
+    }
+
+    /**
+     * Get replica health, lag and read routing counters
+     * GET /api/admin/datasource/replicas
+     */
+    @GetMapping("/datasource/replicas")
+    public ResponseEntity<ApiResponse<DataSourceRoutingStatsDto>> getReplicaStats() {
+        ReplicaRoutingDataSource routing = replicaRoutingDataSource.getIfAvailable();
+        if (routing == null) {
+            throw new RuntimeException("Read replicas are not enabled");
+        }
+        DataSourceRoutingStatsDto stats = routing.getStats();
+        return ResponseEntity.ok(ApiResponse.success("Replica stats retrieved successfully", stats));
+    }
+
+    /**
+     * Move a chat room's messages to another shard
+     * POST /api/admin/shards/rooms/{chatRoomId}/move?targetShard=1
+     */
+    @PostMapping("/shards/rooms/{chatRoomId}/move")
+    public ResponseEntity<ApiResponse<ShardMoveResultDto>> moveRoom(
+            @PathVariable Long chatRoomId,
+            @RequestParam int targetShard
+    ) {
+        ShardMoveResultDto result = shardRebalancer.moveRoom(chatRoomId, targetShard);
+        return ResponseEntity.ok(ApiResponse.success("Chat room moved successfully", result));
+    }
+
+    /**
+     * Get cold-message archive progress and segment I/O counters
+     * GET /api/admin/archive
+     */
+    @GetMapping("/archive")
+    public ResponseEntity<ApiResponse<ArchiveStatsDto>> getArchiveStats() {
+        ArchiveStatsDto stats = messageArchiver.getStats();
+        return ResponseEntity.ok(ApiResponse.success("Archive stats retrieved successfully", stats));
+    }
+
+    /**
+     * Get write-ahead log sequences, group-commit and apply counters
+     * GET /api/admin/wal
+     */
+    @GetMapping("/wal")
+    public ResponseEntity<ApiResponse<WalStatsDto>> getWalStats() {
+        WalStatsDto stats = walMessageService.getStats();
+        return ResponseEntity.ok(ApiResponse.success("Write-ahead log stats retrieved successfully", stats));
+    }
+
+    /**
+     * Get deleted-message compaction throughput and lag
+     * GET /api/admin/compaction
+     */
+    @GetMapping("/compaction")
+    public ResponseEntity<ApiResponse<CompactionStatsDto>> getCompactionStats() {
+        CompactionStatsDto stats = messageCompactor.getStats();
+        return ResponseEntity.ok(ApiResponse.success("Compaction stats retrieved successfully", stats));
+    }
+
+    /**
+     * Get attachment storage, deduplication and garbage collection counters
+     * GET /api/admin/attachments
+     */
+    @GetMapping("/attachments")
+    public ResponseEntity<ApiResponse<AttachmentStatsDto>> getAttachmentStats() {
+        AttachmentStatsDto stats = attachmentService.getStats();
+        return ResponseEntity.ok(ApiResponse.success("Attachment stats retrieved successfully", stats));
+    }
+
+    /**
+     * Thumbnail rendering: renders, failures, dropped requests and queue depth
+     * GET /api/admin/thumbnails
+     */
+    @GetMapping("/thumbnails")
+    public ResponseEntity<ApiResponse<ThumbnailStatsDto>> getThumbnailStats() {
+        ThumbnailStatsDto stats = thumbnailService.getStats();
+        return ResponseEntity.ok(ApiResponse.success("Thumbnail stats retrieved successfully", stats));
+    }
+}
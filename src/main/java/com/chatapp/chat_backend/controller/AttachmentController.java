@@ -0,0 +1,315 @@
+package com.chatapp.chat_backend.controller;
+
+
+import com.chatapp.chat_backend.attachment.AttachmentStorage;
+import com.chatapp.chat_backend.attachment.ThumbnailRenderer;
+import com.chatapp.chat_backend.dtos.ApiResponse;
+import com.chatapp.chat_backend.dtos.AttachmentResponseDto;
+import com.chatapp.chat_backend.dtos.AttachmentReuseRequestDto;
+import com.chatapp.chat_backend.entity.Attachment;
+import com.chatapp.chat_backend.entity.User;
+import com.chatapp.chat_backend.repository.UserRepository;
+import com.chatapp.chat_backend.service.AttachmentService;
+import com.chatapp.chat_backend.service.ThumbnailService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/attachments")
+public class AttachmentController
+{
+    // Tomcat's sendfile hand-off: the connector streams the file itself
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    // Uploaded content is only rendered by the browser for these types; anything
+    // else (HTML, SVG, XML, PDF, ...) is forced to download
+    private static final Set<String> INLINE_TYPES = Set.of(
+            "image/png", "image/jpeg", "image/gif", "image/webp", "image/avif",
+            "video/mp4", "video/webm", "video/ogg", "video/quicktime",
+            "audio/mpeg", "audio/mp4", "audio/aac", "audio/ogg", "audio/webm", "audio/wav", "audio/flac"
+    );
+    private static final int RENDITION_RETRY_SECONDS = 2;
+    private static final String CONTENT_SECURITY_POLICY = "default-src 'none'; style-src 'unsafe-inline'; sandbox";
+
+    private final AttachmentService attachmentService;
+    private final AttachmentStorage storage;
+    private final ThumbnailService thumbnailService;
+    private final UserRepository userRepository;
+    private final long sendfileMinBytes;
+
+    public AttachmentController(
+            AttachmentService attachmentService,
+            AttachmentStorage storage,
+            ThumbnailService thumbnailService,
+            UserRepository userRepository,
+            @Value("${app.attachments.sendfile-min-bytes:49152}") long sendfileMinBytes
+    ) {
+        this.attachmentService = attachmentService;
+        this.storage = storage;
+        this.thumbnailService = thumbnailService;
+        this.userRepository = userRepository;
+        this.sendfileMinBytes = sendfileMinBytes;
+    }
+
+    /**
+     * Upload an attachment; send it by putting its id in a message's attachmentId
+     * POST /api/attachments (multipart, part "file")
+     */
+    @PostMapping(consumes = "multipart/form-data")
+    public ResponseEntity<ApiResponse<AttachmentResponseDto>> upload(
+            @RequestPart("file") MultipartFile file,
+            Authentication authentication
+    ) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        AttachmentResponseDto attachment = attachmentService.upload(file, userId);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ApiResponse.success("Attachment uploaded successfully", attachment));
+    }
+
+    /**
+     * Attach content the user uploaded before by its SHA-256, skipping the upload
+     * POST /api/attachments/by-hash
+     */
+    @PostMapping("/by-hash")
+    public ResponseEntity<ApiResponse<AttachmentResponseDto>> reuse(
+            @Valid @RequestBody AttachmentReuseRequestDto request,
+            Authentication authentication
+    ) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        AttachmentResponseDto attachment = attachmentService.reuse(request, userId);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ApiResponse.success("Attachment created successfully", attachment));
+    }
+
+    /**
+     * Download an attachment, honouring Range, If-Range and If-None-Match
+     * GET /api/attachments/{id}
+     */
+    @GetMapping("/{id}")
+    public void download(
+            @PathVariable Long id,
+            Authentication authentication,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        Long userId = getUserIdFromAuthentication(authentication);
+        Attachment attachment = attachmentService.getForDownload(id, userId);
+        serve(storage.resolve(attachment.getSha256()), attachment.getFileSize(), attachment.getContentType(),
+                "\"" + attachment.getSha256() + "\"", attachment.getFileName(), request, response);
+    }
+
+    /**
+     * Download an attachment's thumbnail (JPEG, image and video attachments);
+     * 202 with Retry-After while it renders, 404 for content that has none
+     * GET /api/attachments/{id}/thumbnail
+     */
+    @GetMapping("/{id}/thumbnail")
+    public void thumbnail(
+            @PathVariable Long id,
+            Authentication authentication,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        serveRendition(id, ThumbnailRenderer.THUMBNAIL, authentication, request, response);
+    }
+
+    /**
+     * Download an attachment's low-resolution preview (JPEG)
+     * GET /api/attachments/{id}/preview
+     */
+    @GetMapping("/{id}/preview")
+    public void preview(
+            @PathVariable Long id,
+            Authentication authentication,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        serveRendition(id, ThumbnailRenderer.PREVIEW, authentication, request, response);
+    }
+
+    private void serveRendition(
+            Long id,
+            String rendition,
+            Authentication authentication,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        Long userId = getUserIdFromAuthentication(authentication);
+        Attachment attachment = attachmentService.getForDownload(id, userId);
+        Path file = storage.resolveRendition(attachment.getSha256(), rendition);
+        long length;
+        try {
+            length = Files.size(file);
+        } catch (NoSuchFileException e) {
+            if (!thumbnailService.isRenderable(attachment)) {
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+                return;
+            }
+            // Not rendered yet, or the request was dropped while the queue was full
+            thumbnailService.request(attachment);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(RENDITION_RETRY_SECONDS));
+            response.setStatus(HttpStatus.ACCEPTED.value());
+            return;
+        }
+        serve(file, length, "image/jpeg", "\"" + attachment.getSha256() + "-" + rendition + "\"", null, request, response);
+    }
+
+    /**
+     * Write an immutable stored file, honouring Range, If-Range and If-None-Match.
+     * The content type is whatever the uploader claimed, so only whitelisted
+     * media is shown inline and the browser is told not to sniff or run it.
+     */
+    private void serve(
+            Path file,
+            long length,
+            String contentType,
+            String etag,
+            String fileName,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        response.setHeader("Content-Security-Policy", CONTENT_SECURITY_POLICY);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, max-age=31536000, immutable");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        // Stored files never change, so If-Range only has to match the ETag
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] bounds = parseRange(range, length);
+            if (bounds == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            if (bounds.length == 2) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentType(contentType);
+        response.setContentLengthLong(count);
+        if (fileName != null) {
+            ContentDisposition.Builder disposition = isInline(contentType)
+                    ? ContentDisposition.inline() : ContentDisposition.attachment();
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, disposition
+                    .filename(fileName, StandardCharsets.UTF_8)
+                    .build()
+                    .toString());
+        }
+        if (count <= 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED)) && count >= sendfileMinBytes) {
+            // The connector sends the file with sendfile after this thread returns
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+        } else {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+                long position = start;
+                while (position <= end) {
+                    position += channel.transferTo(position, end + 1 - position, out);
+                }
+            }
+        }
+        storage.recordServed(count);
+    }
+
+    /**
+     * Bounds of a single byte range: {start, end} to serve a part, an empty
+     * array to serve the whole file, or null when the range is unsatisfiable
+     */
+    private static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return new long[0]; // multiple or unknown ranges: send everything
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(length - suffix, 0);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+            }
+            return start < length && start <= end ? new long[]{start, end} : null;
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private static boolean isInline(String contentType) {
+        int parameters = contentType.indexOf(';');
+        String mediaType = parameters >= 0 ? contentType.substring(0, parameters) : contentType;
+        return INLINE_TYPES.contains(mediaType.trim().toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || value.equals(etag) || value.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Long getUserIdFromAuthentication(Authentication authentication) {
+        String username = authentication.getName();
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return user.getId();
+    }
+}
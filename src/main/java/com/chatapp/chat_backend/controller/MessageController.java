@@ -5,16 +5,20 @@ package com.chatapp.chat_backend.controller;
 import com.chatapp.chat_backend.dtos.*;
 import com.chatapp.chat_backend.entity.User;
 import com.chatapp.chat_backend.repository.UserRepository;
+import com.chatapp.chat_backend.service.ChatBroadcaster;
 import com.chatapp.chat_backend.service.MessageService;
+import com.chatapp.chat_backend.service.ReceiptService;
+import com.chatapp.chat_backend.service.WalMessageService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/chatrooms/{chatRoomId}/messages")
@@ -23,7 +27,9 @@ public class MessageController
 {
     private final MessageService messageService;
     private final UserRepository userRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ChatBroadcaster broadcaster;
+    private final ReceiptService receiptService;
+    private final WalMessageService walMessageService;
 
     /**
      * Send a message to a chat room
@@ -36,10 +42,30 @@ public class MessageController
             Authentication authentication
     ) {
         Long senderId = getUserIdFromAuthentication(authentication);
-        MessageResponseDto message = messageService.sendMessage(chatRoomId, request, senderId);
 
-        // Broadcast the message via WebSocket to all users in the chat room
-        messagingTemplate.convertAndSend("/topic/chat/" + chatRoomId, message);
+        // A retried send returns the original message without another broadcast
+        Optional<MessageResponseDto> accepted =
+                messageService.findAcceptedMessage(senderId, chatRoomId, request.getClientMessageId());
+        if (accepted.isPresent()) {
+            return ResponseEntity.ok(ApiResponse.success("Message already sent", accepted.get()));
+        }
+
+        // With the write-ahead log on, the send is durable but not yet stored
+        if (walMessageService.isEnabled()) {
+            MessageResponseDto message = walMessageService.accept(chatRoomId, request, senderId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(ApiResponse.success("Message accepted successfully", message));
+        }
+
+        MessageResponseDto message;
+        try {
+            message = messageService.sendMessage(chatRoomId, request, senderId);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent retry won the insert and will broadcast it
+            return messageService.findAcceptedMessage(senderId, chatRoomId, request.getClientMessageId())
+                    .map(existing -> ResponseEntity.ok(ApiResponse.success("Message already sent", existing)))
+                    .orElseThrow(() -> e);
+        }
 
         return ResponseEntity.status(HttpStatus.CREATED)
                 .body(ApiResponse.success("Message sent successfully", message));
@@ -92,9 +118,6 @@ public class MessageController
         Long userId = getUserIdFromAuthentication(authentication);
         MessageResponseDto message = messageService.editMessage(messageId, request, userId);
 
-        // Broadcast the edited message via WebSocket
-        messagingTemplate.convertAndSend("/topic/chat/" + chatRoomId + "/edit", message);
-
         return ResponseEntity.ok(ApiResponse.success("Message edited successfully", message));
     }
 
@@ -111,9 +134,6 @@ public class MessageController
         Long userId = getUserIdFromAuthentication(authentication);
         messageService.deleteMessage(messageId, userId);
 
-        // Broadcast the message deletion via WebSocket
-        messagingTemplate.convertAndSend("/topic/chat/" + chatRoomId + "/delete", messageId);
-
         return ResponseEntity.ok(ApiResponse.success("Message deleted successfully", null));
     }
 
@@ -130,7 +150,7 @@ public class MessageController
         messageService.markMessagesAsRead(chatRoomId, userId);
 
         // Notify other users that messages have been read
-        messagingTemplate.convertAndSend(
+        broadcaster.broadcast(
                 "/topic/chat/" + chatRoomId + "/read",
                 userId
         );
@@ -138,6 +158,37 @@ public class MessageController
         return ResponseEntity.ok(ApiResponse.success("Messages marked as read", null));
     }
 
+    /**
+     * Acknowledge messages as delivered or read up to a message id
+     * POST /api/chatrooms/{chatRoomId}/messages/receipts
+     */
+    @PostMapping("/receipts")
+    public ResponseEntity<ApiResponse<Void>> acknowledge(
+            @PathVariable Long chatRoomId,
+            @Valid @RequestBody ReceiptAckDto ack,
+            Authentication authentication
+    ) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        receiptService.acknowledge(chatRoomId, userId, ack);
+
+        return ResponseEntity.ok(ApiResponse.success("Receipt recorded successfully", null));
+    }
+
+    /**
+     * Get delivery and read watermarks of all members
+     * GET /api/chatrooms/{chatRoomId}/messages/receipts
+     */
+    @GetMapping("/receipts")
+    public ResponseEntity<ApiResponse<List<ReceiptDto>>> getReceipts(
+            @PathVariable Long chatRoomId,
+            Authentication authentication
+    ) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        List<ReceiptDto> receipts = receiptService.getRoomReceipts(chatRoomId, userId);
+
+        return ResponseEntity.ok(ApiResponse.success("Receipts retrieved successfully", receipts));
+    }
+
     /**
      * Search messages in a chat room
      * GET /api/chatrooms/{chatRoomId}/messages/search?q=hello
@@ -179,11 +230,9 @@ public class MessageController
             Authentication authentication
     ) {
         Long userId = getUserIdFromAuthentication(authentication);
+        // Count changes reach the room as coalesced deltas on /topic/chat/{chatRoomId}/reaction
         MessageResponseDto message = messageService.addReaction(messageId, userId, reaction);
 
-        // Broadcast the reaction via WebSocket
-        messagingTemplate.convertAndSend("/topic/chat/" + chatRoomId + "/reaction", message);
-
         return ResponseEntity.ok(ApiResponse.success("Reaction added successfully", message));
     }
 
@@ -200,9 +249,6 @@ public class MessageController
         Long userId = getUserIdFromAuthentication(authentication);
         MessageResponseDto message = messageService.removeReaction(messageId, userId);
 
-        // Broadcast the reaction removal via WebSocket
-        messagingTemplate.convertAndSend("/topic/chat/" + chatRoomId + "/reaction", message);
-
         return ResponseEntity.ok(ApiResponse.success("Reaction removed successfully", message));
     }
 
@@ -220,12 +266,42 @@ public class MessageController
         Long userId = getUserIdFromAuthentication(authentication);
         MessageResponseDto message = messageService.forwardMessage(messageId, targetChatRoomId, userId);
 
-        // Broadcast to target chat room
-        messagingTemplate.convertAndSend("/topic/chat/" + targetChatRoomId, message);
-
         return ResponseEntity.ok(ApiResponse.success("Message forwarded successfully", message));
     }
 
+    /**
+     * Forward a message to several chat rooms at once
+     * POST /api/chatrooms/{chatRoomId}/messages/{messageId}/forward-batch
+     */
+    @PostMapping("/{messageId}/forward-batch")
+    public ResponseEntity<ApiResponse<List<MessageResponseDto>>> forwardMessageToRooms(
+            @PathVariable Long chatRoomId,
+            @PathVariable Long messageId,
+            @Valid @RequestBody ForwardMessageRequestDto request,
+            Authentication authentication
+    ) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        List<MessageResponseDto> messages = messageService.forwardMessageToRooms(
+                messageId, request.getTargetChatRoomIds(), userId);
+
+        return ResponseEntity.ok(ApiResponse.success("Message forwarded successfully", messages));
+    }
+
+    /**
+     * Get pinned messages of a chat room
+     * GET /api/chatrooms/{chatRoomId}/messages/pinned
+     */
+    @GetMapping("/pinned")
+    public ResponseEntity<ApiResponse<List<PinnedMessageDto>>> getPinnedMessages(
+            @PathVariable Long chatRoomId,
+            Authentication authentication
+    ) {
+        Long userId = getUserIdFromAuthentication(authentication);
+        List<PinnedMessageDto> pins = messageService.getPinnedMessages(chatRoomId, userId);
+
+        return ResponseEntity.ok(ApiResponse.success("Pinned messages retrieved successfully", pins));
+    }
+
     /**
      * Pin a message in a chat room
      * POST /api/chatrooms/{chatRoomId}/messages/{messageId}/pin
@@ -240,7 +316,7 @@ public class MessageController
         MessageResponseDto message = messageService.pinMessage(messageId, chatRoomId, userId);
 
         // Broadcast the pin action via WebSocket
-        messagingTemplate.convertAndSend("/topic/chat/" + chatRoomId + "/pin", message);
+        broadcaster.broadcast("/topic/chat/" + chatRoomId + "/pin", message);
 
         return ResponseEntity.ok(ApiResponse.success("Message pinned successfully", message));
     }
@@ -259,7 +335,7 @@ public class MessageController
         messageService.unpinMessage(messageId, chatRoomId, userId);
 
         // Broadcast the unpin action via WebSocket
-        messagingTemplate.convertAndSend("/topic/chat/" + chatRoomId + "/unpin", messageId);
+        broadcaster.broadcast("/topic/chat/" + chatRoomId + "/unpin", messageId);
 
         return ResponseEntity.ok(ApiResponse.success("Message unpinned successfully", null));
     }
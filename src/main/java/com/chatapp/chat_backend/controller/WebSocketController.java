@@ -2,15 +2,18 @@ package com.chatapp.chat_backend.controller;
 
 
 
-import com.chatapp.chat_backend.dtos.MessageResponseDto;
+import com.chatapp.chat_backend.dtos.ReceiptAckDto;
 import com.chatapp.chat_backend.dtos.SendMessageRequestDto;
+import com.chatapp.chat_backend.service.ChatBroadcaster;
 import com.chatapp.chat_backend.service.MessageService;
+import com.chatapp.chat_backend.service.ReceiptService;
+import com.chatapp.chat_backend.service.WalMessageService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 import java.security.Principal;
@@ -20,7 +23,9 @@ import java.security.Principal;
 public class WebSocketController
 {
     private final MessageService messageService;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final ChatBroadcaster broadcaster;
+    private final ReceiptService receiptService;
+    private final WalMessageService walMessageService;
 
     @MessageMapping("/chat/{roomId}/send")
     public void sendMessage(
@@ -32,11 +37,27 @@ public class WebSocketController
         // Extract user ID from principal
         Long senderId = Long.parseLong(principal.getName());
 
-        // Save message
-        MessageResponseDto message = messageService.sendMessage(roomId, request, senderId);
+        // A retried send was already accepted and broadcast
+        if (messageService.findAcceptedMessage(senderId, roomId, request.getClientMessageId()).isPresent()) {
+            return;
+        }
 
-        // Broadcast to all users in the chat room
-        messagingTemplate.convertAndSend("/topic/chat/" + roomId, message);
+        // Log the message; it is stored and broadcast in the background
+        if (walMessageService.isEnabled()) {
+            walMessageService.accept(roomId, request, senderId);
+            return;
+        }
+
+        // Save message; the outbox relay broadcasts it once the insert commits
+        try {
+            messageService.sendMessage(roomId, request, senderId);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent retry won the insert and will broadcast it
+            if (messageService.findAcceptedMessage(senderId, roomId, request.getClientMessageId()).isPresent()) {
+                return;
+            }
+            throw e;
+        }
     }
 
     @MessageMapping("/chat/{roomId}/typing")
@@ -45,9 +66,19 @@ public class WebSocketController
             Principal principal
     ) {
         // Broadcast typing indicator
-        messagingTemplate.convertAndSend(
+        broadcaster.broadcast(
                 "/topic/chat/" + roomId + "/typing",
                 principal.getName()
         );
     }
+
+    @MessageMapping("/chat/{roomId}/receipt")
+    public void acknowledge(
+            @DestinationVariable Long roomId,
+            @Payload ReceiptAckDto ack,
+            Principal principal
+    ) {
+        // Watermark changes are broadcast on /topic/chat/{roomId}/receipts once per tick
+        receiptService.acknowledge(roomId, Long.parseLong(principal.getName()), ack);
+    }
 }
@@ -0,0 +1,106 @@
+package com.chatapp.chat_backend.datasource;
+
+import com.chatapp.chat_backend.entity.RoomShardAssignment;
+import com.chatapp.chat_backend.repository.RoomShardAssignmentRepository;
+import com.chatapp.chat_backend.service.TwoLevelCache;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Maps a chat room to the shard holding its messages. A room lives on its
+ * hash shard unless the rebalancer has recorded an assignment for it.
+ * Assignments are read from the global shard through the shared cache, so
+ * a move on one node is seen by all of them. Without sharding every room
+ * maps to shard 0 and nothing is looked up.
+ */
+@Component
+public class MessageShardResolver
+{
+    public static final int GLOBAL_SHARD = 0;
+
+    private static final String NAMESPACE = "room-shard";
+    private static final TypeReference<Assignment> ASSIGNMENT = new TypeReference<>() {};
+
+    private final RoomShardAssignmentRepository assignmentRepository;
+    private final TwoLevelCache cache;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final int shardCount;
+
+    public MessageShardResolver(
+            RoomShardAssignmentRepository assignmentRepository,
+            TwoLevelCache cache,
+            PlatformTransactionManager transactionManager,
+            ObjectProvider<ShardRoutingDataSource> shardRoutingDataSource
+    ) {
+        this.assignmentRepository = assignmentRepository;
+        this.cache = cache;
+        // Always a transaction of its own, so it never joins one already bound to another shard
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        ShardRoutingDataSource routing = shardRoutingDataSource.getIfAvailable();
+        this.shardCount = routing != null ? routing.getShardCount() : 1;
+    }
+
+    public boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public int shardFor(Long chatRoomId) {
+        if (!isSharded()) {
+            return GLOBAL_SHARD;
+        }
+        Assignment assignment = assignment(chatRoomId);
+        return assignment != null ? assignment.shard() : hashShard(chatRoomId);
+    }
+
+    /**
+     * The shard a room maps to when it has no assignment
+     */
+    public int hashShard(Long chatRoomId) {
+        // Mix the id first; sequential room ids would otherwise stripe predictably
+        return Math.floorMod(Long.hashCode(chatRoomId * 0x9E3779B97F4A7C15L), shardCount);
+    }
+
+    public boolean isMigrating(Long chatRoomId) {
+        if (!isSharded()) {
+            return false;
+        }
+        Assignment assignment = assignment(chatRoomId);
+        return assignment != null && assignment.migrating();
+    }
+
+    /**
+     * Record where a room's messages live; used by the rebalancer
+     */
+    public void assign(Long chatRoomId, int shard, boolean migrating) {
+        ShardContext.runIn(GLOBAL_SHARD, () -> writeTransaction.executeWithoutResult(status ->
+                assignmentRepository.save(RoomShardAssignment.builder()
+                        .chatRoomId(chatRoomId)
+                        .shardIndex(shard)
+                        .migrating(migrating)
+                        .build())));
+        cache.evict(NAMESPACE, chatRoomId);
+    }
+
+    private Assignment assignment(Long chatRoomId) {
+        return cache.get(NAMESPACE, chatRoomId, ASSIGNMENT, () -> ShardContext.callIn(GLOBAL_SHARD, () ->
+                readTransaction.execute(status -> assignmentRepository.findById(chatRoomId)
+                        .map(found -> new Assignment(found.getShardIndex(), found.getMigrating()))
+                        .orElse(null))));
+    }
+
+    private record Assignment(int shard, boolean migrating) {}
+}
@@ -0,0 +1,106 @@
+package com.chatapp.chat_backend.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Read-your-writes window for replica routing: once a user's write
+ * transaction commits, that user's reads stay on the primary for
+ * app.datasource.replicas.sticky-ms. Writers name the user explicitly,
+ * since the STOMP send path runs without a security context. Reads whose
+ * result is cached can also be pinned to the primary for their duration.
+ */
+@Component
+public class ReadYourWrites
+{
+    private final boolean enabled;
+    private final long stickyMs;
+
+    private final ConcurrentHashMap<Long, Long> stickyUntil = new ConcurrentHashMap<>();
+    private final ThreadLocal<Boolean> primaryRequired = new ThreadLocal<>();
+
+    public ReadYourWrites(
+            @Value("${app.datasource.replicas.enabled:false}") boolean enabled,
+            @Value("${app.datasource.replicas.sticky-ms:5000}") long stickyMs
+    ) {
+        this.enabled = enabled;
+        this.stickyMs = stickyMs;
+    }
+
+    /**
+     * Keep the user's reads on the primary once the current transaction
+     * commits, or right away outside a transaction
+     */
+    public void recordWrite(Long userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            stick(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                stick(userId);
+            }
+        });
+    }
+
+    /**
+     * Run a read on the primary even in a read-only transaction. Cache
+     * loads need this: a value read from a lagging replica would be cached
+     * after the invalidation meant to replace it. The read must open its
+     * own transaction, as one already holding a replica connection keeps it.
+     */
+    public <T> T onPrimary(Supplier<T> read) {
+        if (primaryRequired.get() != null) {
+            return read.get();
+        }
+        primaryRequired.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            primaryRequired.remove();
+        }
+    }
+
+    public boolean isPrimaryRequired() {
+        return primaryRequired.get() != null;
+    }
+
+    public boolean isSticky(Long userId) {
+        if (userId == null) {
+            return false;
+        }
+        Long until = stickyUntil.get(userId);
+        if (until == null) {
+            return false;
+        }
+        if (until > System.currentTimeMillis()) {
+            return true;
+        }
+        stickyUntil.remove(userId, until);
+        return false;
+    }
+
+    public int getStickyUsers() {
+        return stickyUntil.size();
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replicas.health-interval-ms:2000}")
+    public void expire() {
+        long now = System.currentTimeMillis();
+        stickyUntil.values().removeIf(until -> until <= now);
+    }
+
+    private void stick(Long userId) {
+        stickyUntil.put(userId, System.currentTimeMillis() + stickyMs);
+    }
+}
@@ -0,0 +1,191 @@
+package com.chatapp.chat_backend.datasource;
+
+import com.chatapp.chat_backend.dtos.DataSourceRoutingStatsDto;
+import com.chatapp.chat_backend.dtos.ReplicaStatusDto;
+import com.chatapp.chat_backend.security.AuthenticatedUser;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Sends read-only transactions to a healthy replica and everything else to
+ * the primary. It must sit behind a LazyConnectionDataSourceProxy, so the
+ * connection is only chosen once the transaction's read-only flag is set.
+ *
+ * A replica is used only while its last health check passed and its
+ * replication lag is within the limit. After a user commits a write, that
+ * user's reads stay on the primary for a short window (read-your-writes),
+ * and cache loads run through ReadYourWrites.onPrimary always do.
+ * REST writes are attributed to the authenticated user here; services
+ * also report writes through ReadYourWrites, which covers the STOMP path.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable
+{
+    public static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReadYourWrites readYourWrites;
+    private final long maxLagSeconds;
+    private final String lagQuery;
+    private final String lagColumn;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder stickyReads = new LongAdder();
+    private final LongAdder cacheLoadReads = new LongAdder();
+
+    public ReplicaRoutingDataSource(
+            DataSource primary,
+            Map<String, DataSource> replicaDataSources,
+            ReadYourWrites readYourWrites,
+            long maxLagSeconds,
+            String lagQuery,
+            String lagColumn
+    ) {
+        this.primary = primary;
+        this.replicas = replicaDataSources.entrySet().stream()
+                .map(entry -> new Replica(entry.getKey(), entry.getValue()))
+                .collect(Collectors.toList());
+        this.readYourWrites = readYourWrites;
+        this.maxLagSeconds = maxLagSeconds;
+        this.lagQuery = lagQuery;
+        this.lagColumn = lagColumn;
+
+        Map<Object, Object> targets = new HashMap<>(replicaDataSources);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Long userId = AuthenticatedUser.userIdOf(SecurityContextHolder.getContext().getAuthentication());
+
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            readYourWrites.recordWrite(userId);
+            return PRIMARY;
+        }
+
+        if (readYourWrites.isPrimaryRequired()) {
+            cacheLoadReads.increment();
+            return PRIMARY;
+        }
+
+        if (readYourWrites.isSticky(userId)) {
+            stickyReads.increment();
+            return PRIMARY;
+        }
+
+        int size = replicas.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                replica.routedReads.increment();
+                return replica.name;
+            }
+        }
+        primaryReads.increment();
+        return PRIMARY;
+    }
+
+    /**
+     * Probe each replica and take it out of rotation when it is down,
+     * replication has stopped, or lag exceeds the limit
+     */
+    @Scheduled(fixedDelayString = "${app.datasource.replicas.health-interval-ms:2000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            Long lag = null;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                healthy = connection.isValid(2);
+                if (healthy && StringUtils.hasText(lagQuery)) {
+                    lag = readLag(connection);
+                    healthy = lag != null && lag <= maxLagSeconds;
+                }
+            } catch (Exception e) {
+                healthy = false;
+                log.debug("Health check failed for replica {}", replica.name, e);
+            }
+
+            if (healthy != replica.healthy) {
+                log.warn("Replica {} is now {} (lag: {}s)", replica.name, healthy ? "in rotation" : "out of rotation", lag);
+            }
+            replica.healthy = healthy;
+            replica.lagSeconds = lag;
+            replica.lastCheckedAt = LocalDateTime.now();
+        }
+    }
+
+    public DataSourceRoutingStatsDto getStats() {
+        return DataSourceRoutingStatsDto.builder()
+                .primaryReads(primaryReads.sum())
+                .stickyReads(stickyReads.sum())
+                .cacheLoadReads(cacheLoadReads.sum())
+                .stickyUsers(readYourWrites.getStickyUsers())
+                .replicas(replicas.stream()
+                        .map(replica -> ReplicaStatusDto.builder()
+                                .name(replica.name)
+                                .healthy(replica.healthy)
+                                .lagSeconds(replica.lagSeconds)
+                                .lastCheckedAt(replica.lastCheckedAt)
+                                .routedReads(replica.routedReads.sum())
+                                .build())
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private Long readLag(Connection connection) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            if (!resultSet.next()) {
+                return null; // not replicating
+            }
+            long lag = resultSet.getLong(lagColumn);
+            return resultSet.wasNull() ? null : lag;
+        }
+    }
+
+    private static final class Replica
+    {
+        private final String name;
+        private final DataSource dataSource;
+        private final LongAdder routedReads = new LongAdder();
+        private volatile boolean healthy; // out of rotation until the first check passes
+        private volatile Long lagSeconds;
+        private volatile LocalDateTime lastCheckedAt;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.chatapp.chat_backend.datasource;
+
+import com.chatapp.chat_backend.exception.RoomMigratingException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+/**
+ * Binds requests under /api/chatrooms/{chatRoomId}/messages to the room's
+ * message shard for their whole duration, and refuses writes to a room
+ * while the rebalancer is moving it
+ */
+@Component
+@RequiredArgsConstructor
+public class ShardBindingHandlerInterceptor implements HandlerInterceptor
+{
+    private final MessageShardResolver shardResolver;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!shardResolver.isSharded()) {
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(
+                HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String chatRoomId = variables != null ? variables.get("chatRoomId") : null;
+        if (chatRoomId == null) {
+            return true;
+        }
+
+        Long roomId;
+        try {
+            roomId = Long.valueOf(chatRoomId);
+        } catch (NumberFormatException e) {
+            return true;
+        }
+        if (!HttpMethod.GET.matches(request.getMethod()) && shardResolver.isMigrating(roomId)) {
+            throw new RoomMigratingException(roomId);
+        }
+        ShardContext.bind(shardResolver.shardFor(roomId));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        ShardContext.clear();
+    }
+}
@@ -0,0 +1,53 @@
+package com.chatapp.chat_backend.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * The message shard bound to the current thread. ShardRoutingDataSource
+ * reads it when a transaction takes its first connection, so the shard must
+ * be bound before the transaction runs its first statement. Unbound threads
+ * use the global shard.
+ */
+public final class ShardContext
+{
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    public static void bind(int shard) {
+        CURRENT.set(shard);
+    }
+
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Run an action with a shard bound, restoring the previous binding after
+     */
+    public static <T> T callIn(int shard, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public static void runIn(int shard, Runnable action) {
+        callIn(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
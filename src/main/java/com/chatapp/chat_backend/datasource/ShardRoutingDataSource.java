@@ -0,0 +1,59 @@
+package com.chatapp.chat_backend.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes each connection to the message shard bound in ShardContext. Shard 0
+ * is the global shard: it owns users, chat rooms and the room-to-shard
+ * assignments, and unbound work runs there. Every shard carries the full
+ * schema; users, chat_rooms and chat_room_members are replicated to the
+ * other shards from shard 0. It must sit behind a
+ * LazyConnectionDataSourceProxy, so the shard can be bound after the
+ * transaction has begun but before its first statement.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable
+{
+    private final List<DataSource> shards;
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        this.shards = List.copyOf(shards);
+
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(MessageShardResolver.GLOBAL_SHARD));
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = ShardContext.current();
+        return shard != null ? shard : MessageShardResolver.GLOBAL_SHARD;
+    }
+
+    /**
+     * The raw pool of one shard, for tools that work on several shards at once
+     */
+    public DataSource getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (DataSource shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.chatapp.chat_backend.datasource;
+
+import com.chatapp.chat_backend.exception.RoomMigratingException;
+import com.chatapp.chat_backend.repository.RoomWriteFenceRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Database-level write fence for room moves. Every write to a room's
+ * messages, reactions, pins or receipts calls this inside its own
+ * transaction on the room's shard, before writing. The check share-locks
+ * the room row, so a move cannot set the fence while such a transaction is
+ * open, and a transaction that starts after the fence is set is refused.
+ * Without sharding there are no moves and nothing is checked.
+ */
+@Component
+public class ShardWriteFence
+{
+    private final MessageShardResolver shardResolver;
+    private final RoomWriteFenceRepository fenceRepository;
+
+    public ShardWriteFence(MessageShardResolver shardResolver, RoomWriteFenceRepository fenceRepository) {
+        this.shardResolver = shardResolver;
+        this.fenceRepository = fenceRepository;
+    }
+
+    /**
+     * Refuse the current transaction's write if the room is fenced on the
+     * bound shard
+     */
+    public void checkWritable(Long chatRoomId) {
+        checkWritable(List.of(chatRoomId));
+    }
+
+    public void checkWritable(Collection<Long> chatRoomIds) {
+        Set<Long> fenced = fencedRooms(chatRoomIds);
+        if (!fenced.isEmpty()) {
+            throw new RoomMigratingException(fenced.iterator().next());
+        }
+    }
+
+    /**
+     * The rooms that are fenced on the bound shard; used by batch writers
+     * that hold back the fenced rooms' changes instead of failing
+     */
+    public Set<Long> fencedRooms(Collection<Long> chatRoomIds) {
+        if (!shardResolver.isSharded() || chatRoomIds.isEmpty()) {
+            return Set.of();
+        }
+        return fenceRepository.lockFences(chatRoomIds).stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,21 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchiveStatsDto
+{
+    private Boolean enabled;
+    private Long messagesArchived;
+    private Long rowsRemoved;
+    private Long heldBatches;
+    private Long bytesWritten;
+    private Long blocksRead;
+    private Integer openRooms;
+    private LocalDateTime lastRunAt;
+    private Long lastRunMs;
+}
@@ -0,0 +1,20 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AttachmentResponseDto
+{
+    private Long id;
+    private String fileName;
+    private String contentType;
+    private Long fileSize;
+    private String sha256;
+    private String url;
+    private ThumbnailDto thumbnail;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,20 @@
+package com.chatapp.chat_backend.dtos;
+
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttachmentReuseRequestDto
+{
+    @NotBlank(message = "SHA-256 is required")
+    @Pattern(regexp = "[0-9a-f]{64}", message = "SHA-256 must be 64 lowercase hex characters")
+    private String sha256;
+
+    @NotBlank(message = "File name is required")
+    @Size(max = 255, message = "File name cannot exceed 255 characters")
+    private String fileName;
+
+    private String contentType;
+}
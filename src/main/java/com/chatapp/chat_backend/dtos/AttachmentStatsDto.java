@@ -0,0 +1,22 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AttachmentStatsDto
+{
+    private Long bytesWritten;
+    private Long bytesServed;
+    private Long dedupHits;
+    private Long bytesDeduplicated;
+    private Boolean collectionEnabled;
+    private Long attachmentsCollected;
+    private Long blobsCollected;
+    private Long orphansCollected; // stored files no blob owned
+    private Long bytesReclaimed;
+    private LocalDateTime lastCollectedAt;
+}
@@ -0,0 +1,17 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CacheStatsDto
+{
+    private Boolean statisticsEnabled;
+    private Long preparedStatements;
+    private Long entityLoads;
+    private Long naturalIdQueries;
+    private List<CacheRegionStatsDto> regions;
+}
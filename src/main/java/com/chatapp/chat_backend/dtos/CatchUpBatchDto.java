@@ -0,0 +1,16 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CatchUpBatchDto
+{
+    private List<DeliveryItemDto> items;
+    private Integer batchNumber;
+    private Boolean last;
+    private Boolean truncated; // backlog overflowed, client should refetch rooms
+}
@@ -0,0 +1,14 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClusterEventDto
+{
+    private Long sequence;
+    private String destination;
+    private Object payload;
+}
@@ -0,0 +1,20 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ClusterStatsDto
+{
+    private String nodeId;
+    private Boolean enabled;
+    private Long publishedEvents;
+    private Long publishedBatches;
+    private Long failedBatches;
+    private Long droppedEvents;
+    private Long receivedEvents;
+    private Long sequenceGaps;
+    private Integer pendingEvents;
+}
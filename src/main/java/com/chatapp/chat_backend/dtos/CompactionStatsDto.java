@@ -0,0 +1,20 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CompactionStatsDto
+{
+    private Boolean enabled;
+    private Long rowsPurged;
+    private Long repliesDetached;
+    private Long batches;
+    private Double lastRowsPerSecond;
+    private Long lagSeconds; // how far the oldest purgeable message is past the retention window
+    private LocalDateTime lastRunAt;
+    private Long lastRunMs;
+}
@@ -0,0 +1,17 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DataSourceRoutingStatsDto
+{
+    private Long primaryReads;
+    private Long stickyReads;
+    private Long cacheLoadReads;
+    private Integer stickyUsers;
+    private List<ReplicaStatusDto> replicas;
+}
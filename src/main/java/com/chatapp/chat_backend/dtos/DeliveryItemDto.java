@@ -0,0 +1,19 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DeliveryItemDto
+{
+    private String kind; // NEW_MESSAGES, MENTION, NOTIFICATION
+    private Long chatRoomId;
+    private Long messageId; // latest message for NEW_MESSAGES summaries
+    private Long senderId;
+    private String preview;
+    private Integer count;
+    private LocalDateTime createdAt;
+}
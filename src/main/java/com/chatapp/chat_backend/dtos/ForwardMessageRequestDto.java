@@ -0,0 +1,16 @@
+package com.chatapp.chat_backend.dtos;
+
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ForwardMessageRequestDto
+{
+    @NotEmpty(message = "At least one target chat room is required")
+    @Size(max = 100, message = "A message can be forwarded to at most 100 chat rooms at once")
+    private List<@NotNull Long> targetChatRoomIds;
+}
@@ -0,0 +1,17 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LoggedMessageDto
+{
+    private Long chatRoomId;
+    private Long senderId;
+    private SendMessageRequestDto request;
+    private LocalDateTime acceptedAt;
+}
@@ -3,11 +3,12 @@ package com.chatapp.chat_backend.dtos;
 import lombok.*;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class MessageResponseDto
 {
     private Long id;
@@ -19,8 +20,12 @@ public class MessageResponseDto
     private String fileUrl;
     private String fileName;
     private Long fileSize;
+    private Long attachmentId;
+    private ThumbnailDto thumbnail; // set once rendered; announced by a follow-up broadcast
     private MessageResponseDto replyTo;
     private Boolean isEdited;
     private LocalDateTime editedAt;
     private LocalDateTime createdAt;
+    private String clientMessageId;
+    private Map<String, Long> reactions; // reaction -> count
 }
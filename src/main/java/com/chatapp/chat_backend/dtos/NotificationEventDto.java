@@ -0,0 +1,20 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NotificationEventDto
+{
+    private Long chatRoomId;
+    private Long messageId;
+    private Long senderId;
+    private String preview;
+    private List<Long> recipientIds;
+    private List<Long> mentionedUserIds;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,17 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class NotificationStatsDto
+{
+    private Boolean rabbitEnabled;
+    private Long consumedEvents;
+    private Long consumedBatches;
+    private Long onlineDeliveries;
+    private Long offlineDeliveries;
+    private Long foldedMessages;
+}
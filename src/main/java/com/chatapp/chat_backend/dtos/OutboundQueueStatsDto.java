@@ -0,0 +1,17 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboundQueueStatsDto
+{
+    private Integer sessionCount;
+    private Long queuedFrames;
+    private Integer maxQueueDepth;
+    private Long conflatedFrames;
+    private Long slowConsumerDisconnects;
+    private Long flushRejections;
+}
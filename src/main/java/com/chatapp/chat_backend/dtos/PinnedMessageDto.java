@@ -0,0 +1,15 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder(toBuilder = true)
+public class PinnedMessageDto
+{
+    private MessageResponseDto message;
+    private UserResponseDto pinnedBy;
+    private LocalDateTime pinnedAt;
+}
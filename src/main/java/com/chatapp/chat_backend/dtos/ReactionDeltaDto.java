@@ -0,0 +1,14 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReactionDeltaDto
+{
+    private Long messageId;
+    private Map<String, Long> deltas; // reaction -> change since the last frame
+}
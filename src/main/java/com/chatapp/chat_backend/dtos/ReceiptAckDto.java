@@ -0,0 +1,16 @@
+package com.chatapp.chat_backend.dtos;
+
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptAckDto
+{
+    @NotBlank(message = "Status is required")
+    private String status; // DELIVERED or READ
+
+    @NotNull(message = "Message id is required")
+    private Long upToMessageId;
+}
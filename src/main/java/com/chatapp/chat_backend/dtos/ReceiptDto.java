@@ -0,0 +1,14 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReceiptDto
+{
+    private Long userId;
+    private Long deliveredUpTo;
+    private Long readUpTo;
+}
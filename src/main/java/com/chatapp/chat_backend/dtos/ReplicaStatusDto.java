@@ -0,0 +1,17 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReplicaStatusDto
+{
+    private String name;
+    private Boolean healthy;
+    private Long lagSeconds;
+    private LocalDateTime lastCheckedAt;
+    private Long routedReads;
+}
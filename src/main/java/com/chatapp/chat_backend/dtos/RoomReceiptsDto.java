@@ -0,0 +1,14 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RoomReceiptsDto
+{
+    private Long chatRoomId;
+    private List<ReceiptDto> receipts;
+}
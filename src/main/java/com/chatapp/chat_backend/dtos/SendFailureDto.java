@@ -0,0 +1,17 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SendFailureDto
+{
+    private Long chatRoomId;
+    private String clientMessageId;
+    private String reason;
+    private LocalDateTime failedAt;
+}
@@ -18,4 +18,11 @@ public class SendMessageRequestDto
     private String fileUrl;
     private String fileName;
     private Long fileSize;
+
+    // Upload from POST /api/attachments; replaces the file fields above
+    private Long attachmentId;
+
+    // Client-generated id so retried sends are accepted only once
+    @Size(max = 64, message = "Client message ID cannot exceed 64 characters")
+    private String clientMessageId;
 }
@@ -0,0 +1,16 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SessionStatsDto
+{
+    private Integer sessionCount;
+    private Long subscriptionCount;
+    private Integer userCount;
+    private Map<Integer, Integer> usersByDeviceCount; // devices -> number of users
+}
@@ -0,0 +1,16 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ShardMoveResultDto
+{
+    private Long chatRoomId;
+    private Integer sourceShard;
+    private Integer targetShard;
+    private Long messagesMoved;
+    private Long durationMs;
+}
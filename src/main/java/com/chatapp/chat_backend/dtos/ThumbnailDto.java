@@ -0,0 +1,15 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ThumbnailDto
+{
+    private String url;
+    private String previewUrl;
+    private Integer width;
+    private Integer height;
+}
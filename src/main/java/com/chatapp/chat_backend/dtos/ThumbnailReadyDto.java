@@ -0,0 +1,14 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ThumbnailReadyDto
+{
+    private Long messageId;
+    private Long attachmentId;
+    private ThumbnailDto thumbnail;
+}
@@ -0,0 +1,19 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ThumbnailStatsDto
+{
+    private Boolean enabled;
+    private Long rendered;
+    private Long failed;
+    private Long rejected;
+    private Long eventsPublished;
+    private Integer queued;
+    private Integer inFlight;
+    private Long lastRenderMs;
+}
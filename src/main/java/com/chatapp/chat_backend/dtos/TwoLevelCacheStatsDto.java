@@ -0,0 +1,20 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TwoLevelCacheStatsDto
+{
+    private Boolean redisEnabled;
+    private Boolean redisAvailable;
+    private Integer localEntries;
+    private Long localHits;
+    private Long redisHits;
+    private Long loads;
+    private Long redisErrors;
+    private Long remoteInvalidations;
+    private Integer pendingInvalidations;
+}
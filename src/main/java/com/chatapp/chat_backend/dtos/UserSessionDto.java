@@ -0,0 +1,17 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserSessionDto
+{
+    private String sessionId;
+    private Long userId;
+    private LocalDateTime connectedAt;
+    private List<String> subscriptions;
+}
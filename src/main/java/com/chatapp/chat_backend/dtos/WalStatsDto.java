@@ -0,0 +1,24 @@
+package com.chatapp.chat_backend.dtos;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WalStatsDto
+{
+    private Boolean enabled;
+    private Long writtenSequence;
+    private Long appliedSequence;
+    private Integer pendingRecords;
+    private Integer parkedRecords;
+    private Integer segments;
+    private Long appends;
+    private Long flushes;
+    private Long appliedMessages;
+    private Long duplicateMessages;
+    private Long rejectedMessages;
+    private Long retries;
+    private Long lastApplyLagMs;
+}
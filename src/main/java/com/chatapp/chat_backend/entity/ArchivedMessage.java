@@ -0,0 +1,45 @@
+package com.chatapp.chat_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reference row for a message moved to the cold archive, kept on the
+ * room's message shard. Answers by message id what the archive can only
+ * answer by room: who sent it, which attachment it carries, and whether it
+ * was deleted after archiving.
+ */
+@Entity
+@Table(name = "archived_messages", indexes = {
+        @Index(name = "idx_archived_message_room", columnList = "chat_room_id"),
+        @Index(name = "idx_archived_message_attachment", columnList = "attachment_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchivedMessage
+{
+    @Id
+    @Column(name = "message_id")
+    private Long messageId;
+
+    @Column(name = "chat_room_id", nullable = false)
+    private Long chatRoomId;
+
+    @Column(name = "sender_id", nullable = false)
+    private Long senderId;
+
+    @Column(name = "attachment_id")
+    private Long attachmentId;
+
+    // The archive is append-only, so a delete is recorded here and applied on read
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean deleted = false;
+
+    private LocalDateTime deletedAt;
+}
@@ -0,0 +1,61 @@
+package com.chatapp.chat_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * An uploaded file in the local attachment store: the name and type it was
+ * sent with, over a blob holding the content. Lives on the global shard;
+ * messages on any shard refer to it by id.
+ */
+@Entity
+@Table(name = "attachments", indexes = {
+        @Index(name = "idx_attachment_uploader_sha", columnList = "uploader_id,sha256"),
+        @Index(name = "idx_attachment_sha", columnList = "sha256")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Attachment
+{
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "uploader_id", nullable = false)
+    private Long uploaderId;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    @Column(nullable = false, length = 128)
+    private String contentType;
+
+    @Column(nullable = false)
+    private Long fileSize;
+
+    // Content hash, the key of the shared AttachmentBlob
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    // Size of the rendered thumbnail; null until one exists
+    private Integer thumbnailWidth;
+    private Integer thumbnailHeight;
+
+    // Last put on a message; the collection grace period runs from here
+    private LocalDateTime lastUsedAt;
+
+    // Referenced from the cold archive, so never collected
+    @Column(nullable = false)
+    @Builder.Default
+    private Boolean archived = false;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,39 @@
+package com.chatapp.chat_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One stored attachment file, shared by every attachment with the same
+ * content. refCount is the number of attachments pointing at it; a blob
+ * unreferenced for longer than the grace period is deleted with its file.
+ */
+@Entity
+@Table(name = "attachment_blobs", indexes = {
+        @Index(name = "idx_blob_unreferenced", columnList = "ref_count,unreferenced_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AttachmentBlob
+{
+    @Id
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private Long fileSize;
+
+    @Column(name = "ref_count", nullable = false)
+    private Long refCount;
+
+    @Column(name = "unreferenced_at")
+    private LocalDateTime unreferencedAt;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,9 +1,12 @@
 package com.chatapp.chat_backend.entity;
 
 
+import com.chatapp.chat_backend.config.SecondLevelCacheConfig;
 import com.chatapp.chat_backend.utils.RoomType;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -13,6 +16,7 @@ import java.util.Set;
 
 @Entity
 @Table(name = "chat_rooms")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.CHAT_ROOMS_REGION)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -54,6 +58,7 @@ public class ChatRoom
 
     // Relationships
     @ManyToMany(fetch = FetchType.LAZY)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.CHAT_ROOM_MEMBERS_REGION)
     @JoinTable(
             name = "chat_room_members",
             joinColumns = @JoinColumn(name = "chat_room_id"),
@@ -0,0 +1,30 @@
+package com.chatapp.chat_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A lease on a scheduled job, so that only one node runs it at a time.
+ * Kept on the global shard; times are the database's clock.
+ */
+@Entity
+@Table(name = "job_locks")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobLock
+{
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    @Column(name = "locked_by", nullable = false, length = 64)
+    private String lockedBy;
+
+    @Column(name = "locked_until", nullable = false)
+    private LocalDateTime lockedUntil;
+}
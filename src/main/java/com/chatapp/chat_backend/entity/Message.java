@@ -11,7 +11,11 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "messages", indexes = {
-        @Index(name = "idx_chat_room_created", columnList = "chat_room_id,created_at")
+        @Index(name = "idx_chat_room_created", columnList = "chat_room_id,created_at"),
+        @Index(name = "idx_deleted_at", columnList = "deleted_at,id"),
+        @Index(name = "idx_attachment", columnList = "attachment_id")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_sender_client_message", columnNames = {"sender_id", "chat_room_id", "client_message_id"})
 })
 @Getter
 @Setter
@@ -50,6 +54,14 @@ public class Message
     private String fileName;
     private Long fileSize;
 
+    // Upload in the local attachment store, if the file is served from there
+    @Column(name = "attachment_id")
+    private Long attachmentId;
+
+    // Client-generated id used to deduplicate retried sends
+    @Column(length = 64)
+    private String clientMessageId;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "reply_to_id")
     private Message replyTo;
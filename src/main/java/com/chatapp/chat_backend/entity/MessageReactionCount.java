@@ -0,0 +1,41 @@
+package com.chatapp.chat_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * Denormalized per-message reaction totals, so reads never touch
+ * individual reaction rows
+ */
+@Entity
+@Table(name = "message_reaction_counts")
+@IdClass(MessageReactionCount.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessageReactionCount
+{
+    @Id
+    @Column(name = "message_id")
+    private Long messageId;
+
+    @Id
+    @Column(length = 32)
+    private String reaction;
+
+    @Column(name = "reaction_count", nullable = false)
+    private Long count;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable
+    {
+        private Long messageId;
+        private String reaction;
+    }
+}
@@ -2,24 +2,39 @@ package com.chatapp.chat_backend.entity;
 
 
 import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
 
 @Entity
+@Table(name = "pinned_messages", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_pinned_room_message", columnNames = {"chat_room_id", "message_id"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
 public class PinnedMessage
 {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "message_id", nullable = false)
     private Message message;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "chat_room_id", nullable = false)
     private ChatRoom chatRoom;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "pinned_by_id", nullable = false)
     private User pinnedBy;
 
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
     private LocalDateTime pinnedAt;
 }
@@ -0,0 +1,48 @@
+package com.chatapp.chat_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Per-user delivery and read watermarks for a room: every message up to
+ * the stored id counts as delivered/read for that user
+ */
+@Entity
+@Table(name = "room_receipts")
+@IdClass(RoomReceipt.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RoomReceipt
+{
+    @Id
+    @Column(name = "chat_room_id")
+    private Long chatRoomId;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "delivered_up_to", nullable = false)
+    private Long deliveredUpTo;
+
+    @Column(name = "read_up_to", nullable = false)
+    private Long readUpTo;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable
+    {
+        private Long chatRoomId;
+        private Long userId;
+    }
+}
@@ -0,0 +1,37 @@
+package com.chatapp.chat_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A room whose messages live somewhere other than its hash shard, because
+ * the rebalancer moved it or is moving it. Kept on the global shard.
+ */
+@Entity
+@Table(name = "room_shard_assignments")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RoomShardAssignment
+{
+    @Id
+    @Column(name = "chat_room_id")
+    private Long chatRoomId;
+
+    @Column(name = "shard_index", nullable = false)
+    private Integer shardIndex;
+
+    /**
+     * Writes to the room are refused while its messages are being copied
+     */
+    @Column(nullable = false)
+    private Boolean migrating;
+
+    @UpdateTimestamp
+    private LocalDateTime updatedAt;
+}
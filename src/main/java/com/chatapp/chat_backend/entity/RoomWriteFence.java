@@ -0,0 +1,30 @@
+package com.chatapp.chat_backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Marks a room whose rows on this shard must no longer be written, because
+ * the rebalancer is moving the room away or has moved it. Kept on the shard
+ * the room is leaving, so writers check it in their own transaction.
+ */
+@Entity
+@Table(name = "room_write_fences")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RoomWriteFence
+{
+    @Id
+    @Column(name = "chat_room_id")
+    private Long chatRoomId;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
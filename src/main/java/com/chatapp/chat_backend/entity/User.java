@@ -1,10 +1,16 @@
 package com.chatapp.chat_backend.entity;
 
 
+import com.chatapp.chat_backend.config.SecondLevelCacheConfig;
+import com.chatapp.chat_backend.utils.UserRole;
 import com.chatapp.chat_backend.utils.UserStatus;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -13,6 +19,8 @@ import java.util.Set;
 
 @Entity
 @Table(name = "users")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = SecondLevelCacheConfig.USERS_REGION)
+@NaturalIdCache(region = SecondLevelCacheConfig.USERS_BY_USERNAME_REGION)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -24,6 +32,7 @@ public class User
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @NaturalId
     @Column(unique = true, nullable = false, length = 50)
     private String username;
 
@@ -52,6 +61,12 @@ public class User
     @Builder.Default
     private Boolean isActive = true;
 
+    // Granted as ROLE_<role>; ADMIN is required for /api/admin/**
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20, columnDefinition = "varchar(20) not null default 'USER'")
+    @Builder.Default
+    private UserRole role = UserRole.USER;
+
     @CreationTimestamp
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
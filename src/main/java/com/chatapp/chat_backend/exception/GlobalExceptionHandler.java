@@ -2,6 +2,7 @@ package com.chatapp.chat_backend.exception;
 
 
 import com.chatapp.chat_backend.dtos.ApiResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -22,6 +23,13 @@ public class GlobalExceptionHandler
                 .body(ApiResponse.error(ex.getMessage()));
     }
 
+    @ExceptionHandler(RoomMigratingException.class)
+    public ResponseEntity<ApiResponse<Object>> handleRoomMigratingException(RoomMigratingException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ApiResponse.error(ex.getMessage()));
+    }
+
     @ExceptionHandler(BadCredentialsException.class)
     public ResponseEntity<ApiResponse<Object>> handleBadCredentialsException(BadCredentialsException ex) {
         return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
@@ -0,0 +1,12 @@
+package com.chatapp.chat_backend.exception;
+
+/**
+ * A write reached a shard its room is being moved away from. The write
+ * was not applied and can be retried once the move is done.
+ */
+public class RoomMigratingException extends RuntimeException
+{
+    public RoomMigratingException(Long chatRoomId) {
+        super("Chat room " + chatRoomId + " is being migrated, please retry shortly");
+    }
+}
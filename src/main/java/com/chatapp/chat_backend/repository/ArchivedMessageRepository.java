@@ -0,0 +1,33 @@
+package com.chatapp.chat_backend.repository;
+
+import com.chatapp.chat_backend.entity.ArchivedMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ArchivedMessageRepository extends JpaRepository<ArchivedMessage, Long>
+{
+    boolean existsByChatRoomId(Long chatRoomId);
+
+    @Query("SELECT DISTINCT a.chatRoomId FROM ArchivedMessage a WHERE a.attachmentId = :attachmentId AND a.deleted = false")
+    List<Long> findRoomIdsByAttachmentId(@Param("attachmentId") Long attachmentId);
+
+    @Query("SELECT DISTINCT a.attachmentId FROM ArchivedMessage a WHERE a.attachmentId IN :attachmentIds")
+    List<Long> findReferencedAttachmentIds(@Param("attachmentIds") Collection<Long> attachmentIds);
+
+    /**
+     * Attachment ids carried by archived messages, in pages
+     */
+    @Query("SELECT DISTINCT a.attachmentId FROM ArchivedMessage a WHERE a.attachmentId > :afterId " +
+            "ORDER BY a.attachmentId")
+    List<Long> findAttachmentIds(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT a.messageId FROM ArchivedMessage a WHERE a.messageId IN :messageIds AND a.deleted = true")
+    List<Long> findDeletedIds(@Param("messageIds") Collection<Long> messageIds);
+}
@@ -0,0 +1,60 @@
+package com.chatapp.chat_backend.repository;
+
+import com.chatapp.chat_backend.entity.AttachmentBlob;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AttachmentBlobRepository extends JpaRepository<AttachmentBlob, String>
+{
+    /**
+     * Take a reference on a blob, creating it on first use. The row lock
+     * this takes keeps the collector off the blob until the upload commits.
+     * The native space hint stops Hibernate from evicting every
+     * second-level cache region.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "attachment_blobs"))
+    @Query(value = "INSERT INTO attachment_blobs (sha256, file_size, ref_count, created_at) " +
+            "VALUES (:sha256, :fileSize, 1, NOW()) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, unreferenced_at = NULL", nativeQuery = true)
+    int acquire(@Param("sha256") String sha256, @Param("fileSize") long fileSize);
+
+    /**
+     * Drop a reference, stamping the time the last one went
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "attachment_blobs"))
+    @Query(value = "UPDATE attachment_blobs SET " +
+            "unreferenced_at = CASE WHEN ref_count = 1 THEN NOW() ELSE unreferenced_at END, " +
+            "ref_count = ref_count - 1 WHERE sha256 = :sha256 AND ref_count > 0", nativeQuery = true)
+    int release(@Param("sha256") String sha256);
+
+    @Query("SELECT b.sha256 FROM AttachmentBlob b WHERE b.refCount = 0 AND b.unreferencedAt < :cutoff")
+    List<String> findCollectable(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    /**
+     * Lock a blob row, or under InnoDB's default REPEATABLE READ the gap
+     * where it would go, so no upload can take a reference meanwhile
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM AttachmentBlob b WHERE b.sha256 = :sha256")
+    Optional<AttachmentBlob> lock(@Param("sha256") String sha256);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM AttachmentBlob b WHERE b.sha256 = :sha256 AND b.refCount = 0")
+    Optional<AttachmentBlob> lockUnreferenced(@Param("sha256") String sha256);
+}
@@ -0,0 +1,69 @@
+package com.chatapp.chat_backend.repository;
+
+import com.chatapp.chat_backend.entity.Attachment;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AttachmentRepository extends JpaRepository<Attachment, Long>
+{
+    Optional<Attachment> findFirstByUploaderIdAndSha256(Long uploaderId, String sha256);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Attachment a WHERE a.id = :attachmentId")
+    Optional<Attachment> lockById(@Param("attachmentId") Long attachmentId);
+
+    /**
+     * Lock the uploader's user row so their quota checks run one at a time
+     */
+    @Query(value = "SELECT id FROM users WHERE id = :uploaderId FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockUploader(@Param("uploaderId") Long uploaderId);
+
+    /**
+     * Bytes of all attachments a user has uploaded, for the quota
+     */
+    @Query("SELECT COALESCE(SUM(a.fileSize), 0) FROM Attachment a WHERE a.uploaderId = :uploaderId")
+    long sumFileSizeByUploaderId(@Param("uploaderId") Long uploaderId);
+
+    /**
+     * Attachments old enough to be collected if no message refers to them
+     */
+    @Query("SELECT a FROM Attachment a WHERE a.id > :afterId AND COALESCE(a.lastUsedAt, a.createdAt) < :cutoff " +
+            "AND a.archived = false ORDER BY a.id")
+    List<Attachment> findCollectionCandidates(
+            @Param("afterId") Long afterId,
+            @Param("cutoff") LocalDateTime cutoff,
+            Pageable pageable
+    );
+
+    /**
+     * Lock an attachment for deletion if it is still collectable; a send
+     * that took it since the reference scan has moved lastUsedAt past the cutoff
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM Attachment a WHERE a.id = :attachmentId AND COALESCE(a.lastUsedAt, a.createdAt) < :cutoff " +
+            "AND a.archived = false")
+    Optional<Attachment> lockCollectable(@Param("attachmentId") Long attachmentId, @Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("UPDATE Attachment a SET a.archived = true WHERE a.id IN :attachmentIds AND a.archived = false")
+    int markArchived(@Param("attachmentIds") Collection<Long> attachmentIds);
+
+    /**
+     * Record a rendered thumbnail on every attachment with that content
+     */
+    @Modifying
+    @Query("UPDATE Attachment a SET a.thumbnailWidth = :width, a.thumbnailHeight = :height WHERE a.sha256 = :sha256")
+    int setThumbnail(@Param("sha256") String sha256, @Param("width") int width, @Param("height") int height);
+}
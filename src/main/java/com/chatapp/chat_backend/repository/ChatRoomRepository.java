@@ -10,8 +10,10 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long>
@@ -21,6 +23,12 @@ public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long>
     @Query("SELECT cr FROM ChatRoom cr JOIN cr.members m WHERE m.id = :userId AND cr.isActive = true")
     List<ChatRoom> findByUserId(@Param("userId") Long userId);
 
+    @Query("SELECT m.id FROM ChatRoom cr JOIN cr.members m WHERE cr.id = :chatRoomId AND cr.isActive = true")
+    Set<Long> findMemberIds(@Param("chatRoomId") Long chatRoomId);
+
+    @Query("SELECT cr.id, m.id FROM ChatRoom cr JOIN cr.members m WHERE cr.id IN :chatRoomIds AND cr.isActive = true")
+    List<Object[]> findMemberIdsByRoomIds(@Param("chatRoomIds") Collection<Long> chatRoomIds);
+
     @Query("SELECT cr FROM ChatRoom cr WHERE cr.type = 'PRIVATE' AND " +
             "SIZE(cr.members) = 2 AND :user1 MEMBER OF cr.members AND :user2 MEMBER OF cr.members")
     Optional<ChatRoom> findPrivateRoomBetweenUsers(@Param("user1") User user1, @Param("user2") User user2);
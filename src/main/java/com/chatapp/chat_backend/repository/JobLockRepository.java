@@ -0,0 +1,33 @@
+package com.chatapp.chat_backend.repository;
+
+import com.chatapp.chat_backend.entity.JobLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface JobLockRepository extends JpaRepository<JobLock, String>
+{
+    /**
+     * Take or extend the lease if it is free, expired or already ours; the
+     * row lock taken here serializes competing nodes. locked_by is assigned
+     * first, so the second assignment sees whether this node won.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO job_locks (name, locked_by, locked_until) " +
+            "VALUES (:name, :owner, NOW(3) + INTERVAL :leaseMs * 1000 MICROSECOND) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "locked_by = IF(locked_until < NOW(3) OR locked_by = :owner, VALUES(locked_by), locked_by), " +
+            "locked_until = IF(locked_by = :owner, VALUES(locked_until), locked_until)", nativeQuery = true)
+    void tryLock(@Param("name") String name, @Param("owner") String owner, @Param("leaseMs") long leaseMs);
+
+    @Query(value = "SELECT locked_by FROM job_locks WHERE name = :name", nativeQuery = true)
+    String findOwner(@Param("name") String name);
+
+    @Modifying
+    @Query(value = "UPDATE job_locks SET locked_until = NOW(3) WHERE name = :name AND locked_by = :owner",
+            nativeQuery = true)
+    void unlock(@Param("name") String name, @Param("owner") String owner);
+}
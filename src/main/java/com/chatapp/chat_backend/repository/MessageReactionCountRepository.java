@@ -0,0 +1,35 @@
+package com.chatapp.chat_backend.repository;
+
+import com.chatapp.chat_backend.entity.MessageReactionCount;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface MessageReactionCountRepository extends JpaRepository<MessageReactionCount, MessageReactionCount.Key>
+{
+    List<MessageReactionCount> findByMessageIdIn(Collection<Long> messageIds);
+
+    /**
+     * Add a delta to a reaction total. The native space hint stops
+     * Hibernate from evicting every second-level cache region.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "message_reaction_counts"))
+    @Query(value = "INSERT INTO message_reaction_counts (message_id, reaction, reaction_count) " +
+            "VALUES (:messageId, :reaction, :delta) " +
+            "ON DUPLICATE KEY UPDATE reaction_count = reaction_count + :delta", nativeQuery = true)
+    void addToCount(@Param("messageId") Long messageId, @Param("reaction") String reaction, @Param("delta") long delta);
+
+    @Modifying
+    @Query("DELETE FROM MessageReactionCount c WHERE c.messageId IN :messageIds")
+    int deleteByMessageIdIn(@Param("messageIds") Collection<Long> messageIds);
+}
@@ -0,0 +1,21 @@
+package com.chatapp.chat_backend.repository;
+
+import com.chatapp.chat_backend.entity.MessageReaction;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.Optional;
+
+@Repository
+public interface MessageReactionRepository extends JpaRepository<MessageReaction, Long>
+{
+    Optional<MessageReaction> findByMessageIdAndUserId(Long messageId, Long userId);
+
+    @Modifying
+    @Query("DELETE FROM MessageReaction r WHERE r.message.id IN :messageIds")
+    int deleteByMessageIdIn(@Param("messageIds") Collection<Long> messageIds);
+}
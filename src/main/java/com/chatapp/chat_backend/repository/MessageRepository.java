@@ -2,15 +2,21 @@ package com.chatapp.chat_backend.repository;
 
 
 import com.chatapp.chat_backend.entity.Message;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long>
@@ -35,4 +41,71 @@ public interface MessageRepository extends JpaRepository<Message, Long>
     @Query("SELECT m FROM Message m WHERE m.chatRoom.id = :chatRoomId AND m.isDeleted = false AND " +
             "(LOWER(m.content) LIKE LOWER(CONCAT('%', :search, '%')))")
     List<Message> searchMessages(@Param("chatRoomId") Long chatRoomId, @Param("search") String search);
+
+    Optional<Message> findBySenderIdAndChatRoomIdAndClientMessageId(Long senderId, Long chatRoomId, String clientMessageId);
+
+    @Query("SELECT MAX(m.id) FROM Message m WHERE m.chatRoom.id = :chatRoomId")
+    Optional<Long> findMaxIdByChatRoomId(@Param("chatRoomId") Long chatRoomId);
+
+    @Query("SELECT DISTINCT m.chatRoom.id FROM Message m WHERE m.createdAt < :cutoff")
+    List<Long> findRoomIdsWithMessagesBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    /**
+     * A room's oldest messages created before the cutoff, with everything
+     * needed to map them
+     */
+    @Query("SELECT m FROM Message m JOIN FETCH m.sender LEFT JOIN FETCH m.replyTo r LEFT JOIN FETCH r.sender " +
+            "WHERE m.chatRoom.id = :chatRoomId AND m.createdAt < :cutoff ORDER BY m.id")
+    List<Message> findArchiveCandidates(
+            @Param("chatRoomId") Long chatRoomId,
+            @Param("cutoff") LocalDateTime cutoff,
+            Pageable pageable
+    );
+
+    /**
+     * Pairs of (reply target id, reply id) for replies to the given messages
+     */
+    @Query("SELECT m.replyTo.id, m.id FROM Message m WHERE m.replyTo.id IN :messageIds")
+    List<Object[]> findRepliesTo(@Param("messageIds") Collection<Long> messageIds);
+
+    /**
+     * Hard-delete messages, newest first so a reply goes before the message
+     * it points at. The native space hint stops Hibernate from evicting every
+     * second-level cache region.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "messages"))
+    @Query(value = "DELETE FROM messages WHERE id IN (:messageIds) ORDER BY id DESC", nativeQuery = true)
+    int deleteNewestFirst(@Param("messageIds") Collection<Long> messageIds);
+
+    /**
+     * Pairs of (id, deleted at) for soft-deleted messages past the cutoff,
+     * walking idx_deleted_at from the given position
+     */
+    @Query("SELECT m.id, m.deletedAt FROM Message m WHERE m.isDeleted = true AND m.deletedAt < :cutoff AND " +
+            "(m.deletedAt > :afterDeletedAt OR (m.deletedAt = :afterDeletedAt AND m.id > :afterId)) " +
+            "ORDER BY m.deletedAt, m.id")
+    List<Object[]> findPurgeCandidates(
+            @Param("cutoff") LocalDateTime cutoff,
+            @Param("afterDeletedAt") LocalDateTime afterDeletedAt,
+            @Param("afterId") Long afterId,
+            Pageable pageable
+    );
+
+    @Query("SELECT MIN(m.deletedAt) FROM Message m WHERE m.isDeleted = true")
+    Optional<LocalDateTime> findOldestDeletedAt();
+
+    /**
+     * Drop reply links to messages about to be purged
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "messages"))
+    @Query(value = "UPDATE messages SET reply_to_id = NULL WHERE reply_to_id IN (:messageIds)", nativeQuery = true)
+    int detachReplies(@Param("messageIds") Collection<Long> messageIds);
+
+    @Query("SELECT DISTINCT m.chatRoom.id FROM Message m WHERE m.attachmentId = :attachmentId AND m.isDeleted = false")
+    List<Long> findRoomIdsByAttachmentId(@Param("attachmentId") Long attachmentId);
+
+    @Query("SELECT DISTINCT m.attachmentId FROM Message m WHERE m.attachmentId IN :attachmentIds")
+    List<Long> findReferencedAttachmentIds(@Param("attachmentIds") Collection<Long> attachmentIds);
 }
@@ -0,0 +1,37 @@
+package com.chatapp.chat_backend.repository;
+
+import com.chatapp.chat_backend.entity.PinnedMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PinnedMessageRepository extends JpaRepository<PinnedMessage, Long>
+{
+    /**
+     * A room's pins with their messages, senders and reply targets in one query
+     */
+    @Query("SELECT p FROM PinnedMessage p " +
+            "JOIN FETCH p.message m JOIN FETCH m.sender JOIN FETCH p.pinnedBy " +
+            "LEFT JOIN FETCH m.replyTo r LEFT JOIN FETCH r.sender " +
+            "WHERE p.chatRoom.id = :chatRoomId ORDER BY p.pinnedAt DESC")
+    List<PinnedMessage> findByChatRoomIdWithMessages(@Param("chatRoomId") Long chatRoomId);
+
+    boolean existsByChatRoomIdAndMessageId(Long chatRoomId, Long messageId);
+
+    @Modifying
+    @Query("DELETE FROM PinnedMessage p WHERE p.chatRoom.id = :chatRoomId AND p.message.id = :messageId")
+    int deleteByChatRoomIdAndMessageId(@Param("chatRoomId") Long chatRoomId, @Param("messageId") Long messageId);
+
+    @Modifying
+    @Query("DELETE FROM PinnedMessage p WHERE p.message.id = :messageId")
+    int deleteByMessageId(@Param("messageId") Long messageId);
+
+    @Query("SELECT p.message.id FROM PinnedMessage p WHERE p.message.id IN :messageIds")
+    List<Long> findPinnedMessageIds(@Param("messageIds") Collection<Long> messageIds);
+}
@@ -0,0 +1,38 @@
+package com.chatapp.chat_backend.repository;
+
+import com.chatapp.chat_backend.entity.RoomReceipt;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RoomReceiptRepository extends JpaRepository<RoomReceipt, RoomReceipt.Key>
+{
+    List<RoomReceipt> findByChatRoomId(Long chatRoomId);
+
+    /**
+     * Move a user's watermarks forward; never moves them back. The native
+     * space hint stops Hibernate from evicting every second-level cache region.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "room_receipts"))
+    @Query(value = "INSERT INTO room_receipts (chat_room_id, user_id, delivered_up_to, read_up_to, updated_at) " +
+            "VALUES (:chatRoomId, :userId, :deliveredUpTo, :readUpTo, NOW()) " +
+            "ON DUPLICATE KEY UPDATE " +
+            "delivered_up_to = GREATEST(delivered_up_to, VALUES(delivered_up_to)), " +
+            "read_up_to = GREATEST(read_up_to, VALUES(read_up_to)), " +
+            "updated_at = NOW()", nativeQuery = true)
+    void advance(
+            @Param("chatRoomId") Long chatRoomId,
+            @Param("userId") Long userId,
+            @Param("deliveredUpTo") long deliveredUpTo,
+            @Param("readUpTo") long readUpTo
+    );
+}
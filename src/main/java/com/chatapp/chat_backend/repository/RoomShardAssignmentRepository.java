@@ -0,0 +1,10 @@
+package com.chatapp.chat_backend.repository;
+
+import com.chatapp.chat_backend.entity.RoomShardAssignment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RoomShardAssignmentRepository extends JpaRepository<RoomShardAssignment, Long>
+{
+}
@@ -0,0 +1,24 @@
+package com.chatapp.chat_backend.repository;
+
+import com.chatapp.chat_backend.entity.RoomWriteFence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RoomWriteFenceRepository extends JpaRepository<RoomWriteFence, Long>
+{
+    /**
+     * Share-lock the rooms and return the fence of each fenced one (null
+     * for the others). The rebalancer locks the room row exclusively while
+     * it sets a fence, so this waits for that and then sees the fence.
+     */
+    @Query(value = "SELECT f.chat_room_id FROM chat_rooms c " +
+            "LEFT JOIN room_write_fences f ON f.chat_room_id = c.id " +
+            "WHERE c.id IN (:chatRoomIds) FOR SHARE", nativeQuery = true)
+    List<Long> lockFences(@Param("chatRoomIds") Collection<Long> chatRoomIds);
+}
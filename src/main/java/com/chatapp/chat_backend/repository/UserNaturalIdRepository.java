@@ -0,0 +1,13 @@
+package com.chatapp.chat_backend.repository;
+
+import com.chatapp.chat_backend.entity.User;
+
+import java.util.Optional;
+
+public interface UserNaturalIdRepository
+{
+    /**
+     * Look up a user by username through the natural-id cache
+     */
+    Optional<User> findByUsername(String username);
+}
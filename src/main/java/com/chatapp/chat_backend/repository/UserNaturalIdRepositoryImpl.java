@@ -0,0 +1,28 @@
+package com.chatapp.chat_backend.repository;
+
+import com.chatapp.chat_backend.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * Resolves usernames with Hibernate's natural-id API, so repeated lookups
+ * are served from the users-by-username and users cache regions instead of
+ * a query per call.
+ */
+public class UserNaturalIdRepositoryImpl implements UserNaturalIdRepository
+{
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<User> findByUsername(String username) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(User.class)
+                .loadOptional(username);
+    }
+}
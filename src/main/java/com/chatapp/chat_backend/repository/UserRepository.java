@@ -9,10 +9,8 @@ import java.util.List;
 import java.util.Optional;
 
 
-public interface UserRepository extends JpaRepository<User, Long>
+public interface UserRepository extends JpaRepository<User, Long>, UserNaturalIdRepository
 {
-    Optional<User> findByUsername(String username);
-
     Optional<User> findByEmail(String email);
 
     Boolean existsByUsername(String username);
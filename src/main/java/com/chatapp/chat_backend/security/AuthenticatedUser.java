@@ -0,0 +1,36 @@
+package com.chatapp.chat_backend.security;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * UserDetails of an authenticated REST caller, carrying the user ID so
+ * per-user state is keyed the same way as for STOMP sessions
+ */
+public class AuthenticatedUser extends User
+{
+    private final Long userId;
+
+    public AuthenticatedUser(Long userId, String username, String password,
+                             Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, authorities);
+        this.userId = userId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    /**
+     * User ID of an authentication, or null if it was not made from an
+     * AuthenticatedUser
+     */
+    public static Long userIdOf(Authentication authentication) {
+        return authentication != null && authentication.getPrincipal() instanceof AuthenticatedUser user
+                ? user.getUserId()
+                : null;
+    }
+}
@@ -15,6 +15,8 @@ import java.util.function.Function;
 @Component
 public class JwtUtil
 {
+    public static final String USER_ID_CLAIM = "uid";
+
     @Value("${jwt.secret}")
     private String secret;
 
@@ -38,7 +40,10 @@ public class JwtUtil
         return claimsResolver.apply(claims);
     }
 
-    private Claims extractAllClaims(String token) {
+    /**
+     * Verify the signature and expiry of a token and return its claims
+     */
+    public Claims extractAllClaims(String token) {
         return Jwts.parser()
                 .verifyWith(getSigningKey())
                 .build()
@@ -55,6 +60,20 @@ public class JwtUtil
         return createToken(claims, userDetails.getUsername());
     }
 
+    public String generateToken(UserDetails userDetails, Long userId) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(USER_ID_CLAIM, userId);
+        return createToken(claims, userDetails.getUsername());
+    }
+
+    /**
+     * User ID carried in the token, or null for tokens issued without one
+     */
+    public Long extractUserId(Claims claims) {
+        Number userId = claims.get(USER_ID_CLAIM, Number.class);
+        return userId != null ? userId.longValue() : null;
+    }
+
     private String createToken(Map<String, Object> claims, String subject) {
         return Jwts.builder()
                 .claims(claims)
@@ -0,0 +1,66 @@
+package com.chatapp.chat_backend.security;
+
+import com.chatapp.chat_backend.dtos.ApiResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Applies the rate limits to /api/chatrooms/{id}/messages/** once the
+ * request is authenticated. Sending a message uses the send limits and any
+ * other message call uses the REST limit. Buckets are keyed by user ID, as
+ * for STOMP frames, so both transports draw on the same per-user budget.
+ * Rejected requests get HTTP 429.
+ *
+ * Registered in the security chain only (not a component), so it always
+ * runs after JWT authentication.
+ */
+@RequiredArgsConstructor
+public class RateLimitFilter extends OncePerRequestFilter
+{
+    private static final Pattern MESSAGES_PATH = Pattern.compile("^/api/chatrooms/(\\d+)/messages(/.*)?$");
+
+    private final RateLimiter rateLimiter;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected void doFilterInternal(
+            HttpServletRequest request,
+            HttpServletResponse response,
+            FilterChain filterChain
+    ) throws ServletException, IOException {
+
+        Matcher matcher = MESSAGES_PATH.matcher(request.getRequestURI());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        Long userId = AuthenticatedUser.userIdOf(authentication);
+        if (!matcher.matches() || userId == null || !authentication.isAuthenticated()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        Long chatRoomId = Long.valueOf(matcher.group(1));
+        boolean isSend = "POST".equals(request.getMethod()) && matcher.group(2) == null;
+        String destination = isSend ? RateLimiter.SEND : RateLimiter.REST;
+
+        if (!rateLimiter.tryAcquire(destination, userId, chatRoomId)) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getWriter(), ApiResponse.error("Rate limit exceeded, slow down"));
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,123 @@
+package com.chatapp.chat_backend.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token-bucket rate limiter keyed by user and by room. Each bucket is a
+ * single AtomicLong holding its theoretical arrival time (the GCRA form of
+ * a token bucket). An acquire is one map lookup plus one CAS, with no locks.
+ * Limits are configured per destination: send, typing, receipt and the
+ * remaining REST message calls.
+ */
+@Component
+public class RateLimiter
+{
+    public static final String SEND = "send";
+    public static final String TYPING = "typing";
+    public static final String RECEIPT = "receipt";
+    public static final String REST = "rest";
+
+    private final Map<String, Rule> userRules;
+    private final Map<String, Rule> roomRules;
+
+    private final ConcurrentHashMap<BucketKey, AtomicLong> buckets = new ConcurrentHashMap<>();
+    // Replaced by tests that need to move time by hand
+    private LongSupplier nanoClock = System::nanoTime;
+
+    public RateLimiter(
+            @Value("${app.rate-limit.send.user-per-second:10}") double sendUserRate,
+            @Value("${app.rate-limit.send.user-burst:20}") int sendUserBurst,
+            @Value("${app.rate-limit.send.room-per-second:200}") double sendRoomRate,
+            @Value("${app.rate-limit.send.room-burst:400}") int sendRoomBurst,
+            @Value("${app.rate-limit.typing.user-per-second:2}") double typingUserRate,
+            @Value("${app.rate-limit.typing.user-burst:4}") int typingUserBurst,
+            @Value("${app.rate-limit.receipt.user-per-second:20}") double receiptUserRate,
+            @Value("${app.rate-limit.receipt.user-burst:40}") int receiptUserBurst,
+            @Value("${app.rate-limit.rest.user-per-second:20}") double restUserRate,
+            @Value("${app.rate-limit.rest.user-burst:40}") int restUserBurst
+    ) {
+        this.userRules = Map.of(
+                SEND, new Rule(sendUserRate, sendUserBurst),
+                TYPING, new Rule(typingUserRate, typingUserBurst),
+                RECEIPT, new Rule(receiptUserRate, receiptUserBurst),
+                REST, new Rule(restUserRate, restUserBurst));
+        this.roomRules = Map.of(
+                SEND, new Rule(sendRoomRate, sendRoomBurst));
+    }
+
+    /**
+     * Take one permit from the user's bucket and, if the destination has a
+     * room limit, from the room's bucket. A request refused by the room
+     * gives the user's permit back.
+     */
+    public boolean tryAcquire(String destination, Long userId, Long chatRoomId) {
+        Rule userRule = userRules.get(destination);
+        BucketKey userKey = new BucketKey(destination, false, userId);
+        if (userRule != null && !acquire(userKey, userRule)) {
+            return false;
+        }
+
+        Rule roomRule = roomRules.get(destination);
+        if (roomRule != null && chatRoomId != null && !acquire(new BucketKey(destination, true, chatRoomId), roomRule)) {
+            if (userRule != null) {
+                release(userKey, userRule);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private boolean acquire(BucketKey key, Rule rule) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(nanoClock.getAsLong()));
+        }
+
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long arrival = bucket.get();
+            long next = Math.max(arrival, now) + rule.intervalNanos();
+            if (next - now > rule.capacityNanos()) {
+                return false;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return true;
+            }
+        }
+    }
+
+    private void release(BucketKey key, Rule rule) {
+        AtomicLong bucket = buckets.get(key);
+        if (bucket != null) {
+            bucket.addAndGet(-rule.intervalNanos());
+        }
+    }
+
+    /**
+     * Drop buckets that have refilled completely; they are equivalent to a
+     * fresh one
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.sweep-interval-ms:60000}")
+    public void sweep() {
+        long now = nanoClock.getAsLong();
+        buckets.entrySet().removeIf(entry -> entry.getValue().get() - now <= 0);
+    }
+
+    private record BucketKey(String destination, boolean room, Long subject) {}
+
+    private record Rule(long intervalNanos, long capacityNanos)
+    {
+        Rule(double permitsPerSecond, int burst) {
+            this((long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond),
+                    (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond) * Math.max(burst, 1));
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.chatapp.chat_backend.security;
+
+import java.security.Principal;
+
+/**
+ * Immutable principal attached to a STOMP session at CONNECT. Its name is
+ * the user ID so /user destinations and controllers can address users
+ * without a lookup.
+ */
+public record StompPrincipal(Long userId, String username, long expiresAtMillis) implements Principal
+{
+    @Override
+    public String getName() {
+        return userId.toString();
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() >= expiresAtMillis;
+    }
+
+    /**
+     * User ID of a session principal, or null if the session is unauthenticated
+     */
+    public static Long userIdOf(Principal principal) {
+        return principal instanceof StompPrincipal stompPrincipal ? stompPrincipal.userId() : null;
+    }
+}
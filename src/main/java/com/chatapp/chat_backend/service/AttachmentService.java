@@ -0,0 +1,452 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.archive.MessageArchive;
+import com.chatapp.chat_backend.attachment.AttachmentStorage;
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ShardContext;
+import com.chatapp.chat_backend.dtos.AttachmentResponseDto;
+import com.chatapp.chat_backend.dtos.AttachmentReuseRequestDto;
+import com.chatapp.chat_backend.dtos.AttachmentStatsDto;
+import com.chatapp.chat_backend.entity.Attachment;
+import com.chatapp.chat_backend.repository.ArchivedMessageRepository;
+import com.chatapp.chat_backend.repository.AttachmentBlobRepository;
+import com.chatapp.chat_backend.repository.AttachmentRepository;
+import com.chatapp.chat_backend.repository.MessageRepository;
+import com.chatapp.chat_backend.utils.MessageType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Uploads, access checks and garbage collection for the local attachment
+ * store. Attachment and blob rows live on the global shard. A file may be
+ * read by its uploader and by members of any room with a message that
+ * carries it, archived messages included.
+ *
+ * Content is stored once per SHA-256: attachments with the same content
+ * share a refcounted blob, and forwarding only copies the attachment id.
+ * A user re-sending content they uploaded before can skip the upload by
+ * offering its hash. The collector drops attachments no message refers to
+ * once they have gone unused for the grace period, then blobs left without
+ * attachments for as long, and a slower sweep removes files no blob owns.
+ */
+@Slf4j
+@Service
+public class AttachmentService
+{
+    private final AttachmentRepository attachmentRepository;
+    private final AttachmentBlobRepository blobRepository;
+    private final AttachmentStorage storage;
+    private final MessageRepository messageRepository;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final MessageArchive messageArchive;
+    private final MessageStore messageStore;
+    private final RoomMembershipCache membershipCache;
+    private final ThumbnailService thumbnailService;
+    private final TransactionTemplate globalTransaction;
+
+    private final LongAdder attachmentsCollected = new LongAdder();
+    private final LongAdder blobsCollected = new LongAdder();
+    private final LongAdder orphansCollected = new LongAdder();
+    private volatile LocalDateTime lastCollectedAt;
+    private volatile boolean archiveReferencesReady;
+
+    @Value("${app.attachments.quota-bytes-per-user:10737418240}")
+    private long quotaBytes;
+
+    @Value("${app.attachments.gc.enabled:false}")
+    private boolean collectionEnabled;
+
+    @Value("${app.attachments.gc.grace-hours:24}")
+    private long graceHours;
+
+    @Value("${app.attachments.gc.batch-size:500}")
+    private int batchSize;
+
+    public AttachmentService(
+            AttachmentRepository attachmentRepository,
+            AttachmentBlobRepository blobRepository,
+            AttachmentStorage storage,
+            MessageRepository messageRepository,
+            ArchivedMessageRepository archivedMessageRepository,
+            MessageArchive messageArchive,
+            MessageStore messageStore,
+            RoomMembershipCache membershipCache,
+            ThumbnailService thumbnailService,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.attachmentRepository = attachmentRepository;
+        this.blobRepository = blobRepository;
+        this.storage = storage;
+        this.messageRepository = messageRepository;
+        this.archivedMessageRepository = archivedMessageRepository;
+        this.messageArchive = messageArchive;
+        this.messageStore = messageStore;
+        this.membershipCache = membershipCache;
+        this.thumbnailService = thumbnailService;
+        this.globalTransaction = new TransactionTemplate(transactionManager);
+        this.globalTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Store an uploaded file. Multipart parts are spooled to disk by the
+     * container and moved into the store from there, so the upload never
+     * sits in the heap as a whole. Each user's attachments are capped at
+     * app.attachments.quota-bytes-per-user in total.
+     */
+    public AttachmentResponseDto upload(MultipartFile file, Long uploaderId) {
+        if (file.isEmpty()) {
+            throw new RuntimeException("Attachment is empty");
+        }
+
+        // Checked again once the size is known; this only saves staging a file that cannot fit
+        inGlobalTransaction(() -> checkQuota(uploaderId, file.getSize()));
+        AttachmentStorage.TempFile temp = storage.stage(file);
+
+        Attachment attachment;
+        try {
+            // The blob reference is taken first, so the collector cannot
+            // delete the file between the existence check and the commit
+            attachment = inGlobalTransaction(() -> {
+                checkQuota(uploaderId, temp.size());
+                blobRepository.acquire(temp.sha256(), temp.size());
+                storage.install(temp);
+                return attachmentRepository.save(Attachment.builder()
+                        .uploaderId(uploaderId)
+                        .fileName(cleanFileName(file.getOriginalFilename()))
+                        .contentType(contentType(file.getContentType()))
+                        .fileSize(temp.size())
+                        .sha256(temp.sha256())
+                        .build());
+            });
+        } finally {
+            storage.discard(temp);
+        }
+        log.info("Stored attachment {} ({} bytes) for user {}", attachment.getId(), temp.size(), uploaderId);
+        thumbnailService.request(attachment);
+        return toResponse(attachment);
+    }
+
+    /**
+     * Create an attachment over content the user uploaded before, without
+     * transferring it again
+     */
+    public AttachmentResponseDto reuse(AttachmentReuseRequestDto request, Long uploaderId) {
+        Attachment attachment = inGlobalTransaction(() -> {
+            Attachment existing = attachmentRepository.findFirstByUploaderIdAndSha256(uploaderId, request.getSha256())
+                    .orElseThrow(() -> new RuntimeException("Attachment content not found, upload it instead"));
+            checkQuota(uploaderId, existing.getFileSize());
+            blobRepository.acquire(existing.getSha256(), existing.getFileSize());
+            return attachmentRepository.save(Attachment.builder()
+                    .uploaderId(uploaderId)
+                    .fileName(cleanFileName(request.getFileName()))
+                    .contentType(StringUtils.hasText(request.getContentType())
+                            ? request.getContentType() : existing.getContentType())
+                    .fileSize(existing.getFileSize())
+                    .sha256(existing.getSha256())
+                    .build());
+        });
+        storage.recordReused(attachment.getFileSize());
+        thumbnailService.request(attachment);
+        return toResponse(attachment);
+    }
+
+    /**
+     * An attachment the sender may put on a message. Stamping lastUsedAt
+     * under the row lock keeps the collector from deleting it while the
+     * message is written on its own shard.
+     */
+    public Attachment getForMessage(Long attachmentId, Long senderId) {
+        return inGlobalTransaction(() -> {
+            Attachment attachment = attachmentRepository.lockById(attachmentId)
+                    .orElseThrow(() -> new RuntimeException("Attachment not found with id: " + attachmentId));
+            if (!attachment.getUploaderId().equals(senderId)) {
+                throw new RuntimeException("You can only send your own attachments");
+            }
+            attachment.setLastUsedAt(LocalDateTime.now());
+            return attachment;
+        });
+    }
+
+    /**
+     * An attachment the user may download
+     */
+    public Attachment getForDownload(Long attachmentId, Long userId) {
+        Attachment attachment = find(attachmentId);
+        if (attachment.getUploaderId().equals(userId)) {
+            return attachment;
+        }
+
+        Set<Long> chatRoomIds = new HashSet<>();
+        messageStore.forEachShard(shard -> {
+            chatRoomIds.addAll(messageRepository.findRoomIdsByAttachmentId(attachmentId));
+            chatRoomIds.addAll(archivedMessageRepository.findRoomIdsByAttachmentId(attachmentId));
+        });
+        for (Map.Entry<Long, Set<Long>> room : membershipCache.getMemberIds(chatRoomIds).entrySet()) {
+            if (room.getValue().contains(userId)) {
+                return attachment;
+            }
+        }
+        throw new RuntimeException("Attachment not found with id: " + attachmentId);
+    }
+
+    /**
+     * Keep attachments of archived messages; the collector cannot see
+     * references from the archive
+     */
+    public void markArchived(Collection<Long> attachmentIds) {
+        if (!attachmentIds.isEmpty()) {
+            inGlobalTransaction(() -> attachmentRepository.markArchived(attachmentIds));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.attachments.gc.interval-ms:600000}")
+    public void collectGarbage() {
+        if (!collectionEnabled) {
+            return;
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(graceHours);
+        try {
+            collectAttachments(cutoff);
+            collectBlobs(cutoff);
+        } catch (RuntimeException e) {
+            log.error("Attachment collection failed, will retry on next run", e);
+        }
+        lastCollectedAt = LocalDateTime.now();
+    }
+
+    /**
+     * Delete stored files no blob row owns: left by an upload whose
+     * transaction rolled back after the file was installed, or by a crash.
+     * Each file is checked under the blob's row lock so a concurrent upload
+     * of the same content either wins and keeps it or waits and stores it
+     * again.
+     */
+    @Scheduled(fixedDelayString = "${app.attachments.gc.orphan-interval-ms:86400000}")
+    public void sweepOrphans() {
+        if (!collectionEnabled) {
+            return;
+        }
+
+        Instant cutoff = Instant.now().minus(Duration.ofHours(graceHours));
+        try {
+            storage.sweepTemp(cutoff);
+            storage.forEachStoredBefore(cutoff, (sha256, size) -> {
+                boolean orphan = inGlobalTransaction(() -> {
+                    if (blobRepository.lock(sha256).isPresent()) {
+                        return false;
+                    }
+                    storage.delete(sha256, size);
+                    return true;
+                });
+                if (orphan) {
+                    orphansCollected.increment();
+                    log.info("Deleted attachment file {} that no blob owns", sha256);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.error("Attachment orphan sweep failed, will retry on next run", e);
+        }
+    }
+
+    public AttachmentStatsDto getStats() {
+        return AttachmentStatsDto.builder()
+                .bytesWritten(storage.getBytesWritten())
+                .bytesServed(storage.getBytesServed())
+                .dedupHits(storage.getDedupHits())
+                .bytesDeduplicated(storage.getBytesDeduplicated())
+                .collectionEnabled(collectionEnabled)
+                .attachmentsCollected(attachmentsCollected.sum())
+                .blobsCollected(blobsCollected.sum())
+                .orphansCollected(orphansCollected.sum())
+                .bytesReclaimed(storage.getBytesReclaimed())
+                .lastCollectedAt(lastCollectedAt)
+                .build();
+    }
+
+    public AttachmentResponseDto toResponse(Attachment attachment) {
+        return AttachmentResponseDto.builder()
+                .id(attachment.getId())
+                .fileName(attachment.getFileName())
+                .contentType(attachment.getContentType())
+                .fileSize(attachment.getFileSize())
+                .sha256(attachment.getSha256())
+                .url(urlFor(attachment.getId()))
+                .thumbnail(ThumbnailService.describe(attachment))
+                .createdAt(attachment.getCreatedAt())
+                .build();
+    }
+
+    public static String urlFor(Long attachmentId) {
+        return "/api/attachments/" + attachmentId;
+    }
+
+    /**
+     * Message type for an attachment sent without an explicit type
+     */
+    public static MessageType messageTypeFor(Attachment attachment) {
+        String contentType = attachment.getContentType();
+        if (contentType.startsWith("image/")) {
+            return MessageType.IMAGE;
+        }
+        if (contentType.startsWith("video/")) {
+            return MessageType.VIDEO;
+        }
+        if (contentType.startsWith("audio/")) {
+            return MessageType.AUDIO;
+        }
+        return MessageType.FILE;
+    }
+
+    /**
+     * Delete attachments past the grace period that no message on any
+     * shard refers to, live or archived, releasing their blobs. Archived
+     * references found on the way are flagged so later runs skip them.
+     * Each deletion locks the row and re-checks lastUsedAt, so an
+     * attachment sent after the scan is kept.
+     */
+    private void collectAttachments(LocalDateTime cutoff) {
+        if (!archiveReferencesReady()) {
+            log.info("Skipping attachment collection until archived message references are backfilled");
+            return;
+        }
+
+        long afterId = 0;
+        while (true) {
+            long from = afterId;
+            List<Attachment> batch = inGlobalTransaction(() ->
+                    attachmentRepository.findCollectionCandidates(from, cutoff, PageRequest.of(0, batchSize)));
+            if (batch.isEmpty()) {
+                return;
+            }
+            afterId = batch.get(batch.size() - 1).getId();
+
+            List<Long> ids = batch.stream().map(Attachment::getId).collect(Collectors.toList());
+            Set<Long> referenced = new HashSet<>();
+            Set<Long> archived = new HashSet<>();
+            messageStore.forEachShard(shard -> {
+                referenced.addAll(messageRepository.findReferencedAttachmentIds(ids));
+                archived.addAll(archivedMessageRepository.findReferencedAttachmentIds(ids));
+            });
+            markArchived(archived);
+            referenced.addAll(archived);
+            List<Attachment> unreferenced = batch.stream()
+                    .filter(attachment -> !referenced.contains(attachment.getId()))
+                    .collect(Collectors.toList());
+            if (!unreferenced.isEmpty()) {
+                int collected = inGlobalTransaction(() -> {
+                    int deleted = 0;
+                    for (Attachment candidate : unreferenced) {
+                        Optional<Attachment> locked = attachmentRepository.lockCollectable(candidate.getId(), cutoff);
+                        if (locked.isPresent()) {
+                            attachmentRepository.delete(locked.get());
+                            blobRepository.release(candidate.getSha256());
+                            deleted++;
+                        }
+                    }
+                    return deleted;
+                });
+                attachmentsCollected.add(collected);
+            }
+            if (batch.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Whether every archived room has its archived_messages rows. Rooms
+     * archived before those rows existed are backfilled by the archiver;
+     * until then their attachments only look unreferenced.
+     */
+    private boolean archiveReferencesReady() {
+        if (archiveReferencesReady) {
+            return true;
+        }
+        for (Long chatRoomId : messageArchive.archivedRoomIds()) {
+            if (!messageStore.inRoomShard(chatRoomId, true, () -> archivedMessageRepository.existsByChatRoomId(chatRoomId))) {
+                return false;
+            }
+        }
+        archiveReferencesReady = true;
+        return true;
+    }
+
+    /**
+     * Delete blobs left without attachments for the grace period. Each
+     * one is locked while its file goes, so a concurrent upload of the same
+     * content waits and then stores the file again.
+     */
+    private void collectBlobs(LocalDateTime cutoff) {
+        List<String> candidates = inGlobalTransaction(() ->
+                blobRepository.findCollectable(cutoff, PageRequest.of(0, batchSize)));
+        for (String sha256 : candidates) {
+            boolean deleted = inGlobalTransaction(() -> blobRepository.lockUnreferenced(sha256)
+                    .map(blob -> {
+                        storage.delete(sha256, blob.getFileSize());
+                        blobRepository.delete(blob);
+                        return true;
+                    })
+                    .orElse(false));
+            if (deleted) {
+                blobsCollected.increment();
+            }
+        }
+    }
+
+    /**
+     * Reject an attachment that would take the user past their quota.
+     * Shared content counts in full for every attachment over it. The
+     * user's row stays locked until the attachment is saved, so two
+     * concurrent uploads cannot both fit in the last of the quota.
+     */
+    private Void checkQuota(Long uploaderId, long size) {
+        attachmentRepository.lockUploader(uploaderId);
+        if (quotaBytes > 0 && attachmentRepository.sumFileSizeByUploaderId(uploaderId) + size > quotaBytes) {
+            throw new RuntimeException("Attachment quota of " + quotaBytes + " bytes exceeded");
+        }
+        return null;
+    }
+
+    /**
+     * An attachment by ID, read on the global shard
+     */
+    public Attachment find(Long attachmentId) {
+        return messageStore.inShard(MessageShardResolver.GLOBAL_SHARD, true,
+                        () -> attachmentRepository.findById(attachmentId))
+                .orElseThrow(() -> new RuntimeException("Attachment not found with id: " + attachmentId));
+    }
+
+    private <T> T inGlobalTransaction(Supplier<T> action) {
+        return ShardContext.callIn(MessageShardResolver.GLOBAL_SHARD,
+                () -> globalTransaction.execute(status -> action.get()));
+    }
+
+    private static String contentType(String contentType) {
+        return StringUtils.hasText(contentType) ? contentType : "application/octet-stream";
+    }
+
+    private static String cleanFileName(String originalName) {
+        String name = StringUtils.hasText(originalName) ? StringUtils.getFilename(originalName.replace('\\', '/')) : null;
+        if (!StringUtils.hasText(name)) {
+            name = "file";
+        }
+        return name.length() > 255 ? name.substring(name.length() - 255) : name;
+    }
+}
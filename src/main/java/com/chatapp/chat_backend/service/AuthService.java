@@ -52,7 +52,7 @@ public class AuthService
 
         // Generate JWT token
         UserDetails userDetails = userDetailsService.loadUserByUsername(user.getUsername());
-        String token = jwtUtil.generateToken(userDetails);
+        String token = jwtUtil.generateToken(userDetails, user.getId());
 
         return AuthResponseDto.builder()
                 .token(token)
@@ -85,7 +85,7 @@ public class AuthService
 
         // Generate JWT token
         UserDetails userDetails = userDetailsService.loadUserByUsername(user.getUsername());
-        String token = jwtUtil.generateToken(userDetails);
+        String token = jwtUtil.generateToken(userDetails, user.getId());
 
         return AuthResponseDto.builder()
                 .token(token)
@@ -0,0 +1,51 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.config.SecondLevelCacheConfig;
+import com.chatapp.chat_backend.dtos.CacheRegionStatsDto;
+import com.chatapp.chat_backend.dtos.CacheStatsDto;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Second-level cache and statement counters from Hibernate statistics.
+ * Comparing preparedStatements before and after a burst of sends gives the
+ * DB queries per send.
+ */
+@Service
+@RequiredArgsConstructor
+public class CacheStatisticsService
+{
+    private final EntityManagerFactory entityManagerFactory;
+
+    public CacheStatsDto getStats() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        List<CacheRegionStatsDto> regions = SecondLevelCacheConfig.REGIONS.stream()
+                .map(region -> {
+                    CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(region);
+                    return CacheRegionStatsDto.builder()
+                            .region(region)
+                            .hitCount(regionStatistics.getHitCount())
+                            .missCount(regionStatistics.getMissCount())
+                            .putCount(regionStatistics.getPutCount())
+                            .elementCount(regionStatistics.getElementCountInMemory())
+                            .build();
+                })
+                .collect(Collectors.toList());
+
+        return CacheStatsDto.builder()
+                .statisticsEnabled(statistics.isStatisticsEnabled())
+                .preparedStatements(statistics.getPrepareStatementCount())
+                .entityLoads(statistics.getEntityLoadCount())
+                .naturalIdQueries(statistics.getNaturalIdQueryExecutionCount())
+                .regions(regions)
+                .build();
+    }
+}
@@ -0,0 +1,22 @@
+package com.chatapp.chat_backend.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Single entry point for room broadcasts: delivers to this node's broker
+ * and hands the event to the cluster fan-out for the other nodes.
+ */
+@Service
+@RequiredArgsConstructor
+public class ChatBroadcaster
+{
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ClusterFanoutService clusterFanoutService;
+
+    public void broadcast(String destination, Object payload) {
+        messagingTemplate.convertAndSend(destination, payload);
+        clusterFanoutService.publish(destination, payload);
+    }
+}
@@ -6,10 +6,8 @@ import com.chatapp.chat_backend.dtos.CreateChatRoomRequestDto;
 import com.chatapp.chat_backend.dtos.MessageResponseDto;
 import com.chatapp.chat_backend.dtos.UserResponseDto;
 import com.chatapp.chat_backend.entity.ChatRoom;
-import com.chatapp.chat_backend.entity.Message;
 import com.chatapp.chat_backend.entity.User;
 import com.chatapp.chat_backend.repository.ChatRoomRepository;
-import com.chatapp.chat_backend.repository.MessageRepository;
 import com.chatapp.chat_backend.repository.UserRepository;
 import com.chatapp.chat_backend.utils.RoomType;
 import lombok.RequiredArgsConstructor;
@@ -28,8 +26,9 @@ public class ChatRoomService
 {
     private final ChatRoomRepository chatRoomRepository;
     private final UserRepository userRepository;
-    private final MessageRepository messageRepository;
+    private final MessageStore messageStore;
     private final ModelMapper modelMapper;
+    private final RoomMembershipCache membershipCache;
 
     @Transactional
     public ChatRoomResponseDto createChatRoom(CreateChatRoomRequestDto request, Long creatorId) {
@@ -59,6 +58,7 @@ public class ChatRoomService
         }
 
         chatRoom = chatRoomRepository.save(chatRoom);
+        membershipCache.invalidateAfterCommit(chatRoom.getId());
         return mapToChatRoomResponse(chatRoom, creatorId);
     }
 
@@ -67,10 +67,7 @@ public class ChatRoomService
                 .orElseThrow(() -> new RuntimeException("ChatRoom not found"));
 
         // Verify user is a member of the chat room
-        boolean isMember = chatRoom.getMembers().stream()
-                .anyMatch(member -> member.getId().equals(userId));
-
-        if (!isMember) {
+        if (!membershipCache.isMember(id, userId)) {
             throw new RuntimeException("You are not a member of this chat room");
         }
 
@@ -98,6 +95,7 @@ public class ChatRoomService
 
         chatRoom.addMember(user);
         chatRoom = chatRoomRepository.save(chatRoom);
+        membershipCache.invalidateAfterCommit(chatRoomId);
 
         return mapToChatRoomResponse(chatRoom, requesterId);
     }
@@ -117,6 +115,7 @@ public class ChatRoomService
 
         chatRoom.removeMember(user);
         chatRoomRepository.save(chatRoom);
+        membershipCache.invalidateAfterCommit(chatRoomId);
     }
 
     public List<ChatRoomResponseDto> searchGroupRooms(String search, Long userId) {
@@ -151,6 +150,7 @@ public class ChatRoomService
         chatRoom.addMember(user2);
 
         chatRoom = chatRoomRepository.save(chatRoom);
+        membershipCache.invalidateAfterCommit(chatRoom.getId());
         return mapToChatRoomResponse(chatRoom, user1Id);
     }
 
@@ -192,13 +192,14 @@ public class ChatRoomService
 
         chatRoom.setIsActive(false);
         chatRoomRepository.save(chatRoom);
+        membershipCache.invalidateAfterCommit(chatRoomId);
     }
 
     private ChatRoomResponseDto mapToChatRoomResponse(ChatRoom chatRoom, Long userId) {
         ChatRoomResponseDto response = modelMapper.map(chatRoom, ChatRoomResponseDto.class);
 
         // Set unread count
-        Long unreadCount = messageRepository.countUnreadMessages(chatRoom.getId(), userId);
+        Long unreadCount = messageStore.countUnreadMessages(chatRoom.getId(), userId);
         response.setUnreadCount(unreadCount);
 
         // Set members
@@ -208,11 +209,8 @@ public class ChatRoomService
         response.setMembers(members);
 
         // Set last message
-        List<Message> messages = messageRepository.findByChatRoomIdOrderByCreatedAtDesc(chatRoom.getId());
-        if (!messages.isEmpty()) {
-            Message lastMessage = messages.get(0);
-            response.setLastMessage(modelMapper.map(lastMessage, MessageResponseDto.class));
-        }
+        messageStore.findLastMessage(chatRoom.getId(), lastMessage -> modelMapper.map(lastMessage, MessageResponseDto.class))
+                .ifPresent(response::setLastMessage);
 
         // Set creator
         response.setCreator(modelMapper.map(chatRoom.getCreator(), UserResponseDto.class));
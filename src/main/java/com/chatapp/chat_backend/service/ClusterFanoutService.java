@@ -0,0 +1,209 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.config.RabbitMQConfig;
+import com.chatapp.chat_backend.dtos.ClusterBatchDto;
+import com.chatapp.chat_backend.dtos.ClusterEventDto;
+import com.chatapp.chat_backend.dtos.ClusterStatsDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Relays broadcasts between nodes over chat.exchange. Local events are
+ * batched, sequenced and published once with publisher confirms, which
+ * need spring.rabbitmq.publisher-confirm-type=correlated. Every node
+ * consumes batches from its own queue into its local broker and skips the
+ * ones it published itself. Sequence numbers are assigned by the publisher
+ * thread as events leave the queue, so events dropped on a full queue
+ * leave no gap; a gap seen by a receiver means a batch was lost.
+ */
+@Slf4j
+@Service
+public class ClusterFanoutService
+{
+    private final RabbitTemplate rabbitTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    private final String nodeId;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long lingerMs;
+    private final long confirmTimeoutMs;
+
+    private final BlockingQueue<ClusterEventDto> pending;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ConcurrentHashMap<String, Long> lastSequenceByNode = new ConcurrentHashMap<>();
+
+    private final LongAdder publishedEvents = new LongAdder();
+    private final LongAdder publishedBatches = new LongAdder();
+    private final LongAdder failedBatches = new LongAdder();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder receivedEvents = new LongAdder();
+    private final LongAdder sequenceGaps = new LongAdder();
+
+    private volatile boolean running;
+    private Thread publisherThread;
+
+    public ClusterFanoutService(
+            RabbitTemplate rabbitTemplate,
+            SimpMessagingTemplate messagingTemplate,
+            @Value("${app.cluster.node-id:${random.uuid}}") String nodeId,
+            @Value("${app.cluster.enabled:false}") boolean enabled,
+            @Value("${app.cluster.batch-size:100}") int batchSize,
+            @Value("${app.cluster.linger-ms:5}") long lingerMs,
+            @Value("${app.cluster.confirm-timeout-ms:5000}") long confirmTimeoutMs,
+            @Value("${app.cluster.max-pending:10000}") int maxPending
+    ) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.messagingTemplate = messagingTemplate;
+        this.nodeId = nodeId;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+        this.pending = new ArrayBlockingQueue<>(maxPending);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (!rabbitTemplate.getConnectionFactory().isPublisherConfirms()) {
+            throw new IllegalStateException(
+                    "Cluster fan-out needs publisher confirms: set spring.rabbitmq.publisher-confirm-type=correlated");
+        }
+        running = true;
+        publisherThread = new Thread(this::publishLoop, "cluster-fanout-publisher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+        log.info("Cluster fan-out enabled on node {}", nodeId);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (publisherThread != null) {
+            publisherThread.interrupt();
+            publisherThread.join(confirmTimeoutMs);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue an event that was already delivered to this node's broker for
+     * delivery on every other node
+     */
+    public void publish(String destination, Object payload) {
+        if (!enabled) {
+            return;
+        }
+        ClusterEventDto event = ClusterEventDto.builder()
+                .destination(destination)
+                .payload(payload)
+                .build();
+        if (!pending.offer(event)) {
+            droppedEvents.increment();
+            log.warn("Cluster fan-out queue full, dropped event for {}", destination);
+        }
+    }
+
+    @RabbitListener(queues = "#{clusterNodeQueue.name}", autoStartup = "${app.cluster.enabled:false}")
+    public void receive(ClusterBatchDto batch) {
+        if (nodeId.equals(batch.getOriginNodeId()) || batch.getEvents() == null) {
+            return;
+        }
+
+        for (ClusterEventDto event : batch.getEvents()) {
+            Long previous = lastSequenceByNode.put(batch.getOriginNodeId(), event.getSequence());
+            if (previous != null && event.getSequence() != previous + 1) {
+                sequenceGaps.increment();
+                log.warn("Sequence gap from node {}: {} -> {}", batch.getOriginNodeId(), previous, event.getSequence());
+            }
+            messagingTemplate.convertAndSend(event.getDestination(), event.getPayload());
+            receivedEvents.increment();
+        }
+    }
+
+    public ClusterStatsDto getStats() {
+        return ClusterStatsDto.builder()
+                .nodeId(nodeId)
+                .enabled(enabled)
+                .publishedEvents(publishedEvents.sum())
+                .publishedBatches(publishedBatches.sum())
+                .failedBatches(failedBatches.sum())
+                .droppedEvents(droppedEvents.sum())
+                .receivedEvents(receivedEvents.sum())
+                .sequenceGaps(sequenceGaps.sum())
+                .pendingEvents(pending.size())
+                .build();
+    }
+
+    private void publishLoop() {
+        List<ClusterEventDto> events = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                ClusterEventDto first = pending.take();
+                events.add(first);
+
+                // Linger briefly so bursts leave as one AMQP message
+                if (lingerMs > 0 && pending.size() < batchSize - 1) {
+                    Thread.sleep(lingerMs);
+                }
+                pending.drainTo(events, batchSize - 1);
+
+                for (ClusterEventDto event : events) {
+                    event.setSequence(sequence.incrementAndGet());
+                }
+                publishBatch(events);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                events.clear();
+            }
+        }
+    }
+
+    private void publishBatch(List<ClusterEventDto> events) throws InterruptedException {
+        ClusterBatchDto batch = ClusterBatchDto.builder()
+                .originNodeId(nodeId)
+                .events(new ArrayList<>(events))
+                .build();
+        CorrelationData correlation = new CorrelationData(nodeId + ":" + events.get(0).getSequence());
+
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.CHAT_EXCHANGE, RabbitMQConfig.CLUSTER_ROUTING_KEY,
+                    batch, correlation);
+            CorrelationData.Confirm confirm = correlation.getFuture().get(confirmTimeoutMs, TimeUnit.MILLISECONDS);
+            if (!confirm.isAck()) {
+                throw new IllegalStateException("Broker nacked batch: " + confirm.getReason());
+            }
+            publishedBatches.increment();
+            publishedEvents.add(events.size());
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            failedBatches.increment();
+            log.error("Failed to publish cluster batch of {} events", events.size(), e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ShardContext;
+import com.chatapp.chat_backend.repository.JobLockRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Cluster-wide leases for scheduled jobs that must not run on two nodes at
+ * once. The holder renews its lease as it works, by acquiring it again;
+ * a node that dies mid-run simply lets the lease expire. Leases live in
+ * job_locks on the global shard and are timed by the database's clock, so
+ * node clock skew does not matter.
+ */
+@Slf4j
+@Service
+public class JobLockService
+{
+    private final JobLockRepository jobLockRepository;
+    private final TransactionTemplate globalTransaction;
+    private final String nodeId;
+
+    public JobLockService(
+            JobLockRepository jobLockRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.cluster.node-id:${random.uuid}}") String nodeId
+    ) {
+        this.jobLockRepository = jobLockRepository;
+        this.globalTransaction = new TransactionTemplate(transactionManager);
+        this.globalTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * Take or renew the lease on a job; false if another node holds it or
+     * the database cannot be reached
+     */
+    public boolean tryAcquire(String name, long leaseMs) {
+        try {
+            return Boolean.TRUE.equals(ShardContext.callIn(MessageShardResolver.GLOBAL_SHARD, () ->
+                    globalTransaction.execute(status -> {
+                        jobLockRepository.tryLock(name, nodeId, leaseMs);
+                        return nodeId.equals(jobLockRepository.findOwner(name));
+                    })));
+        } catch (DataAccessException e) {
+            log.warn("Failed to acquire job lock {}", name, e);
+            return false;
+        }
+    }
+
+    /**
+     * Give up a lease early so another node need not wait for it to expire
+     */
+    public void release(String name) {
+        try {
+            ShardContext.runIn(MessageShardResolver.GLOBAL_SHARD, () -> globalTransaction.executeWithoutResult(status ->
+                    jobLockRepository.unlock(name, nodeId)));
+        } catch (DataAccessException e) {
+            log.warn("Failed to release job lock {}, it expires on its own", name, e);
+        }
+    }
+}
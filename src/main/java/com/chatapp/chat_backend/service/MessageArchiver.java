@@ -0,0 +1,309 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.archive.MessageArchive;
+import com.chatapp.chat_backend.dtos.ArchiveStatsDto;
+import com.chatapp.chat_backend.dtos.MessageResponseDto;
+import com.chatapp.chat_backend.entity.ArchivedMessage;
+import com.chatapp.chat_backend.entity.Message;
+import com.chatapp.chat_backend.repository.ArchivedMessageRepository;
+import com.chatapp.chat_backend.repository.MessageReactionCountRepository;
+import com.chatapp.chat_backend.repository.MessageReactionRepository;
+import com.chatapp.chat_backend.repository.MessageRepository;
+import com.chatapp.chat_backend.repository.PinnedMessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Moves messages older than app.archive.max-age-days out of the messages
+ * table into the room's archive, in small batches per room. Each batch is
+ * forced to disk before its rows are deleted, and rows whose ids are
+ * already archived are only deleted, so a crash in between loses nothing
+ * and writes nothing twice.
+ *
+ * Only the oldest run of a room's messages is archived, so the archive
+ * always precedes the table. A pinned message, or one still referenced by
+ * a reply that stays in the table, holds back archiving in its room.
+ * Archived messages can only be deleted, which is recorded on their
+ * archived_messages row; their reactions are kept as totals and their
+ * attachments are never collected. The archived_messages rows are written
+ * in the same transaction that deletes the table rows.
+ *
+ * Runs hold a lease in job_locks, renewed before every batch, so only one
+ * node archives at a time; a run that loses its lease stops.
+ */
+@Slf4j
+@Service
+public class MessageArchiver
+{
+    private static final String LOCK_NAME = "message-archiver";
+
+    private final MessageRepository messageRepository;
+    private final MessageReactionRepository messageReactionRepository;
+    private final MessageReactionCountRepository reactionCountRepository;
+    private final PinnedMessageRepository pinnedMessageRepository;
+    private final MessageService messageService;
+    private final MessageArchive messageArchive;
+    private final MessageStore messageStore;
+    private final AttachmentService attachmentService;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final JobLockService jobLockService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final LongAdder messagesArchived = new LongAdder();
+    private final LongAdder rowsRemoved = new LongAdder();
+    private final LongAdder heldBatches = new LongAdder();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMs;
+    private volatile boolean referencesBackfilled;
+
+    @Value("${app.archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.archive.max-age-days:90}")
+    private long maxAgeDays;
+
+    @Value("${app.archive.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.archive.rooms-per-run:100}")
+    private int roomsPerRun;
+
+    @Value("${app.archive.batch-pause-ms:50}")
+    private long batchPauseMs;
+
+    @Value("${app.archive.lock-lease-ms:300000}")
+    private long lockLeaseMs;
+
+    public MessageArchiver(
+            MessageRepository messageRepository,
+            MessageReactionRepository messageReactionRepository,
+            MessageReactionCountRepository reactionCountRepository,
+            PinnedMessageRepository pinnedMessageRepository,
+            MessageService messageService,
+            MessageArchive messageArchive,
+            MessageStore messageStore,
+            AttachmentService attachmentService,
+            ArchivedMessageRepository archivedMessageRepository,
+            JobLockService jobLockService,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.messageRepository = messageRepository;
+        this.messageReactionRepository = messageReactionRepository;
+        this.reactionCountRepository = reactionCountRepository;
+        this.pinnedMessageRepository = pinnedMessageRepository;
+        this.messageService = messageService;
+        this.messageArchive = messageArchive;
+        this.messageStore = messageStore;
+        this.attachmentService = attachmentService;
+        this.archivedMessageRepository = archivedMessageRepository;
+        this.jobLockService = jobLockService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${app.archive.interval-ms:60000}")
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+
+        if (!jobLockService.tryAcquire(LOCK_NAME, lockLeaseMs)) {
+            log.debug("Message archiving is running on another node");
+            return;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        try {
+            if (!referencesBackfilled) {
+                backfillReferences();
+            }
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(maxAgeDays);
+            messageStore.forEachShard(shard -> {
+                List<Long> chatRoomIds = transactionTemplate.execute(status ->
+                        messageRepository.findRoomIdsWithMessagesBefore(cutoff, PageRequest.of(0, roomsPerRun)));
+                for (Long chatRoomId : chatRoomIds) {
+                    try {
+                        archiveRoom(chatRoomId, cutoff);
+                    } catch (LeaseLostException e) {
+                        throw e;
+                    } catch (RuntimeException e) {
+                        log.error("Failed to archive messages of chat room {}, will retry on next run", chatRoomId, e);
+                    }
+                }
+            });
+        } catch (LeaseLostException e) {
+            log.warn("Lost the message archiving lease, stopping this run");
+            return;
+        } finally {
+            jobLockService.release(LOCK_NAME);
+        }
+
+        lastRunAt = LocalDateTime.now();
+        lastRunMs = System.currentTimeMillis() - startedAt;
+    }
+
+    public ArchiveStatsDto getStats() {
+        return ArchiveStatsDto.builder()
+                .enabled(enabled)
+                .messagesArchived(messagesArchived.sum())
+                .rowsRemoved(rowsRemoved.sum())
+                .heldBatches(heldBatches.sum())
+                .bytesWritten(messageArchive.getBytesWritten())
+                .blocksRead(messageArchive.getBlocksRead())
+                .openRooms(messageArchive.getOpenRooms())
+                .lastRunAt(lastRunAt)
+                .lastRunMs(lastRunMs)
+                .build();
+    }
+
+    private void archiveRoom(Long chatRoomId, LocalDateTime cutoff) {
+        while (true) {
+            if (!jobLockService.tryAcquire(LOCK_NAME, lockLeaseMs)) {
+                throw new LeaseLostException();
+            }
+            if (!Boolean.TRUE.equals(transactionTemplate.execute(status -> archiveBatch(chatRoomId, cutoff)))) {
+                return;
+            }
+            try {
+                // Leave room for foreground traffic between batches
+                Thread.sleep(batchPauseMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Write archived_messages rows for rooms archived before they existed.
+     * A room with any row is complete, since its rows are written with each
+     * batch. Then flag every attachment those rows carry as archived, for
+     * messages archived before attachments were flagged.
+     */
+    private void backfillReferences() {
+        for (Long chatRoomId : messageArchive.archivedRoomIds()) {
+            messageStore.inRoomShard(chatRoomId, false, () -> transactionTemplate.execute(status -> {
+                if (archivedMessageRepository.existsByChatRoomId(chatRoomId)) {
+                    return null;
+                }
+                long offset = 0;
+                List<MessageResponseDto> page;
+                while (!(page = messageArchive.readNewestFirst(chatRoomId, offset, batchSize)).isEmpty()) {
+                    archivedMessageRepository.saveAll(page.stream()
+                            .map(message -> reference(chatRoomId, message.getId(), message.getSender().getId(),
+                                    message.getAttachmentId()))
+                            .collect(Collectors.toList()));
+                    offset += page.size();
+                }
+                log.info("Backfilled {} archived message references of chat room {}", offset, chatRoomId);
+                return null;
+            }));
+        }
+
+        messageStore.forEachShard(shard -> {
+            long afterId = 0;
+            List<Long> attachmentIds;
+            while (!(attachmentIds = archivedAttachmentIds(afterId)).isEmpty()) {
+                attachmentService.markArchived(attachmentIds);
+                afterId = attachmentIds.get(attachmentIds.size() - 1);
+            }
+        });
+        referencesBackfilled = true;
+    }
+
+    private List<Long> archivedAttachmentIds(long afterId) {
+        return transactionTemplate.execute(status ->
+                archivedMessageRepository.findAttachmentIds(afterId, PageRequest.of(0, batchSize)));
+    }
+
+    /**
+     * Archive one batch of a room's oldest messages; true when a full batch
+     * went and more may follow
+     */
+    private boolean archiveBatch(Long chatRoomId, LocalDateTime cutoff) {
+        List<Message> candidates = messageRepository.findArchiveCandidates(chatRoomId, cutoff,
+                PageRequest.of(0, batchSize));
+        if (candidates.isEmpty()) {
+            return false;
+        }
+        List<Long> ids = candidates.stream().map(Message::getId).collect(Collectors.toList());
+
+        // Stop before the first pinned message
+        Set<Long> pinned = new HashSet<>(pinnedMessageRepository.findPinnedMessageIds(ids));
+        int end = 0;
+        while (end < ids.size() && !pinned.contains(ids.get(end))) {
+            end++;
+        }
+
+        // ... and before any message a reply outside the run still points at
+        Map<Long, List<Long>> repliesByTarget = new HashMap<>();
+        for (Object[] row : messageRepository.findRepliesTo(ids)) {
+            repliesByTarget.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((Long) row[1]);
+        }
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            Set<Long> run = new HashSet<>(ids.subList(0, end));
+            for (int i = 0; i < end; i++) {
+                if (!run.containsAll(repliesByTarget.getOrDefault(ids.get(i), List.of()))) {
+                    end = i;
+                    shrunk = true;
+                    break;
+                }
+            }
+        }
+        if (end == 0) {
+            heldBatches.increment();
+            return false;
+        }
+
+        List<Long> runIds = ids.subList(0, end);
+        long archivedUpTo = messageArchive.lastArchivedId(chatRoomId);
+        List<Message> toArchive = candidates.subList(0, end).stream()
+                .filter(message -> message.getId() > archivedUpTo && !message.getIsDeleted())
+                .collect(Collectors.toList());
+        attachmentService.markArchived(toArchive.stream()
+                .map(Message::getAttachmentId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet()));
+        messageArchive.append(chatRoomId, messageService.mapForArchive(toArchive));
+
+        // Also for messages appended by an attempt that crashed before committing
+        archivedMessageRepository.saveAll(candidates.subList(0, end).stream()
+                .filter(message -> !message.getIsDeleted())
+                .map(message -> reference(chatRoomId, message.getId(), message.getSender().getId(),
+                        message.getAttachmentId()))
+                .collect(Collectors.toList()));
+
+        reactionCountRepository.deleteByMessageIdIn(runIds);
+        messageReactionRepository.deleteByMessageIdIn(runIds);
+        int removed = messageRepository.deleteNewestFirst(runIds);
+
+        messagesArchived.add(toArchive.size());
+        rowsRemoved.add(removed);
+        log.debug("Archived {} messages of chat room {}", toArchive.size(), chatRoomId);
+        return end == batchSize;
+    }
+
+    private static ArchivedMessage reference(Long chatRoomId, Long messageId, Long senderId, Long attachmentId) {
+        return ArchivedMessage.builder()
+                .messageId(messageId)
+                .chatRoomId(chatRoomId)
+                .senderId(senderId)
+                .attachmentId(attachmentId)
+                .build();
+    }
+
+    private static final class LeaseLostException extends RuntimeException
+    {
+    }
+}
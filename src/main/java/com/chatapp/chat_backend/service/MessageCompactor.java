@@ -0,0 +1,212 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.dtos.CompactionStatsDto;
+import com.chatapp.chat_backend.repository.MessageReactionCountRepository;
+import com.chatapp.chat_backend.repository.MessageReactionRepository;
+import com.chatapp.chat_backend.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Hard-deletes messages that have been soft-deleted for longer than
+ * app.compaction.retention-days, so they stop padding the room indexes
+ * every history, unread and search query walks. Each shard is walked in
+ * idx_deleted_at order in small batches, one short transaction each, and
+ * throttled to app.compaction.max-rows-per-second. Replies to a purged
+ * message lose their reply link; its reactions go with it.
+ *
+ * Runs hold a lease in job_locks, renewed before every batch, so only one
+ * node compacts at a time; a run that loses its lease stops.
+ */
+@Slf4j
+@Service
+public class MessageCompactor
+{
+    private static final LocalDateTime START = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final String LOCK_NAME = "message-compactor";
+
+    private final MessageRepository messageRepository;
+    private final MessageReactionRepository messageReactionRepository;
+    private final MessageReactionCountRepository reactionCountRepository;
+    private final MessageStore messageStore;
+    private final JobLockService jobLockService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final LongAdder rowsPurged = new LongAdder();
+    private final LongAdder repliesDetached = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private volatile double lastRowsPerSecond;
+    private volatile long lagSeconds;
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMs;
+
+    @Value("${app.compaction.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.compaction.retention-days:30}")
+    private long retentionDays;
+
+    @Value("${app.compaction.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.compaction.max-rows-per-second:2000}")
+    private int maxRowsPerSecond;
+
+    @Value("${app.compaction.max-run-ms:60000}")
+    private long maxRunMs;
+
+    @Value("${app.compaction.lock-lease-ms:300000}")
+    private long lockLeaseMs;
+
+    public MessageCompactor(
+            MessageRepository messageRepository,
+            MessageReactionRepository messageReactionRepository,
+            MessageReactionCountRepository reactionCountRepository,
+            MessageStore messageStore,
+            JobLockService jobLockService,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.messageRepository = messageRepository;
+        this.messageReactionRepository = messageReactionRepository;
+        this.reactionCountRepository = reactionCountRepository;
+        this.messageStore = messageStore;
+        this.jobLockService = jobLockService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${app.compaction.interval-ms:300000}")
+    public void compact() {
+        if (!enabled) {
+            return;
+        }
+
+        if (!jobLockService.tryAcquire(LOCK_NAME, lockLeaseMs)) {
+            log.debug("Message compaction is running on another node");
+            return;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        long deadline = startedAt + maxRunMs;
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+        long[] purged = new long[1];
+        long[] lag = new long[1];
+        try {
+            messageStore.forEachShard(shard -> {
+                try {
+                    purged[0] += compactShard(cutoff, deadline);
+                } catch (LeaseLostException e) {
+                    throw e;
+                } catch (RuntimeException e) {
+                    log.error("Failed to compact deleted messages on shard {}, will retry on next run", shard, e);
+                }
+                LocalDateTime oldest = transactionTemplate.execute(status ->
+                        messageRepository.findOldestDeletedAt().orElse(null));
+                if (oldest != null && oldest.isBefore(cutoff)) {
+                    lag[0] = Math.max(lag[0], Duration.between(oldest, cutoff).toSeconds());
+                }
+            });
+        } catch (LeaseLostException e) {
+            log.warn("Lost the message compaction lease, stopping this run");
+            return;
+        } finally {
+            jobLockService.release(LOCK_NAME);
+        }
+
+        lastRunMs = System.currentTimeMillis() - startedAt;
+        lastRowsPerSecond = purged[0] * 1000.0 / Math.max(lastRunMs, 1);
+        lagSeconds = lag[0];
+        lastRunAt = LocalDateTime.now();
+        if (purged[0] > 0) {
+            log.info("Purged {} deleted messages in {} ms, lag {}s", purged[0], lastRunMs, lagSeconds);
+        }
+    }
+
+    public CompactionStatsDto getStats() {
+        return CompactionStatsDto.builder()
+                .enabled(enabled)
+                .rowsPurged(rowsPurged.sum())
+                .repliesDetached(repliesDetached.sum())
+                .batches(batches.sum())
+                .lastRowsPerSecond(lastRowsPerSecond)
+                .lagSeconds(lagSeconds)
+                .lastRunAt(lastRunAt)
+                .lastRunMs(lastRunMs)
+                .build();
+    }
+
+    /**
+     * Purge the current shard's backlog until it is empty or the run is
+     * out of time
+     */
+    private long compactShard(LocalDateTime cutoff, long deadline) {
+        LocalDateTime afterDeletedAt = START;
+        long afterId = 0;
+        long purged = 0;
+        while (System.currentTimeMillis() < deadline) {
+            if (!jobLockService.tryAcquire(LOCK_NAME, lockLeaseMs)) {
+                throw new LeaseLostException();
+            }
+            long batchStartedAt = System.currentTimeMillis();
+            LocalDateTime fromDeletedAt = afterDeletedAt;
+            long fromId = afterId;
+            List<Object[]> batch = transactionTemplate.execute(status -> purgeBatch(cutoff, fromDeletedAt, fromId));
+            if (batch.isEmpty()) {
+                break;
+            }
+            Object[] last = batch.get(batch.size() - 1);
+            afterId = (Long) last[0];
+            afterDeletedAt = (LocalDateTime) last[1];
+            purged += batch.size();
+            if (batch.size() < batchSize) {
+                break;
+            }
+
+            // Hold the purge rate down so foreground writes keep the disk
+            long minBatchMs = batch.size() * 1000L / Math.max(maxRowsPerSecond, 1);
+            long pause = minBatchMs - (System.currentTimeMillis() - batchStartedAt);
+            if (pause > 0) {
+                try {
+                    Thread.sleep(pause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        return purged;
+    }
+
+    private List<Object[]> purgeBatch(LocalDateTime cutoff, LocalDateTime afterDeletedAt, long afterId) {
+        List<Object[]> batch = messageRepository.findPurgeCandidates(cutoff, afterDeletedAt, afterId,
+                PageRequest.of(0, batchSize));
+        if (batch.isEmpty()) {
+            return batch;
+        }
+        List<Long> ids = batch.stream().map(row -> (Long) row[0]).collect(Collectors.toList());
+
+        int detached = messageRepository.detachReplies(ids);
+        reactionCountRepository.deleteByMessageIdIn(ids);
+        messageReactionRepository.deleteByMessageIdIn(ids);
+        int removed = messageRepository.deleteNewestFirst(ids);
+
+        rowsPurged.add(removed);
+        repliesDetached.add(detached);
+        batches.increment();
+        return batch;
+    }
+
+    private static final class LeaseLostException extends RuntimeException
+    {
+    }
+}
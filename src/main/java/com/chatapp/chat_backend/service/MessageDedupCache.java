@@ -0,0 +1,67 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.dtos.MessageResponseDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-node, time-windowed record of recently accepted client message IDs.
+ * Keys are per sender and room, so a client reusing an ID in another room
+ * is not answered with the first room's message. The unique (sender_id,
+ * chat_room_id, client_message_id) constraint on messages is the backstop
+ * once an entry has expired or was never cached.
+ */
+@Slf4j
+@Component
+public class MessageDedupCache
+{
+    private final ConcurrentHashMap<DedupKey, Entry> entries = new ConcurrentHashMap<>();
+
+    @Value("${app.messages.dedup.window-ms:300000}")
+    private long windowMs;
+
+    @Value("${app.messages.dedup.max-entries:100000}")
+    private int maxEntries;
+
+    public Optional<MessageResponseDto> get(Long senderId, Long chatRoomId, String clientMessageId) {
+        DedupKey key = new DedupKey(senderId, chatRoomId, clientMessageId);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.expiresAt() < System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return Optional.empty();
+        }
+        return Optional.of(entry.message());
+    }
+
+    public void put(Long senderId, Long chatRoomId, String clientMessageId, MessageResponseDto message) {
+        if (entries.size() >= maxEntries) {
+            evictExpired();
+            if (entries.size() >= maxEntries) {
+                // Full: skip caching and let the database constraint dedupe
+                return;
+            }
+        }
+        entries.put(new DedupKey(senderId, chatRoomId, clientMessageId),
+                new Entry(message, System.currentTimeMillis() + windowMs));
+    }
+
+    @Scheduled(fixedDelayString = "${app.messages.dedup.sweep-interval-ms:30000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.expiresAt() < now);
+        log.debug("Evicted {} expired dedup entries", before - entries.size());
+    }
+
+    private record DedupKey(Long senderId, Long chatRoomId, String clientMessageId) {}
+
+    private record Entry(MessageResponseDto message, long expiresAt) {}
+}
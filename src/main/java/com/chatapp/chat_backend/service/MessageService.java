@@ -2,15 +2,28 @@ package com.chatapp.chat_backend.service;
 
 
 
+import com.chatapp.chat_backend.archive.MessageArchive;
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ReadYourWrites;
+import com.chatapp.chat_backend.datasource.ShardWriteFence;
 import com.chatapp.chat_backend.dtos.*;
+import com.chatapp.chat_backend.entity.ArchivedMessage;
+import com.chatapp.chat_backend.entity.Attachment;
 import com.chatapp.chat_backend.entity.ChatRoom;
 import com.chatapp.chat_backend.entity.Message;
+import com.chatapp.chat_backend.entity.MessageReaction;
+import com.chatapp.chat_backend.entity.PinnedMessage;
 import com.chatapp.chat_backend.entity.User;
+import com.chatapp.chat_backend.repository.ArchivedMessageRepository;
 import com.chatapp.chat_backend.repository.ChatRoomRepository;
+import com.chatapp.chat_backend.repository.MessageReactionRepository;
 import com.chatapp.chat_backend.repository.MessageRepository;
+import com.chatapp.chat_backend.repository.PinnedMessageRepository;
 import com.chatapp.chat_backend.repository.UserRepository;
 import com.chatapp.chat_backend.utils.MessageStatus;
 import com.chatapp.chat_backend.utils.MessageType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.RequiredArgsConstructor;
 import org.modelmapper.ModelMapper;
 import org.springframework.data.domain.Page;
@@ -19,9 +32,11 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import lombok.extern.slf4j.Slf4j;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.*;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -29,17 +44,60 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class MessageService
 {
+    private static final String DELETED_CONTENT = "[This message was deleted]";
+
     private final MessageRepository messageRepository;
     private final ChatRoomRepository chatRoomRepository;
     private final UserRepository userRepository;
     private final ModelMapper modelMapper;
+    private final MessageDedupCache dedupCache;
+    private final NotificationService notificationService;
+    private final OutboxService outboxService;
+    private final MessageReactionRepository messageReactionRepository;
+    private final ReactionCounterService reactionCounterService;
+    private final PinnedMessageRepository pinnedMessageRepository;
+    private final PinnedMessageCache pinnedMessageCache;
+    private final RoomMembershipCache membershipCache;
+    private final ObjectMapper objectMapper;
+    private final MessageShardResolver shardResolver;
+    private final MessageStore messageStore;
+    private final MessageArchive messageArchive;
+    private final ArchivedMessageRepository archivedMessageRepository;
+    private final AttachmentService attachmentService;
+    private final ThumbnailService thumbnailService;
+    private final ReadYourWrites readYourWrites;
+    private final ShardWriteFence writeFence;
+
+    /**
+     * Look up a message already accepted for a client message ID.
+     * Retried sends resolve here and are neither re-inserted nor re-broadcast.
+     */
+    @Transactional(readOnly = true)
+    public Optional<MessageResponseDto> findAcceptedMessage(Long senderId, Long chatRoomId, String clientMessageId) {
+        if (clientMessageId == null) {
+            return Optional.empty();
+        }
+
+        Optional<MessageResponseDto> cached = dedupCache.get(senderId, chatRoomId, clientMessageId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+
+        Optional<MessageResponseDto> stored = messageRepository
+                .findBySenderIdAndChatRoomIdAndClientMessageId(senderId, chatRoomId, clientMessageId)
+                .map(this::mapToMessageResponse);
+        stored.ifPresent(message -> dedupCache.put(senderId, chatRoomId, clientMessageId, message));
+        return stored;
+    }
 
     /**
      * Send a new message to a chat room
      */
     @Transactional
     public MessageResponseDto sendMessage(Long chatRoomId, SendMessageRequestDto request, Long senderId) {
+        readYourWrites.recordWrite(senderId);
         log.info("Sending message to chat room {} by user {}", chatRoomId, senderId);
+        writeFence.checkWritable(chatRoomId);
 
         // Validate chat room exists
         ChatRoom chatRoom = chatRoomRepository.findById(chatRoomId)
@@ -49,11 +107,9 @@ public class MessageService
         User sender = userRepository.findById(senderId)
                 .orElseThrow(() -> new RuntimeException("Sender not found with id: " + senderId));
 
-        // Verify sender is a member of the chat room
-        boolean isMember = chatRoom.getMembers().stream()
-                .anyMatch(member -> member.getId().equals(senderId));
-
-        if (!isMember) {
+        // Verify sender is a member of the chat room; the shared membership
+        // cache is invalidated on every node, unlike the members collection
+        if (!membershipCache.isMember(chatRoomId, senderId)) {
             throw new RuntimeException("You are not a member of this chat room");
         }
 
@@ -67,10 +123,24 @@ public class MessageService
                 .fileUrl(request.getFileUrl())
                 .fileName(request.getFileName())
                 .fileSize(request.getFileSize())
+                .clientMessageId(request.getClientMessageId())
                 .isEdited(false)
                 .isDeleted(false)
                 .build();
 
+        // An uploaded attachment supplies the file fields, and the type unless given
+        Attachment attachment = null;
+        if (request.getAttachmentId() != null) {
+            attachment = attachmentService.getForMessage(request.getAttachmentId(), senderId);
+            message.setAttachmentId(attachment.getId());
+            message.setFileUrl(AttachmentService.urlFor(attachment.getId()));
+            message.setFileName(attachment.getFileName());
+            message.setFileSize(attachment.getFileSize());
+            if (request.getType() == null) {
+                message.setType(AttachmentService.messageTypeFor(attachment));
+            }
+        }
+
         // Handle reply to another message
         if (request.getReplyToId() != null) {
             Message replyTo = messageRepository.findById(request.getReplyToId())
@@ -78,15 +148,35 @@ public class MessageService
             message.setReplyTo(replyTo);
         }
 
-        // Save message
-        message = messageRepository.save(message);
+        // Save message (flush so a duplicate client message ID fails here)
+        message = messageRepository.saveAndFlush(message);
         log.info("Message saved successfully with id: {}", message.getId());
 
-        return mapToMessageResponse(message);
+        MessageResponseDto response = mapToMessageResponse(message);
+        if (attachment != null) {
+            response.setThumbnail(ThumbnailService.describe(attachment));
+        }
+        outboxService.enqueue("/topic/chat/" + chatRoomId, response);
+        if (request.getClientMessageId() != null) {
+            afterCommit(() -> dedupCache.put(senderId, chatRoomId, request.getClientMessageId(), response));
+        }
+
+        // Notify the other members once the message is committed
+        NotificationEventDto notification = notificationService.toEvent(response, chatRoom.getMembers());
+        afterCommit(() -> notificationService.publish(notification));
+
+        // A thumbnail still rendering follows as a second broadcast
+        if (attachment != null) {
+            Attachment sent = attachment;
+            afterCommit(() -> thumbnailService.announceWhenReady(sent, response));
+        }
+
+        return response;
     }
 
     /**
-     * Get paginated messages for a chat room
+     * Get paginated messages for a chat room. Pages past the end of the
+     * messages table continue into the room's archive.
      */
     @Transactional(readOnly = true)
     public PageResponseDto<MessageResponseDto> getChatRoomMessages(Long chatRoomId, int page, int size) {
@@ -106,28 +196,55 @@ public class MessageService
         List<MessageResponseDto> messages = messagePage.getContent().stream()
                 .map(this::mapToMessageResponse)
                 .collect(Collectors.toList());
+        attachReactions(messages);
+
+        // Archived messages are all older than the table's, so they follow its last page
+        long archived = messageArchive.count(chatRoomId);
+        long total = messagePage.getTotalElements() + archived;
+        if (archived > 0 && messages.size() < size) {
+            long archiveOffset = Math.max(0, (long) page * size - messagePage.getTotalElements());
+            List<MessageResponseDto> archivedPage = messageArchive.readNewestFirst(chatRoomId, archiveOffset,
+                    size - messages.size());
+            maskDeletedArchived(archivedPage);
+            messages.addAll(archivedPage);
+        }
+        attachThumbnails(messages);
 
         return PageResponseDto.<MessageResponseDto>builder()
                 .content(messages)
                 .pageNumber(messagePage.getNumber())
                 .pageSize(messagePage.getSize())
-                .totalElements(messagePage.getTotalElements())
-                .totalPages(messagePage.getTotalPages())
-                .last(messagePage.isLast())
+                .totalElements(total)
+                .totalPages((int) ((total + size - 1) / size))
+                .last((long) (page + 1) * size >= total)
                 .build();
     }
 
     /**
-     * Get a specific message by ID
+     * Get a specific message by ID. A message moved to the archive is found
+     * through its archived_messages row, which names its room.
      */
     @Transactional(readOnly = true)
     public MessageResponseDto getMessageById(Long messageId) {
         log.info("Fetching message with id: {}", messageId);
 
-        Message message = messageRepository.findById(messageId)
-                .orElseThrow(() -> new RuntimeException("Message not found with id: " + messageId));
+        MessageResponseDto response = messageRepository.findById(messageId)
+                .map(this::mapToMessageResponse)
+                .orElseGet(() -> findArchivedMessage(messageId));
+        attachReactions(List.of(response));
+        attachThumbnails(List.of(response));
+        return response;
+    }
 
-        return mapToMessageResponse(message);
+    private MessageResponseDto findArchivedMessage(Long messageId) {
+        ArchivedMessage archived = archivedMessageRepository.findById(messageId)
+                .orElseThrow(() -> new RuntimeException("Message not found with id: " + messageId));
+        MessageResponseDto response = messageArchive.find(archived.getChatRoomId(), messageId)
+                .orElseThrow(() -> new RuntimeException("Message not found with id: " + messageId));
+        if (archived.getDeleted()) {
+            maskDeleted(response);
+        }
+        return response;
     }
 
     /**
@@ -135,6 +252,7 @@ public class MessageService
      */
     @Transactional
     public MessageResponseDto editMessage(Long messageId, EditMessageRequestDto request, Long userId) {
+        readYourWrites.recordWrite(userId);
         log.info("Editing message {} by user {}", messageId, userId);
 
         // Fetch message
@@ -150,6 +268,7 @@ public class MessageService
         if (message.getIsDeleted()) {
             throw new RuntimeException("Cannot edit a deleted message");
         }
+        writeFence.checkWritable(message.getChatRoom().getId());
 
         // Update message content
         message.setContent(request.getContent());
@@ -160,45 +279,107 @@ public class MessageService
         message = messageRepository.save(message);
         log.info("Message {} edited successfully", messageId);
 
-        return mapToMessageResponse(message);
+        MessageResponseDto response = mapToMessageResponse(message);
+        attachThumbnails(List.of(response));
+        outboxService.enqueue("/topic/chat/" + message.getChatRoom().getId() + "/edit", response);
+        pinnedMessageCache.invalidateAfterCommit(message.getChatRoom().getId());
+        return response;
     }
 
     /**
-     * Delete a message (soft delete)
+     * Delete a message (soft delete). Archived messages are marked deleted
+     * on their archived_messages row and masked when read.
      */
     @Transactional
     public void deleteMessage(Long messageId, Long userId) {
+        readYourWrites.recordWrite(userId);
         log.info("Deleting message {} by user {}", messageId, userId);
 
         // Fetch message
-        Message message = messageRepository.findById(messageId)
-                .orElseThrow(() -> new RuntimeException("Message not found with id: " + messageId));
+        Optional<Message> stored = messageRepository.findById(messageId);
+        if (stored.isEmpty()) {
+            deleteArchivedMessage(messageId, userId);
+            return;
+        }
+        Message message = stored.get();
 
         // Check ownership
         if (!message.getSender().getId().equals(userId)) {
             throw new RuntimeException("You can only delete your own messages");
         }
+        writeFence.checkWritable(message.getChatRoom().getId());
 
         // Soft delete
         message.setIsDeleted(true);
         message.setDeletedAt(LocalDateTime.now());
-        message.setContent("[This message was deleted]");
+        message.setContent(DELETED_CONTENT);
 
         // Clear file attachments
         message.setFileUrl(null);
         message.setFileName(null);
         message.setFileSize(null);
+        message.setAttachmentId(null);
 
         messageRepository.save(message);
+        outboxService.enqueue("/topic/chat/" + message.getChatRoom().getId() + "/delete", messageId);
+
+        // A deleted message no longer stays pinned
+        pinnedMessageRepository.deleteByMessageId(messageId);
+        pinnedMessageCache.invalidateAfterCommit(message.getChatRoom().getId());
         log.info("Message {} deleted successfully", messageId);
     }
 
+    private void deleteArchivedMessage(Long messageId, Long userId) {
+        ArchivedMessage archived = archivedMessageRepository.findById(messageId)
+                .filter(found -> !found.getDeleted())
+                .orElseThrow(() -> new RuntimeException("Message not found with id: " + messageId));
+        if (!archived.getSenderId().equals(userId)) {
+            throw new RuntimeException("You can only delete your own messages");
+        }
+        writeFence.checkWritable(archived.getChatRoomId());
+
+        archived.setDeleted(true);
+        archived.setDeletedAt(LocalDateTime.now());
+        archivedMessageRepository.save(archived);
+        outboxService.enqueue("/topic/chat/" + archived.getChatRoomId() + "/delete", messageId);
+        log.info("Archived message {} deleted successfully", messageId);
+    }
+
+    /**
+     * Show archived messages deleted after archiving the way deleted
+     * messages in the table are shown
+     */
+    private void maskDeletedArchived(List<MessageResponseDto> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Set<Long> deleted = new HashSet<>(archivedMessageRepository.findDeletedIds(messages.stream()
+                .map(MessageResponseDto::getId)
+                .collect(Collectors.toList())));
+        for (MessageResponseDto message : messages) {
+            if (deleted.contains(message.getId())) {
+                maskDeleted(message);
+            }
+        }
+    }
+
+    private static void maskDeleted(MessageResponseDto message) {
+        message.setContent(DELETED_CONTENT);
+        message.setFileUrl(null);
+        message.setFileName(null);
+        message.setFileSize(null);
+        message.setAttachmentId(null);
+        message.setThumbnail(null);
+    }
+
     /**
      * Mark all unread messages as read for a user in a chat room
      */
     @Transactional
     public void markMessagesAsRead(Long chatRoomId, Long userId) {
+        readYourWrites.recordWrite(userId);
         log.info("Marking messages as read in chat room {} for user {}", chatRoomId, userId);
+        writeFence.checkWritable(chatRoomId);
 
         // Validate chat room exists
         chatRoomRepository.findById(chatRoomId)
@@ -227,9 +408,12 @@ public class MessageService
         // Search messages
         List<Message> messages = messageRepository.searchMessages(chatRoomId, search);
 
-        return messages.stream()
+        List<MessageResponseDto> results = messages.stream()
                 .map(this::mapToMessageResponse)
                 .collect(Collectors.toList());
+        attachReactions(results);
+        attachThumbnails(results);
+        return results;
     }
 
     /**
@@ -251,41 +435,59 @@ public class MessageService
     }
 
     /**
-     * Add a reaction to a message
-     * Note: This is a placeholder implementation. In production, you should create
-     * a separate MessageReaction entity to store reactions properly.
+     * Add or change the current user's reaction to a message
      */
     @Transactional
     public MessageResponseDto addReaction(Long messageId, Long userId, String reaction) {
+        readYourWrites.recordWrite(userId);
         log.info("Adding reaction {} to message {} by user {}", reaction, messageId, userId);
 
+        if (reaction == null || reaction.isBlank() || reaction.length() > 32) {
+            throw new RuntimeException("Invalid reaction: " + reaction);
+        }
+
         // Validate message exists
         Message message = messageRepository.findById(messageId)
                 .orElseThrow(() -> new RuntimeException("Message not found with id: " + messageId));
 
         // Validate user exists
-        userRepository.findById(userId)
+        User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
 
-        // TODO: In production, create a MessageReaction entity and save it
-        // For now, just return the message
-        // Example:
-        // MessageReaction messageReaction = new MessageReaction();
-        // messageReaction.setMessage(message);
-        // messageReaction.setUser(user);
-        // messageReaction.setReaction(reaction);
-        // messageReactionRepository.save(messageReaction);
+        if (message.getIsDeleted()) {
+            throw new RuntimeException("Cannot react to a deleted message");
+        }
 
-        log.info("Reaction added successfully (placeholder implementation)");
-        return mapToMessageResponse(message);
+        Long chatRoomId = message.getChatRoom().getId();
+        writeFence.checkWritable(chatRoomId);
+        Optional<MessageReaction> existing = messageReactionRepository.findByMessageIdAndUserId(messageId, userId);
+
+        if (existing.isEmpty()) {
+            messageReactionRepository.save(MessageReaction.builder()
+                    .message(message)
+                    .user(user)
+                    .reaction(reaction)
+                    .build());
+            afterCommit(() -> reactionCounterService.record(chatRoomId, messageId, reaction, 1));
+        } else if (!existing.get().getReaction().equals(reaction)) {
+            String previous = existing.get().getReaction();
+            existing.get().setReaction(reaction);
+            afterCommit(() -> {
+                reactionCounterService.record(chatRoomId, messageId, previous, -1);
+                reactionCounterService.record(chatRoomId, messageId, reaction, 1);
+            });
+        }
+
+        log.info("Reaction {} recorded on message {}", reaction, messageId);
+        return withReactions(message, reaction, existing.map(MessageReaction::getReaction).orElse(null));
     }
 
     /**
-     * Remove a reaction from a message
-     * Note: This is a placeholder implementation.
+     * Remove the current user's reaction from a message
      */
     @Transactional
     public MessageResponseDto removeReaction(Long messageId, Long userId) {
+        readYourWrites.recordWrite(userId);
         log.info("Removing reaction from message {} by user {}", messageId, userId);
 
         // Validate message exists
@@ -296,12 +498,19 @@ public class MessageService
         userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
 
-        // TODO: In production, delete the MessageReaction entity
-        // Example:
-        // messageReactionRepository.deleteByMessageIdAndUserId(messageId, userId);
+        Optional<MessageReaction> existing = messageReactionRepository.findByMessageIdAndUserId(messageId, userId);
+        if (existing.isEmpty()) {
+            return withReactions(message, null, null);
+        }
+
+        Long chatRoomId = message.getChatRoom().getId();
+        writeFence.checkWritable(chatRoomId);
+        String previous = existing.get().getReaction();
+        messageReactionRepository.delete(existing.get());
+        afterCommit(() -> reactionCounterService.record(chatRoomId, messageId, previous, -1));
 
-        log.info("Reaction removed successfully (placeholder implementation)");
-        return mapToMessageResponse(message);
+        log.info("Reaction removed from message {}", messageId);
+        return withReactions(message, null, previous);
     }
 
     /**
@@ -309,60 +518,72 @@ public class MessageService
      */
     @Transactional
     public MessageResponseDto forwardMessage(Long messageId, Long targetChatRoomId, Long userId) {
-        log.info("Forwarding message {} to chat room {} by user {}", messageId, targetChatRoomId, userId);
+        return forwardMessageToRooms(messageId, List.of(targetChatRoomId), userId).get(0);
+    }
+
+    /**
+     * Forward a message to several chat rooms. The copies for each message
+     * shard are written in one transaction on that shard. Shards commit
+     * independently, so a failure on one shard leaves copies already
+     * committed on the others in place.
+     */
+    @Transactional
+    public List<MessageResponseDto> forwardMessageToRooms(Long messageId, Collection<Long> targetChatRoomIds, Long userId) {
+        readYourWrites.recordWrite(userId);
+        Set<Long> targetIds = new LinkedHashSet<>(targetChatRoomIds);
+        log.info("Forwarding message {} to {} chat rooms by user {}", messageId, targetIds.size(), userId);
 
         // Validate original message
         Message originalMessage = messageRepository.findById(messageId)
                 .orElseThrow(() -> new RuntimeException("Message not found with id: " + messageId));
 
-        // Validate target chat room
-        ChatRoom targetChatRoom = chatRoomRepository.findById(targetChatRoomId)
-                .orElseThrow(() -> new RuntimeException("Target chat room not found with id: " + targetChatRoomId));
+        // Cannot forward deleted messages
+        if (originalMessage.getIsDeleted()) {
+            throw new RuntimeException("Cannot forward a deleted message");
+        }
 
         // Validate user
         User sender = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
 
-        // Verify user is a member of the target chat room
-        boolean isMember = targetChatRoom.getMembers().stream()
-                .anyMatch(member -> member.getId().equals(userId));
-
-        if (!isMember) {
-            throw new RuntimeException("You are not a member of the target chat room");
+        // Verify membership of every target room with one cache multi-get
+        Map<Long, Set<Long>> membersByRoom = membershipCache.getMemberIds(targetIds);
+        List<Long> denied = targetIds.stream()
+                .filter(id -> !membersByRoom.getOrDefault(id, Set.of()).contains(userId))
+                .collect(Collectors.toList());
+        if (!denied.isEmpty()) {
+            throw new RuntimeException("You are not a member of the target chat rooms: " + denied);
         }
 
-        // Cannot forward deleted messages
-        if (originalMessage.getIsDeleted()) {
-            throw new RuntimeException("Cannot forward a deleted message");
+        // The copies share the original's attachment, so one lookup serves them all
+        Long attachmentId = originalMessage.getAttachmentId();
+        ThumbnailDto thumbnail = attachmentId != null
+                ? thumbnailService.findThumbnails(Set.of(attachmentId)).get(attachmentId)
+                : null;
+
+        Map<Integer, List<Long>> targetsByShard = targetIds.stream()
+                .collect(Collectors.groupingBy(shardResolver::shardFor, LinkedHashMap::new, Collectors.toList()));
+        Map<Long, MessageResponseDto> responseByRoom = new HashMap<>();
+        targetsByShard.forEach((shard, roomIds) -> messageStore.inShard(shard, false,
+                        () -> insertForwardedCopies(originalMessage, sender, roomIds, thumbnail))
+                .forEach(response -> responseByRoom.put(response.getChatRoomId(), response)));
+        log.info("Message {} forwarded to {} chat rooms on {} shards", messageId, targetIds.size(), targetsByShard.size());
+
+        List<MessageResponseDto> responses = targetIds.stream().map(responseByRoom::get).collect(Collectors.toList());
+        // A thumbnail still rendering follows as a second broadcast to every target room
+        if (attachmentId != null && thumbnail == null) {
+            Attachment attachment = attachmentService.find(attachmentId);
+            responses.forEach(response -> afterCommit(() -> thumbnailService.announceWhenReady(attachment, response)));
         }
-
-        // Create forwarded message
-        Message forwardedMessage = Message.builder()
-                .content(originalMessage.getContent())
-                .type(originalMessage.getType())
-                .status(MessageStatus.SENT)
-                .sender(sender)
-                .chatRoom(targetChatRoom)
-                .fileUrl(originalMessage.getFileUrl())
-                .fileName(originalMessage.getFileName())
-                .fileSize(originalMessage.getFileSize())
-                .isEdited(false)
-                .isDeleted(false)
-                .build();
-
-        forwardedMessage = messageRepository.save(forwardedMessage);
-        log.info("Message forwarded successfully with new id: {}", forwardedMessage.getId());
-
-        return mapToMessageResponse(forwardedMessage);
+        return responses;
     }
 
     /**
      * Pin a message in a chat room
-     * Note: This is a placeholder implementation. In production, you should add
-     * a pinnedMessages field to ChatRoom or create a separate PinnedMessage entity.
      */
     @Transactional
     public MessageResponseDto pinMessage(Long messageId, Long chatRoomId, Long userId) {
+        readYourWrites.recordWrite(userId);
         log.info("Pinning message {} in chat room {} by user {}", messageId, chatRoomId, userId);
 
         // Validate message
@@ -387,25 +608,27 @@ public class MessageService
         if (message.getIsDeleted()) {
             throw new RuntimeException("Cannot pin a deleted message");
         }
+        writeFence.checkWritable(chatRoomId);
+
+        if (!pinnedMessageRepository.existsByChatRoomIdAndMessageId(chatRoomId, messageId)) {
+            pinnedMessageRepository.save(PinnedMessage.builder()
+                    .message(message)
+                    .chatRoom(chatRoom)
+                    .pinnedBy(chatRoom.getCreator())
+                    .build());
+            pinnedMessageCache.invalidateAfterCommit(chatRoomId);
+        }
 
-        // TODO: In production, implement proper pinning logic
-        // Example:
-        // PinnedMessage pinnedMessage = new PinnedMessage();
-        // pinnedMessage.setMessage(message);
-        // pinnedMessage.setChatRoom(chatRoom);
-        // pinnedMessage.setPinnedBy(user);
-        // pinnedMessageRepository.save(pinnedMessage);
-
-        log.info("Message pinned successfully (placeholder implementation)");
+        log.info("Message {} pinned in chat room {}", messageId, chatRoomId);
         return mapToMessageResponse(message);
     }
 
     /**
      * Unpin a message in a chat room
-     * Note: This is a placeholder implementation.
      */
     @Transactional
     public void unpinMessage(Long messageId, Long chatRoomId, Long userId) {
+        readYourWrites.recordWrite(userId);
         log.info("Unpinning message {} in chat room {} by user {}", messageId, chatRoomId, userId);
 
         // Validate message
@@ -425,12 +648,167 @@ public class MessageService
         if (!chatRoom.getCreator().getId().equals(userId)) {
             throw new RuntimeException("Only the chat room creator can unpin messages");
         }
+        writeFence.checkWritable(chatRoomId);
+
+        if (pinnedMessageRepository.deleteByChatRoomIdAndMessageId(chatRoomId, messageId) > 0) {
+            pinnedMessageCache.invalidateAfterCommit(chatRoomId);
+        }
+
+        log.info("Message {} unpinned in chat room {}", messageId, chatRoomId);
+    }
+
+    /**
+     * Get the pinned messages of a chat room, newest pin first. Thumbnails
+     * are looked up on every read, so ones rendered after the pins were
+     * cached show up too.
+     */
+    public List<PinnedMessageDto> getPinnedMessages(Long chatRoomId, Long userId) {
+        if (!membershipCache.isMember(chatRoomId, userId)) {
+            throw new RuntimeException("You are not a member of this chat room");
+        }
 
-        // TODO: In production, delete the PinnedMessage entity
-        // Example:
-        // pinnedMessageRepository.deleteByMessageIdAndChatRoomId(messageId, chatRoomId);
+        List<PinnedMessageDto> cached = pinnedMessageCache.get(chatRoomId, id -> pinnedMessageRepository
+                .findByChatRoomIdWithMessages(id)
+                .stream()
+                .map(pin -> PinnedMessageDto.builder()
+                        .message(mapToMessageResponse(pin.getMessage()))
+                        .pinnedBy(modelMapper.map(pin.getPinnedBy(), UserResponseDto.class))
+                        .pinnedAt(pin.getPinnedAt())
+                        .build())
+                .collect(Collectors.toList()));
+
+        // Copies, since the cached pins are shared between readers
+        List<PinnedMessageDto> pins = cached.stream()
+                .map(pin -> pin.toBuilder().message(pin.getMessage().toBuilder().build()).build())
+                .collect(Collectors.toList());
+        attachThumbnails(pins.stream().map(PinnedMessageDto::getMessage).collect(Collectors.toList()));
+        return pins;
+    }
 
-        log.info("Message unpinned successfully (placeholder implementation)");
+    /**
+     * Insert forwarded copies into rooms that share one message shard, in the
+     * transaction bound to that shard
+     */
+    private List<MessageResponseDto> insertForwardedCopies(Message originalMessage, User sender, List<Long> targetIds,
+                                                           ThumbnailDto thumbnail) {
+        writeFence.checkWritable(targetIds);
+        // Target rooms are only referenced, not loaded
+        List<Message> forwardedMessages = targetIds.stream()
+                .map(targetId -> Message.builder()
+                        .content(originalMessage.getContent())
+                        .type(originalMessage.getType())
+                        .status(MessageStatus.SENT)
+                        .sender(sender)
+                        .chatRoom(chatRoomRepository.getReferenceById(targetId))
+                        .fileUrl(originalMessage.getFileUrl())
+                        .fileName(originalMessage.getFileName())
+                        .fileSize(originalMessage.getFileSize())
+                        .attachmentId(originalMessage.getAttachmentId())
+                        .isEdited(false)
+                        .isDeleted(false)
+                        .build())
+                .collect(Collectors.toList());
+
+        forwardedMessages = messageRepository.saveAll(forwardedMessages);
+
+        // Serialize the shared body once; each room's copy only differs in id, room and timestamp
+        MessageResponseDto shared = mapToMessageResponse(forwardedMessages.get(0));
+        shared.setThumbnail(thumbnail);
+        ObjectNode body = objectMapper.valueToTree(shared);
+        Map<String, String> payloads = new LinkedHashMap<>();
+        List<MessageResponseDto> responses = new ArrayList<>(forwardedMessages.size());
+        for (Message forwarded : forwardedMessages) {
+            Long targetId = forwarded.getChatRoom().getId();
+            ObjectNode payload = body.deepCopy();
+            payload.put("id", forwarded.getId());
+            payload.put("chatRoomId", targetId);
+            payload.set("createdAt", objectMapper.valueToTree(forwarded.getCreatedAt()));
+            payloads.put("/topic/chat/" + targetId, payload.toString());
+            MessageResponseDto response = mapToMessageResponse(forwarded);
+            response.setThumbnail(thumbnail);
+            responses.add(response);
+        }
+        outboxService.enqueueSerialized(payloads);
+
+        return responses;
+    }
+
+    /**
+     * Map messages, with their reaction summaries, for the cold archive
+     */
+    public List<MessageResponseDto> mapForArchive(List<Message> messages) {
+        List<MessageResponseDto> responses = messages.stream()
+                .map(this::mapToMessageResponse)
+                .collect(Collectors.toList());
+        attachReactions(responses);
+        return responses;
+    }
+
+    /**
+     * Run an action once the current transaction has committed
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Fill in reaction summaries for a page of messages with one aggregate query
+     */
+    private void attachReactions(List<MessageResponseDto> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Map<Long, Map<String, Long>> summaries = reactionCounterService.getSummaries(
+                messages.stream().map(MessageResponseDto::getId).collect(Collectors.toList()));
+        messages.forEach(message -> message.setReactions(summaries.getOrDefault(message.getId(), Map.of())));
+    }
+
+    /**
+     * Fill in thumbnails rendered since the messages were stored, with one
+     * lookup for the whole page
+     */
+    private void attachThumbnails(List<MessageResponseDto> messages) {
+        Set<Long> attachmentIds = messages.stream()
+                .map(MessageResponseDto::getAttachmentId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (attachmentIds.isEmpty()) {
+            return;
+        }
+        Map<Long, ThumbnailDto> thumbnails = thumbnailService.findThumbnails(attachmentIds);
+        for (MessageResponseDto message : messages) {
+            if (message.getAttachmentId() != null && thumbnails.containsKey(message.getAttachmentId())) {
+                message.setThumbnail(thumbnails.get(message.getAttachmentId()));
+            }
+        }
+    }
+
+    /**
+     * Response for a reaction change: the summary is read before this
+     * transaction's change reaches the counters, so apply it here
+     */
+    private MessageResponseDto withReactions(Message message, String added, String removed) {
+        MessageResponseDto response = mapToMessageResponse(message);
+        attachReactions(List.of(response));
+
+        Map<String, Long> reactions = new TreeMap<>(response.getReactions());
+        if (added != null && !added.equals(removed)) {
+            reactions.merge(added, 1L, Long::sum);
+        }
+        if (removed != null && !removed.equals(added)) {
+            reactions.computeIfPresent(removed, (reaction, count) -> count > 1 ? count - 1 : null);
+        }
+        response.setReactions(reactions);
+        return response;
     }
 
     /**
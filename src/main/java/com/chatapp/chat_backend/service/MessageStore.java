@@ -0,0 +1,95 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ShardContext;
+import com.chatapp.chat_backend.entity.Message;
+import com.chatapp.chat_backend.repository.MessageRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs message persistence on the shard that owns a room. Request handling
+ * for a room is already bound to its shard, so this is for work that
+ * reaches other rooms: room lists, cross-room forwards and background jobs.
+ * Work for another shard runs in a transaction of its own on that shard;
+ * shards commit independently of each other and of the caller.
+ */
+@Component
+public class MessageStore
+{
+    private final MessageRepository messageRepository;
+    private final MessageShardResolver shardResolver;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+
+    public MessageStore(
+            MessageRepository messageRepository,
+            MessageShardResolver shardResolver,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.messageRepository = messageRepository;
+        this.shardResolver = shardResolver;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public Long countUnreadMessages(Long chatRoomId, Long userId) {
+        return inRoomShard(chatRoomId, true, () -> messageRepository.countUnreadMessages(chatRoomId, userId));
+    }
+
+    /**
+     * ID of the newest message stored for a room, deleted ones included
+     */
+    public long findMaxMessageId(Long chatRoomId) {
+        return inRoomShard(chatRoomId, true, () -> messageRepository.findMaxIdByChatRoomId(chatRoomId).orElse(0L));
+    }
+
+    /**
+     * The newest message of a room, mapped while its shard's session is open
+     */
+    public <T> Optional<T> findLastMessage(Long chatRoomId, Function<Message, T> mapper) {
+        return inRoomShard(chatRoomId, true, () -> messageRepository
+                .findByChatRoomId(chatRoomId, PageRequest.of(0, 1))
+                .stream()
+                .findFirst()
+                .map(mapper));
+    }
+
+    public <T> T inRoomShard(Long chatRoomId, boolean readOnly, Supplier<T> action) {
+        return inShard(shardResolver.shardFor(chatRoomId), readOnly, action);
+    }
+
+    /**
+     * Run an action on a shard. On the caller's own shard it simply joins the
+     * caller's transaction, which is always the case without sharding.
+     */
+    public <T> T inShard(int shard, boolean readOnly, Supplier<T> action) {
+        Integer current = ShardContext.current();
+        if (!shardResolver.isSharded() || shard == (current != null ? current : MessageShardResolver.GLOBAL_SHARD)) {
+            return action.get();
+        }
+        TransactionTemplate transaction = readOnly ? readTransaction : writeTransaction;
+        return ShardContext.callIn(shard, () -> transaction.execute(status -> action.get()));
+    }
+
+    /**
+     * Run a background job once per shard, with that shard bound
+     */
+    public void forEachShard(IntConsumer job) {
+        for (int shard = 0; shard < shardResolver.getShardCount(); shard++) {
+            int bound = shard;
+            ShardContext.runIn(bound, () -> job.accept(bound));
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.config.RabbitMQConfig;
+import com.chatapp.chat_backend.dtos.DeliveryItemDto;
+import com.chatapp.chat_backend.dtos.MessageResponseDto;
+import com.chatapp.chat_backend.dtos.NotificationEventDto;
+import com.chatapp.chat_backend.dtos.NotificationStatsDto;
+import com.chatapp.chat_backend.entity.User;
+import com.chatapp.chat_backend.utils.DeliveryKind;
+import com.chatapp.chat_backend.websocket.ClusterPresence;
+import com.chatapp.chat_backend.websocket.StompSessionRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Notification pipeline. Each sent message becomes one compact event on
+ * chat.notification.queue. A batch consumer folds the events per recipient
+ * and room into "N new messages" items. Online recipients get them on
+ * /user/queue/notifications, and offline ones go to OfflineDeliveryService.
+ * With RabbitMQ disabled or unreachable, events go to an in-process queue
+ * that a single thread drains into the same batch handler. A recipient
+ * counts as online if ClusterPresence sees a session on any node; those
+ * on other nodes are reached through the cluster fan-out.
+ */
+@Slf4j
+@Service
+public class NotificationService
+{
+    public static final String NOTIFICATION_DESTINATION = "/queue/notifications";
+
+    private static final int PREVIEW_LENGTH = 100;
+
+    private final RabbitTemplate rabbitTemplate;
+    private final ChatBroadcaster chatBroadcaster;
+    private final ClusterFanoutService clusterFanoutService;
+    private final StompSessionRegistry sessionRegistry;
+    private final ClusterPresence clusterPresence;
+    private final OfflineDeliveryService offlineDeliveryService;
+    private final boolean rabbitEnabled;
+    private final int batchSize;
+    private final long lingerMs;
+
+    private final BlockingQueue<NotificationEventDto> localPending;
+    private volatile boolean running;
+    private Thread batcherThread;
+
+    private final LongAdder consumedEvents = new LongAdder();
+    private final LongAdder consumedBatches = new LongAdder();
+    private final LongAdder onlineDeliveries = new LongAdder();
+    private final LongAdder offlineDeliveries = new LongAdder();
+    private final LongAdder foldedMessages = new LongAdder();
+
+    public NotificationService(
+            RabbitTemplate rabbitTemplate,
+            ChatBroadcaster chatBroadcaster,
+            ClusterFanoutService clusterFanoutService,
+            StompSessionRegistry sessionRegistry,
+            ClusterPresence clusterPresence,
+            OfflineDeliveryService offlineDeliveryService,
+            @Value("${app.notifications.rabbit-enabled:false}") boolean rabbitEnabled,
+            @Value("${app.notifications.batch-size:100}") int batchSize,
+            @Value("${app.notifications.linger-ms:20}") long lingerMs,
+            @Value("${app.notifications.max-pending:10000}") int maxPending
+    ) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.chatBroadcaster = chatBroadcaster;
+        this.clusterFanoutService = clusterFanoutService;
+        this.sessionRegistry = sessionRegistry;
+        this.clusterPresence = clusterPresence;
+        this.offlineDeliveryService = offlineDeliveryService;
+        this.rabbitEnabled = rabbitEnabled;
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
+        this.localPending = new ArrayBlockingQueue<>(maxPending);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        batcherThread = new Thread(this::batchLoop, "notification-batcher");
+        batcherThread.setDaemon(true);
+        batcherThread.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (batcherThread != null) {
+            batcherThread.interrupt();
+            batcherThread.join(1000);
+        }
+        List<NotificationEventDto> remaining = new ArrayList<>();
+        localPending.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            handleBatch(remaining);
+        }
+    }
+
+    /**
+     * Build the notification event for a sent message
+     */
+    public NotificationEventDto toEvent(MessageResponseDto message, Collection<User> members) {
+        Long senderId = message.getSender() != null ? message.getSender().getId() : null;
+        String content = message.getContent() != null ? message.getContent() : "";
+
+        List<Long> recipientIds = new ArrayList<>(members.size());
+        List<Long> mentionedUserIds = new ArrayList<>();
+        for (User member : members) {
+            if (member.getId().equals(senderId)) {
+                continue;
+            }
+            recipientIds.add(member.getId());
+            if (mentions(content, member.getUsername())) {
+                mentionedUserIds.add(member.getId());
+            }
+        }
+
+        return NotificationEventDto.builder()
+                .chatRoomId(message.getChatRoomId())
+                .messageId(message.getId())
+                .senderId(senderId)
+                .preview(content.length() <= PREVIEW_LENGTH ? content : content.substring(0, PREVIEW_LENGTH))
+                .recipientIds(recipientIds)
+                .mentionedUserIds(mentionedUserIds)
+                .createdAt(message.getCreatedAt())
+                .build();
+    }
+
+    public void publish(NotificationEventDto event) {
+        if (event.getRecipientIds().isEmpty()) {
+            return;
+        }
+        if (!rabbitEnabled) {
+            enqueueLocal(event);
+            return;
+        }
+        try {
+            rabbitTemplate.convertAndSend(RabbitMQConfig.CHAT_EXCHANGE, RabbitMQConfig.NOTIFICATION_ROUTING_KEY, event);
+        } catch (AmqpException e) {
+            log.warn("RabbitMQ unavailable, delivering notification for message {} locally", event.getMessageId(), e);
+            enqueueLocal(event);
+        }
+    }
+
+    @RabbitListener(
+            queues = RabbitMQConfig.NOTIFICATION_QUEUE,
+            containerFactory = "notificationListenerContainerFactory",
+            autoStartup = "${app.notifications.rabbit-enabled:false}"
+    )
+    public void consume(List<NotificationEventDto> events) {
+        handleBatch(events);
+    }
+
+    /**
+     * Fold a batch of events per recipient and room, then deliver each
+     * recipient's items in one frame or to their offline backlog
+     */
+    public void handleBatch(List<NotificationEventDto> events) {
+        consumedBatches.increment();
+        consumedEvents.add(events.size());
+
+        Map<Long, Map<Long, DeliveryItemDto>> summaries = new HashMap<>();
+        Map<Long, List<DeliveryItemDto>> mentions = new HashMap<>();
+
+        for (NotificationEventDto event : events) {
+            Set<Long> mentioned = event.getMentionedUserIds() != null
+                    ? new HashSet<>(event.getMentionedUserIds())
+                    : Set.of();
+
+            for (Long recipientId : event.getRecipientIds()) {
+                if (mentioned.contains(recipientId)) {
+                    mentions.computeIfAbsent(recipientId, id -> new ArrayList<>())
+                            .add(toItem(event, DeliveryKind.MENTION));
+                    continue;
+                }
+
+                Map<Long, DeliveryItemDto> byRoom = summaries.computeIfAbsent(recipientId, id -> new LinkedHashMap<>());
+                DeliveryItemDto summary = byRoom.get(event.getChatRoomId());
+                if (summary == null) {
+                    byRoom.put(event.getChatRoomId(), toItem(event, DeliveryKind.NEW_MESSAGES));
+                } else {
+                    summary.setCount(summary.getCount() + 1);
+                    summary.setMessageId(event.getMessageId());
+                    summary.setSenderId(event.getSenderId());
+                    summary.setPreview(event.getPreview());
+                    summary.setCreatedAt(event.getCreatedAt());
+                    foldedMessages.increment();
+                }
+            }
+        }
+
+        Set<Long> recipients = new HashSet<>(summaries.keySet());
+        recipients.addAll(mentions.keySet());
+        Set<Long> online = onlineAmong(recipients);
+        for (Long recipientId : recipients) {
+            List<DeliveryItemDto> items = new ArrayList<>(mentions.getOrDefault(recipientId, List.of()));
+            items.addAll(summaries.getOrDefault(recipientId, Map.of()).values());
+            deliver(recipientId, items, online.contains(recipientId));
+        }
+    }
+
+    public NotificationStatsDto getStats() {
+        return NotificationStatsDto.builder()
+                .rabbitEnabled(rabbitEnabled)
+                .consumedEvents(consumedEvents.sum())
+                .consumedBatches(consumedBatches.sum())
+                .onlineDeliveries(onlineDeliveries.sum())
+                .offlineDeliveries(offlineDeliveries.sum())
+                .foldedMessages(foldedMessages.sum())
+                .build();
+    }
+
+    private void enqueueLocal(NotificationEventDto event) {
+        // A full queue pushes back on the sender instead of dropping the event
+        if (!localPending.offer(event)) {
+            handleBatch(List.of(event));
+        }
+    }
+
+    private void batchLoop() {
+        List<NotificationEventDto> events = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                events.add(localPending.take());
+
+                // Linger briefly so a burst is folded as one batch
+                if (lingerMs > 0 && localPending.size() < batchSize - 1) {
+                    Thread.sleep(lingerMs);
+                }
+                localPending.drainTo(events, batchSize - 1);
+                handleBatch(events);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Failed to deliver notification batch of {} events", events.size(), e);
+            } finally {
+                events.clear();
+            }
+        }
+    }
+
+    /**
+     * Recipients of a batch with a session this node can reach, looked up
+     * once for the whole batch. Sessions on other nodes are only reachable
+     * through the cluster fan-out.
+     */
+    private Set<Long> onlineAmong(Set<Long> recipients) {
+        if (!clusterFanoutService.isEnabled()) {
+            Set<Long> online = new HashSet<>();
+            for (Long recipientId : recipients) {
+                if (sessionRegistry.isOnline(recipientId)) {
+                    online.add(recipientId);
+                }
+            }
+            return online;
+        }
+        return clusterPresence.onlineAmong(recipients);
+    }
+
+    private void deliver(Long recipientId, List<DeliveryItemDto> items, boolean online) {
+        if (online) {
+            chatBroadcaster.broadcast("/user/" + recipientId + NOTIFICATION_DESTINATION, items);
+            onlineDeliveries.increment();
+            return;
+        }
+        items.forEach(item -> offlineDeliveryService.enqueue(recipientId, item));
+        offlineDeliveries.increment();
+    }
+
+    /**
+     * Whether the content holds @username as a whole word, so that @al
+     * does not notify al when alice is meant
+     */
+    static boolean mentions(String content, String username) {
+        String mention = "@" + username;
+        int from = 0;
+        int at;
+        while ((at = content.indexOf(mention, from)) >= 0) {
+            int end = at + mention.length();
+            boolean startsWord = at == 0 || !isUsernameChar(content.charAt(at - 1));
+            boolean endsWord = end == content.length() || !isUsernameChar(content.charAt(end));
+            if (startsWord && endsWord) {
+                return true;
+            }
+            from = at + 1;
+        }
+        return false;
+    }
+
+    // A trailing '.' ends the sentence rather than the username
+    private static boolean isUsernameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-';
+    }
+
+    private static DeliveryItemDto toItem(NotificationEventDto event, DeliveryKind kind) {
+        return DeliveryItemDto.builder()
+                .kind(kind.name())
+                .chatRoomId(event.getChatRoomId())
+                .messageId(event.getMessageId())
+                .senderId(event.getSenderId())
+                .preview(event.getPreview())
+                .count(1)
+                .createdAt(event.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,296 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.dtos.CatchUpBatchDto;
+import com.chatapp.chat_backend.dtos.DeliveryItemDto;
+import com.chatapp.chat_backend.security.StompPrincipal;
+import com.chatapp.chat_backend.utils.DeliveryKind;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded per-user backlog of notifications, mentions and new-message
+ * summaries for users without a live STOMP session, fed by
+ * NotificationService. Older entries spill to a per-user file once the
+ * in-memory part is full. The backlog is drained in batches when the user
+ * subscribes to /user/queue/catch-up. Spill files left by a previous run
+ * are queued again at startup.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OfflineDeliveryService
+{
+    public static final String CATCH_UP_DESTINATION = "/queue/catch-up";
+    private static final String REPLAY_SUFFIX = ".replay";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentHashMap<Long, UserBacklog> backlogs = new ConcurrentHashMap<>();
+
+    @Value("${app.delivery.memory-limit:200}")
+    private int memoryLimit;
+
+    @Value("${app.delivery.spill-limit:5000}")
+    private int spillLimit;
+
+    @Value("${app.delivery.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.delivery.spill-dir:${java.io.tmpdir}/chat-delivery}")
+    private String spillDir;
+
+    /**
+     * Re-queue spill files from before a restart. They are renamed first, so
+     * spills made while replaying cannot collide with them.
+     */
+    @PostConstruct
+    public void replaySpills() {
+        Path dir = Paths.get(spillDir);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+
+        List<Path> stale = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.jsonl")) {
+            for (Path file : files) {
+                Path renamed = file.resolveSibling(file.getFileName() + REPLAY_SUFFIX);
+                Files.move(file, renamed);
+            }
+            // Also picks up files renamed by a run that stopped mid-replay
+        } catch (IOException e) {
+            log.error("Failed to rename delivery spill files in {}", dir, e);
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + REPLAY_SUFFIX)) {
+            files.forEach(stale::add);
+        } catch (IOException e) {
+            log.error("Failed to list delivery spill files in {}", dir, e);
+            return;
+        }
+
+        // Oldest generation first, so each user's items keep their order
+        stale.sort(Comparator.comparingLong(OfflineDeliveryService::generationOf));
+        int replayed = 0;
+        for (Path file : stale) {
+            Long userId = userIdOf(file);
+            try {
+                if (userId != null) {
+                    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                        enqueue(userId, objectMapper.readValue(line, DeliveryItemDto.class));
+                        replayed++;
+                    }
+                }
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.error("Failed to replay delivery spill file {}", file, e);
+            }
+        }
+        if (!stale.isEmpty()) {
+            log.info("Replayed {} queued items from {} spill files", replayed, stale.size());
+        }
+    }
+
+    /**
+     * Queue an item for a user. New-message summaries for the same room are
+     * folded into one entry while it is still in memory.
+     */
+    public void enqueue(Long userId, DeliveryItemDto item) {
+        while (true) {
+            UserBacklog backlog = backlogs.computeIfAbsent(userId, UserBacklog::new);
+            synchronized (backlog) {
+                if (backlog.drained) {
+                    // Lost a race with a drain, retry on a fresh backlog
+                    continue;
+                }
+                append(userId, backlog, item);
+                return;
+            }
+        }
+    }
+
+    @EventListener
+    public void handleSessionSubscribe(SessionSubscribeEvent event) {
+        // Drain on subscribe rather than connect, otherwise the batches
+        // would be sent before the client is listening for them
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (!("/user" + CATCH_UP_DESTINATION).equals(accessor.getDestination())) {
+            return;
+        }
+        Long userId = StompPrincipal.userIdOf(event.getUser());
+        if (userId != null) {
+            drain(userId);
+        }
+    }
+
+    /**
+     * Send everything queued for a user as a sequence of catch-up batches
+     */
+    public void drain(Long userId) {
+        UserBacklog backlog = backlogs.remove(userId);
+
+        List<DeliveryItemDto> items = new ArrayList<>();
+        boolean truncated = false;
+        if (backlog != null) {
+            synchronized (backlog) {
+                backlog.drained = true;
+                items.addAll(readSpill(backlog));
+                items.addAll(backlog.pending);
+                truncated = backlog.truncated;
+            }
+        }
+
+        log.info("Draining {} queued items for user {}", items.size(), userId);
+
+        // Always send at least one batch so the client knows catch-up is complete
+        int batchNumber = 0;
+        for (int from = 0; from < items.size() || batchNumber == 0; from += batchSize) {
+            int to = Math.min(from + batchSize, items.size());
+            CatchUpBatchDto batch = CatchUpBatchDto.builder()
+                    .items(new ArrayList<>(items.subList(from, to)))
+                    .batchNumber(batchNumber++)
+                    .last(to >= items.size())
+                    .truncated(truncated)
+                    .build();
+            messagingTemplate.convertAndSendToUser(userId.toString(), CATCH_UP_DESTINATION, batch);
+        }
+    }
+
+    private void append(Long userId, UserBacklog backlog, DeliveryItemDto item) {
+        if (DeliveryKind.NEW_MESSAGES.name().equals(item.getKind())) {
+            DeliveryItemDto summary = backlog.summariesByRoom.get(item.getChatRoomId());
+            if (summary != null) {
+                summary.setCount(summary.getCount() + item.getCount());
+                summary.setMessageId(item.getMessageId());
+                summary.setSenderId(item.getSenderId());
+                summary.setPreview(item.getPreview());
+                summary.setCreatedAt(item.getCreatedAt());
+                return;
+            }
+            backlog.summariesByRoom.put(item.getChatRoomId(), item);
+        }
+
+        backlog.pending.addLast(item);
+        if (backlog.pending.size() > memoryLimit) {
+            spill(userId, backlog);
+        }
+    }
+
+    /**
+     * Move the older half of the in-memory backlog to the user's spill file
+     */
+    private void spill(Long userId, UserBacklog backlog) {
+        int toMove = backlog.pending.size() / 2;
+        List<DeliveryItemDto> moved = new ArrayList<>(toMove);
+        for (int i = 0; i < toMove; i++) {
+            DeliveryItemDto item = backlog.pending.pollFirst();
+            backlog.summariesByRoom.remove(item.getChatRoomId(), item);
+            moved.add(item);
+        }
+
+        int room = spillLimit - backlog.spilled;
+        if (room < moved.size()) {
+            backlog.truncated = true;
+            moved = moved.subList(0, Math.max(room, 0));
+        }
+        if (moved.isEmpty()) {
+            return;
+        }
+
+        Path file = spillFile(backlog);
+        try {
+            Files.createDirectories(file.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (DeliveryItemDto item : moved) {
+                    writer.write(objectMapper.writeValueAsString(item));
+                    writer.newLine();
+                }
+            }
+            backlog.spilled += moved.size();
+        } catch (IOException e) {
+            log.error("Failed to spill delivery backlog for user {}", userId, e);
+            backlog.truncated = true;
+        }
+    }
+
+    private List<DeliveryItemDto> readSpill(UserBacklog backlog) {
+        Path file = spillFile(backlog);
+        List<DeliveryItemDto> items = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return items;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                items.add(objectMapper.readValue(line, DeliveryItemDto.class));
+            }
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.error("Failed to read delivery spill file {}", file, e);
+        }
+        return items;
+    }
+
+    private Path spillFile(UserBacklog backlog) {
+        // One file per backlog generation so a drain never races a new spill
+        return Paths.get(spillDir, backlog.userId + "-" + backlog.generation + ".jsonl");
+    }
+
+    private static Long userIdOf(Path file) {
+        String name = file.getFileName().toString();
+        int dash = name.indexOf('-');
+        try {
+            return dash > 0 ? Long.valueOf(name.substring(0, dash)) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        int dash = name.indexOf('-');
+        int dot = name.indexOf('.');
+        try {
+            return dash > 0 && dot > dash ? Long.parseLong(name.substring(dash + 1, dot)) : Long.MAX_VALUE;
+        } catch (NumberFormatException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static final class UserBacklog
+    {
+        // Seeded from the clock so file names from an earlier run never recur
+        private static final AtomicLong GENERATIONS = new AtomicLong(System.currentTimeMillis());
+
+        private final Long userId;
+        private final long generation = GENERATIONS.incrementAndGet();
+        private final ArrayDeque<DeliveryItemDto> pending = new ArrayDeque<>();
+        private final Map<Long, DeliveryItemDto> summariesByRoom = new HashMap<>();
+        private int spilled;
+        private boolean truncated;
+        private boolean drained;
+
+        private UserBacklog(Long userId) {
+            this.userId = userId;
+        }
+    }
+}
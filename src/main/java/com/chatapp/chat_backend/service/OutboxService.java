@@ -0,0 +1,160 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.entity.OutboxEvent;
+import com.chatapp.chat_backend.repository.OutboxEventRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Transactional outbox for room events. Events are written in the same
+ * transaction as the message change. A relay drains them in id order and
+ * broadcasts them, so delivery is at-least-once and the request path never
+ * waits on a broker. The relay runs right after each commit and also polls
+ * to pick up anything left behind by a crash.
+ */
+@Slf4j
+@Service
+public class OutboxService
+{
+    private final OutboxEventRepository outboxEventRepository;
+    private final ChatBroadcaster broadcaster;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageStore messageStore;
+
+    private final ExecutorService relayExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "outbox-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean drainRequested = new AtomicBoolean();
+
+    @Value("${app.outbox.batch-size:200}")
+    private int batchSize;
+
+    public OutboxService(
+            OutboxEventRepository outboxEventRepository,
+            ChatBroadcaster broadcaster,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            MessageStore messageStore
+    ) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.broadcaster = broadcaster;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.messageStore = messageStore;
+    }
+
+    /**
+     * Record an event as part of the caller's transaction
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String destination, Object payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize outbox event for " + destination, e);
+        }
+
+        outboxEventRepository.save(OutboxEvent.builder()
+                .destination(destination)
+                .payload(json)
+                .build());
+        drainAfterCommit();
+    }
+
+    /**
+     * Record already-serialized events, one per destination, as part of the
+     * caller's transaction
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueSerialized(Map<String, String> payloadByDestination) {
+        List<OutboxEvent> events = new ArrayList<>(payloadByDestination.size());
+        payloadByDestination.forEach((destination, json) -> events.add(OutboxEvent.builder()
+                .destination(destination)
+                .payload(json)
+                .build()));
+        outboxEventRepository.saveAll(events);
+        drainAfterCommit();
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval-ms:1000}")
+    public void poll() {
+        requestDrain();
+    }
+
+    private void drainAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    requestDrain();
+                }
+            });
+        }
+    }
+
+    private void requestDrain() {
+        if (drainRequested.compareAndSet(false, true)) {
+            relayExecutor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        // Runs on the single relay thread, so batches leave in id order.
+        // Events are written on the room's message shard, so drain each one.
+        drainRequested.set(false);
+        messageStore.forEachShard(shard -> {
+            try {
+                int relayed;
+                do {
+                    relayed = relayBatch();
+                } while (relayed == batchSize);
+            } catch (RuntimeException e) {
+                log.error("Outbox relay failed on shard {}, will retry on next poll", shard, e);
+            }
+        });
+    }
+
+    private int relayBatch() {
+        Integer relayed = transactionTemplate.execute(status -> {
+            List<OutboxEvent> events = outboxEventRepository.findNextBatch(PageRequest.of(0, batchSize));
+            for (OutboxEvent event : events) {
+                try {
+                    broadcaster.broadcast(event.getDestination(), objectMapper.readTree(event.getPayload()));
+                } catch (JsonProcessingException e) {
+                    log.error("Dropping unreadable outbox event {}", event.getId(), e);
+                }
+            }
+            outboxEventRepository.deleteAllInBatch(events);
+            return events.size();
+        });
+        return relayed != null ? relayed : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        relayExecutor.shutdown();
+    }
+}
@@ -0,0 +1,66 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.datasource.ReadYourWrites;
+import com.chatapp.chat_backend.dtos.PinnedMessageDto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Per-room cache of pinned messages, so opening a room does not query for
+ * pins. Entries are dropped on every node when a pin is added or removed,
+ * or when a pinned message changes. Pins are loaded from the primary.
+ */
+@Component
+public class PinnedMessageCache
+{
+    private static final String NAMESPACE = "room-pins";
+    private static final TypeReference<List<PinnedMessageDto>> PINS = new TypeReference<>() {};
+
+    private final TwoLevelCache cache;
+    private final ReadYourWrites readYourWrites;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public PinnedMessageCache(TwoLevelCache cache, ReadYourWrites readYourWrites,
+                              PlatformTransactionManager transactionManager) {
+        this.cache = cache;
+        this.readYourWrites = readYourWrites;
+        // A transaction of its own, so it never reuses a replica connection the caller holds
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public List<PinnedMessageDto> get(Long chatRoomId, Function<Long, List<PinnedMessageDto>> loader) {
+        return cache.get(NAMESPACE, chatRoomId, PINS, () -> readYourWrites.onPrimary(() ->
+                readOnlyTransaction.execute(status -> List.copyOf(loader.apply(chatRoomId)))));
+    }
+
+    public void invalidate(Long chatRoomId) {
+        cache.evict(NAMESPACE, chatRoomId);
+    }
+
+    /**
+     * Invalidate once the current transaction commits, so a concurrent miss
+     * cannot reload the pre-commit pins
+     */
+    public void invalidateAfterCommit(Long chatRoomId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(chatRoomId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(chatRoomId);
+            }
+        });
+    }
+}
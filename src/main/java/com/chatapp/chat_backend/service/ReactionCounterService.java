@@ -0,0 +1,210 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ShardWriteFence;
+import com.chatapp.chat_backend.dtos.ReactionDeltaDto;
+import com.chatapp.chat_backend.entity.MessageReactionCount;
+import com.chatapp.chat_backend.repository.MessageReactionCountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Accumulates reaction count changes per message and periodically flushes
+ * them to message_reaction_counts in one transaction. Writers add to a
+ * message's counters without holding any map lock. A flush detaches the
+ * entry, retires it and waits for the writers already inside it, so its
+ * sums are final; writers that find an entry retired start a fresh one.
+ * Each flush broadcasts at most one delta frame per message, however many
+ * clicks it received. Counts are written on each room's message shard, and
+ * deltas for a room that is being moved wait until the move is done: the
+ * flush checks the shard's write fence in its transaction and puts the
+ * fenced rooms' deltas back, to be written on the new shard.
+ */
+@Slf4j
+@Service
+public class ReactionCounterService
+{
+    private final MessageReactionCountRepository reactionCountRepository;
+    private final ChatBroadcaster broadcaster;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageShardResolver shardResolver;
+    private final MessageStore messageStore;
+    private final ShardWriteFence writeFence;
+
+    private final ConcurrentHashMap<Long, MessageCounters> pending = new ConcurrentHashMap<>();
+
+    public ReactionCounterService(
+            MessageReactionCountRepository reactionCountRepository,
+            ChatBroadcaster broadcaster,
+            PlatformTransactionManager transactionManager,
+            MessageShardResolver shardResolver,
+            MessageStore messageStore,
+            ShardWriteFence writeFence
+    ) {
+        this.reactionCountRepository = reactionCountRepository;
+        this.broadcaster = broadcaster;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardResolver = shardResolver;
+        this.messageStore = messageStore;
+        this.writeFence = writeFence;
+    }
+
+    public void record(Long chatRoomId, Long messageId, String reaction, long delta) {
+        while (true) {
+            MessageCounters counters = pending.computeIfAbsent(messageId, id -> new MessageCounters(chatRoomId));
+            if (counters.add(reaction, delta)) {
+                return;
+            }
+            // Retired by a flush after we looked it up; it is already out of the map
+        }
+    }
+
+    /**
+     * Reaction totals for the given messages: flushed counts plus deltas
+     * not yet written
+     */
+    public Map<Long, Map<String, Long>> getSummaries(Collection<Long> messageIds) {
+        Map<Long, Map<String, Long>> summaries = new HashMap<>();
+        if (messageIds.isEmpty()) {
+            return summaries;
+        }
+
+        for (MessageReactionCount count : reactionCountRepository.findByMessageIdIn(messageIds)) {
+            summaries.computeIfAbsent(count.getMessageId(), id -> new TreeMap<>())
+                    .put(count.getReaction(), count.getCount());
+        }
+
+        for (Long messageId : messageIds) {
+            MessageCounters counters = pending.get(messageId);
+            if (counters == null) {
+                continue;
+            }
+            Map<String, Long> summary = summaries.computeIfAbsent(messageId, id -> new TreeMap<>());
+            counters.counters.forEach((reaction, adder) -> summary.merge(reaction, adder.sum(), Long::sum));
+            summary.values().removeIf(count -> count <= 0);
+        }
+        return summaries;
+    }
+
+    @Scheduled(fixedDelayString = "${app.reactions.flush-interval-ms:500}")
+    public void flush() {
+        Map<Integer, Map<Long, Map<String, Long>>> deltasByShard = new HashMap<>();
+        Map<Long, Long> roomByMessage = new HashMap<>();
+
+        for (Map.Entry<Long, MessageCounters> entry : pending.entrySet()) {
+            Long chatRoomId = entry.getValue().chatRoomId;
+            // Cheap early skip; the fence checked in the flush transaction is authoritative
+            if (shardResolver.isMigrating(chatRoomId)) {
+                continue;
+            }
+
+            // Once detached and retired no writer can reach these counters, so their sums are final
+            MessageCounters detached = pending.remove(entry.getKey());
+            if (detached == null) {
+                continue;
+            }
+            detached.retire();
+            Map<String, Long> messageDeltas = new HashMap<>();
+            detached.counters.forEach((reaction, adder) -> {
+                long delta = adder.sum();
+                if (delta != 0) {
+                    messageDeltas.put(reaction, delta);
+                }
+            });
+
+            if (messageDeltas.isEmpty()) {
+                continue;
+            }
+            deltasByShard.computeIfAbsent(shardResolver.shardFor(chatRoomId), shard -> new HashMap<>())
+                    .put(entry.getKey(), messageDeltas);
+            roomByMessage.put(entry.getKey(), chatRoomId);
+        }
+
+        deltasByShard.forEach((shard, deltas) -> {
+            Set<Long> fenced;
+            try {
+                fenced = messageStore.inShard(shard, false, () -> transactionTemplate.execute(status -> {
+                    Set<Long> fencedRooms = writeFence.fencedRooms(deltas.keySet().stream()
+                            .map(roomByMessage::get)
+                            .collect(Collectors.toSet()));
+                    deltas.forEach((messageId, messageDeltas) -> {
+                        if (!fencedRooms.contains(roomByMessage.get(messageId))) {
+                            messageDeltas.forEach((reaction, delta) ->
+                                    reactionCountRepository.addToCount(messageId, reaction, delta));
+                        }
+                    });
+                    return fencedRooms;
+                }));
+            } catch (RuntimeException e) {
+                log.error("Failed to flush reaction counts for {} messages on shard {}, retrying next tick",
+                        deltas.size(), shard, e);
+                deltas.forEach((messageId, messageDeltas) -> messageDeltas.forEach((reaction, delta) ->
+                        record(roomByMessage.get(messageId), messageId, reaction, delta)));
+                return;
+            }
+
+            // Rooms moved off this shard keep their deltas for the next tick
+            deltas.entrySet().removeIf(entry -> {
+                Long chatRoomId = roomByMessage.get(entry.getKey());
+                if (!fenced.contains(chatRoomId)) {
+                    return false;
+                }
+                entry.getValue().forEach((reaction, delta) -> record(chatRoomId, entry.getKey(), reaction, delta));
+                return true;
+            });
+
+            deltas.forEach((messageId, messageDeltas) -> broadcaster.broadcast(
+                    "/topic/chat/" + roomByMessage.get(messageId) + "/reaction",
+                    ReactionDeltaDto.builder().messageId(messageId).deltas(messageDeltas).build()));
+        });
+    }
+
+    private static final class MessageCounters
+    {
+        private static final int RETIRED = 1 << 31;
+
+        private final Long chatRoomId;
+        private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>(4);
+        // Writers currently adding, plus the RETIRED bit once a flush took the entry
+        private final AtomicInteger state = new AtomicInteger();
+
+        private MessageCounters(Long chatRoomId) {
+            this.chatRoomId = chatRoomId;
+        }
+
+        /**
+         * Add the delta, or return false if the entry has been retired
+         */
+        private boolean add(String reaction, long delta) {
+            if ((state.incrementAndGet() & RETIRED) != 0) {
+                state.decrementAndGet();
+                return false;
+            }
+            try {
+                counters.computeIfAbsent(reaction, r -> new LongAdder()).add(delta);
+                return true;
+            } finally {
+                state.decrementAndGet();
+            }
+        }
+
+        /**
+         * Refuse new writers and wait for the ones already adding
+         */
+        private void retire() {
+            state.getAndUpdate(current -> current | RETIRED);
+            while ((state.get() & ~RETIRED) != 0) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ShardWriteFence;
+import com.chatapp.chat_backend.dtos.ReceiptAckDto;
+import com.chatapp.chat_backend.dtos.ReceiptDto;
+import com.chatapp.chat_backend.dtos.RoomReceiptsDto;
+import com.chatapp.chat_backend.entity.RoomReceipt;
+import com.chatapp.chat_backend.repository.RoomReceiptRepository;
+import com.chatapp.chat_backend.utils.MessageStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Delivery and read receipts kept as per-user watermarks per room. Acks
+ * only move the in-memory watermark forward. Each tick persists the changed
+ * watermarks in one transaction and broadcasts one frame per room listing
+ * the users whose receipts moved, so a reader acking many messages costs a
+ * single row and a single entry per tick. Watermarks are stored on the
+ * room's message shard. Acks are clamped to the newest message of the
+ * room, so a client cannot mark messages that do not exist yet as read.
+ * Watermarks of a room that is being moved are held back by the shard's
+ * write fence until the move is done.
+ */
+@Slf4j
+@Service
+public class ReceiptService
+{
+    private final RoomReceiptRepository roomReceiptRepository;
+    private final RoomMembershipCache membershipCache;
+    private final ChatBroadcaster broadcaster;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageShardResolver shardResolver;
+    private final MessageStore messageStore;
+    private final ShardWriteFence writeFence;
+
+    private final ConcurrentHashMap<Key, Watermark> watermarks = new ConcurrentHashMap<>();
+    // Newest message ID seen per room; only refreshed when an ack goes past it
+    private final ConcurrentHashMap<Long, Long> maxMessageIds = new ConcurrentHashMap<>();
+
+    @Value("${app.receipts.idle-ttl-ms:60000}")
+    private long idleTtlMs;
+
+    public ReceiptService(
+            RoomReceiptRepository roomReceiptRepository,
+            RoomMembershipCache membershipCache,
+            ChatBroadcaster broadcaster,
+            PlatformTransactionManager transactionManager,
+            MessageShardResolver shardResolver,
+            MessageStore messageStore,
+            ShardWriteFence writeFence
+    ) {
+        this.roomReceiptRepository = roomReceiptRepository;
+        this.membershipCache = membershipCache;
+        this.broadcaster = broadcaster;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shardResolver = shardResolver;
+        this.messageStore = messageStore;
+        this.writeFence = writeFence;
+    }
+
+    /**
+     * Record that a user has received or read everything up to a message
+     */
+    public void acknowledge(Long chatRoomId, Long userId, ReceiptAckDto ack) {
+        MessageStatus status;
+        try {
+            status = MessageStatus.valueOf(ack.getStatus());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new RuntimeException("Invalid receipt status: " + ack.getStatus());
+        }
+        if (status == MessageStatus.SENT || ack.getUpToMessageId() == null) {
+            throw new RuntimeException("Receipts must be DELIVERED or READ up to a message id");
+        }
+        if (!membershipCache.isMember(chatRoomId, userId)) {
+            throw new RuntimeException("You are not a member of this chat room");
+        }
+
+        long upTo = clampToRoom(chatRoomId, ack.getUpToMessageId());
+        if (upTo <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // Reading a message implies it was delivered
+        long read = status == MessageStatus.READ ? upTo : 0;
+        watermarks.compute(new Key(chatRoomId, userId), (key, current) ->
+                current == null
+                        ? new Watermark(upTo, read, true, now)
+                        : current.advance(upTo, read, now));
+    }
+
+    /**
+     * Current watermarks of a room: persisted values plus unflushed acks
+     */
+    public List<ReceiptDto> getRoomReceipts(Long chatRoomId, Long userId) {
+        if (!membershipCache.isMember(chatRoomId, userId)) {
+            throw new RuntimeException("You are not a member of this chat room");
+        }
+
+        Map<Long, ReceiptDto> receipts = new LinkedHashMap<>();
+        for (RoomReceipt receipt : roomReceiptRepository.findByChatRoomId(chatRoomId)) {
+            receipts.put(receipt.getUserId(), ReceiptDto.builder()
+                    .userId(receipt.getUserId())
+                    .deliveredUpTo(receipt.getDeliveredUpTo())
+                    .readUpTo(receipt.getReadUpTo())
+                    .build());
+        }
+
+        for (Long memberId : membershipCache.getMemberIds(chatRoomId)) {
+            Watermark pending = watermarks.get(new Key(chatRoomId, memberId));
+            if (pending == null) {
+                continue;
+            }
+            receipts.merge(memberId, pending.toDto(memberId), (stored, live) -> ReceiptDto.builder()
+                    .userId(memberId)
+                    .deliveredUpTo(Math.max(stored.getDeliveredUpTo(), live.getDeliveredUpTo()))
+                    .readUpTo(Math.max(stored.getReadUpTo(), live.getReadUpTo()))
+                    .build());
+        }
+        return new ArrayList<>(receipts.values());
+    }
+
+    @Scheduled(fixedDelayString = "${app.receipts.flush-interval-ms:1000}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        Map<Integer, Map<Key, Watermark>> changedByShard = new HashMap<>();
+
+        for (Key key : watermarks.keySet()) {
+            // A room being moved keeps its changes until the move is done
+            if (shardResolver.isMigrating(key.chatRoomId())) {
+                continue;
+            }
+            watermarks.computeIfPresent(key, (k, watermark) -> {
+                if (watermark.dirty()) {
+                    changedByShard.computeIfAbsent(shardResolver.shardFor(k.chatRoomId()), shard -> new HashMap<>())
+                            .put(k, watermark);
+                    return watermark.clean();
+                }
+                // Idle users fall back to the persisted row
+                return now - watermark.touchedAt() > idleTtlMs ? null : watermark;
+            });
+        }
+
+        changedByShard.forEach((shard, changed) -> {
+            Set<Long> fenced;
+            try {
+                fenced = messageStore.inShard(shard, false, () -> transactionTemplate.execute(status -> {
+                    Set<Long> fencedRooms = writeFence.fencedRooms(changed.keySet().stream()
+                            .map(Key::chatRoomId)
+                            .collect(Collectors.toSet()));
+                    changed.forEach((key, watermark) -> {
+                        if (!fencedRooms.contains(key.chatRoomId())) {
+                            roomReceiptRepository.advance(key.chatRoomId(), key.userId(),
+                                    watermark.deliveredUpTo(), watermark.readUpTo());
+                        }
+                    });
+                    return fencedRooms;
+                }));
+            } catch (RuntimeException e) {
+                log.error("Failed to persist {} receipt watermarks on shard {}, retrying next tick",
+                        changed.size(), shard, e);
+                changed.forEach((key, watermark) -> requeue(key, watermark));
+                return;
+            }
+
+            // Rooms moved off this shard keep their watermarks dirty for the next tick
+            changed.entrySet().removeIf(entry -> {
+                if (!fenced.contains(entry.getKey().chatRoomId())) {
+                    return false;
+                }
+                requeue(entry.getKey(), entry.getValue());
+                return true;
+            });
+
+            Map<Long, List<ReceiptDto>> byRoom = new HashMap<>();
+            changed.forEach((key, watermark) -> byRoom.computeIfAbsent(key.chatRoomId(), id -> new ArrayList<>())
+                    .add(watermark.toDto(key.userId())));
+            byRoom.forEach((chatRoomId, receipts) -> broadcaster.broadcast(
+                    "/topic/chat/" + chatRoomId + "/receipts",
+                    RoomReceiptsDto.builder().chatRoomId(chatRoomId).receipts(receipts).build()));
+        });
+    }
+
+    private void requeue(Key key, Watermark unsaved) {
+        watermarks.merge(key, unsaved, (current, failed) ->
+                current.advance(failed.deliveredUpTo(), failed.readUpTo(), current.touchedAt()).markDirty());
+    }
+
+    private long clampToRoom(Long chatRoomId, long upTo) {
+        Long known = maxMessageIds.get(chatRoomId);
+        if (known != null && upTo <= known) {
+            return upTo;
+        }
+        long max = messageStore.findMaxMessageId(chatRoomId);
+        maxMessageIds.merge(chatRoomId, max, Math::max);
+        return Math.min(upTo, max);
+    }
+
+    private record Key(Long chatRoomId, Long userId) {}
+
+    private record Watermark(long deliveredUpTo, long readUpTo, boolean dirty, long touchedAt)
+    {
+        Watermark advance(long delivered, long read, long now) {
+            long newDelivered = Math.max(deliveredUpTo, Math.max(delivered, read));
+            long newRead = Math.max(readUpTo, read);
+            if (newDelivered == deliveredUpTo && newRead == readUpTo) {
+                return new Watermark(deliveredUpTo, readUpTo, dirty, now);
+            }
+            return new Watermark(newDelivered, newRead, true, now);
+        }
+
+        Watermark clean() {
+            return new Watermark(deliveredUpTo, readUpTo, false, touchedAt);
+        }
+
+        Watermark markDirty() {
+            return new Watermark(deliveredUpTo, readUpTo, true, touchedAt);
+        }
+
+        ReceiptDto toDto(Long userId) {
+            return ReceiptDto.builder()
+                    .userId(userId)
+                    .deliveredUpTo(deliveredUpTo)
+                    .readUpTo(readUpTo)
+                    .build();
+        }
+    }
+}
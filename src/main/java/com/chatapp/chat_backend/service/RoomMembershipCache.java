@@ -0,0 +1,123 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ReadYourWrites;
+import com.chatapp.chat_backend.datasource.ShardContext;
+import com.chatapp.chat_backend.entity.ChatRoom;
+import com.chatapp.chat_backend.repository.ChatRoomRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Cached room membership used to authorize sends and STOMP frames without a
+ * database round trip. Backed by the shared two-level cache, so a
+ * membership change on one node is seen by all of them. Each change also
+ * drops the room's members collection from this node's Hibernate
+ * second-level cache, which is otherwise only invalidated on the node that
+ * made the change. Loads read the global shard's primary, never a replica
+ * or another shard's replicated copy.
+ */
+@Component
+public class RoomMembershipCache
+{
+    private static final String NAMESPACE = "room-members";
+    private static final TypeReference<Set<Long>> MEMBER_IDS = new TypeReference<>() {};
+    private static final String MEMBERS_ROLE = ChatRoom.class.getName() + ".members";
+
+    private final ChatRoomRepository chatRoomRepository;
+    private final TwoLevelCache cache;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ReadYourWrites readYourWrites;
+    private final TransactionTemplate loadTransaction;
+
+    public RoomMembershipCache(
+            ChatRoomRepository chatRoomRepository,
+            TwoLevelCache cache,
+            EntityManagerFactory entityManagerFactory,
+            ReadYourWrites readYourWrites,
+            PlatformTransactionManager transactionManager
+    ) {
+        this.chatRoomRepository = chatRoomRepository;
+        this.cache = cache;
+        this.entityManagerFactory = entityManagerFactory;
+        this.readYourWrites = readYourWrites;
+        // A transaction of its own, so it never reuses a replica or shard connection the caller holds
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        onChange(chatRoomId -> entityManagerFactory.unwrap(SessionFactory.class).getCache()
+                .evictCollectionData(MEMBERS_ROLE, chatRoomId));
+    }
+
+    public boolean isMember(Long chatRoomId, Long userId) {
+        return getMemberIds(chatRoomId).contains(userId);
+    }
+
+    public Set<Long> getMemberIds(Long chatRoomId) {
+        return cache.get(NAMESPACE, chatRoomId, MEMBER_IDS,
+                () -> loadFromPrimary(() -> Set.copyOf(chatRoomRepository.findMemberIds(chatRoomId))));
+    }
+
+    /**
+     * Member ids of several rooms, loading all misses with one query
+     */
+    public Map<Long, Set<Long>> getMemberIds(Collection<Long> chatRoomIds) {
+        return cache.getAll(NAMESPACE, chatRoomIds, MEMBER_IDS, missing -> loadFromPrimary(() -> {
+            Map<Long, Set<Long>> members = new HashMap<>();
+            missing.forEach(id -> members.put(id, new HashSet<>()));
+            for (Object[] row : chatRoomRepository.findMemberIdsByRoomIds(missing)) {
+                members.get((Long) row[0]).add((Long) row[1]);
+            }
+            return members;
+        }));
+    }
+
+    /**
+     * Be told the id of every room whose membership changes, on any node
+     */
+    public void onChange(Consumer<Long> listener) {
+        cache.onEvict(NAMESPACE, key -> listener.accept(Long.valueOf(key)));
+    }
+
+    private <T> T loadFromPrimary(Supplier<T> query) {
+        return ShardContext.callIn(MessageShardResolver.GLOBAL_SHARD, () ->
+                readYourWrites.onPrimary(() -> loadTransaction.execute(status -> query.get())));
+    }
+
+    public void invalidate(Long chatRoomId) {
+        cache.evict(NAMESPACE, chatRoomId);
+    }
+
+    /**
+     * Invalidate once the current transaction commits, so a concurrent miss
+     * cannot reload the pre-commit membership
+     */
+    public void invalidateAfterCommit(Long chatRoomId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(chatRoomId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidate(chatRoomId);
+            }
+        });
+    }
+}
@@ -0,0 +1,254 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ShardRoutingDataSource;
+import com.chatapp.chat_backend.dtos.ShardMoveResultDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Moves a room's messages, reactions, pins, receipts and archived message
+ * rows to another shard. The archive itself is shared by every shard and
+ * stays where it is.
+ * The room is first fenced on its old shard: a room_write_fences row is
+ * inserted while the room row is locked, which waits for every write
+ * transaction already open on the room and refuses every later one (see
+ * ShardWriteFence). Its rows are then copied in keyset batches, the
+ * assignment is switched, and only then are the rows deleted from the old
+ * shard. The fence stays behind, so a node that still routes the room to
+ * the old shard is refused rather than writing rows nobody reads. A failed
+ * copy lifts the fence and leaves the room where it was; the partial copy
+ * is cleared on the next attempt.
+ *
+ * Other nodes learn about the switch through the shared cache, so a move
+ * is refused unless cache invalidations currently reach the whole cluster,
+ * or app.datasource.shards.migration.single-node says there is no cluster.
+ *
+ * A shard only holds its own messages, so replies that cross into or out
+ * of the moved room lose their reply link.
+ */
+@Slf4j
+@Service
+public class ShardRebalancer
+{
+    private final ObjectProvider<ShardRoutingDataSource> shardRoutingDataSource;
+    private final MessageShardResolver shardResolver;
+    private final TwoLevelCache cache;
+    private final Set<Long> moving = ConcurrentHashMap.newKeySet();
+
+    @Value("${app.datasource.shards.migration.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.datasource.shards.migration.single-node:false}")
+    private boolean singleNode;
+
+    public ShardRebalancer(
+            ObjectProvider<ShardRoutingDataSource> shardRoutingDataSource,
+            MessageShardResolver shardResolver,
+            TwoLevelCache cache
+    ) {
+        this.shardRoutingDataSource = shardRoutingDataSource;
+        this.shardResolver = shardResolver;
+        this.cache = cache;
+    }
+
+    public ShardMoveResultDto moveRoom(Long chatRoomId, int targetShard) {
+        ShardRoutingDataSource routing = shardRoutingDataSource.getIfAvailable();
+        if (routing == null) {
+            throw new RuntimeException("Message sharding is not enabled");
+        }
+        if (targetShard < 0 || targetShard >= routing.getShardCount()) {
+            throw new RuntimeException("Unknown shard: " + targetShard);
+        }
+        int sourceShard = shardResolver.shardFor(chatRoomId);
+        if (sourceShard == targetShard) {
+            throw new RuntimeException("Chat room " + chatRoomId + " is already on shard " + targetShard);
+        }
+        if (!singleNode && !cache.isClusterWide()) {
+            throw new RuntimeException("Moving a chat room needs cluster-wide cache invalidation: enable " +
+                    "app.cache.redis.enabled and make sure Redis is reachable, or set " +
+                    "app.datasource.shards.migration.single-node on a single-node deployment");
+        }
+        if (!moving.add(chatRoomId)) {
+            throw new RuntimeException("Chat room " + chatRoomId + " is already being moved");
+        }
+
+        log.info("Moving chat room {} from shard {} to shard {}", chatRoomId, sourceShard, targetShard);
+        long startedAt = System.currentTimeMillis();
+        JdbcTemplate source = new JdbcTemplate(routing.getShard(sourceShard));
+        JdbcTemplate target = new JdbcTemplate(routing.getShard(targetShard));
+        long moved;
+        try {
+            // Lets the edges refuse early; the fence is what actually stops writes
+            shardResolver.assign(chatRoomId, sourceShard, true);
+            try {
+                // Left behind by an earlier move off the target
+                target.update("DELETE FROM room_write_fences WHERE chat_room_id = ?", chatRoomId);
+                fence(routing.getShard(sourceShard), chatRoomId);
+                deleteRoom(target, chatRoomId);
+                moved = copyRoom(source, target, chatRoomId);
+                shardResolver.assign(chatRoomId, targetShard, false);
+            } catch (RuntimeException e) {
+                abort(source, chatRoomId, sourceShard);
+                throw new RuntimeException("Failed to move chat room " + chatRoomId + ": " + e.getMessage(), e);
+            }
+            if (!cache.isClusterWide() && !singleNode) {
+                log.warn("Chat room {} moved while cache invalidations are pending; nodes that still route it " +
+                        "to shard {} are refused by the fence until they catch up", chatRoomId, sourceShard);
+            }
+
+            try {
+                deleteRoom(source, chatRoomId);
+            } catch (RuntimeException e) {
+                // Never read again; cleared if the room ever moves back
+                log.warn("Chat room {} moved, but its rows on shard {} could not be removed", chatRoomId, sourceShard, e);
+            }
+        } finally {
+            moving.remove(chatRoomId);
+        }
+
+        long durationMs = System.currentTimeMillis() - startedAt;
+        log.info("Moved {} messages of chat room {} to shard {} in {} ms", moved, chatRoomId, targetShard, durationMs);
+        return ShardMoveResultDto.builder()
+                .chatRoomId(chatRoomId)
+                .sourceShard(sourceShard)
+                .targetShard(targetShard)
+                .messagesMoved(moved)
+                .durationMs(durationMs)
+                .build();
+    }
+
+    /**
+     * Fence a room on a shard. Locking the room row waits for the write
+     * transactions that already share-locked it, and once the fence commits
+     * every later writer finds it.
+     */
+    private static void fence(DataSource shard, Long chatRoomId) {
+        JdbcTemplate jdbc = new JdbcTemplate(shard);
+        new TransactionTemplate(new DataSourceTransactionManager(shard)).executeWithoutResult(status -> {
+            jdbc.queryForList("SELECT id FROM chat_rooms WHERE id = ? FOR UPDATE", Long.class, chatRoomId);
+            jdbc.update("INSERT IGNORE INTO room_write_fences (chat_room_id, created_at) VALUES (?, NOW())",
+                    chatRoomId);
+        });
+    }
+
+    private void abort(JdbcTemplate source, Long chatRoomId, int sourceShard) {
+        try {
+            source.update("DELETE FROM room_write_fences WHERE chat_room_id = ?", chatRoomId);
+        } catch (RuntimeException e) {
+            // Writes to the room stay refused until the fence row is removed
+            log.error("Failed to lift the write fence of chat room {} on shard {}", chatRoomId, sourceShard, e);
+        }
+        shardResolver.assign(chatRoomId, sourceShard, false);
+    }
+
+    private long copyRoom(JdbcTemplate source, JdbcTemplate target, Long chatRoomId) {
+        long moved = 0;
+        long lastId = 0;
+        while (true) {
+            // Replies are copied in id order, so a reply's target is always copied first
+            List<Map<String, Object>> messages = source.queryForList(
+                    "SELECT m.*, r.chat_room_id AS reply_room_id FROM messages m " +
+                            "LEFT JOIN messages r ON r.id = m.reply_to_id " +
+                            "WHERE m.chat_room_id = ? AND m.id > ? ORDER BY m.id LIMIT ?",
+                    chatRoomId, lastId, batchSize);
+            if (messages.isEmpty()) {
+                break;
+            }
+            for (Map<String, Object> message : messages) {
+                Object replyRoomId = message.remove("reply_room_id");
+                if (replyRoomId == null || ((Number) replyRoomId).longValue() != chatRoomId) {
+                    message.put("reply_to_id", null);
+                }
+            }
+
+            List<Long> ids = messages.stream()
+                    .map(message -> ((Number) message.get("id")).longValue())
+                    .collect(Collectors.toList());
+            String in = placeholders(ids.size());
+            insertRows(target, "messages", messages);
+            insertRows(target, "message_reactions",
+                    source.queryForList("SELECT * FROM message_reactions WHERE message_id IN (" + in + ")", ids.toArray()));
+            insertRows(target, "message_reaction_counts",
+                    source.queryForList("SELECT * FROM message_reaction_counts WHERE message_id IN (" + in + ")", ids.toArray()));
+
+            moved += messages.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+
+        long lastArchivedId = 0;
+        while (true) {
+            List<Map<String, Object>> archived = source.queryForList(
+                    "SELECT * FROM archived_messages WHERE chat_room_id = ? AND message_id > ? " +
+                            "ORDER BY message_id LIMIT ?",
+                    chatRoomId, lastArchivedId, batchSize);
+            if (archived.isEmpty()) {
+                break;
+            }
+            insertRows(target, "archived_messages", archived);
+            lastArchivedId = ((Number) archived.get(archived.size() - 1).get("message_id")).longValue();
+        }
+
+        insertRows(target, "pinned_messages",
+                source.queryForList("SELECT * FROM pinned_messages WHERE chat_room_id = ?", chatRoomId));
+        insertRows(target, "room_receipts",
+                source.queryForList("SELECT * FROM room_receipts WHERE chat_room_id = ?", chatRoomId));
+        return moved;
+    }
+
+    /**
+     * Remove a room's rows from one shard, newest messages first so replies
+     * go before the messages they point at
+     */
+    private void deleteRoom(JdbcTemplate shard, Long chatRoomId) {
+        shard.update("UPDATE messages m JOIN messages r ON m.reply_to_id = r.id SET m.reply_to_id = NULL " +
+                "WHERE r.chat_room_id = ? AND m.chat_room_id <> ?", chatRoomId, chatRoomId);
+        shard.update("DELETE FROM pinned_messages WHERE chat_room_id = ?", chatRoomId);
+        shard.update("DELETE FROM room_receipts WHERE chat_room_id = ?", chatRoomId);
+        int archivedDeleted;
+        do {
+            archivedDeleted = shard.update("DELETE FROM archived_messages WHERE chat_room_id = ? LIMIT ?",
+                    chatRoomId, batchSize);
+        } while (archivedDeleted > 0);
+
+        while (true) {
+            List<Long> ids = shard.queryForList(
+                    "SELECT id FROM messages WHERE chat_room_id = ? ORDER BY id DESC LIMIT ?",
+                    Long.class, chatRoomId, batchSize);
+            if (ids.isEmpty()) {
+                return;
+            }
+            String in = placeholders(ids.size());
+            shard.update("DELETE FROM message_reaction_counts WHERE message_id IN (" + in + ")", ids.toArray());
+            shard.update("DELETE FROM message_reactions WHERE message_id IN (" + in + ")", ids.toArray());
+            shard.update("DELETE FROM messages WHERE id IN (" + in + ") ORDER BY id DESC", ids.toArray());
+        }
+    }
+
+    private static void insertRows(JdbcTemplate target, String table, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        String sql = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" +
+                placeholders(columns.size()) + ")";
+        target.batchUpdate(sql, rows.stream()
+                .map(row -> columns.stream().map(row::get).toArray())
+                .collect(Collectors.toList()));
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
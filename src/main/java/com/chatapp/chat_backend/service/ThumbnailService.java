@@ -0,0 +1,251 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.attachment.ThumbnailRenderer;
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ShardContext;
+import com.chatapp.chat_backend.dtos.MessageResponseDto;
+import com.chatapp.chat_backend.dtos.ThumbnailDto;
+import com.chatapp.chat_backend.dtos.ThumbnailReadyDto;
+import com.chatapp.chat_backend.dtos.ThumbnailStatsDto;
+import com.chatapp.chat_backend.entity.Attachment;
+import com.chatapp.chat_backend.repository.AttachmentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.awt.Dimension;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Renders thumbnails and previews for image and video attachments in the
+ * background. Work goes to a small, low-priority pool behind a bounded
+ * queue; when the queue is full the request is dropped rather than making
+ * an upload or send wait, and the next upload, send or thumbnail download
+ * of that content asks again. Renders are per content, so identical
+ * uploads share one. When a message was sent before its thumbnail was
+ * ready, a ThumbnailReadyDto goes out on /topic/chat/{roomId}/thumbnail
+ * once it is, and clients set the thumbnail on the message with that id.
+ */
+@Slf4j
+@Service
+public class ThumbnailService
+{
+    private final ThumbnailRenderer renderer;
+    private final AttachmentRepository attachmentRepository;
+    private final MessageStore messageStore;
+    private final ChatBroadcaster broadcaster;
+    private final TransactionTemplate globalTransaction;
+
+    private final boolean enabled;
+    private final int threads;
+    private final int queueSize;
+
+    private final ConcurrentHashMap<String, Job> jobs = new ConcurrentHashMap<>();
+    private final LongAdder rendered = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder eventsPublished = new LongAdder();
+    private volatile long lastRenderMs;
+
+    private ThreadPoolExecutor executor;
+
+    public ThumbnailService(
+            ThumbnailRenderer renderer,
+            AttachmentRepository attachmentRepository,
+            MessageStore messageStore,
+            ChatBroadcaster broadcaster,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.thumbnails.enabled:false}") boolean enabled,
+            @Value("${app.thumbnails.threads:2}") int threads,
+            @Value("${app.thumbnails.queue-size:200}") int queueSize
+    ) {
+        this.renderer = renderer;
+        this.attachmentRepository = attachmentRepository;
+        this.messageStore = messageStore;
+        this.broadcaster = broadcaster;
+        this.globalTransaction = new TransactionTemplate(transactionManager);
+        this.globalTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.threads = threads;
+        this.queueSize = queueSize;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger count = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnail-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        log.info("Thumbnail rendering enabled with {} threads", threads);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Start rendering an attachment's content, unless it has a thumbnail
+     */
+    public void request(Attachment attachment) {
+        if (attachment.getThumbnailWidth() == null) {
+            submit(attachment, null);
+        }
+    }
+
+    /**
+     * Tell the message's room once its thumbnail is rendered
+     */
+    public void announceWhenReady(Attachment attachment, MessageResponseDto message) {
+        if (message.getThumbnail() == null) {
+            submit(attachment, new Waiter(message.getId(), message.getChatRoomId(), message.getAttachmentId()));
+        }
+    }
+
+    /**
+     * Whether content of this type gets a thumbnail at all
+     */
+    public boolean isRenderable(Attachment attachment) {
+        return enabled && renderer.canRender(attachment.getContentType());
+    }
+
+    public static ThumbnailDto describe(Attachment attachment) {
+        if (attachment.getThumbnailWidth() == null) {
+            return null;
+        }
+        return describe(attachment.getId(), attachment.getThumbnailWidth(), attachment.getThumbnailHeight());
+    }
+
+    /**
+     * Thumbnails of the given attachments, for those that have one
+     */
+    public Map<Long, ThumbnailDto> findThumbnails(Collection<Long> attachmentIds) {
+        if (attachmentIds.isEmpty()) {
+            return Map.of();
+        }
+        return messageStore.inShard(MessageShardResolver.GLOBAL_SHARD, true,
+                        () -> attachmentRepository.findAllById(attachmentIds))
+                .stream()
+                .filter(attachment -> attachment.getThumbnailWidth() != null)
+                .collect(Collectors.toMap(Attachment::getId, ThumbnailService::describe));
+    }
+
+    public ThumbnailStatsDto getStats() {
+        return ThumbnailStatsDto.builder()
+                .enabled(enabled)
+                .rendered(rendered.sum())
+                .failed(failed.sum())
+                .rejected(rejected.sum())
+                .eventsPublished(eventsPublished.sum())
+                .queued(executor != null ? executor.getQueue().size() : 0)
+                .inFlight(jobs.size())
+                .lastRenderMs(lastRenderMs)
+                .build();
+    }
+
+    private void submit(Attachment attachment, Waiter waiter) {
+        if (!isRenderable(attachment)) {
+            return;
+        }
+
+        String sha256 = attachment.getSha256();
+        boolean[] created = new boolean[1];
+        Job job = jobs.compute(sha256, (key, current) -> {
+            Job next = current != null ? current : new Job(attachment.getContentType());
+            created[0] = current == null;
+            if (waiter != null) {
+                next.waiters.add(waiter);
+            }
+            return next;
+        });
+        if (!created[0]) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> render(sha256, job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(sha256, job);
+            rejected.increment();
+            log.debug("Thumbnail queue full, skipped rendering {}", sha256);
+        }
+    }
+
+    private void render(String sha256, Job job) {
+        long startedAt = System.currentTimeMillis();
+        Dimension size = null;
+        try {
+            size = renderer.render(sha256, job.contentType);
+            Dimension thumbnail = size;
+            ShardContext.runIn(MessageShardResolver.GLOBAL_SHARD, () -> globalTransaction.execute(status ->
+                    attachmentRepository.setThumbnail(sha256, thumbnail.width, thumbnail.height)));
+            rendered.increment();
+            lastRenderMs = System.currentTimeMillis() - startedAt;
+        } catch (Exception e) {
+            failed.increment();
+            log.warn("Failed to render thumbnail for {}: {}", sha256, e.getMessage());
+        }
+
+        // Waiters added from here on start a new job, which finds the cached render
+        List<Waiter> waiters = new ArrayList<>();
+        jobs.computeIfPresent(sha256, (key, current) -> {
+            if (current != job) {
+                return current;
+            }
+            waiters.addAll(job.waiters);
+            return null;
+        });
+        if (size == null) {
+            return;
+        }
+
+        for (Waiter waiter : waiters) {
+            broadcaster.broadcast("/topic/chat/" + waiter.chatRoomId() + "/thumbnail", ThumbnailReadyDto.builder()
+                    .messageId(waiter.messageId())
+                    .attachmentId(waiter.attachmentId())
+                    .thumbnail(describe(waiter.attachmentId(), size.width, size.height))
+                    .build());
+            eventsPublished.increment();
+        }
+    }
+
+    private static ThumbnailDto describe(Long attachmentId, int width, int height) {
+        return ThumbnailDto.builder()
+                .url(AttachmentService.urlFor(attachmentId) + "/thumbnail")
+                .previewUrl(AttachmentService.urlFor(attachmentId) + "/preview")
+                .width(width)
+                .height(height)
+                .build();
+    }
+
+    private record Waiter(Long messageId, Long chatRoomId, Long attachmentId) {}
+
+    private static final class Job
+    {
+        private final String contentType;
+        private final List<Waiter> waiters = new ArrayList<>(); // guarded by the jobs map
+
+        private Job(String contentType) {
+            this.contentType = contentType;
+        }
+    }
+}
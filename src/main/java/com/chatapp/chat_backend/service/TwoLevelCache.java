@@ -0,0 +1,439 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.dtos.TwoLevelCacheStatsDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Two-level cache shared by all nodes. L1 is a size-bounded Caffeine cache,
+ * which evicts in amortized constant time once it is full. L2
+ * is Redis, holding JSON values under chat:cache:{namespace}:{key}.
+ * Evictions delete the L2 entry, bump the key's version under
+ * chat:cache-version:{namespace}:{key} and are published on
+ * chat:cache:invalidate, so every other node drops its L1 copy. A load
+ * only writes L2 if the version it read before going to the database is
+ * still current, and only keeps its L1 copy if no eviction for the key
+ * arrived meanwhile, so an eviction racing a load never leaves a stale
+ * value behind.
+ *
+ * When Redis is disabled the cache is node-local. When Redis is failing
+ * the cache drops L1, keeps new L1 entries only for the degraded TTL, and
+ * queues evictions until Redis answers again, then deletes and publishes
+ * them.
+ */
+@Slf4j
+@Component
+public class TwoLevelCache
+{
+    public static final String INVALIDATION_CHANNEL = "chat:cache:invalidate";
+
+    private static final String KEY_PREFIX = "chat:cache:";
+    private static final String VERSION_PREFIX = "chat:cache-version:";
+    private static final int INVALIDATION_STRIPES = 256;
+
+    // Writes KEYS[1] unless KEYS[2], the key's version, moved since ARGV[1] was read
+    private static final RedisScript<Long> PUT_IF_CURRENT = new DefaultRedisScript<>(
+            "if (redis.call('GET', KEYS[2]) or '0') ~= ARGV[1] then return 0 end "
+                    + "redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) return 1", Long.class);
+    private static final RedisScript<Long> INVALIDATE = new DefaultRedisScript<>(
+            "redis.call('DEL', KEYS[1]) local version = redis.call('INCR', KEYS[2]) "
+                    + "redis.call('PEXPIRE', KEYS[2], ARGV[1]) return version", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final String nodeId;
+    private final boolean redisEnabled;
+    private final long ttlMs;
+    private final long redisRetryMs;
+    private final long degradedTtlMs;
+
+    private final Cache<String, Entry> local;
+    // One load per key at a time; the map is never locked while it runs
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+    // Bumped on every eviction seen by this node, so a load can tell it raced one
+    private final AtomicLongArray invalidationStripes = new AtomicLongArray(INVALIDATION_STRIPES);
+    private final Set<String> pendingInvalidations = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, List<Consumer<String>>> evictionListeners = new ConcurrentHashMap<>();
+    private volatile long redisDownUntil;
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder redisErrors = new LongAdder();
+    private final LongAdder remoteInvalidations = new LongAdder();
+
+    public TwoLevelCache(
+            StringRedisTemplate redisTemplate,
+            ObjectMapper objectMapper,
+            @Value("${app.cluster.node-id:${random.uuid}}") String nodeId,
+            @Value("${app.cache.redis.enabled:false}") boolean redisEnabled,
+            @Value("${app.cache.ttl-ms:300000}") long ttlMs,
+            @Value("${app.cache.l1.max-entries:50000}") int maxEntries,
+            @Value("${app.cache.redis.retry-ms:10000}") long redisRetryMs,
+            @Value("${app.cache.degraded-ttl-ms:5000}") long degradedTtlMs
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.nodeId = nodeId;
+        this.redisEnabled = redisEnabled;
+        this.ttlMs = ttlMs;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                // Entries carry their own, possibly shorter, expiry; this only sheds dead ones
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+        this.redisRetryMs = redisRetryMs;
+        this.degradedTtlMs = degradedTtlMs;
+    }
+
+    /**
+     * Get a value, falling through L1, then Redis, then the loader.
+     * Concurrent L1 misses for the same key share a single load.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String namespace, Object key, TypeReference<T> type, Supplier<T> loader) {
+        String cacheKey = namespace + ":" + key;
+        Entry entry = local.getIfPresent(cacheKey);
+        if (entry != null && entry.expiresAt() > System.currentTimeMillis()) {
+            localHits.increment();
+            return (T) entry.value();
+        }
+
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> running = loading.putIfAbsent(cacheKey, load);
+        if (running != null) {
+            return (T) await(running);
+        }
+        try {
+            long stripe = invalidationStripe(cacheKey);
+            T value = loadThrough(cacheKey, type, loader);
+            putLocalUnlessInvalidated(cacheKey, value, stripe);
+            load.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(cacheKey, load);
+        }
+    }
+
+    /**
+     * Get many values at once: L1 first, then one pipelined round trip to
+     * Redis, then a single batch load for whatever is still missing
+     */
+    @SuppressWarnings("unchecked")
+    public <K, T> Map<K, T> getAll(String namespace, Collection<K> keys, TypeReference<T> type,
+                                   Function<Collection<K>, Map<K, T>> loader) {
+        long now = System.currentTimeMillis();
+        Map<K, T> values = new HashMap<>();
+        List<K> missing = new ArrayList<>();
+        for (K key : keys) {
+            Entry entry = local.getIfPresent(namespace + ":" + key);
+            if (entry != null && entry.expiresAt() > now) {
+                values.put(key, (T) entry.value());
+                localHits.increment();
+            } else {
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return values;
+        }
+
+        Map<K, Long> stripes = new HashMap<>();
+        missing.forEach(key -> stripes.put(key, invalidationStripe(namespace + ":" + key)));
+        Map<K, String> versions = new HashMap<>();
+        if (redisUsable()) {
+            try {
+                // Value and version of each key, in that order
+                List<Object> cached = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    for (K key : missing) {
+                        connection.stringCommands().get(redisKey(namespace + ":" + key));
+                        connection.stringCommands().get(versionKey(namespace + ":" + key));
+                    }
+                    return null;
+                });
+                Iterator<Object> results = cached.iterator();
+                Iterator<K> pending = missing.iterator();
+                while (pending.hasNext()) {
+                    K key = pending.next();
+                    Object json = results.next();
+                    Object version = results.next();
+                    versions.put(key, version != null ? (String) version : "0");
+                    if (json != null) {
+                        T value = objectMapper.readValue((String) json, type);
+                        values.put(key, value);
+                        putLocalUnlessInvalidated(namespace + ":" + key, value, stripes.get(key));
+                        redisHits.increment();
+                        pending.remove();
+                    }
+                }
+            } catch (DataAccessException e) {
+                markRedisDown(e);
+                versions.clear();
+            } catch (JsonProcessingException e) {
+                log.warn("Ignoring unreadable cache entries in namespace {}", namespace, e);
+            }
+        }
+        if (missing.isEmpty()) {
+            return values;
+        }
+
+        Map<K, T> loaded = loader.apply(missing);
+        loads.increment();
+        loaded.forEach((key, value) -> {
+            values.put(key, value);
+            putLocalUnlessInvalidated(namespace + ":" + key, value, stripes.get(key));
+        });
+        writeAll(namespace, loaded, versions);
+        return values;
+    }
+
+    /**
+     * Drop a key on every node. With Redis failing the key is dropped
+     * here at once and everywhere else once Redis is back.
+     */
+    public void evict(String namespace, Object key) {
+        String cacheKey = namespace + ":" + key;
+        invalidateLocal(cacheKey);
+        if (!redisEnabled) {
+            return;
+        }
+        if (!redisUsable() || !invalidateRemote(cacheKey)) {
+            pendingInvalidations.add(cacheKey);
+        }
+    }
+
+    /**
+     * Be told, with the key, whenever a key of the namespace is evicted on
+     * this node or by another one
+     */
+    public void onEvict(String namespace, Consumer<String> listener) {
+        evictionListeners.computeIfAbsent(namespace, name -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Handle an invalidation published by any node
+     */
+    public void onInvalidation(String message) {
+        int separator = message.indexOf('|');
+        if (separator < 0 || message.substring(0, separator).equals(nodeId)) {
+            return;
+        }
+        invalidateLocal(message.substring(separator + 1));
+        remoteInvalidations.increment();
+    }
+
+    /**
+     * Replay evictions that could not reach Redis
+     */
+    @Scheduled(fixedDelayString = "${app.cache.redis.retry-ms:10000}")
+    public void retryInvalidations() {
+        for (String cacheKey : pendingInvalidations) {
+            if (!redisUsable() || !invalidateRemote(cacheKey)) {
+                return;
+            }
+            pendingInvalidations.remove(cacheKey);
+        }
+    }
+
+    /**
+     * Whether evictions currently reach every node: Redis is enabled and
+     * reachable and no invalidation is waiting to be retried
+     */
+    public boolean isClusterWide() {
+        return redisUsable() && pendingInvalidations.isEmpty();
+    }
+
+    public TwoLevelCacheStatsDto getStats() {
+        local.cleanUp();
+        return TwoLevelCacheStatsDto.builder()
+                .redisEnabled(redisEnabled)
+                .redisAvailable(redisUsable())
+                .localEntries((int) local.estimatedSize())
+                .localHits(localHits.sum())
+                .redisHits(redisHits.sum())
+                .loads(loads.sum())
+                .redisErrors(redisErrors.sum())
+                .remoteInvalidations(remoteInvalidations.sum())
+                .pendingInvalidations(pendingInvalidations.size())
+                .build();
+    }
+
+    private <T> T loadThrough(String cacheKey, TypeReference<T> type, Supplier<T> loader) {
+        String version = null;
+        if (redisUsable()) {
+            try {
+                List<String> cached = redisTemplate.opsForValue().multiGet(
+                        List.of(KEY_PREFIX + cacheKey, VERSION_PREFIX + cacheKey));
+                version = cached.get(1) != null ? cached.get(1) : "0";
+                if (cached.get(0) != null) {
+                    T value = objectMapper.readValue(cached.get(0), type);
+                    redisHits.increment();
+                    return value;
+                }
+            } catch (DataAccessException e) {
+                markRedisDown(e);
+            } catch (JsonProcessingException e) {
+                log.warn("Ignoring unreadable cache entry {}", cacheKey, e);
+            }
+        }
+
+        T value = loader.get();
+        loads.increment();
+        // Without a version read before the load, the write could not be checked
+        if (version != null && redisUsable()) {
+            try {
+                redisTemplate.execute(PUT_IF_CURRENT, List.of(KEY_PREFIX + cacheKey, VERSION_PREFIX + cacheKey),
+                        version, objectMapper.writeValueAsString(value), String.valueOf(ttlMs));
+            } catch (DataAccessException e) {
+                markRedisDown(e);
+            } catch (JsonProcessingException e) {
+                log.warn("Not caching unserializable value for {}", cacheKey, e);
+            }
+        }
+        return value;
+    }
+
+    private <K, T> void writeAll(String namespace, Map<K, T> values, Map<K, String> versions) {
+        if (values.isEmpty() || versions.isEmpty() || !redisUsable()) {
+            return;
+        }
+        try {
+            byte[] script = PUT_IF_CURRENT.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+            byte[] ttl = String.valueOf(ttlMs).getBytes(StandardCharsets.UTF_8);
+            List<byte[][]> writes = new ArrayList<>();
+            for (Map.Entry<K, T> entry : values.entrySet()) {
+                String version = versions.get(entry.getKey());
+                if (version == null) {
+                    continue;
+                }
+                String cacheKey = namespace + ":" + entry.getKey();
+                writes.add(new byte[][] {redisKey(cacheKey), versionKey(cacheKey),
+                        version.getBytes(StandardCharsets.UTF_8), objectMapper.writeValueAsBytes(entry.getValue()), ttl});
+            }
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                writes.forEach(args -> connection.scriptingCommands().eval(script, ReturnType.INTEGER, 2, args));
+                return null;
+            });
+        } catch (DataAccessException e) {
+            markRedisDown(e);
+        } catch (JsonProcessingException e) {
+            log.warn("Not caching unserializable values in namespace {}", namespace, e);
+        }
+    }
+
+    private boolean invalidateRemote(String cacheKey) {
+        try {
+            // Versions outlive any value written under them, so a load slower than that is the only blind spot
+            redisTemplate.execute(INVALIDATE, List.of(KEY_PREFIX + cacheKey, VERSION_PREFIX + cacheKey),
+                    String.valueOf(ttlMs * 2));
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, nodeId + "|" + cacheKey);
+            return true;
+        } catch (DataAccessException e) {
+            markRedisDown(e);
+            return false;
+        }
+    }
+
+    private void invalidateLocal(String cacheKey) {
+        // Bump first: a load that already installed its entry sees the bump and removes it
+        invalidationStripes.incrementAndGet(stripeOf(cacheKey));
+        loading.remove(cacheKey);
+        local.invalidate(cacheKey);
+
+        int separator = cacheKey.indexOf(':');
+        List<Consumer<String>> listeners = separator < 0 ? null
+                : evictionListeners.get(cacheKey.substring(0, separator));
+        if (listeners != null) {
+            String key = cacheKey.substring(separator + 1);
+            for (Consumer<String> listener : listeners) {
+                try {
+                    listener.accept(key);
+                } catch (RuntimeException e) {
+                    log.warn("Eviction listener failed for {}", cacheKey, e);
+                }
+            }
+        }
+    }
+
+    private long invalidationStripe(String cacheKey) {
+        return invalidationStripes.get(stripeOf(cacheKey));
+    }
+
+    private static int stripeOf(String cacheKey) {
+        return (cacheKey.hashCode() & Integer.MAX_VALUE) % INVALIDATION_STRIPES;
+    }
+
+    private void putLocalUnlessInvalidated(String cacheKey, Object value, long stripe) {
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(value, now + (redisEnabled && !redisUsable() ? degradedTtlMs : ttlMs));
+        local.put(cacheKey, entry);
+        if (invalidationStripe(cacheKey) != stripe) {
+            local.asMap().remove(cacheKey, entry);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private boolean redisUsable() {
+        return redisEnabled && System.currentTimeMillis() >= redisDownUntil;
+    }
+
+    private void markRedisDown(DataAccessException e) {
+        redisErrors.increment();
+        if (System.currentTimeMillis() >= redisDownUntil) {
+            // Invalidations from other nodes are lost while Redis is down, so stop trusting L1
+            local.invalidateAll();
+            log.warn("Redis unavailable, serving from the local cache with a {} ms TTL for {} ms",
+                    degradedTtlMs, redisRetryMs, e);
+        }
+        redisDownUntil = System.currentTimeMillis() + redisRetryMs;
+    }
+
+    private static byte[] redisKey(String cacheKey) {
+        return (KEY_PREFIX + cacheKey).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] versionKey(String cacheKey) {
+        return (VERSION_PREFIX + cacheKey).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record Entry(Object value, long expiresAt) {}
+}
@@ -10,6 +10,8 @@ import lombok.RequiredArgsConstructor;
 import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -19,8 +21,15 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class UserService
 {
+    /**
+     * Nothing is cached under this namespace; evicting a user id from it
+     * tells every node that the user's profile changed
+     */
+    public static final String PROFILE_NAMESPACE = "user-profiles";
+
     private final UserRepository userRepository;
     private final ModelMapper modelMapper;
+    private final TwoLevelCache cache;
 
     public UserResponseDto getUserById(Long id) {
         User user = userRepository.findById(id)
@@ -68,6 +77,7 @@ public class UserService
         }
 
         user = userRepository.save(user);
+        evictProfileAfterCommit(id);
         return modelMapper.map(user, UserResponseDto.class);
     }
 
@@ -89,4 +99,17 @@ public class UserService
         user.setIsActive(false);
         userRepository.save(user);
     }
+
+    private void evictProfileAfterCommit(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.evict(PROFILE_NAMESPACE, userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.evict(PROFILE_NAMESPACE, userId);
+            }
+        });
+    }
 }
@@ -0,0 +1,431 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ShardContext;
+import com.chatapp.chat_backend.dtos.*;
+import com.chatapp.chat_backend.entity.Attachment;
+import com.chatapp.chat_backend.exception.RoomMigratingException;
+import com.chatapp.chat_backend.repository.MessageRepository;
+import com.chatapp.chat_backend.utils.MessageStatus;
+import com.chatapp.chat_backend.utils.MessageType;
+import com.chatapp.chat_backend.wal.MessageWal;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accepts sends into the write-ahead log and applies them to the database
+ * in the background. A send is acknowledged once its record is durable, so
+ * the request thread never touches MySQL: membership comes from the cache
+ * and the acknowledgement names the sender by ID only. Records are queued
+ * in log order as their sequences are assigned, and the single apply
+ * thread inserts them in that order through MessageService, once each is
+ * durable, so messages of a room are stored in the order they were
+ * acknowledged and the outbox, dedup cache and notifications behave as for
+ * a direct send. Every record carries a client message ID, which makes
+ * re-applying it after a crash a no-op.
+ *
+ * Records of a room that is being moved to another shard are parked, in
+ * log order, while the other rooms' records keep being applied; they are
+ * retried once the move is over. The applied sequence stays below the
+ * oldest parked record, so a restart replays them.
+ */
+@Slf4j
+@Service
+public class WalMessageService
+{
+    private static final String SEND_FAILURE_DESTINATION = "/queue/send-failures";
+
+    private final MessageWal wal;
+    private final MessageService messageService;
+    private final AttachmentService attachmentService;
+    private final MessageRepository messageRepository;
+    private final RoomMembershipCache membershipCache;
+    private final MessageDedupCache dedupCache;
+    private final MessageShardResolver shardResolver;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final long retryMs;
+    private final int checkpointEvery;
+
+    private final BlockingQueue<Pending> pending = new LinkedBlockingQueue<>();
+    // Owned by the apply thread
+    private final Map<Long, Queue<Pending>> parked = new LinkedHashMap<>();
+    private long takenSequence;
+    private long parkedRetryAt;
+    private int sinceCheckpoint;
+    private volatile int parkedRecords;
+
+    private final LongAdder appliedMessages = new LongAdder();
+    private final LongAdder duplicateMessages = new LongAdder();
+    private final LongAdder rejectedMessages = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private volatile long lastApplyLagMs;
+
+    private volatile boolean running;
+    private final CountDownLatch stopping = new CountDownLatch(1);
+    private Thread applyThread;
+
+    public WalMessageService(
+            MessageWal wal,
+            MessageService messageService,
+            AttachmentService attachmentService,
+            MessageRepository messageRepository,
+            RoomMembershipCache membershipCache,
+            MessageDedupCache dedupCache,
+            MessageShardResolver shardResolver,
+            SimpMessagingTemplate messagingTemplate,
+            ObjectMapper objectMapper,
+            @Value("${app.wal.enabled:false}") boolean enabled,
+            @Value("${app.wal.retry-ms:1000}") long retryMs,
+            @Value("${app.wal.checkpoint-every:500}") int checkpointEvery
+    ) {
+        this.wal = wal;
+        this.messageService = messageService;
+        this.attachmentService = attachmentService;
+        this.messageRepository = messageRepository;
+        this.membershipCache = membershipCache;
+        this.dedupCache = dedupCache;
+        this.shardResolver = shardResolver;
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.retryMs = retryMs;
+        this.checkpointEvery = checkpointEvery;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        // Replay whatever was acknowledged but not yet applied before the last stop
+        for (MessageWal.Record record : wal.open()) {
+            try {
+                pending.add(new Pending(record.sequence(),
+                        objectMapper.readValue(record.payload(), LoggedMessageDto.class)));
+            } catch (Exception e) {
+                log.error("Skipping unreadable message log record {}", record.sequence(), e);
+                pending.add(new Pending(record.sequence(), null));
+            }
+        }
+
+        running = true;
+        applyThread = new Thread(this::applyLoop, "wal-apply");
+        applyThread.setDaemon(true);
+        applyThread.start();
+        log.info("Message write-ahead log enabled with {} records to replay", pending.size());
+    }
+
+    /**
+     * Stop applying without interrupting the apply thread: an interrupt
+     * would close the log's checkpoint channel under a checkpoint write.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        stopping.countDown();
+        if (applyThread != null) {
+            // Wakes the apply thread if it is waiting for records
+            pending.add(new Pending(-1, null));
+            applyThread.join(5000);
+            if (applyThread.isAlive()) {
+                log.warn("Message log apply thread did not stop in time");
+            }
+            wal.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Log a send and acknowledge it once the record is durable. The returned
+     * message has no ID yet and names its sender by ID only; the room
+     * broadcast carries the stored one.
+     */
+    public MessageResponseDto accept(Long chatRoomId, SendMessageRequestDto request, Long senderId) {
+        if (!membershipCache.isMember(chatRoomId, senderId)) {
+            throw new RuntimeException("You are not a member of this chat room");
+        }
+        MessageType type;
+        try {
+            type = MessageType.valueOf(request.getType() != null ? request.getType() : "TEXT");
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid message type: " + request.getType());
+        }
+        Attachment attachment = request.getAttachmentId() != null
+                ? attachmentService.getForMessage(request.getAttachmentId(), senderId)
+                : null;
+        if (attachment != null && request.getType() == null) {
+            type = AttachmentService.messageTypeFor(attachment);
+        }
+        if (request.getClientMessageId() == null) {
+            request.setClientMessageId(UUID.randomUUID().toString());
+        }
+        LoggedMessageDto logged = LoggedMessageDto.builder()
+                .chatRoomId(chatRoomId)
+                .senderId(senderId)
+                .request(request)
+                .acceptedAt(LocalDateTime.now())
+                .build();
+
+        try {
+            wal.append(objectMapper.writeValueAsBytes(logged), sequence -> pending.add(new Pending(sequence, logged)));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to encode message", e);
+        }
+
+        MessageResponseDto accepted = MessageResponseDto.builder()
+                .content(request.getContent())
+                .type(type.name())
+                .status(MessageStatus.SENT.name())
+                .sender(UserResponseDto.builder().id(senderId).build())
+                .chatRoomId(chatRoomId)
+                .fileUrl(attachment != null ? AttachmentService.urlFor(attachment.getId()) : request.getFileUrl())
+                .fileName(attachment != null ? attachment.getFileName() : request.getFileName())
+                .fileSize(attachment != null ? attachment.getFileSize() : request.getFileSize())
+                .attachmentId(request.getAttachmentId())
+                .isEdited(false)
+                .createdAt(logged.getAcceptedAt())
+                .clientMessageId(request.getClientMessageId())
+                .build();
+        dedupCache.put(senderId, chatRoomId, request.getClientMessageId(), accepted);
+        return accepted;
+    }
+
+    public WalStatsDto getStats() {
+        return WalStatsDto.builder()
+                .enabled(enabled)
+                .writtenSequence(enabled ? wal.getWrittenSequence() : 0L)
+                .appliedSequence(wal.getAppliedSequence())
+                .pendingRecords(pending.size() + parkedRecords)
+                .parkedRecords(parkedRecords)
+                .segments(enabled ? wal.getSegments() : 0)
+                .appends(wal.getAppends())
+                .flushes(wal.getFlushes())
+                .appliedMessages(appliedMessages.sum())
+                .duplicateMessages(duplicateMessages.sum())
+                .rejectedMessages(rejectedMessages.sum())
+                .retries(retries.sum())
+                .lastApplyLagMs(lastApplyLagMs)
+                .build();
+    }
+
+    private void applyLoop() {
+        try {
+            while (running) {
+                Pending next = pending.poll(retryMs, TimeUnit.MILLISECONDS);
+                if (!running) {
+                    return;
+                }
+                if (!applyParked()) {
+                    return;
+                }
+                if (next == null) {
+                    checkpointIfDue(true);
+                    continue;
+                }
+                takenSequence = next.sequence();
+                if (next.message() != null) {
+                    wal.awaitDurable(next.sequence());
+                    Queue<Pending> roomParked = parked.get(next.message().getChatRoomId());
+                    if (roomParked != null) {
+                        // Behind the room's parked records, to keep its order
+                        roomParked.add(next);
+                        parkedRecords++;
+                    } else {
+                        Outcome outcome = apply(next.message());
+                        if (outcome == Outcome.STOPPED) {
+                            return;
+                        }
+                        if (outcome == Outcome.FENCED) {
+                            park(next);
+                        }
+                    }
+                }
+                finish(1);
+                checkpointIfDue(pending.isEmpty());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void park(Pending record) {
+        Long chatRoomId = record.message().getChatRoomId();
+        log.info("Chat room {} is being moved, parking its logged messages", chatRoomId);
+        parked.computeIfAbsent(chatRoomId, room -> new ArrayDeque<>()).add(record);
+        parkedRecords++;
+        parkedRetryAt = System.currentTimeMillis() + retryMs;
+    }
+
+    /**
+     * Apply the parked records of rooms whose move is over, at most once per
+     * retry interval. Returns false if stopped on the way.
+     */
+    private boolean applyParked() throws InterruptedException {
+        if (parked.isEmpty() || System.currentTimeMillis() < parkedRetryAt) {
+            return true;
+        }
+        parkedRetryAt = System.currentTimeMillis() + retryMs;
+
+        int appliedRecords = 0;
+        Iterator<Map.Entry<Long, Queue<Pending>>> rooms = parked.entrySet().iterator();
+        while (rooms.hasNext()) {
+            Queue<Pending> records = rooms.next().getValue();
+            while (!records.isEmpty()) {
+                Outcome outcome = apply(records.peek().message());
+                if (outcome == Outcome.STOPPED) {
+                    return false;
+                }
+                if (outcome == Outcome.FENCED) {
+                    break;
+                }
+                records.remove();
+                parkedRecords--;
+                appliedRecords++;
+            }
+            if (records.isEmpty()) {
+                rooms.remove();
+            }
+        }
+        if (appliedRecords > 0) {
+            finish(appliedRecords);
+        }
+        return true;
+    }
+
+    /**
+     * Insert one logged message. A room being moved is reported as fenced
+     * for the caller to park; failures of the database, Redis or RabbitMQ
+     * are retried, and only a message sendMessage refuses is rejected.
+     */
+    private Outcome apply(LoggedMessageDto logged) throws InterruptedException {
+        Long chatRoomId = logged.getChatRoomId();
+        SendMessageRequestDto request = logged.getRequest();
+        while (running) {
+            if (shardResolver.isMigrating(chatRoomId)) {
+                retries.increment();
+                return Outcome.FENCED;
+            }
+            try {
+                ShardContext.runIn(shardResolver.shardFor(chatRoomId),
+                        () -> messageService.sendMessage(chatRoomId, request, logged.getSenderId()));
+            } catch (DataIntegrityViolationException e) {
+                if (isStored(logged)) {
+                    // Applied before a crash, ahead of the checkpoint
+                    duplicateMessages.increment();
+                } else {
+                    reject(logged, e);
+                }
+                return Outcome.DONE;
+            } catch (RoomMigratingException e) {
+                // The room was fenced after the check above
+                retries.increment();
+                return Outcome.FENCED;
+            } catch (RuntimeException e) {
+                if (!isUnavailable(e)) {
+                    reject(logged, e);
+                    return Outcome.DONE;
+                }
+                // Also after commit: the retry then finds the message stored
+                retries.increment();
+                log.warn("Failed to apply message {}, retrying in {} ms",
+                        request.getClientMessageId(), retryMs, e);
+                stopping.await(retryMs, TimeUnit.MILLISECONDS);
+                continue;
+            }
+
+            appliedMessages.increment();
+            if (logged.getAcceptedAt() != null) {
+                lastApplyLagMs = Duration.between(logged.getAcceptedAt(), LocalDateTime.now()).toMillis();
+            }
+            return Outcome.DONE;
+        }
+        return Outcome.STOPPED;
+    }
+
+    /**
+     * Whether a failure is the infrastructure's rather than the message's:
+     * the database, Redis or RabbitMQ unavailable or timing out
+     */
+    private static boolean isUnavailable(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataAccessException || cause instanceof TransactionException
+                    || cause instanceof PersistenceException || cause instanceof SQLException
+                    || cause instanceof AmqpException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isStored(LoggedMessageDto logged) {
+        return ShardContext.callIn(shardResolver.shardFor(logged.getChatRoomId()), () -> messageRepository
+                .findBySenderIdAndChatRoomIdAndClientMessageId(logged.getSenderId(), logged.getChatRoomId(),
+                        logged.getRequest().getClientMessageId())
+                .isPresent());
+    }
+
+    private void reject(LoggedMessageDto logged, Exception cause) {
+        rejectedMessages.increment();
+        log.warn("Rejected logged message {} for chat room {}: {}",
+                logged.getRequest().getClientMessageId(), logged.getChatRoomId(), cause.getMessage());
+        SendFailureDto failure = SendFailureDto.builder()
+                .chatRoomId(logged.getChatRoomId())
+                .clientMessageId(logged.getRequest().getClientMessageId())
+                .reason(cause.getMessage())
+                .failedAt(LocalDateTime.now())
+                .build();
+        messagingTemplate.convertAndSendToUser(logged.getSenderId().toString(), SEND_FAILURE_DESTINATION, failure);
+    }
+
+    /**
+     * Advance the applied sequence to just below the oldest parked record,
+     * or to the last record taken when none is parked
+     */
+    private void finish(int records) {
+        long applied = takenSequence;
+        for (Queue<Pending> room : parked.values()) {
+            applied = Math.min(applied, room.peek().sequence() - 1);
+        }
+        wal.markApplied(applied);
+        sinceCheckpoint += records;
+    }
+
+    private void checkpointIfDue(boolean idle) {
+        if (sinceCheckpoint > 0 && (idle || sinceCheckpoint >= checkpointEvery)) {
+            wal.checkpoint();
+            sinceCheckpoint = 0;
+        }
+    }
+
+    private enum Outcome { DONE, FENCED, STOPPED }
+
+    private record Pending(long sequence, LoggedMessageDto message) {}
+}
@@ -0,0 +1,8 @@
+package com.chatapp.chat_backend.utils;
+
+public enum DeliveryKind
+{
+    NEW_MESSAGES,
+    MENTION,
+    NOTIFICATION
+}
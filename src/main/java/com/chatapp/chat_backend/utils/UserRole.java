@@ -0,0 +1,6 @@
+package com.chatapp.chat_backend.utils;
+
+public enum UserRole
+{
+    USER, ADMIN
+}
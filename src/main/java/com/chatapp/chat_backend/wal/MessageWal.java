@@ -0,0 +1,396 @@
+package com.chatapp.chat_backend.wal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of accepted sends, in pre-allocated, memory-mapped
+ * segment files. Each record is
+ *
+ *   payload length | CRC32 of sequence and payload | sequence | payload
+ *
+ * and a zero length ends a segment. An append only copies into the mapping
+ * and then waits for the flusher thread, which forces everything written
+ * so far in one call, so concurrent appends share an fsync. Appenders learn
+ * their sequence while they still hold the log's lock, so whatever they
+ * queue for applying is queued in log order. The sequence
+ * applied to the database is kept in a checkpoint file. Opening the log
+ * returns every valid record past it, stopping at the first torn or
+ * out-of-order record. Segments whose records are all applied are deleted.
+ */
+@Slf4j
+@Component
+public class MessageWal
+{
+    private static final int HEADER_BYTES = 16;
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final long maxPending;
+
+    private final Object lock = new Object();
+    private final NavigableMap<Integer, Long> sealedSegments = new TreeMap<>(); // segment -> last sequence
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+
+    private FileChannel checkpointChannel;
+    private MappedByteBuffer active;
+    private int activeSegment;
+    private int position;
+    private int flushedPosition;
+    private long writtenSequence;
+    private long durableSequence;
+    private volatile long appliedSequence;
+    private volatile boolean running;
+    private Thread flusherThread;
+
+    public MessageWal(
+            @Value("${app.wal.dir:data/wal}") String dir,
+            @Value("${app.wal.segment-bytes:67108864}") int segmentBytes,
+            @Value("${app.wal.max-pending:100000}") long maxPending
+    ) {
+        this.dir = Paths.get(dir);
+        this.segmentBytes = segmentBytes;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Open the log and return the records not yet applied, oldest first
+     */
+    public List<Record> open() {
+        List<Record> unapplied = new ArrayList<>();
+        synchronized (lock) {
+            try {
+                Files.createDirectories(dir);
+                checkpointChannel = FileChannel.open(dir.resolve(CHECKPOINT_FILE),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                ByteBuffer checkpoint = ByteBuffer.allocate(Long.BYTES);
+                appliedSequence = checkpointChannel.read(checkpoint, 0) == Long.BYTES ? checkpoint.getLong(0) : 0;
+
+                List<Integer> segments = listSegments();
+                long previous = -1;
+                for (int i = 0; i < segments.size(); i++) {
+                    MappedByteBuffer buffer = map(segments.get(i));
+                    int end = 0;
+                    while (end + HEADER_BYTES <= buffer.capacity()) {
+                        int length = buffer.getInt(end);
+                        if (length <= 0 || end + HEADER_BYTES + length > buffer.capacity()) {
+                            break;
+                        }
+                        long sequence = buffer.getLong(end + 8);
+                        byte[] payload = new byte[length];
+                        buffer.get(end + HEADER_BYTES, payload);
+                        if (buffer.getInt(end + 4) != crc(sequence, payload) || (previous >= 0 && sequence != previous + 1)) {
+                            log.warn("Message log ends at a torn record in segment {} at {}", segments.get(i), end);
+                            break;
+                        }
+                        if (sequence > appliedSequence) {
+                            unapplied.add(new Record(sequence, payload));
+                        }
+                        previous = sequence;
+                        end += HEADER_BYTES + length;
+                    }
+
+                    if (i < segments.size() - 1) {
+                        sealedSegments.put(segments.get(i), previous);
+                    } else {
+                        active = buffer;
+                        activeSegment = segments.get(i);
+                        position = end;
+                    }
+                }
+
+                if (active == null) {
+                    activeSegment = 1;
+                    active = map(activeSegment);
+                    position = 0;
+                }
+                if (position + Integer.BYTES <= active.capacity()) {
+                    active.putInt(position, 0); // hide a torn record from the next scan
+                }
+                flushedPosition = position;
+                writtenSequence = Math.max(previous, appliedSequence);
+                durableSequence = writtenSequence;
+                deleteAppliedSegments(appliedSequence);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to open message log " + dir, e);
+            }
+
+            running = true;
+            flusherThread = new Thread(this::flushLoop, "message-log-flusher");
+            flusherThread.setDaemon(true);
+            flusherThread.start();
+        }
+        log.info("Message log opened at sequence {} with {} records to replay", writtenSequence, unapplied.size());
+        return unapplied;
+    }
+
+    /**
+     * Append a record and return its sequence once it is on disk
+     */
+    public long append(byte[] payload) {
+        return append(payload, sequence -> {});
+    }
+
+    /**
+     * Append a record and return its sequence once it is on disk. The
+     * callback gets the sequence under the log's lock, before the record is
+     * durable; callers that act on it must wait with awaitDurable.
+     */
+    public long append(byte[] payload, LongConsumer onSequenced) {
+        int size = HEADER_BYTES + payload.length;
+        if (size > segmentBytes) {
+            throw new RuntimeException("Message is too large for the message log");
+        }
+
+        synchronized (lock) {
+            if (!running) {
+                throw new RuntimeException("Message log is not open");
+            }
+            if (writtenSequence - appliedSequence >= maxPending) {
+                throw new RuntimeException("Message log is full, please retry shortly");
+            }
+            if (position + size > active.capacity()) {
+                roll();
+            }
+
+            long sequence = writtenSequence + 1;
+            active.putInt(position + 4, crc(sequence, payload));
+            active.putLong(position + 8, sequence);
+            active.put(position + HEADER_BYTES, payload);
+            active.putInt(position, payload.length);
+            position += size;
+            if (position + Integer.BYTES <= active.capacity()) {
+                active.putInt(position, 0);
+            }
+            writtenSequence = sequence;
+            appends.increment();
+            onSequenced.accept(sequence);
+            lock.notifyAll();
+
+            // Wait through interrupts: the record is already in the log and
+            // its sequence has to reach the caller, or it would never be applied
+            boolean interrupted = false;
+            while (durableSequence < sequence) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return sequence;
+        }
+    }
+
+    /**
+     * Wait until a record is on disk
+     */
+    public void awaitDurable(long sequence) throws InterruptedException {
+        synchronized (lock) {
+            while (durableSequence < sequence) {
+                lock.wait();
+            }
+        }
+    }
+
+    /**
+     * Record that everything up to a sequence is in the database
+     */
+    public void markApplied(long sequence) {
+        if (sequence > appliedSequence) {
+            appliedSequence = sequence;
+        }
+    }
+
+    /**
+     * Persist the applied sequence and delete segments it fully covers
+     */
+    public void checkpoint() {
+        long applied = appliedSequence;
+        try {
+            checkpointChannel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, applied), 0);
+            checkpointChannel.force(false);
+        } catch (IOException e) {
+            log.error("Failed to write message log checkpoint {}", applied, e);
+            return;
+        }
+        synchronized (lock) {
+            deleteAppliedSegments(applied);
+        }
+    }
+
+    public void close() {
+        synchronized (lock) {
+            if (!running) {
+                return;
+            }
+            running = false;
+            lock.notifyAll();
+        }
+        try {
+            flusherThread.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            active.force();
+            durableSequence = writtenSequence;
+            lock.notifyAll();
+        }
+        checkpoint();
+        try {
+            checkpointChannel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close message log checkpoint", e);
+        }
+    }
+
+    public long getWrittenSequence() {
+        synchronized (lock) {
+            return writtenSequence;
+        }
+    }
+
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    public long getAppends() {
+        return appends.sum();
+    }
+
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    public int getSegments() {
+        synchronized (lock) {
+            return sealedSegments.size() + (active != null ? 1 : 0);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            MappedByteBuffer buffer;
+            int from;
+            int to;
+            long target;
+            synchronized (lock) {
+                try {
+                    while (running && durableSequence == writtenSequence) {
+                        lock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (!running) {
+                    return;
+                }
+                buffer = active;
+                from = flushedPosition;
+                to = position;
+                target = writtenSequence;
+            }
+
+            // Everything appended while this runs goes out with the next force
+            if (to > from) {
+                buffer.force(from, to - from);
+            }
+            flushes.increment();
+
+            synchronized (lock) {
+                if (buffer == active) {
+                    flushedPosition = Math.max(flushedPosition, to);
+                }
+                durableSequence = Math.max(durableSequence, target);
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Seal the active segment and start the next; called with the lock held
+     */
+    private void roll() {
+        active.force();
+        sealedSegments.put(activeSegment, writtenSequence);
+        durableSequence = writtenSequence;
+        try {
+            active = map(++activeSegment);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create message log segment " + activeSegment, e);
+        }
+        position = 0;
+        flushedPosition = 0;
+        lock.notifyAll();
+    }
+
+    private void deleteAppliedSegments(long applied) {
+        Iterator<Map.Entry<Integer, Long>> sealed = sealedSegments.entrySet().iterator();
+        while (sealed.hasNext()) {
+            Map.Entry<Integer, Long> segment = sealed.next();
+            if (segment.getValue() > applied) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(segmentPath(segment.getKey()));
+                sealed.remove();
+            } catch (IOException e) {
+                log.warn("Failed to delete applied message log segment {}", segment.getKey(), e);
+                return;
+            }
+        }
+    }
+
+    private List<Integer> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.matches("\\d{8}\\.wal"))
+                    .map(name -> Integer.parseInt(name.substring(0, 8)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private MappedByteBuffer map(int segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Mapping past the end grows the file to its full size up front
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentBytes));
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return dir.resolve(String.format("%08d.wal", segment));
+    }
+
+    private static int crc(long sequence, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, sequence).array());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    public record Record(long sequence, byte[] payload) {}
+}
@@ -0,0 +1,181 @@
+package com.chatapp.chat_backend.websocket;
+
+import com.chatapp.chat_backend.security.StompPrincipal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cluster-wide view of which users have a live STOMP session. Each node
+ * advertises its connected users in Redis as chat:presence:{userId}, a
+ * sorted set of node IDs scored by the time the entry expires. Entries are
+ * refreshed on a heartbeat, so a node that dies drops out after the TTL.
+ * With Redis disabled or failing, only this node's sessions are seen.
+ */
+@Slf4j
+@Component
+public class ClusterPresence
+{
+    private static final String KEY_PREFIX = "chat:presence:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final StompSessionRegistry sessionRegistry;
+    private final String nodeId;
+    private final boolean redisEnabled;
+    private final long ttlMs;
+
+    // Users this node has advertised, so the heartbeat can withdraw them
+    private final Set<Long> advertised = ConcurrentHashMap.newKeySet();
+
+    public ClusterPresence(
+            StringRedisTemplate redisTemplate,
+            StompSessionRegistry sessionRegistry,
+            @Value("${app.cluster.node-id:${random.uuid}}") String nodeId,
+            @Value("${app.cache.redis.enabled:false}") boolean redisEnabled,
+            @Value("${app.presence.ttl-ms:30000}") long ttlMs
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.sessionRegistry = sessionRegistry;
+        this.nodeId = nodeId;
+        this.redisEnabled = redisEnabled;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Whether the user has a session on this node or, per Redis, on any
+     * other node
+     */
+    public boolean isOnline(Long userId) {
+        if (sessionRegistry.isOnline(userId)) {
+            return true;
+        }
+        if (!redisEnabled) {
+            return false;
+        }
+        try {
+            Long nodes = redisTemplate.opsForZSet().count(KEY_PREFIX + userId,
+                    System.currentTimeMillis(), Double.POSITIVE_INFINITY);
+            return nodes != null && nodes > 0;
+        } catch (DataAccessException e) {
+            log.debug("Presence lookup for user {} failed: {}", userId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * The users among the given ones that are online on any node, asking
+     * Redis about all of those without a local session in one pipeline
+     */
+    public Set<Long> onlineAmong(Collection<Long> userIds) {
+        Set<Long> online = new HashSet<>();
+        List<Long> remote = new ArrayList<>();
+        for (Long userId : userIds) {
+            if (sessionRegistry.isOnline(userId)) {
+                online.add(userId);
+            } else {
+                remote.add(userId);
+            }
+        }
+        if (!redisEnabled || remote.isEmpty()) {
+            return online;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            List<Object> counts = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Long userId : remote) {
+                    connection.zSetCommands().zCount((KEY_PREFIX + userId).getBytes(StandardCharsets.UTF_8),
+                            now, Double.POSITIVE_INFINITY);
+                }
+                return null;
+            });
+            for (int i = 0; i < remote.size(); i++) {
+                if (counts.get(i) instanceof Long nodes && nodes > 0) {
+                    online.add(remote.get(i));
+                }
+            }
+        } catch (DataAccessException e) {
+            log.debug("Presence lookup for {} users failed: {}", remote.size(), e.getMessage());
+        }
+        return online;
+    }
+
+    @EventListener
+    public void handleSessionConnected(SessionConnectedEvent event) {
+        Long userId = StompPrincipal.userIdOf(event.getUser());
+        if (redisEnabled && userId != null) {
+            advertise(userId, System.currentTimeMillis() + ttlMs);
+        }
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        Long userId = StompPrincipal.userIdOf(event.getUser());
+        if (!redisEnabled || userId == null) {
+            return;
+        }
+        // Independent of listener order: ignore the closing session whether or not the registry dropped it yet
+        Set<String> remaining = new HashSet<>(sessionRegistry.getSessionIds(userId));
+        remaining.remove(event.getSessionId());
+        if (remaining.isEmpty()) {
+            withdraw(userId);
+        }
+    }
+
+    /**
+     * Refresh this node's entries and withdraw users who are gone
+     */
+    @Scheduled(fixedDelayString = "${app.presence.heartbeat-ms:10000}")
+    public void heartbeat() {
+        if (!redisEnabled) {
+            return;
+        }
+        long expiresAt = System.currentTimeMillis() + ttlMs;
+        Set<Long> online = sessionRegistry.getOnlineUserIds();
+        for (Long userId : online) {
+            advertise(userId, expiresAt);
+        }
+        for (Long userId : advertised) {
+            if (!online.contains(userId)) {
+                withdraw(userId);
+            }
+        }
+    }
+
+    private void advertise(Long userId, long expiresAt) {
+        try {
+            String key = KEY_PREFIX + userId;
+            redisTemplate.opsForZSet().add(key, nodeId, expiresAt);
+            redisTemplate.opsForZSet().removeRangeByScore(key, 0, System.currentTimeMillis());
+            // Every advertise pushes the key TTL past all scores written so far
+            redisTemplate.expire(key, Duration.ofMillis(ttlMs));
+            advertised.add(userId);
+        } catch (DataAccessException e) {
+            log.debug("Failed to advertise presence of user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private void withdraw(Long userId) {
+        try {
+            redisTemplate.opsForZSet().remove(KEY_PREFIX + userId, nodeId);
+            advertised.remove(userId);
+        } catch (DataAccessException e) {
+            log.debug("Failed to withdraw presence of user {}: {}", userId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.chatapp.chat_backend.websocket;
+
+import com.chatapp.chat_backend.dtos.OutboundQueueStatsDto;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Owns the per-session outbound queues, the conflation policy, the flush
+ * executor and the slow-consumer metrics. The flush pool grows on demand
+ * up to a bound, so a session stuck in a blocking write never holds up
+ * other sessions; a flush that finds the pool exhausted is refused and its
+ * session treated as a slow consumer.
+ */
+@Slf4j
+@Component
+public class OutboundQueueMonitor
+{
+    private static final String DESTINATION_HEADER = "\ndestination:";
+    private static final int MAX_HEADER_BYTES = 512;
+
+    private final ConcurrentHashMap<String, SlowConsumerSessionDecorator> sessions = new ConcurrentHashMap<>();
+    private final LongAdder conflatedFrames = new LongAdder();
+    private final LongAdder slowConsumerDisconnects = new LongAdder();
+    private final LongAdder flushRejections = new LongAdder();
+    private final ThreadPoolTaskExecutor flushExecutor;
+
+    private final int hardLimit;
+    private final long sendTimeoutMs;
+    private final List<String> conflatedSuffixes;
+
+    public OutboundQueueMonitor(
+            @Value("${app.websocket.outbound.hard-limit:1000}") int hardLimit,
+            @Value("${app.websocket.outbound.send-timeout-ms:10000}") long sendTimeoutMs,
+            @Value("${app.websocket.outbound.conflated-suffixes:/typing,/presence}") List<String> conflatedSuffixes,
+            @Value("${app.websocket.outbound.flush-threads:16}") int flushThreads,
+            @Value("${app.websocket.outbound.max-flush-threads:256}") int maxFlushThreads
+    ) {
+        this.hardLimit = hardLimit;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.conflatedSuffixes = conflatedSuffixes;
+
+        // Core threads serve the non-blocking writes; extra threads are only
+        // started for blocking (SockJS) writes and time out when idle. The
+        // send timeout frees blocked threads, so the bound only bites when
+        // more sessions stall at once than it allows
+        this.flushExecutor = new ThreadPoolTaskExecutor();
+        this.flushExecutor.setCorePoolSize(flushThreads);
+        this.flushExecutor.setMaxPoolSize(Math.max(flushThreads, maxFlushThreads));
+        this.flushExecutor.setQueueCapacity(0);
+        this.flushExecutor.setThreadNamePrefix("ws-flush-");
+        this.flushExecutor.initialize();
+    }
+
+    public SlowConsumerSessionDecorator register(WebSocketSession session) {
+        SlowConsumerSessionDecorator decorated = new SlowConsumerSessionDecorator(session, this);
+        sessions.put(session.getId(), decorated);
+        return decorated;
+    }
+
+    public WebSocketSession unregister(WebSocketSession session) {
+        SlowConsumerSessionDecorator decorated = sessions.remove(session.getId());
+        return decorated != null ? decorated : session;
+    }
+
+    /**
+     * Whether a session's transport can carry binary frames; SockJS only carries text
+     */
+    public boolean supportsBinaryFrames(String sessionId) {
+        SlowConsumerSessionDecorator session = sessions.get(sessionId);
+        return session != null && !(session.getDelegate() instanceof SockJsSession);
+    }
+
+    public OutboundQueueStatsDto getStats() {
+        long queued = 0;
+        int maxDepth = 0;
+        for (SlowConsumerSessionDecorator session : sessions.values()) {
+            int depth = session.getQueueDepth();
+            queued += depth;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        return OutboundQueueStatsDto.builder()
+                .sessionCount(sessions.size())
+                .queuedFrames(queued)
+                .maxQueueDepth(maxDepth)
+                .conflatedFrames(conflatedFrames.sum())
+                .slowConsumerDisconnects(slowConsumerDisconnects.sum())
+                .flushRejections(flushRejections.sum())
+                .build();
+    }
+
+    /**
+     * Key under which a frame may replace an older queued one, or null if
+     * the frame must be delivered as is
+     */
+    String conflationKey(WebSocketMessage<?> message) {
+        String payload;
+        if (message instanceof TextMessage textMessage) {
+            payload = textMessage.getPayload();
+        } else if (message instanceof BinaryMessage binaryMessage) {
+            // Binary (CBOR) frames still carry text STOMP headers
+            ByteBuffer bytes = binaryMessage.getPayload().duplicate();
+            byte[] head = new byte[Math.min(bytes.remaining(), MAX_HEADER_BYTES)];
+            bytes.get(head);
+            payload = new String(head, StandardCharsets.ISO_8859_1);
+        } else {
+            return null;
+        }
+        if (!payload.startsWith("MESSAGE")) {
+            return null;
+        }
+
+        int start = payload.indexOf(DESTINATION_HEADER);
+        if (start < 0) {
+            return null;
+        }
+        start += DESTINATION_HEADER.length();
+        int end = payload.indexOf('\n', start);
+        String destination = end < 0 ? payload.substring(start) : payload.substring(start, end);
+
+        for (String suffix : conflatedSuffixes) {
+            if (destination.endsWith(suffix)) {
+                return destination;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Close sessions whose current write has outlived the send timeout,
+     * including ones no new frame arrives for
+     */
+    @Scheduled(fixedDelayString = "${app.websocket.outbound.timeout-check-ms:1000}")
+    public void checkSendTimeouts() {
+        sessions.values().forEach(SlowConsumerSessionDecorator::checkSendTimeout);
+    }
+
+    int getHardLimit() {
+        return hardLimit;
+    }
+
+    long getSendTimeoutMs() {
+        return sendTimeoutMs;
+    }
+
+    /**
+     * Hand a flush to the pool; false if every flush thread is busy
+     */
+    boolean execute(Runnable task) {
+        try {
+            flushExecutor.execute(task);
+            return true;
+        } catch (TaskRejectedException e) {
+            flushRejections.increment();
+            return false;
+        }
+    }
+
+    void recordConflated() {
+        conflatedFrames.increment();
+    }
+
+    void recordSlowConsumerDisconnect(String sessionId, int depth) {
+        slowConsumerDisconnects.increment();
+        log.warn("Closing slow WebSocket session {} with {} queued frames", sessionId, depth);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+    }
+}
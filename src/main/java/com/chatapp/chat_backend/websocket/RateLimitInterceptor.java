@@ -0,0 +1,59 @@
+package com.chatapp.chat_backend.websocket;
+
+import com.chatapp.chat_backend.security.RateLimiter;
+import com.chatapp.chat_backend.security.StompPrincipal;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies the per-user and per-room rate limits to SEND frames on
+ * /app/chat/{id}/{send|typing|receipt}. Rejected frames fail the send,
+ * which the STOMP handler reports to the client as an ERROR frame.
+ */
+@Component
+@RequiredArgsConstructor
+public class RateLimitInterceptor implements ChannelInterceptor
+{
+    private static final String APP_CHAT_PREFIX = "/app/chat/";
+
+    private final RateLimiter rateLimiter;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.SEND.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(APP_CHAT_PREFIX)) {
+            return message;
+        }
+
+        // /app/chat/{roomId}/{action}, parsed without a regex on this hot path
+        int slash = destination.indexOf('/', APP_CHAT_PREFIX.length());
+        if (slash < 0) {
+            return message;
+        }
+        Long chatRoomId;
+        try {
+            chatRoomId = Long.valueOf(destination.substring(APP_CHAT_PREFIX.length(), slash));
+        } catch (NumberFormatException e) {
+            return message;
+        }
+        String action = destination.substring(slash + 1);
+
+        Long userId = StompPrincipal.userIdOf(accessor.getUser());
+        if (userId != null && !rateLimiter.tryAcquire(action, userId, chatRoomId)) {
+            throw new MessageDeliveryException(message, "Rate limit exceeded for " + action + " in chat room " + chatRoomId);
+        }
+        return message;
+    }
+}
@@ -0,0 +1,77 @@
+package com.chatapp.chat_backend.websocket;
+
+import com.chatapp.chat_backend.security.StompPrincipal;
+import com.chatapp.chat_backend.service.RoomMembershipCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Authorizes SUBSCRIBE and SEND frames, denying by default. A SUBSCRIBE is
+ * allowed to a single room topic (/topic/chat/{id} and its sub-topics) the
+ * user is a member of, or to a /user destination; a SEND only to
+ * /app/chat/{id}/** for a member. Patterns are refused outright: the
+ * simple broker matches subscriptions as Ant patterns, so /topic/** would
+ * otherwise receive every room's events.
+ */
+@Component
+@RequiredArgsConstructor
+public class RoomAuthorizationInterceptor implements ChannelInterceptor
+{
+    private static final Pattern TOPIC_ROOM = Pattern.compile("^/topic/chat/(\\d+)(/[a-z-]+)*$");
+    private static final Pattern APP_ROOM = Pattern.compile("^/app/chat/(\\d+)/[a-z-]+$");
+    private static final String USER_PREFIX = "/user/";
+
+    private final RoomMembershipCache membershipCache;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
+
+        boolean subscribe = StompCommand.SUBSCRIBE.equals(accessor.getCommand());
+        if (!subscribe && !StompCommand.SEND.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        String destination = accessor.getDestination();
+        Long userId = StompPrincipal.userIdOf(accessor.getUser());
+        if (destination == null || userId == null || isPattern(destination)) {
+            throw new AccessDeniedException("Destination not allowed");
+        }
+
+        // /user destinations resolve to the subscribing session's own queue
+        if (subscribe && destination.startsWith(USER_PREFIX)) {
+            return message;
+        }
+
+        Long chatRoomId = roomIdOf(subscribe ? TOPIC_ROOM : APP_ROOM, destination);
+        if (chatRoomId == null) {
+            throw new AccessDeniedException("Destination not allowed");
+        }
+        if (!membershipCache.isMember(chatRoomId, userId)) {
+            throw new AccessDeniedException("You are not a member of this chat room");
+        }
+        return message;
+    }
+
+    private static boolean isPattern(String destination) {
+        return destination.indexOf('*') >= 0 || destination.indexOf('?') >= 0 || destination.indexOf('{') >= 0;
+    }
+
+    private static Long roomIdOf(Pattern pattern, String destination) {
+        Matcher matcher = pattern.matcher(destination);
+        return matcher.matches() ? Long.valueOf(matcher.group(1)) : null;
+    }
+}
@@ -0,0 +1,86 @@
+package com.chatapp.chat_backend.websocket;
+
+import com.chatapp.chat_backend.service.RoomMembershipCache;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drops room subscriptions held by users who are no longer members.
+ * RoomAuthorizationInterceptor only checks a SUBSCRIBE when it arrives,
+ * so a removed member would otherwise keep receiving the room's traffic.
+ * Every node re-checks its own sessions whenever a room's membership is
+ * invalidated, which the shared cache announces cluster-wide.
+ */
+@Slf4j
+@Component
+public class RoomSubscriptionRevoker
+{
+    private final StompSessionRegistry sessionRegistry;
+    private final RoomMembershipCache membershipCache;
+    private final ObjectProvider<SimpleBrokerMessageHandler> brokerHandler;
+
+    private final LongAdder revoked = new LongAdder();
+
+    public RoomSubscriptionRevoker(
+            StompSessionRegistry sessionRegistry,
+            RoomMembershipCache membershipCache,
+            ObjectProvider<SimpleBrokerMessageHandler> brokerHandler
+    ) {
+        this.sessionRegistry = sessionRegistry;
+        this.membershipCache = membershipCache;
+        this.brokerHandler = brokerHandler;
+    }
+
+    @PostConstruct
+    public void start() {
+        membershipCache.onChange(this::revokeNonMembers);
+    }
+
+    /**
+     * Unsubscribe this node's sessions of users who left the room
+     */
+    public void revokeNonMembers(Long chatRoomId) {
+        List<StompSessionRegistry.RoomSubscription> subscriptions = sessionRegistry.getRoomSubscriptions(chatRoomId);
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+
+        Set<Long> members = membershipCache.getMemberIds(chatRoomId);
+        for (StompSessionRegistry.RoomSubscription subscription : subscriptions) {
+            if (subscription.userId() != null && members.contains(subscription.userId())) {
+                continue;
+            }
+            if (sessionRegistry.removeSubscription(subscription.sessionId(), subscription.subscriptionId())) {
+                unsubscribe(subscription.sessionId(), subscription.subscriptionId());
+                revoked.increment();
+                log.debug("Revoked subscription {} of session {} to chat room {}",
+                        subscription.subscriptionId(), subscription.sessionId(), chatRoomId);
+            }
+        }
+    }
+
+    public long getRevoked() {
+        return revoked.sum();
+    }
+
+    private void unsubscribe(String sessionId, String subscriptionId) {
+        SimpleBrokerMessageHandler handler = brokerHandler.getIfAvailable();
+        if (handler == null) {
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        handler.handleMessage(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+}
@@ -0,0 +1,79 @@
+package com.chatapp.chat_backend.websocket;
+
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ShardContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Binds SEND frames on /app/chat/{id}/... to the room's message shard while
+ * they are handled on the inbound executor, and refuses new messages to a
+ * room while the rebalancer is moving it
+ */
+@Component
+@RequiredArgsConstructor
+public class ShardBindingInterceptor implements ExecutorChannelInterceptor
+{
+    private static final String APP_CHAT_PREFIX = "/app/chat/";
+
+    private final MessageShardResolver shardResolver;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        Long chatRoomId = shardResolver.isSharded() ? chatRoomIdOf(message) : null;
+        if (chatRoomId != null && destinationOf(message).endsWith("/send") && shardResolver.isMigrating(chatRoomId)) {
+            throw new MessageDeliveryException(message, "Chat room " + chatRoomId + " is being migrated, please retry shortly");
+        }
+        return message;
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        Long chatRoomId = shardResolver.isSharded() ? chatRoomIdOf(message) : null;
+        if (chatRoomId != null) {
+            ShardContext.bind(shardResolver.shardFor(chatRoomId));
+        }
+        return message;
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        ShardContext.clear();
+    }
+
+    private static String destinationOf(Message<?> message) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        return accessor != null && accessor.getDestination() != null ? accessor.getDestination() : "";
+    }
+
+    /**
+     * Room id of a SEND to /app/chat/{roomId}/{action}, or null
+     */
+    private static Long chatRoomIdOf(Message<?> message) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.SEND.equals(accessor.getCommand())) {
+            return null;
+        }
+        String destination = accessor.getDestination();
+        if (destination == null || !destination.startsWith(APP_CHAT_PREFIX)) {
+            return null;
+        }
+        int slash = destination.indexOf('/', APP_CHAT_PREFIX.length());
+        if (slash < 0) {
+            return null;
+        }
+        try {
+            return Long.valueOf(destination.substring(APP_CHAT_PREFIX.length(), slash));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.chatapp.chat_backend.websocket;
+
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+/**
+ * Hands the STOMP handler a queue-backed session so outbound writes to a
+ * slow client cannot back up the shared outbound channel.
+ */
+public class SlowConsumerHandlerDecorator extends WebSocketHandlerDecorator
+{
+    private final OutboundQueueMonitor monitor;
+
+    public SlowConsumerHandlerDecorator(WebSocketHandler delegate, OutboundQueueMonitor monitor) {
+        super(delegate);
+        this.monitor = monitor;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        super.afterConnectionEstablished(monitor.register(session));
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+        super.afterConnectionClosed(monitor.unregister(session), closeStatus);
+    }
+}
@@ -0,0 +1,242 @@
+package com.chatapp.chat_backend.websocket;
+
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.standard.StandardWebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded outbound queue for one WebSocket session. sendMessage never
+ * blocks on the socket: frames are queued and written one at a time.
+ * Typing and presence frames replace their queued predecessor for the
+ * same destination. Chat frames are kept until the hard limit, after which
+ * the backlog is dropped and the session is closed so the client
+ * reconnects and resyncs.
+ *
+ * Native WebSocket sessions are written with the container's asynchronous
+ * send, so no thread waits on a slow socket. SockJS sessions only offer a
+ * blocking send; it runs on a bounded, growable pool and is aborted by
+ * closing the session once a write takes longer than the send timeout.
+ * A session whose flush finds that pool exhausted is closed the same way.
+ */
+@Slf4j
+public class SlowConsumerSessionDecorator extends WebSocketSessionDecorator
+{
+    public static final CloseStatus RESYNC_REQUIRED = CloseStatus.SESSION_NOT_RELIABLE.withReason("resync");
+
+    private final OutboundQueueMonitor monitor;
+    private final ArrayDeque<Slot> queue = new ArrayDeque<>();
+    private final Map<String, Slot> conflatable = new HashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private volatile boolean flaggedForResync;
+    private volatile long sendStartedAt; // 0 when no write is in progress
+    private RemoteEndpoint.Async asyncRemote; // only touched by the flushing task
+
+    public SlowConsumerSessionDecorator(WebSocketSession delegate, OutboundQueueMonitor monitor) {
+        super(delegate);
+        this.monitor = monitor;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+        if (flaggedForResync) {
+            return;
+        }
+
+        String key = monitor.conflationKey(message);
+        int overflowDepth = 0;
+        synchronized (queue) {
+            Slot existing = key != null ? conflatable.get(key) : null;
+            if (existing != null) {
+                existing.message = message;
+                monitor.recordConflated();
+            } else {
+                Slot slot = new Slot(message, key);
+                queue.addLast(slot);
+                if (key != null) {
+                    conflatable.put(key, slot);
+                }
+            }
+
+            if (queue.size() > monitor.getHardLimit()) {
+                overflowDepth = queue.size();
+                queue.clear();
+                conflatable.clear();
+            }
+        }
+
+        if (overflowDepth > 0) {
+            flagForResync(overflowDepth);
+            return;
+        }
+        checkSendTimeout();
+        scheduleFlush();
+    }
+
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public boolean isFlaggedForResync() {
+        return flaggedForResync;
+    }
+
+    /**
+     * Close the session if a write has been in progress for longer than the
+     * send timeout; closing aborts a blocked write and frees its thread
+     */
+    void checkSendTimeout() {
+        long startedAt = sendStartedAt;
+        if (startedAt != 0 && System.currentTimeMillis() - startedAt > monitor.getSendTimeoutMs() && !flaggedForResync) {
+            flagForResync(getQueueDepth());
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushing.compareAndSet(false, true)) {
+            dispatch();
+        }
+    }
+
+    /**
+     * Run sendNext on the flush pool; with every flush thread stuck the
+     * session cannot be served in time, so it is closed like a slow one
+     */
+    private void dispatch() {
+        if (!monitor.execute(this::sendNext)) {
+            flushing.set(false);
+            if (!flaggedForResync) {
+                flagForResync(getQueueDepth());
+            }
+        }
+    }
+
+    /**
+     * Write the next queued frame. Asynchronous writes continue from their
+     * completion callback, blocking ones loop here.
+     */
+    private void sendNext() {
+        while (!flaggedForResync) {
+            WebSocketMessage<?> next = poll();
+            if (next == null) {
+                break;
+            }
+            sendStartedAt = System.currentTimeMillis();
+            try {
+                if (sendAsync(next)) {
+                    return;
+                }
+                getDelegate().sendMessage(next);
+                sendStartedAt = 0;
+            } catch (IOException | RuntimeException e) {
+                sendStartedAt = 0;
+                log.debug("Failed to flush WebSocket session {}: {}", getId(), e.getMessage());
+                break;
+            }
+        }
+        finishFlush();
+    }
+
+    private WebSocketMessage<?> poll() {
+        synchronized (queue) {
+            Slot slot = queue.pollFirst();
+            if (slot == null) {
+                return null;
+            }
+            if (slot.key != null) {
+                conflatable.remove(slot.key);
+            }
+            return slot.message;
+        }
+    }
+
+    /**
+     * Start an asynchronous write if the session supports one; the
+     * completion callback hands the next frame back to the flush pool
+     */
+    private boolean sendAsync(WebSocketMessage<?> message) {
+        RemoteEndpoint.Async remote = asyncRemote();
+        if (remote == null) {
+            return false;
+        }
+        SendHandler onComplete = this::onSent;
+        if (message instanceof TextMessage textMessage) {
+            remote.sendText(textMessage.getPayload(), onComplete);
+            return true;
+        }
+        if (message instanceof BinaryMessage binaryMessage) {
+            remote.sendBinary(binaryMessage.getPayload(), onComplete);
+            return true;
+        }
+        return false;
+    }
+
+    private void onSent(SendResult result) {
+        sendStartedAt = 0;
+        if (!result.isOK()) {
+            log.debug("Failed to flush WebSocket session {}: {}", getId(),
+                    result.getException() != null ? result.getException().getMessage() : "unknown");
+            if (!flaggedForResync) {
+                flagForResync(getQueueDepth());
+            }
+            finishFlush();
+            return;
+        }
+        // Never continue inline: the container may complete the send on the caller's stack
+        dispatch();
+    }
+
+    private void finishFlush() {
+        flushing.set(false);
+
+        // A frame may have been queued after the last poll but before the flag was reset
+        if (getQueueDepth() > 0 && !flaggedForResync) {
+            scheduleFlush();
+        }
+    }
+
+    private RemoteEndpoint.Async asyncRemote() {
+        if (asyncRemote == null && getDelegate() instanceof StandardWebSocketSession standard
+                && standard.getNativeSession() != null) {
+            asyncRemote = standard.getNativeSession().getAsyncRemote();
+            asyncRemote.setSendTimeout(monitor.getSendTimeoutMs());
+        }
+        return asyncRemote;
+    }
+
+    private void flagForResync(int depth) {
+        flaggedForResync = true;
+        monitor.recordSlowConsumerDisconnect(getId(), depth);
+        try {
+            getDelegate().close(RESYNC_REQUIRED);
+        } catch (IOException e) {
+            log.debug("Failed to close slow WebSocket session {}", getId(), e);
+        }
+    }
+
+    private static final class Slot
+    {
+        private WebSocketMessage<?> message;
+        private final String key;
+
+        private Slot(WebSocketMessage<?> message, String key) {
+            this.message = message;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.chatapp.chat_backend.websocket;
+
+import com.chatapp.chat_backend.entity.User;
+import com.chatapp.chat_backend.repository.UserRepository;
+import com.chatapp.chat_backend.security.JwtUtil;
+import com.chatapp.chat_backend.security.StompPrincipal;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.CredentialsExpiredException;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Authenticates a STOMP session once, at CONNECT, from the Authorization
+ * header, and refuses deactivated users there. Later frames only compare
+ * the principal's expiry timestamp.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StompAuthInterceptor implements ChannelInterceptor
+{
+    private static final String AUTHORIZATION_HEADER = "Authorization";
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final JwtUtil jwtUtil;
+    private final UserRepository userRepository;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+            accessor.setUser(authenticate(accessor.getFirstNativeHeader(AUTHORIZATION_HEADER)));
+            return message;
+        }
+
+        if (StompCommand.SEND.equals(accessor.getCommand()) || StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            if (!(accessor.getUser() instanceof StompPrincipal principal)) {
+                throw new BadCredentialsException("WebSocket session is not authenticated");
+            }
+            if (principal.isExpired()) {
+                throw new CredentialsExpiredException("Token has expired, reconnect with a new token");
+            }
+        }
+        return message;
+    }
+
+    private StompPrincipal authenticate(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith(BEARER_PREFIX)) {
+            throw new BadCredentialsException("Missing bearer token");
+        }
+
+        Claims claims;
+        try {
+            claims = jwtUtil.extractAllClaims(authHeader.substring(BEARER_PREFIX.length()));
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Rejected STOMP CONNECT: {}", e.getMessage());
+            throw new BadCredentialsException("Invalid token");
+        }
+
+        String username = claims.getSubject();
+        Long userId = jwtUtil.extractUserId(claims);
+
+        // One (second-level cached) lookup per session, to refuse deactivated users;
+        // tokens issued before the user ID claim existed are resolved by username
+        User user = (userId != null ? userRepository.findById(userId) : userRepository.findByUsername(username))
+                .orElseThrow(() -> new BadCredentialsException("User not found"));
+        if (!Boolean.TRUE.equals(user.getIsActive())) {
+            throw new DisabledException("User is inactive");
+        }
+
+        return new StompPrincipal(user.getId(), user.getUsername(), claims.getExpiration().getTime());
+    }
+}
@@ -0,0 +1,181 @@
+package com.chatapp.chat_backend.websocket;
+
+import com.chatapp.chat_backend.dtos.SessionStatsDto;
+import com.chatapp.chat_backend.dtos.UserSessionDto;
+import com.chatapp.chat_backend.security.StompPrincipal;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live index of STOMP sessions: userId -> sessions -> subscriptions.
+ * Backed by concurrent maps only, so connects and subscribes on different
+ * sessions never contend on a shared lock.
+ */
+@Component
+public class StompSessionRegistry
+{
+    private final ConcurrentHashMap<String, SessionInfo> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    private final LongAdder subscriptionCount = new LongAdder();
+
+    @EventListener
+    public void handleSessionConnected(SessionConnectedEvent event) {
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        Long userId = StompPrincipal.userIdOf(event.getUser());
+        if (sessionId == null) {
+            return;
+        }
+
+        sessions.put(sessionId, new SessionInfo(userId, LocalDateTime.now()));
+        if (userId != null) {
+            // compute() so a concurrent disconnect cannot drop the set we add to
+            sessionsByUser.compute(userId, (id, userSessions) -> {
+                Set<String> result = userSessions != null ? userSessions : ConcurrentHashMap.newKeySet();
+                result.add(sessionId);
+                return result;
+            });
+        }
+    }
+
+    @EventListener
+    public void handleSessionSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        SessionInfo session = sessionOf(accessor.getSessionId());
+        if (session == null || accessor.getSubscriptionId() == null || accessor.getDestination() == null) {
+            return;
+        }
+        if (session.subscriptions.put(accessor.getSubscriptionId(), accessor.getDestination()) == null) {
+            subscriptionCount.increment();
+        }
+    }
+
+    @EventListener
+    public void handleSessionUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        SessionInfo session = sessionOf(accessor.getSessionId());
+        if (session == null || accessor.getSubscriptionId() == null) {
+            return;
+        }
+        if (session.subscriptions.remove(accessor.getSubscriptionId()) != null) {
+            subscriptionCount.decrement();
+        }
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        SessionInfo session = sessions.remove(event.getSessionId());
+        if (session == null) {
+            return;
+        }
+
+        subscriptionCount.add(-session.subscriptions.size());
+        if (session.userId != null) {
+            sessionsByUser.computeIfPresent(session.userId, (id, userSessions) -> {
+                userSessions.remove(event.getSessionId());
+                return userSessions.isEmpty() ? null : userSessions;
+            });
+        }
+    }
+
+    public boolean isOnline(Long userId) {
+        return sessionsByUser.containsKey(userId);
+    }
+
+    public Set<Long> getOnlineUserIds() {
+        return Collections.unmodifiableSet(sessionsByUser.keySet());
+    }
+
+    public Set<String> getSessionIds(Long userId) {
+        Set<String> userSessions = sessionsByUser.get(userId);
+        return userSessions != null ? Collections.unmodifiableSet(userSessions) : Collections.emptySet();
+    }
+
+    public Long getUserId(String sessionId) {
+        SessionInfo session = sessionOf(sessionId);
+        return session != null ? session.userId : null;
+    }
+
+    public List<UserSessionDto> getUserSessions(Long userId) {
+        List<UserSessionDto> result = new ArrayList<>();
+        for (String sessionId : getSessionIds(userId)) {
+            SessionInfo session = sessions.get(sessionId);
+            if (session != null) {
+                result.add(UserSessionDto.builder()
+                        .sessionId(sessionId)
+                        .userId(userId)
+                        .connectedAt(session.connectedAt)
+                        .subscriptions(new ArrayList<>(session.subscriptions.values()))
+                        .build());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Subscriptions held on this node to a room's topic or its sub-topics
+     */
+    public List<RoomSubscription> getRoomSubscriptions(Long chatRoomId) {
+        String topic = "/topic/chat/" + chatRoomId;
+        List<RoomSubscription> result = new ArrayList<>();
+        sessions.forEach((sessionId, session) -> session.subscriptions.forEach((subscriptionId, destination) -> {
+            if (destination.equals(topic) || destination.startsWith(topic + "/")) {
+                result.add(new RoomSubscription(sessionId, session.userId, subscriptionId));
+            }
+        }));
+        return result;
+    }
+
+    /**
+     * Forget a subscription the server dropped on the client's behalf
+     */
+    public boolean removeSubscription(String sessionId, String subscriptionId) {
+        SessionInfo session = sessionOf(sessionId);
+        if (session == null || session.subscriptions.remove(subscriptionId) == null) {
+            return false;
+        }
+        subscriptionCount.decrement();
+        return true;
+    }
+
+    public SessionStatsDto getStats() {
+        Map<Integer, Integer> usersByDeviceCount = new TreeMap<>();
+        sessionsByUser.values().forEach(userSessions ->
+                usersByDeviceCount.merge(userSessions.size(), 1, Integer::sum));
+
+        return SessionStatsDto.builder()
+                .sessionCount(sessions.size())
+                .subscriptionCount(subscriptionCount.sum())
+                .userCount(sessionsByUser.size())
+                .usersByDeviceCount(usersByDeviceCount)
+                .build();
+    }
+
+    private SessionInfo sessionOf(String sessionId) {
+        return sessionId != null ? sessions.get(sessionId) : null;
+    }
+
+    public record RoomSubscription(String sessionId, Long userId, String subscriptionId) {}
+
+    private static final class SessionInfo
+    {
+        private final Long userId;
+        private final LocalDateTime connectedAt;
+        // Most sessions hold a handful of subscriptions
+        private final ConcurrentHashMap<String, String> subscriptions = new ConcurrentHashMap<>(4);
+
+        private SessionInfo(Long userId, LocalDateTime connectedAt) {
+            this.userId = userId;
+            this.connectedAt = connectedAt;
+        }
+    }
+}
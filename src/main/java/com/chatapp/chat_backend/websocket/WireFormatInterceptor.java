@@ -0,0 +1,216 @@
+package com.chatapp.chat_backend.websocket;
+
+import com.chatapp.chat_backend.service.TwoLevelCache;
+import com.chatapp.chat_backend.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-session CBOR encoding of broadcast frames. A client opts in with a
+ * "content-format: cbor" header on CONNECT. Its MESSAGE frames are then
+ * re-encoded as {"d": payload, "u": {id: profile}} where every nested
+ * sender object is replaced by a senderId, and "u" only carries profiles
+ * this session has not been sent yet. A profile counts as sent once the
+ * frame carrying it has been handed to the session, and is sent again
+ * after the user edits it on any node. Registered on both client channels:
+ * CONNECT frames arrive inbound, MESSAGE frames go outbound.
+ *
+ * Only raw WebSocket sessions can carry binary frames; SockJS sessions
+ * asking for CBOR stay on JSON.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WireFormatInterceptor implements ExecutorChannelInterceptor
+{
+    public static final String FORMAT_HEADER = "content-format";
+    public static final String CBOR_FORMAT = "cbor";
+    // Not a native header, so it never reaches the client
+    private static final String INTRODUCED_HEADER = "wireFormatIntroducedUsers";
+
+    private static final int MAX_KNOWN_USERS = 1000;
+
+    private final ObjectMapper objectMapper;
+    private final OutboundQueueMonitor outboundQueueMonitor;
+    private final TwoLevelCache cache;
+    private final CBORMapper cborMapper = new CBORMapper();
+
+    private final ConcurrentHashMap<String, Set<Long>> cborSessions = new ConcurrentHashMap<>();
+    // The broker fans one payload array out to every subscriber; arrays hash
+    // by identity, so this caches one compaction per broadcast
+    private final Map<byte[], CompactPayload> compacted = Collections.synchronizedMap(new WeakHashMap<>());
+
+    @PostConstruct
+    public void start() {
+        cache.onEvict(UserService.PROFILE_NAMESPACE, key -> forgetProfile(Long.valueOf(key)));
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+
+        if (type == SimpMessageType.CONNECT) {
+            StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+            if (CBOR_FORMAT.equalsIgnoreCase(accessor.getFirstNativeHeader(FORMAT_HEADER))
+                    && accessor.getSessionId() != null
+                    && outboundQueueMonitor.supportsBinaryFrames(accessor.getSessionId())) {
+                cborSessions.put(accessor.getSessionId(), ConcurrentHashMap.newKeySet());
+            }
+            return message;
+        }
+
+        if (type != SimpMessageType.MESSAGE || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        Set<Long> knownUsers = sessionId != null ? cborSessions.get(sessionId) : null;
+        if (knownUsers == null) {
+            return message;
+        }
+
+        try {
+            Set<Long> introduced = new HashSet<>();
+            byte[] encoded = encode(payload, knownUsers, introduced);
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+            // octet-stream makes the STOMP handler send a binary WebSocket frame
+            accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+            accessor.setNativeHeader(FORMAT_HEADER, CBOR_FORMAT);
+            if (!introduced.isEmpty()) {
+                accessor.setHeader(INTRODUCED_HEADER, introduced);
+            }
+            return MessageBuilder.createMessage(encoded, accessor.getMessageHeaders());
+        } catch (IOException e) {
+            log.debug("Falling back to JSON for session {}: {}", sessionId, e.getMessage());
+            return message;
+        }
+    }
+
+    /**
+     * Record the profiles a frame introduced once the session has taken it;
+     * a frame that failed or never got this far introduces them again
+     */
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (ex != null || !(message.getHeaders().get(INTRODUCED_HEADER) instanceof Set<?> introduced)) {
+            return;
+        }
+        Set<Long> knownUsers = cborSessions.get(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        if (knownUsers == null) {
+            return;
+        }
+        if (knownUsers.size() + introduced.size() > MAX_KNOWN_USERS) {
+            knownUsers.clear();
+        }
+        introduced.forEach(userId -> knownUsers.add((Long) userId));
+    }
+
+    /**
+     * Send the user's profile again with the next frame that mentions them
+     */
+    public void forgetProfile(Long userId) {
+        cborSessions.values().forEach(knownUsers -> knownUsers.remove(userId));
+    }
+
+    @EventListener
+    public void handleSessionDisconnect(SessionDisconnectEvent event) {
+        cborSessions.remove(event.getSessionId());
+    }
+
+    public boolean isCborSession(String sessionId) {
+        return cborSessions.containsKey(sessionId);
+    }
+
+    private byte[] encode(byte[] jsonPayload, Set<Long> knownUsers, Set<Long> introduced) throws IOException {
+        CompactPayload compact = compacted.get(jsonPayload);
+        if (compact == null) {
+            compact = compact(jsonPayload);
+            compacted.put(jsonPayload, compact);
+        }
+
+        ObjectNode unknownProfiles = null;
+        for (Map.Entry<Long, JsonNode> profile : compact.profiles().entrySet()) {
+            if (!knownUsers.contains(profile.getKey())) {
+                if (unknownProfiles == null) {
+                    unknownProfiles = JsonNodeFactory.instance.objectNode();
+                }
+                unknownProfiles.set(profile.getKey().toString(), profile.getValue());
+                introduced.add(profile.getKey());
+            }
+        }
+
+        if (unknownProfiles == null) {
+            return compact.encodedWithoutProfiles();
+        }
+        ObjectNode envelope = JsonNodeFactory.instance.objectNode();
+        envelope.set("d", compact.data());
+        envelope.set("u", unknownProfiles);
+        return cborMapper.writeValueAsBytes(envelope);
+    }
+
+    private CompactPayload compact(byte[] jsonPayload) throws IOException {
+        JsonNode data = objectMapper.readTree(jsonPayload);
+        Map<Long, JsonNode> profiles = new HashMap<>();
+        extractSenders(data, profiles);
+
+        ObjectNode envelope = JsonNodeFactory.instance.objectNode();
+        envelope.set("d", data);
+        return new CompactPayload(data, profiles, cborMapper.writeValueAsBytes(envelope));
+    }
+
+    /**
+     * Replace nested sender objects with senderId and drop null fields
+     */
+    private static void extractSenders(JsonNode node, Map<Long, JsonNode> profiles) {
+        if (node.isArray()) {
+            node.forEach(child -> extractSenders(child, profiles));
+            return;
+        }
+        if (!(node instanceof ObjectNode object)) {
+            return;
+        }
+
+        JsonNode sender = object.get("sender");
+        if (sender != null && sender.isObject() && sender.hasNonNull("id")) {
+            long senderId = sender.get("id").asLong();
+            profiles.putIfAbsent(senderId, sender);
+            object.remove("sender");
+            object.put("senderId", senderId);
+        }
+
+        List<String> nullFields = new ArrayList<>();
+        object.fields().forEachRemaining(field -> {
+            if (field.getValue().isNull()) {
+                nullFields.add(field.getKey());
+            } else {
+                extractSenders(field.getValue(), profiles);
+            }
+        });
+        object.remove(nullFields);
+    }
+
+    private record CompactPayload(JsonNode data, Map<Long, JsonNode> profiles, byte[] encodedWithoutProfiles) {}
+}
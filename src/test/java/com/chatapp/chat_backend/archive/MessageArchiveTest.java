@@ -0,0 +1,154 @@
+package com.chatapp.chat_backend.archive;
+
+import com.chatapp.chat_backend.dtos.MessageResponseDto;
+import com.chatapp.chat_backend.dtos.UserResponseDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageArchiveTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void pagesAreReadNewestFirstAcrossBlocksAndSegments() throws IOException {
+		MessageArchive archive = archive(4, 400);
+		archive.append(1L, messages(1, 10));
+		archive.append(1L, messages(11, 25));
+
+		assertThat(archive.count(1L)).isEqualTo(25);
+		assertThat(archive.lastArchivedId(1L)).isEqualTo(25);
+		assertThat(segments(1L)).hasSizeGreaterThan(1);
+		assertThat(ids(archive.readNewestFirst(1L, 0, 10))).isEqualTo(LongStream.rangeClosed(16, 25)
+				.boxed().sorted((a, b) -> Long.compare(b, a)).collect(Collectors.toList()));
+		assertThat(ids(archive.readNewestFirst(1L, 20, 10))).containsExactly(5L, 4L, 3L, 2L, 1L);
+		assertThat(archive.readNewestFirst(1L, 25, 10)).isEmpty();
+		assertThat(archive.readNewestFirst(1L, 3, 1)).singleElement()
+				.satisfies(message -> assertThat(message.getContent()).isEqualTo("message 22"))
+				.satisfies(message -> assertThat(message.getSender().getId()).isEqualTo(7L));
+	}
+
+	@Test
+	void roomsWithoutAnArchiveAreEmpty() {
+		MessageArchive archive = archive(4, 1 << 20);
+
+		assertThat(archive.count(9L)).isZero();
+		assertThat(archive.lastArchivedId(9L)).isZero();
+		assertThat(archive.readNewestFirst(9L, 0, 10)).isEmpty();
+		assertThat(archive.archivedRoomIds()).isEmpty();
+	}
+
+	@Test
+	void aTornBlockIsIgnoredAndCutOffByTheNextAppend() throws IOException {
+		archive(4, 1 << 20).append(1L, messages(1, 8));
+		Path segment = segments(1L).get(0);
+		long intact = Files.size(segment);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			// A header promising more payload than was written before the crash
+			channel.write(ByteBuffer.allocate(40).putInt(0x4D534742).putInt(4).putLong(9).putLong(12)
+					.putInt(500).putInt(400).putInt(0).flip());
+		}
+
+		MessageArchive reopened = archive(4, 1 << 20);
+		assertThat(reopened.count(1L)).isEqualTo(8);
+
+		reopened.append(1L, messages(9, 12));
+		assertThat(Files.size(segment)).isGreaterThan(intact);
+		MessageArchive again = archive(4, 1 << 20);
+		assertThat(again.count(1L)).isEqualTo(12);
+		assertThat(ids(again.readNewestFirst(1L, 0, 12))).startsWith(12L, 11L, 10L, 9L, 8L).endsWith(1L);
+	}
+
+	@Test
+	void corruptBlocksAreRefused() throws IOException {
+		archive(8, 1 << 20).append(1L, messages(1, 8));
+		Path segment = segments(1L).get(0);
+		byte[] bytes = Files.readAllBytes(segment);
+		bytes[bytes.length - 1] ^= 0x5A;
+		Files.write(segment, bytes);
+
+		assertThatThrownBy(() -> archive(8, 1 << 20).readNewestFirst(1L, 0, 8))
+				.hasMessageContaining("Corrupt archive block");
+	}
+
+	@Test
+	void blocksAppendedByAnotherNodeAreSeenOnTheNextRead() {
+		MessageArchive reader = archive(4, 1 << 20);
+		MessageArchive writer = archive(4, 1 << 20);
+		writer.append(1L, messages(1, 4));
+		assertThat(reader.count(1L)).isEqualTo(4);
+
+		writer.append(1L, messages(5, 6));
+
+		assertThat(reader.count(1L)).isEqualTo(6);
+		assertThat(ids(reader.readNewestFirst(1L, 0, 1))).containsExactly(6L);
+	}
+
+	@Test
+	void messagesAreFoundByIdInTheirBlock() {
+		MessageArchive archive = archive(4, 400);
+		archive.append(1L, messages(1, 10));
+		archive.append(1L, messages(21, 25));
+
+		assertThat(archive.find(1L, 7L)).hasValueSatisfying(message ->
+				assertThat(message.getContent()).isEqualTo("message 7"));
+		assertThat(archive.find(1L, 25L)).isPresent();
+		assertThat(archive.find(1L, 15L)).isEmpty();
+		assertThat(archive.find(1L, 26L)).isEmpty();
+		assertThat(archive.find(2L, 7L)).isEmpty();
+	}
+
+	@Test
+	void archivedRoomsAreListed() {
+		MessageArchive archive = archive(4, 1 << 20);
+		archive.append(12L, messages(1, 1));
+		archive.append(3L, messages(2, 2));
+
+		assertThat(archive.archivedRoomIds()).containsExactly(3L, 12L);
+	}
+
+	private MessageArchive archive(int blockMessages, long segmentMaxBytes) {
+		return new MessageArchive(objectMapper, dir.toString(), blockMessages, segmentMaxBytes, 100);
+	}
+
+	private List<Path> segments(Long chatRoomId) throws IOException {
+		try (Stream<Path> files = Files.list(dir.resolve("room-" + chatRoomId))) {
+			return files.sorted().collect(Collectors.toList());
+		}
+	}
+
+	private static List<MessageResponseDto> messages(long fromId, long toId) {
+		return LongStream.rangeClosed(fromId, toId)
+				.mapToObj(id -> MessageResponseDto.builder()
+						.id(id)
+						.content("message " + id)
+						.type("TEXT")
+						.sender(UserResponseDto.builder().id(7L).username("alice").build())
+						.chatRoomId(1L)
+						.createdAt(LocalDateTime.of(2024, 1, 1, 0, 0).plusMinutes(id))
+						.build())
+				.collect(Collectors.toList());
+	}
+
+	private static List<Long> ids(List<MessageResponseDto> messages) {
+		return messages.stream().map(MessageResponseDto::getId).collect(Collectors.toList());
+	}
+}
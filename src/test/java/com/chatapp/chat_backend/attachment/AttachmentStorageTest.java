@@ -0,0 +1,118 @@
+package com.chatapp.chat_backend.attachment;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AttachmentStorageTest {
+
+	@TempDir
+	private Path dir;
+
+	private AttachmentStorage storage;
+
+	@BeforeEach
+	void setUp() {
+		storage = new AttachmentStorage(dir.toString(), 1024 * 1024);
+	}
+
+	@Test
+	void stagedUploadsAreHashedOverTheirWholeContent() throws Exception {
+		// Larger than the hashing buffer, so the digest spans several reads
+		byte[] content = new byte[200 * 1024 + 17];
+		new Random(7).nextBytes(content);
+
+		AttachmentStorage.TempFile temp = storage.stage(new MockMultipartFile("file", content));
+
+		assertThat(temp.size()).isEqualTo(content.length);
+		assertThat(temp.sha256()).isEqualTo(sha256(content));
+		assertThat(Files.readAllBytes(temp.path())).isEqualTo(content);
+		assertThat(storage.getBytesWritten()).isEqualTo(content.length);
+	}
+
+	@Test
+	void emptyContentHashesToTheEmptyDigest() throws Exception {
+		AttachmentStorage.TempFile temp = storage.stage(new MockMultipartFile("file", new byte[0]));
+
+		assertThat(temp.sha256()).isEqualTo("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+	}
+
+	@Test
+	void oversizedUploadsAreRejectedWithoutLeavingAFile() {
+		AttachmentStorage small = new AttachmentStorage(dir.toString(), 4);
+
+		assertThatThrownBy(() -> small.stage(new MockMultipartFile("file", "too large".getBytes(StandardCharsets.UTF_8))))
+				.hasMessageContaining("maximum size");
+		assertThat(dir.resolve("tmp")).doesNotExist();
+	}
+
+	@Test
+	void identicalContentIsStoredOnce() throws Exception {
+		byte[] content = "same bytes".getBytes(StandardCharsets.UTF_8);
+		AttachmentStorage.TempFile first = storage.stage(new MockMultipartFile("file", content));
+		AttachmentStorage.TempFile second = storage.stage(new MockMultipartFile("file", content));
+
+		assertThat(storage.install(first)).isTrue();
+		assertThat(storage.install(second)).isFalse();
+
+		assertThat(storage.resolve(first.sha256())).hasBinaryContent(content);
+		assertThat(first.path()).doesNotExist();
+		assertThat(second.path()).doesNotExist();
+		assertThat(storage.getDedupHits()).isEqualTo(1);
+		assertThat(storage.getBytesDeduplicated()).isEqualTo(content.length);
+	}
+
+	@Test
+	void deletingABlobTakesItsRenditions() throws Exception {
+		byte[] content = "image".getBytes(StandardCharsets.UTF_8);
+		AttachmentStorage.TempFile temp = storage.stage(new MockMultipartFile("file", content));
+		storage.install(temp);
+		Path thumbnail = storage.resolveRendition(temp.sha256(), "thumb");
+		Files.createDirectories(thumbnail.getParent());
+		Files.write(thumbnail, new byte[]{1});
+
+		storage.delete(temp.sha256(), content.length);
+
+		assertThat(storage.resolve(temp.sha256())).doesNotExist();
+		assertThat(thumbnail).doesNotExist();
+		assertThat(storage.getBytesReclaimed()).isEqualTo(content.length);
+	}
+
+	@Test
+	void theOrphanSweepSeesOnlyStoredFilesPastTheCutoff() throws Exception {
+		AttachmentStorage.TempFile old = storage.stage(new MockMultipartFile("file", new byte[]{1, 2, 3}));
+		storage.install(old);
+		Files.setLastModifiedTime(storage.resolve(old.sha256()), FileTime.from(Instant.now().minusSeconds(3600)));
+		AttachmentStorage.TempFile recent = storage.stage(new MockMultipartFile("file", new byte[]{4}));
+		storage.install(recent);
+		AttachmentStorage.TempFile abandoned = storage.stage(new MockMultipartFile("file", new byte[]{5}));
+		Files.setLastModifiedTime(abandoned.path(), FileTime.from(Instant.now().minusSeconds(3600)));
+
+		Map<String, Long> seen = new HashMap<>();
+		Instant cutoff = Instant.now().minusSeconds(60);
+		storage.forEachStoredBefore(cutoff, seen::put);
+
+		assertThat(seen).containsExactly(Map.entry(old.sha256(), 3L));
+		assertThat(storage.sweepTemp(cutoff)).isEqualTo(1);
+		assertThat(abandoned.path()).doesNotExist();
+	}
+
+	private static String sha256(byte[] content) throws Exception {
+		return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+	}
+}
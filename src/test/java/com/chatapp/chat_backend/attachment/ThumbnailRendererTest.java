@@ -0,0 +1,129 @@
+package com.chatapp.chat_backend.attachment;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ThumbnailRendererTest {
+
+	private static final String SHA = "ab".repeat(32);
+
+	@TempDir
+	private Path dir;
+
+	private AttachmentStorage storage;
+	private ThumbnailRenderer renderer;
+
+	@BeforeEach
+	void setUp() {
+		storage = new AttachmentStorage(dir.toString(), 1024 * 1024 * 64);
+		renderer = new ThumbnailRenderer(storage, 320, 1280, 100_000_000L, 0.8f, "", 30_000);
+	}
+
+	@Test
+	void landscapeImagesAreBoundedByTheirWidth() throws Exception {
+		store(4000, 3000);
+
+		Dimension thumbnail = renderer.render(SHA, "image/png");
+
+		assertThat(thumbnail).isEqualTo(new Dimension(320, 240));
+		assertThat(size(ThumbnailRenderer.THUMBNAIL)).isEqualTo(new Dimension(320, 240));
+		assertThat(size(ThumbnailRenderer.PREVIEW)).isEqualTo(new Dimension(1280, 960));
+	}
+
+	@Test
+	void portraitImagesAreBoundedByTheirHeight() throws Exception {
+		store(600, 1200);
+
+		assertThat(renderer.render(SHA, "image/png")).isEqualTo(new Dimension(160, 320));
+		assertThat(size(ThumbnailRenderer.PREVIEW)).isEqualTo(new Dimension(600, 1200));
+	}
+
+	@Test
+	void smallImagesAreNeverScaledUp() throws Exception {
+		store(100, 50);
+
+		assertThat(renderer.render(SHA, "image/png")).isEqualTo(new Dimension(100, 50));
+		assertThat(size(ThumbnailRenderer.PREVIEW)).isEqualTo(new Dimension(100, 50));
+	}
+
+	@Test
+	void extremeAspectRatiosKeepAtLeastOnePixel() throws Exception {
+		store(4000, 2);
+
+		assertThat(renderer.render(SHA, "image/png")).isEqualTo(new Dimension(320, 1));
+	}
+
+	@Test
+	void imagesPastThePixelLimitAreRefused() throws Exception {
+		renderer = new ThumbnailRenderer(storage, 320, 1280, 1000L, 0.8f, "", 30_000);
+		store(100, 100);
+
+		assertThatThrownBy(() -> renderer.render(SHA, "image/png")).hasMessageContaining("too large");
+		assertThat(storage.resolveRendition(SHA, ThumbnailRenderer.THUMBNAIL)).doesNotExist();
+	}
+
+	@Test
+	void cachedRendersAreReusedWithoutDecoding() throws Exception {
+		store(640, 480);
+		renderer.render(SHA, "image/png");
+		// Corrupt the source: a second render must not touch it
+		Files.writeString(storage.resolve(SHA), "not an image");
+
+		assertThat(renderer.render(SHA, "image/png")).isEqualTo(new Dimension(320, 240));
+	}
+
+	@Test
+	void videoIsOnlyRenderedWithFfmpeg() {
+		assertThat(renderer.canRender("image/jpeg")).isTrue();
+		assertThat(renderer.canRender("video/mp4")).isFalse();
+		assertThat(new ThumbnailRenderer(storage, 320, 1280, 1L, 0.8f, "/usr/bin/ffmpeg", 1).canRender("video/mp4"))
+				.isTrue();
+	}
+
+	@Test
+	void containersAreSniffedFromTheirMagicBytes() throws Exception {
+		assertThat(ThumbnailRenderer.sniffContainer(file(new byte[]{0, 0, 0, 0x18, 'f', 't', 'y', 'p', 'm', 'p', '4', '2'})))
+				.isEqualTo("mov");
+		assertThat(ThumbnailRenderer.sniffContainer(file(new byte[]{0x1a, 0x45, (byte) 0xdf, (byte) 0xa3, 1})))
+				.isEqualTo("matroska");
+		assertThat(ThumbnailRenderer.sniffContainer(file("RIFF\0\0\0\0AVI LIST".getBytes(StandardCharsets.ISO_8859_1))))
+				.isEqualTo("avi");
+		assertThat(ThumbnailRenderer.sniffContainer(file("OggS\0\2".getBytes(StandardCharsets.ISO_8859_1))))
+				.isEqualTo("ogg");
+	}
+
+	@Test
+	void unknownOrDangerousContainersAreNotHandedToFfmpeg() throws Exception {
+		assertThat(ThumbnailRenderer.sniffContainer(file("#EXTM3U\nhttp://internal/".getBytes(StandardCharsets.UTF_8))))
+				.isNull();
+		assertThat(ThumbnailRenderer.sniffContainer(file("RIFF\0\0\0\0WAVEfmt ".getBytes(StandardCharsets.ISO_8859_1))))
+				.isNull();
+		assertThat(ThumbnailRenderer.sniffContainer(file(new byte[]{0x1a}))).isNull();
+	}
+
+	private void store(int width, int height) throws Exception {
+		Path file = storage.resolve(SHA);
+		Files.createDirectories(file.getParent());
+		ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+	}
+
+	private Dimension size(String rendition) throws Exception {
+		BufferedImage image = ImageIO.read(storage.resolveRendition(SHA, rendition).toFile());
+		return new Dimension(image.getWidth(), image.getHeight());
+	}
+
+	private Path file(byte[] content) throws Exception {
+		return Files.write(Files.createTempFile(dir, "video", ".bin"), content);
+	}
+}
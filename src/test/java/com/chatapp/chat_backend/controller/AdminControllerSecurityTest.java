@@ -0,0 +1,79 @@
+package com.chatapp.chat_backend.controller;
+
+import com.chatapp.chat_backend.config.SecurityConfig;
+import com.chatapp.chat_backend.datasource.ReplicaRoutingDataSource;
+import com.chatapp.chat_backend.datasource.ShardBindingHandlerInterceptor;
+import com.chatapp.chat_backend.dtos.SessionStatsDto;
+import com.chatapp.chat_backend.security.JwtUtil;
+import com.chatapp.chat_backend.security.RateLimiter;
+import com.chatapp.chat_backend.service.*;
+import com.chatapp.chat_backend.websocket.OutboundQueueMonitor;
+import com.chatapp.chat_backend.websocket.StompSessionRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(AdminController.class)
+@Import(SecurityConfig.class)
+class AdminControllerSecurityTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockitoBean private JwtUtil jwtUtil;
+	@MockitoBean private UserDetailsService userDetailsService;
+	@MockitoBean private RateLimiter rateLimiter;
+	@MockitoBean private ShardBindingHandlerInterceptor shardBindingHandlerInterceptor;
+	@MockitoBean private StompSessionRegistry sessionRegistry;
+	@MockitoBean private OutboundQueueMonitor outboundQueueMonitor;
+	@MockitoBean private ClusterFanoutService clusterFanoutService;
+	@MockitoBean private NotificationService notificationService;
+	@MockitoBean private CacheStatisticsService cacheStatisticsService;
+	@MockitoBean private TwoLevelCache twoLevelCache;
+	@MockitoBean private ReplicaRoutingDataSource replicaRoutingDataSource;
+	@MockitoBean private ShardRebalancer shardRebalancer;
+	@MockitoBean private MessageArchiver messageArchiver;
+	@MockitoBean private WalMessageService walMessageService;
+	@MockitoBean private MessageCompactor messageCompactor;
+	@MockitoBean private AttachmentService attachmentService;
+	@MockitoBean private ThumbnailService thumbnailService;
+
+	@Test
+	void anonymousRequestsAreRejected() throws Exception {
+		mockMvc.perform(get("/api/admin/websocket/sessions"))
+				.andExpect(status().isForbidden());
+	}
+
+	@Test
+	@WithMockUser(roles = "USER")
+	void regularUsersCannotReadAdminEndpoints() throws Exception {
+		mockMvc.perform(get("/api/admin/websocket/sessions"))
+				.andExpect(status().isForbidden());
+	}
+
+	@Test
+	@WithMockUser(roles = "USER")
+	void regularUsersCannotMoveRooms() throws Exception {
+		mockMvc.perform(post("/api/admin/shards/rooms/1/move").param("targetShard", "1"))
+				.andExpect(status().isForbidden());
+	}
+
+	@Test
+	@WithMockUser(roles = "ADMIN")
+	void adminsCanReadAdminEndpoints() throws Exception {
+		when(sessionRegistry.getStats()).thenReturn(new SessionStatsDto());
+
+		mockMvc.perform(get("/api/admin/websocket/sessions"))
+				.andExpect(status().isOk());
+	}
+}
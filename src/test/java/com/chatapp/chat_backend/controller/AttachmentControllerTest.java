@@ -0,0 +1,144 @@
+package com.chatapp.chat_backend.controller;
+
+import com.chatapp.chat_backend.attachment.AttachmentStorage;
+import com.chatapp.chat_backend.config.SecurityConfig;
+import com.chatapp.chat_backend.datasource.ReplicaRoutingDataSource;
+import com.chatapp.chat_backend.datasource.ShardBindingHandlerInterceptor;
+import com.chatapp.chat_backend.entity.Attachment;
+import com.chatapp.chat_backend.entity.User;
+import com.chatapp.chat_backend.repository.UserRepository;
+import com.chatapp.chat_backend.security.JwtUtil;
+import com.chatapp.chat_backend.security.RateLimiter;
+import com.chatapp.chat_backend.service.*;
+import com.chatapp.chat_backend.websocket.OutboundQueueMonitor;
+import com.chatapp.chat_backend.websocket.StompSessionRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(AttachmentController.class)
+@Import(SecurityConfig.class)
+@WithMockUser(username = "alice")
+class AttachmentControllerTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@MockitoBean private JwtUtil jwtUtil;
+	@MockitoBean private UserDetailsService userDetailsService;
+	@MockitoBean private RateLimiter rateLimiter;
+	@MockitoBean private ShardBindingHandlerInterceptor shardBindingHandlerInterceptor;
+	@MockitoBean private StompSessionRegistry sessionRegistry;
+	@MockitoBean private OutboundQueueMonitor outboundQueueMonitor;
+	@MockitoBean private ClusterFanoutService clusterFanoutService;
+	@MockitoBean private NotificationService notificationService;
+	@MockitoBean private CacheStatisticsService cacheStatisticsService;
+	@MockitoBean private TwoLevelCache twoLevelCache;
+	@MockitoBean private ReplicaRoutingDataSource replicaRoutingDataSource;
+	@MockitoBean private AttachmentService attachmentService;
+	@MockitoBean private AttachmentStorage storage;
+	@MockitoBean private ThumbnailService thumbnailService;
+	@MockitoBean private UserRepository userRepository;
+
+	@TempDir
+	private Path dir;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		when(userRepository.findByUsername("alice")).thenReturn(Optional.of(User.builder().id(1L).build()));
+		Path file = Files.writeString(dir.resolve("content"), "<script>alert(1)</script>");
+		when(storage.resolve(any())).thenReturn(file);
+	}
+
+	@Test
+	void whitelistedMediaIsShownInline() throws Exception {
+		stored("cat.png", "image/png");
+
+		mockMvc.perform(get("/api/attachments/7"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Content-Disposition", startsWith("inline;")))
+				.andExpect(header().string("X-Content-Type-Options", "nosniff"))
+				.andExpect(header().string("Content-Security-Policy", startsWith("default-src 'none'")));
+	}
+
+	@Test
+	void markupIsForcedToDownload() throws Exception {
+		stored("page.html", "text/html");
+
+		mockMvc.perform(get("/api/attachments/7"))
+				.andExpect(status().isOk())
+				.andExpect(header().string("Content-Disposition", startsWith("attachment;")))
+				.andExpect(header().string("X-Content-Type-Options", "nosniff"))
+				.andExpect(header().string("Content-Security-Policy", startsWith("default-src 'none'")));
+	}
+
+	@Test
+	void svgIsNotTreatedAsAnImage() throws Exception {
+		stored("logo.svg", "image/svg+xml");
+
+		mockMvc.perform(get("/api/attachments/7"))
+				.andExpect(header().string("Content-Disposition", startsWith("attachment;")));
+	}
+
+	@Test
+	void typeParametersAndCaseDoNotDefeatTheWhitelist() throws Exception {
+		stored("clip.mp4", "Video/MP4; codecs=avc1");
+
+		mockMvc.perform(get("/api/attachments/7"))
+				.andExpect(header().string("Content-Disposition", startsWith("inline;")));
+	}
+
+	@Test
+	void thumbnailsStillRenderingAskTheClientToRetry() throws Exception {
+		stored("cat.png", "image/png");
+		when(storage.resolveRendition(any(), any())).thenReturn(dir.resolve("missing.jpg"));
+		when(thumbnailService.isRenderable(any())).thenReturn(true);
+
+		mockMvc.perform(get("/api/attachments/7/thumbnail"))
+				.andExpect(status().isAccepted())
+				.andExpect(header().string("Retry-After", "2"));
+		verify(thumbnailService).request(any());
+	}
+
+	@Test
+	void contentWithoutThumbnailsIsNotFound() throws Exception {
+		stored("notes.pdf", "application/pdf");
+		when(storage.resolveRendition(any(), any())).thenReturn(dir.resolve("missing.jpg"));
+		when(thumbnailService.isRenderable(any())).thenReturn(false);
+
+		mockMvc.perform(get("/api/attachments/7/preview"))
+				.andExpect(status().isNotFound());
+		verify(thumbnailService, never()).request(any());
+	}
+
+	private void stored(String fileName, String contentType) {
+		when(attachmentService.getForDownload(7L, 1L)).thenReturn(Attachment.builder()
+				.id(7L)
+				.uploaderId(1L)
+				.fileName(fileName)
+				.contentType(contentType)
+				.fileSize(25L)
+				.sha256("ab".repeat(32))
+				.build());
+	}
+}
@@ -0,0 +1,165 @@
+package com.chatapp.chat_backend.datasource;
+
+import com.chatapp.chat_backend.config.ReplicaDataSourceConfig;
+import com.chatapp.chat_backend.security.AuthenticatedUser;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplicaRoutingDataSourceTest {
+
+	private final ReplicaDataSourceConfig config = new ReplicaDataSourceConfig();
+	private final ReadYourWrites readYourWrites = new ReadYourWrites(true, 200);
+	private ReplicaRoutingDataSource routing;
+	private JdbcTemplate jdbc;
+	private TransactionTemplate writeTransaction;
+	private TransactionTemplate readTransaction;
+
+	@BeforeEach
+	void setUp() {
+		MockEnvironment environment = new MockEnvironment()
+				.withProperty("spring.datasource.hikari.connection-timeout", "1234")
+				.withProperty("spring.datasource.hikari.maximum-pool-size", "3");
+		routing = routing(environment, "");
+
+		for (String node : List.of("primary", "replica")) {
+			JdbcTemplate direct = new JdbcTemplate(routing.getResolvedDataSources().get(
+					node.equals("primary") ? ReplicaRoutingDataSource.PRIMARY : "replica-0"));
+			direct.execute("CREATE TABLE node (name VARCHAR(20))");
+			direct.update("INSERT INTO node VALUES (?)", node);
+		}
+		routing.checkReplicas();
+
+		DataSource dataSource = config.dataSource(routing);
+		jdbc = new JdbcTemplate(dataSource);
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		writeTransaction = new TransactionTemplate(transactionManager);
+		readTransaction = new TransactionTemplate(transactionManager);
+		readTransaction.setReadOnly(true);
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		SecurityContextHolder.clearContext();
+		routing.close();
+	}
+
+	@Test
+	void poolsTakeTheSpringHikariSettings() {
+		HikariDataSource primary = (HikariDataSource) routing.getResolvedDataSources().get(ReplicaRoutingDataSource.PRIMARY);
+		HikariDataSource replica = (HikariDataSource) routing.getResolvedDataSources().get("replica-0");
+
+		assertThat(primary.getConnectionTimeout()).isEqualTo(1234);
+		assertThat(primary.getMaximumPoolSize()).isEqualTo(3);
+		assertThat(replica.getConnectionTimeout()).isEqualTo(1234);
+		// The replica pool size has its own property
+		assertThat(replica.getMaximumPoolSize()).isEqualTo(4);
+		assertThat(replica.isReadOnly()).isTrue();
+	}
+
+	@Test
+	void readOnlyTransactionsGoToTheReplica() {
+		assertThat(readNode()).isEqualTo("replica");
+		String written = writeTransaction.execute(status -> nodeName());
+		assertThat(written).isEqualTo("primary");
+	}
+
+	@Test
+	void writeWithoutSecurityContextKeepsTheWritersReadsOnThePrimary() throws InterruptedException {
+		// A STOMP send: no security context, the service names the sender
+		writeTransaction.executeWithoutResult(status -> {
+			readYourWrites.recordWrite(7L);
+			jdbc.update("INSERT INTO node VALUES ('message')");
+		});
+
+		authenticate(7L);
+		assertThat(readNode()).isEqualTo("primary");
+		authenticate(8L);
+		assertThat(readNode()).isEqualTo("replica");
+
+		Thread.sleep(250);
+		authenticate(7L);
+		assertThat(readNode()).isEqualTo("replica");
+	}
+
+	@Test
+	void restWritesAreAttributedToTheAuthenticatedUser() {
+		authenticate(7L);
+		writeTransaction.executeWithoutResult(status -> jdbc.update("INSERT INTO node VALUES ('message')"));
+
+		assertThat(readNode()).isEqualTo("primary");
+		assertThat(routing.getStats().getStickyReads()).isEqualTo(1);
+	}
+
+	@Test
+	void cacheLoadsReadThePrimary() {
+		assertThat(readYourWrites.onPrimary(this::readNode)).isEqualTo("primary");
+		assertThat(routing.getStats().getCacheLoadReads()).isEqualTo(1);
+
+		// The hint ends with the load
+		assertThat(readNode()).isEqualTo("replica");
+	}
+
+	@Test
+	void rolledBackWritesDoNotStick() {
+		writeTransaction.executeWithoutResult(status -> {
+			readYourWrites.recordWrite(7L);
+			jdbc.update("INSERT INTO node VALUES ('message')");
+			status.setRollbackOnly();
+		});
+
+		authenticate(7L);
+		assertThat(readNode()).isEqualTo("replica");
+	}
+
+	@Test
+	void laggingReplicaIsTakenOutOfRotation() throws Exception {
+		routing.close();
+		routing = routing(new MockEnvironment(), "SELECT 60 AS lag");
+		routing.checkReplicas();
+
+		assertThat(routing.getStats().getReplicas().get(0).getHealthy()).isFalse();
+		TransactionTemplate read = new TransactionTemplate(new DataSourceTransactionManager(config.dataSource(routing)));
+		read.setReadOnly(true);
+		read.executeWithoutResult(status -> new JdbcTemplate(config.dataSource(routing)).execute("SELECT 1"));
+		assertThat(routing.getStats().getPrimaryReads()).isPositive();
+	}
+
+	private ReplicaRoutingDataSource routing(MockEnvironment environment, String lagQuery) {
+		DataSourceProperties properties = new DataSourceProperties();
+		properties.setUrl("jdbc:h2:mem:primary-" + System.nanoTime());
+		properties.setUsername("sa");
+		properties.setPassword("");
+		ReplicaRoutingDataSource dataSource = config.replicaRoutingDataSource(properties, environment, readYourWrites,
+				List.of("jdbc:h2:mem:replica-" + System.nanoTime()), "sa", "", 4, 2, lagQuery, "lag");
+		dataSource.afterPropertiesSet();
+		return dataSource;
+	}
+
+	private String readNode() {
+		return readTransaction.execute(status -> nodeName());
+	}
+
+	private String nodeName() {
+		return jdbc.queryForObject("SELECT MIN(name) FROM node WHERE name <> 'message'", String.class);
+	}
+
+	private static void authenticate(Long userId) {
+		AuthenticatedUser user = new AuthenticatedUser(userId, "user" + userId, "", List.of());
+		SecurityContextHolder.getContext().setAuthentication(
+				new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+	}
+}
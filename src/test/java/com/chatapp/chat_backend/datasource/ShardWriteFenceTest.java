@@ -0,0 +1,56 @@
+package com.chatapp.chat_backend.datasource;
+
+import com.chatapp.chat_backend.exception.RoomMigratingException;
+import com.chatapp.chat_backend.repository.RoomWriteFenceRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class ShardWriteFenceTest {
+
+	private final MessageShardResolver shardResolver = mock(MessageShardResolver.class);
+	private final RoomWriteFenceRepository repository = mock(RoomWriteFenceRepository.class);
+	private final ShardWriteFence fence = new ShardWriteFence(shardResolver, repository);
+
+	@Test
+	void unshardedDeploymentsAreNeverChecked() {
+		fence.checkWritable(1L);
+
+		assertThat(fence.fencedRooms(List.of(1L, 2L))).isEmpty();
+		verifyNoInteractions(repository);
+	}
+
+	@Test
+	void unfencedRoomsAreWritable() {
+		when(shardResolver.isSharded()).thenReturn(true);
+		when(repository.lockFences(List.of(1L))).thenReturn(Arrays.asList((Long) null));
+
+		fence.checkWritable(1L);
+
+		verify(repository).lockFences(List.of(1L));
+	}
+
+	@Test
+	void fencedRoomsAreRefused() {
+		when(shardResolver.isSharded()).thenReturn(true);
+		when(repository.lockFences(List.of(1L))).thenReturn(List.of(1L));
+
+		assertThatThrownBy(() -> fence.checkWritable(1L))
+				.isInstanceOf(RoomMigratingException.class)
+				.hasMessageContaining("Chat room 1");
+	}
+
+	@Test
+	void fencedRoomsAreReportedWithoutTheOthers() {
+		when(shardResolver.isSharded()).thenReturn(true);
+		when(repository.lockFences(List.of(1L, 2L, 3L))).thenReturn(Arrays.asList(null, 2L, null));
+
+		assertThat(fence.fencedRooms(List.of(1L, 2L, 3L))).isEqualTo(Set.of(2L));
+	}
+}
@@ -0,0 +1,93 @@
+package com.chatapp.chat_backend.repository;
+
+import com.chatapp.chat_backend.entity.AttachmentBlob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:blobs;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+		"spring.datasource.username=sa"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class AttachmentBlobRepositoryTest {
+
+	private static final String SHA = "ab".repeat(32);
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private AttachmentBlobRepository blobRepository;
+
+	@Test
+	void everyAcquireAddsAReference() {
+		blobRepository.acquire(SHA, 10);
+		blobRepository.acquire(SHA, 10);
+
+		assertThat(blob().getRefCount()).isEqualTo(2);
+		assertThat(blob().getFileSize()).isEqualTo(10);
+		assertThat(blob().getUnreferencedAt()).isNull();
+	}
+
+	@Test
+	void theLastReleaseStampsTheBlobUnreferenced() {
+		blobRepository.acquire(SHA, 10);
+		blobRepository.acquire(SHA, 10);
+
+		blobRepository.release(SHA);
+		assertThat(blob().getRefCount()).isEqualTo(1);
+		assertThat(blob().getUnreferencedAt()).isNull();
+
+		blobRepository.release(SHA);
+		assertThat(blob().getRefCount()).isZero();
+		assertThat(blob().getUnreferencedAt()).isNotNull();
+	}
+
+	@Test
+	void releasesNeverTakeTheCountBelowZero() {
+		blobRepository.acquire(SHA, 10);
+		blobRepository.release(SHA);
+
+		assertThat(blobRepository.release(SHA)).isZero();
+		assertThat(blob().getRefCount()).isZero();
+	}
+
+	@Test
+	void reacquiringAnUnreferencedBlobSavesItFromCollection() {
+		blobRepository.acquire(SHA, 10);
+		blobRepository.release(SHA);
+
+		blobRepository.acquire(SHA, 10);
+
+		assertThat(blob().getRefCount()).isEqualTo(1);
+		assertThat(blob().getUnreferencedAt()).isNull();
+		assertThat(blobRepository.findCollectable(LocalDateTime.now().plusDays(1), PageRequest.of(0, 10))).isEmpty();
+	}
+
+	@Test
+	void onlyBlobsUnreferencedPastTheCutoffAreCollectable() {
+		blobRepository.acquire(SHA, 10);
+		blobRepository.release(SHA);
+		blobRepository.acquire("cd".repeat(32), 10);
+
+		assertThat(blobRepository.findCollectable(LocalDateTime.now().plusDays(1), PageRequest.of(0, 10)))
+				.containsExactly(SHA);
+		assertThat(blobRepository.findCollectable(LocalDateTime.now().minusDays(1), PageRequest.of(0, 10)))
+				.isEmpty();
+		assertThat(blobRepository.lockUnreferenced(SHA)).isPresent();
+		assertThat(blobRepository.lockUnreferenced("cd".repeat(32))).isEmpty();
+	}
+
+	private AttachmentBlob blob() {
+		entityManager.clear();
+		return entityManager.find(AttachmentBlob.class, SHA);
+	}
+}
@@ -0,0 +1,113 @@
+package com.chatapp.chat_backend.repository;
+
+import com.chatapp.chat_backend.entity.ChatRoom;
+import com.chatapp.chat_backend.entity.Message;
+import com.chatapp.chat_backend.entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+class MessageRepositoryCompactionTest {
+
+	private static final LocalDateTime START = LocalDateTime.of(1970, 1, 1, 0, 0);
+	private static final LocalDateTime T1 = LocalDateTime.of(2024, 1, 1, 10, 0);
+	private static final LocalDateTime T2 = LocalDateTime.of(2024, 1, 2, 10, 0);
+	private static final LocalDateTime CUTOFF = LocalDateTime.of(2024, 2, 1, 0, 0);
+
+	@Autowired
+	private TestEntityManager entityManager;
+
+	@Autowired
+	private MessageRepository messageRepository;
+
+	private User sender;
+	private ChatRoom room;
+
+	@BeforeEach
+	void setUp() {
+		sender = entityManager.persist(User.builder()
+				.username("alice")
+				.email("alice@example.com")
+				.password("secret")
+				.build());
+		room = entityManager.persist(ChatRoom.builder().name("room").creator(sender).build());
+	}
+
+	@Test
+	void theKeysetWalkVisitsEveryPurgeableMessageOnceAcrossTies() {
+		List<Long> expected = new ArrayList<>();
+		// Three deletions share a timestamp, so pages must break ties by id
+		expected.add(message(T1).getId());
+		expected.add(message(T1).getId());
+		expected.add(message(T1).getId());
+		expected.add(message(T2).getId());
+		expected.add(message(T2).getId());
+		message(CUTOFF.plusDays(1));
+		message(null);
+		entityManager.flush();
+
+		List<Long> visited = new ArrayList<>();
+		LocalDateTime afterDeletedAt = START;
+		long afterId = 0;
+		while (true) {
+			List<Object[]> page = messageRepository.findPurgeCandidates(CUTOFF, afterDeletedAt, afterId,
+					PageRequest.of(0, 2));
+			if (page.isEmpty()) {
+				break;
+			}
+			page.forEach(row -> visited.add((Long) row[0]));
+			Object[] last = page.get(page.size() - 1);
+			afterId = (Long) last[0];
+			afterDeletedAt = (LocalDateTime) last[1];
+		}
+
+		assertThat(visited).isEqualTo(expected);
+	}
+
+	@Test
+	void theOldestDeletionIsReportedForLag() {
+		message(T2);
+		message(T1);
+		message(null);
+		entityManager.flush();
+
+		assertThat(messageRepository.findOldestDeletedAt()).contains(T1);
+	}
+
+	@Test
+	void repliesToPurgedMessagesAreDetached() {
+		Message purged = message(T1);
+		Message reply = entityManager.persist(Message.builder()
+				.content("reply")
+				.sender(sender)
+				.chatRoom(room)
+				.replyTo(purged)
+				.build());
+		entityManager.flush();
+
+		assertThat(messageRepository.detachReplies(List.of(purged.getId()))).isEqualTo(1);
+		entityManager.clear();
+		assertThat(messageRepository.findById(reply.getId())).get()
+				.satisfies(found -> assertThat(found.getReplyTo()).isNull());
+	}
+
+	private Message message(LocalDateTime deletedAt) {
+		return entityManager.persist(Message.builder()
+				.content(deletedAt != null ? "[This message was deleted]" : "hello")
+				.sender(sender)
+				.chatRoom(room)
+				.isDeleted(deletedAt != null)
+				.deletedAt(deletedAt)
+				.build());
+	}
+}
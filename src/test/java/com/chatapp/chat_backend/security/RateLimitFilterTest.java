@@ -0,0 +1,67 @@
+package com.chatapp.chat_backend.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RateLimitFilterTest {
+
+	private final RateLimiter rateLimiter = mock(RateLimiter.class);
+	private final RateLimitFilter filter = new RateLimitFilter(rateLimiter, new ObjectMapper().findAndRegisterModules());
+
+	@AfterEach
+	void tearDown() {
+		SecurityContextHolder.clearContext();
+	}
+
+	@Test
+	void restCallsAreKeyedByUserId() throws Exception {
+		authenticate(new AuthenticatedUser(42L, "alice", "", List.of()));
+		when(rateLimiter.tryAcquire(RateLimiter.SEND, 42L, 3L)).thenReturn(true);
+
+		MockHttpServletResponse response = send("POST", "/api/chatrooms/3/messages");
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		verify(rateLimiter).tryAcquire(RateLimiter.SEND, 42L, 3L);
+	}
+
+	@Test
+	void refusedCallsGetTooManyRequests() throws Exception {
+		authenticate(new AuthenticatedUser(42L, "alice", "", List.of()));
+		when(rateLimiter.tryAcquire(RateLimiter.REST, 42L, 3L)).thenReturn(false);
+
+		MockHttpServletResponse response = send("GET", "/api/chatrooms/3/messages/search");
+
+		assertThat(response.getStatus()).isEqualTo(429);
+	}
+
+	@Test
+	void otherPathsAreNotLimited() throws Exception {
+		authenticate(new AuthenticatedUser(42L, "alice", "", List.of()));
+
+		assertThat(send("GET", "/api/chatrooms/3").getStatus()).isEqualTo(200);
+		verifyNoInteractions(rateLimiter);
+	}
+
+	private static void authenticate(AuthenticatedUser user) {
+		SecurityContextHolder.getContext().setAuthentication(
+				new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+	}
+
+	private MockHttpServletResponse send(String method, String uri) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(new MockHttpServletRequest(method, uri), response, new MockFilterChain());
+		return response;
+	}
+}
@@ -0,0 +1,110 @@
+package com.chatapp.chat_backend.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTest {
+
+	private static final Logger log = LoggerFactory.getLogger(RateLimiterTest.class);
+	private static final int ITERATIONS = 5_000_000;
+
+	// send: 100/s per user with a burst of 5, 1/s per room with a burst of 3
+	private final RateLimiter rateLimiter = new RateLimiter(100, 5, 1, 3, 2, 4, 20, 40, 20, 40);
+	private final AtomicLong nanos = new AtomicLong(1_000_000_000L);
+
+	@BeforeEach
+	void setUp() {
+		LongSupplier clock = nanos::get;
+		ReflectionTestUtils.setField(rateLimiter, "nanoClock", clock);
+	}
+
+	@Test
+	void burstIsAllowedThenRefused() {
+		for (int i = 0; i < 4; i++) {
+			assertThat(rateLimiter.tryAcquire(RateLimiter.TYPING, 1L, null)).isTrue();
+		}
+		assertThat(rateLimiter.tryAcquire(RateLimiter.TYPING, 1L, null)).isFalse();
+		assertThat(rateLimiter.tryAcquire(RateLimiter.TYPING, 2L, null)).isTrue();
+	}
+
+	@Test
+	void bucketRefillsAtTheConfiguredRate() {
+		for (int i = 0; i < 5; i++) {
+			assertThat(rateLimiter.tryAcquire(RateLimiter.SEND, 1L, (long) i)).isTrue();
+		}
+		assertThat(rateLimiter.tryAcquire(RateLimiter.SEND, 1L, 9L)).isFalse();
+
+		// One permit every 10 ms
+		nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(9));
+		assertThat(rateLimiter.tryAcquire(RateLimiter.SEND, 1L, 9L)).isFalse();
+		nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(16));
+		assertThat(rateLimiter.tryAcquire(RateLimiter.SEND, 1L, 9L)).isTrue();
+		assertThat(rateLimiter.tryAcquire(RateLimiter.SEND, 1L, 9L)).isTrue();
+		assertThat(rateLimiter.tryAcquire(RateLimiter.SEND, 1L, 9L)).isFalse();
+	}
+
+	@Test
+	void refusalByTheRoomRefundsTheUserPermit() {
+		for (long userId = 1; userId <= 3; userId++) {
+			assertThat(rateLimiter.tryAcquire(RateLimiter.SEND, userId, 7L)).isTrue();
+		}
+		for (int i = 0; i < 10; i++) {
+			assertThat(rateLimiter.tryAcquire(RateLimiter.SEND, 4L, 7L)).isFalse();
+		}
+
+		// None of the ten refusals used up user 4's own burst
+		for (int i = 0; i < 5; i++) {
+			assertThat(rateLimiter.tryAcquire(RateLimiter.SEND, 4L, 100L + i)).isTrue();
+		}
+	}
+
+	@Test
+	void sweepDropsOnlyRefilledBuckets() {
+		rateLimiter.tryAcquire(RateLimiter.TYPING, 1L, null);
+		rateLimiter.tryAcquire(RateLimiter.TYPING, 1L, null);
+		rateLimiter.tryAcquire(RateLimiter.TYPING, 1L, null);
+		rateLimiter.tryAcquire(RateLimiter.TYPING, 1L, null);
+
+		rateLimiter.sweep();
+
+		assertThat(rateLimiter.tryAcquire(RateLimiter.TYPING, 1L, null)).isFalse();
+
+		// Two permits a second, so the burst of four is back after two seconds
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(2));
+		rateLimiter.sweep();
+		for (int i = 0; i < 4; i++) {
+			assertThat(rateLimiter.tryAcquire(RateLimiter.TYPING, 1L, null)).isTrue();
+		}
+	}
+
+	@Test
+	void acquireOnAWarmBucketBenchmark() {
+		// Generous limits so the benchmark measures the accepted path
+		RateLimiter unlimited = new RateLimiter(1e9, 1_000_000, 1e9, 1_000_000, 1, 1, 1, 1, 1, 1);
+		for (int i = 0; i < ITERATIONS; i++) {
+			unlimited.tryAcquire(RateLimiter.SEND, 1L, 1L);
+		}
+
+		long start = System.nanoTime();
+		int accepted = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			if (unlimited.tryAcquire(RateLimiter.SEND, 1L, 1L)) {
+				accepted++;
+			}
+		}
+		long nanosPerAcquire = (System.nanoTime() - start) / ITERATIONS;
+
+		// The target is under 100 ns; timings vary too much across machines to fail on
+		log.info("RateLimiter.tryAcquire (user and room bucket): {} ns/op, target < 100 ns", nanosPerAcquire);
+		assertThat(accepted).isEqualTo(ITERATIONS);
+	}
+}
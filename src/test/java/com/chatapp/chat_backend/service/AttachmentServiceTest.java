@@ -0,0 +1,225 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.archive.MessageArchive;
+import com.chatapp.chat_backend.attachment.AttachmentStorage;
+import com.chatapp.chat_backend.dtos.AttachmentReuseRequestDto;
+import com.chatapp.chat_backend.entity.Attachment;
+import com.chatapp.chat_backend.entity.AttachmentBlob;
+import com.chatapp.chat_backend.repository.ArchivedMessageRepository;
+import com.chatapp.chat_backend.repository.AttachmentBlobRepository;
+import com.chatapp.chat_backend.repository.AttachmentRepository;
+import com.chatapp.chat_backend.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AttachmentServiceTest {
+
+	@TempDir
+	private Path dir;
+
+	private final AttachmentRepository attachmentRepository = mock(AttachmentRepository.class);
+	private final AttachmentBlobRepository blobRepository = mock(AttachmentBlobRepository.class);
+	private final MessageRepository messageRepository = mock(MessageRepository.class);
+	private final ArchivedMessageRepository archivedMessageRepository = mock(ArchivedMessageRepository.class);
+	private final MessageArchive messageArchive = mock(MessageArchive.class);
+	private final MessageStore messageStore = mock(MessageStore.class);
+	private AttachmentStorage storage;
+	private AttachmentService service;
+
+	@BeforeEach
+	void setUp() {
+		storage = new AttachmentStorage(dir.toString(), 1024);
+		service = new AttachmentService(attachmentRepository, blobRepository, storage, messageRepository,
+				archivedMessageRepository, messageArchive, messageStore, mock(RoomMembershipCache.class),
+				mock(ThumbnailService.class), mock(PlatformTransactionManager.class));
+		ReflectionTestUtils.setField(service, "quotaBytes", 100L);
+		ReflectionTestUtils.setField(service, "collectionEnabled", true);
+		ReflectionTestUtils.setField(service, "graceHours", 24L);
+		ReflectionTestUtils.setField(service, "batchSize", 10);
+		doAnswer(invocation -> {
+			invocation.<IntConsumer>getArgument(0).accept(0);
+			return null;
+		}).when(messageStore).forEachShard(any());
+		when(attachmentRepository.save(any())).thenAnswer(invocation -> {
+			Attachment attachment = invocation.getArgument(0);
+			attachment.setId(1L);
+			return attachment;
+		});
+	}
+
+	@Test
+	void uploadsWithinTheQuotaAreStored() throws Exception {
+		when(attachmentRepository.sumFileSizeByUploaderId(1L)).thenReturn(90L);
+
+		service.upload(file("0123456789"), 1L);
+
+		verify(attachmentRepository).save(any());
+		assertThat(Files.readString(storage.resolve(sha256("0123456789")))).isEqualTo("0123456789");
+	}
+
+	@Test
+	void uploadsPastTheQuotaAreRejectedBeforeTheyAreStaged() throws Exception {
+		when(attachmentRepository.sumFileSizeByUploaderId(1L)).thenReturn(95L);
+
+		assertThatThrownBy(() -> service.upload(file("0123456789"), 1L))
+				.hasMessageContaining("quota");
+
+		verify(attachmentRepository, never()).save(any());
+		verify(blobRepository, never()).acquire(any(), anyLong());
+		assertThat(storage.getBytesWritten()).isZero();
+	}
+
+	@Test
+	void reusingContentCountsAgainstTheQuota() {
+		Attachment existing = attachment(2L, "ab");
+		existing.setFileSize(20L);
+		when(attachmentRepository.findFirstByUploaderIdAndSha256(1L, existing.getSha256()))
+				.thenReturn(Optional.of(existing));
+		when(attachmentRepository.sumFileSizeByUploaderId(1L)).thenReturn(90L);
+		AttachmentReuseRequestDto request = new AttachmentReuseRequestDto();
+		request.setSha256(existing.getSha256());
+		request.setFileName("b.bin");
+
+		assertThatThrownBy(() -> service.reuse(request, 1L)).hasMessageContaining("quota");
+
+		verify(blobRepository, never()).acquire(any(), anyLong());
+	}
+
+	@Test
+	void quotaChecksHoldTheUploaderLock() {
+		when(attachmentRepository.sumFileSizeByUploaderId(1L)).thenReturn(0L);
+
+		service.upload(file("abc"), 1L);
+
+		var order = inOrder(attachmentRepository, blobRepository);
+		order.verify(attachmentRepository).lockUploader(1L);
+		order.verify(attachmentRepository).sumFileSizeByUploaderId(1L);
+		order.verify(blobRepository).acquire(any(), anyLong());
+	}
+
+	@Test
+	void sendingAnAttachmentStampsItUnderTheRowLock() {
+		Attachment attachment = attachment(3L, "cd");
+		when(attachmentRepository.lockById(3L)).thenReturn(Optional.of(attachment));
+
+		service.getForMessage(3L, 1L);
+
+		assertThat(attachment.getLastUsedAt()).isNotNull();
+	}
+
+	@Test
+	void othersCannotSendOrStampAnAttachment() {
+		Attachment attachment = attachment(3L, "cd");
+		when(attachmentRepository.lockById(3L)).thenReturn(Optional.of(attachment));
+
+		assertThatThrownBy(() -> service.getForMessage(3L, 2L)).hasMessageContaining("your own");
+		assertThat(attachment.getLastUsedAt()).isNull();
+	}
+
+	@Test
+	void unreferencedAttachmentsAreDeletedAndReleaseTheirBlobOnce() {
+		Attachment unreferenced = attachment(1L, "aa");
+		Attachment live = attachment(2L, "bb");
+		Attachment archived = attachment(3L, "aa");
+		when(attachmentRepository.findCollectionCandidates(eq(0L), any(), any()))
+				.thenReturn(List.of(unreferenced, live, archived));
+		when(messageRepository.findReferencedAttachmentIds(List.of(1L, 2L, 3L))).thenReturn(List.of(2L));
+		when(archivedMessageRepository.findReferencedAttachmentIds(List.of(1L, 2L, 3L))).thenReturn(List.of(3L));
+		when(attachmentRepository.lockCollectable(eq(1L), any())).thenReturn(Optional.of(unreferenced));
+
+		service.collectGarbage();
+
+		verify(attachmentRepository).delete(unreferenced);
+		verify(blobRepository, times(1)).release("aa".repeat(32));
+		verify(blobRepository, never()).release("bb".repeat(32));
+		verify(attachmentRepository).markArchived(Set.of(3L));
+		assertThat(service.getStats().getAttachmentsCollected()).isEqualTo(1);
+	}
+
+	@Test
+	void attachmentsSentAfterTheScanAreKept() {
+		Attachment candidate = attachment(1L, "aa");
+		when(attachmentRepository.findCollectionCandidates(eq(0L), any(), any())).thenReturn(List.of(candidate));
+		// The send stamped lastUsedAt, so it no longer matches under the lock
+		when(attachmentRepository.lockCollectable(eq(1L), any())).thenReturn(Optional.empty());
+
+		service.collectGarbage();
+
+		verify(attachmentRepository, never()).delete(any());
+		verify(blobRepository, never()).release(any());
+		assertThat(service.getStats().getAttachmentsCollected()).isZero();
+	}
+
+	@Test
+	void collectionWaitsForArchivedReferencesToBeBackfilled() {
+		when(messageArchive.archivedRoomIds()).thenReturn(List.of(5L));
+		when(messageStore.inRoomShard(eq(5L), eq(true), any())).thenAnswer(invocation ->
+				invocation.<Supplier<?>>getArgument(2).get());
+		when(archivedMessageRepository.existsByChatRoomId(5L)).thenReturn(false, true);
+
+		service.collectGarbage();
+		verify(attachmentRepository, never()).findCollectionCandidates(anyLong(), any(), any());
+
+		service.collectGarbage();
+		verify(attachmentRepository).findCollectionCandidates(anyLong(), any(), any());
+	}
+
+	@Test
+	void theOrphanSweepDeletesOnlyFilesWithoutABlob() throws Exception {
+		AttachmentStorage.TempFile owned = storage.stage(file("owned"));
+		storage.install(owned);
+		AttachmentStorage.TempFile orphan = storage.stage(file("orphan"));
+		storage.install(orphan);
+		FileTime old = FileTime.from(Instant.now().minus(Duration.ofDays(2)));
+		Files.setLastModifiedTime(storage.resolve(owned.sha256()), old);
+		Files.setLastModifiedTime(storage.resolve(orphan.sha256()), old);
+		when(blobRepository.lock(owned.sha256())).thenReturn(Optional.of(new AttachmentBlob()));
+		when(blobRepository.lock(orphan.sha256())).thenReturn(Optional.empty());
+
+		service.sweepOrphans();
+
+		assertThat(storage.resolve(owned.sha256())).exists();
+		assertThat(storage.resolve(orphan.sha256())).doesNotExist();
+		assertThat(service.getStats().getOrphansCollected()).isEqualTo(1);
+	}
+
+	private static Attachment attachment(Long id, String hashByte) {
+		return Attachment.builder()
+				.id(id).uploaderId(1L).fileName("f").contentType("application/octet-stream")
+				.fileSize(10L).sha256(hashByte.repeat(32)).build();
+	}
+
+	private static MockMultipartFile file(String content) {
+		return new MockMultipartFile("file", "a.txt", "text/plain", content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String sha256(String content) throws Exception {
+		return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+				.digest(content.getBytes(StandardCharsets.UTF_8)));
+	}
+}
@@ -0,0 +1,139 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.dtos.ClusterBatchDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Two nodes joined by an in-memory stand-in for chat.exchange: every
+ * published batch is delivered to each node's listener, as the per-node
+ * queues bound to the cluster routing key would, and confirmed.
+ */
+class ClusterFanoutServiceTest {
+
+	private static final Logger log = LoggerFactory.getLogger(ClusterFanoutServiceTest.class);
+
+	private final List<ClusterFanoutService> nodes = new CopyOnWriteArrayList<>();
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		for (ClusterFanoutService node : nodes) {
+			node.stop();
+		}
+	}
+
+	@Test
+	void eventsPublishedOnOneNodeReachTheOtherInOrder() throws Exception {
+		LongAdder delivered = new LongAdder();
+		SimpMessagingTemplate brokerB = countingBroker(delivered);
+		ClusterFanoutService nodeA = node("a", mock(SimpMessagingTemplate.class), 10_000);
+		ClusterFanoutService nodeB = node("b", brokerB, 10_000);
+		nodeA.start();
+		nodeB.start();
+
+		int events = 50_000;
+		long start = System.nanoTime();
+		for (int i = 0; i < events; i++) {
+			while (nodeA.getStats().getPendingEvents() > 9_000) {
+				Thread.onSpinWait();
+			}
+			nodeA.publish("/topic/chat/1", "event-" + i);
+		}
+		waitFor(() -> delivered.sum() == events);
+		long elapsedNanos = System.nanoTime() - start;
+
+		log.info("Two-node fan-out: {} events in {} ms ({} events/s), {} batches", events,
+				TimeUnit.NANOSECONDS.toMillis(elapsedNanos), events * 1_000_000_000L / elapsedNanos,
+				nodeA.getStats().getPublishedBatches());
+		assertThat(nodeB.getStats().getReceivedEvents()).isEqualTo(events);
+		assertThat(nodeB.getStats().getSequenceGaps()).isZero();
+		assertThat(nodeA.getStats().getReceivedEvents()).isZero();
+	}
+
+	@Test
+	void eventsDroppedOnAFullQueueLeaveNoSequenceGap() throws Exception {
+		LongAdder delivered = new LongAdder();
+		ClusterFanoutService nodeA = node("a", mock(SimpMessagingTemplate.class), 10);
+		ClusterFanoutService nodeB = node("b", countingBroker(delivered), 10);
+
+		// Not started yet, so the queue fills and further events are dropped
+		for (int i = 0; i < 15; i++) {
+			nodeA.publish("/topic/chat/1", "event-" + i);
+		}
+		nodeA.start();
+		nodeB.start();
+		waitFor(() -> delivered.sum() == 10);
+		for (int i = 0; i < 5; i++) {
+			nodeA.publish("/topic/chat/1", "late-" + i);
+		}
+		waitFor(() -> delivered.sum() == 15);
+
+		assertThat(nodeA.getStats().getDroppedEvents()).isEqualTo(5);
+		assertThat(nodeB.getStats().getSequenceGaps()).isZero();
+	}
+
+	@Test
+	void startingWithoutPublisherConfirmsFails() {
+		RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+		when(rabbitTemplate.getConnectionFactory()).thenReturn(mock(ConnectionFactory.class));
+		ClusterFanoutService node = new ClusterFanoutService(rabbitTemplate, mock(SimpMessagingTemplate.class),
+				"a", true, 100, 1, 1000, 100);
+
+		assertThatThrownBy(node::start).isInstanceOf(IllegalStateException.class);
+	}
+
+	private ClusterFanoutService node(String nodeId, SimpMessagingTemplate broker, int maxPending) {
+		ConnectionFactory connectionFactory = mock(ConnectionFactory.class);
+		when(connectionFactory.isPublisherConfirms()).thenReturn(true);
+		RabbitTemplate exchange = mock(RabbitTemplate.class);
+		when(exchange.getConnectionFactory()).thenReturn(connectionFactory);
+		doAnswer(invocation -> {
+			ClusterBatchDto batch = invocation.getArgument(2);
+			for (ClusterFanoutService node : new ArrayList<>(nodes)) {
+				node.receive(batch);
+			}
+			invocation.<CorrelationData>getArgument(3).getFuture().complete(new CorrelationData.Confirm(true, null));
+			return null;
+		}).when(exchange).convertAndSend(anyString(), anyString(), any(Object.class), any(CorrelationData.class));
+
+		ClusterFanoutService node = new ClusterFanoutService(exchange, broker, nodeId, true, 100, 1, 1000, maxPending);
+		nodes.add(node);
+		return node;
+	}
+
+	private static SimpMessagingTemplate countingBroker(LongAdder delivered) {
+		return new SimpMessagingTemplate(mock(MessageChannel.class)) {
+			@Override
+			public void convertAndSend(String destination, Object payload) {
+				delivered.increment();
+			}
+		};
+	}
+
+	private static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 30_000;
+		while (!condition.getAsBoolean()) {
+			assertThat(System.currentTimeMillis()).as("timed out").isLessThan(deadline);
+			Thread.sleep(5);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.archive.MessageArchive;
+import com.chatapp.chat_backend.repository.ArchivedMessageRepository;
+import com.chatapp.chat_backend.repository.MessageReactionCountRepository;
+import com.chatapp.chat_backend.repository.MessageReactionRepository;
+import com.chatapp.chat_backend.repository.MessageRepository;
+import com.chatapp.chat_backend.repository.PinnedMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MessageArchiverTest {
+
+	private final MessageRepository messageRepository = mock(MessageRepository.class);
+	private final MessageArchive messageArchive = mock(MessageArchive.class);
+	private final MessageStore messageStore = mock(MessageStore.class);
+	private final JobLockService jobLockService = mock(JobLockService.class);
+	private final MessageArchiver archiver = new MessageArchiver(messageRepository,
+			mock(MessageReactionRepository.class), mock(MessageReactionCountRepository.class),
+			mock(PinnedMessageRepository.class), mock(MessageService.class), messageArchive, messageStore,
+			mock(AttachmentService.class), mock(ArchivedMessageRepository.class), jobLockService,
+			mock(PlatformTransactionManager.class));
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(archiver, "enabled", true);
+		ReflectionTestUtils.setField(archiver, "batchSize", 500);
+		ReflectionTestUtils.setField(archiver, "roomsPerRun", 100);
+		ReflectionTestUtils.setField(archiver, "lockLeaseMs", 60_000L);
+		doAnswer(invocation -> {
+			invocation.<IntConsumer>getArgument(0).accept(0);
+			return null;
+		}).when(messageStore).forEachShard(any());
+		when(messageRepository.findRoomIdsWithMessagesBefore(any(), any())).thenReturn(List.of(1L, 2L));
+	}
+
+	@Test
+	void nodesWithoutTheLeaseDoNotArchive() {
+		when(jobLockService.tryAcquire(eq("message-archiver"), anyLong())).thenReturn(false);
+
+		archiver.archive();
+
+		verifyNoInteractions(messageRepository, messageArchive);
+		verify(jobLockService, never()).release(any());
+	}
+
+	@Test
+	void runsStopOnceTheLeaseIsLost() {
+		when(jobLockService.tryAcquire(eq("message-archiver"), anyLong())).thenReturn(true, false);
+
+		archiver.archive();
+
+		verify(messageRepository, never()).findArchiveCandidates(anyLong(), any(), any());
+		verify(jobLockService).release("message-archiver");
+	}
+
+	@Test
+	void theLeaseIsRenewedBeforeEveryBatch() {
+		when(jobLockService.tryAcquire(eq("message-archiver"), anyLong())).thenReturn(true);
+		when(messageRepository.findArchiveCandidates(anyLong(), any(), any())).thenReturn(List.of());
+
+		archiver.archive();
+
+		verify(messageRepository, times(2)).findArchiveCandidates(anyLong(), any(), any());
+		verify(jobLockService, times(3)).tryAcquire(eq("message-archiver"), eq(60_000L));
+		verify(jobLockService).release("message-archiver");
+	}
+}
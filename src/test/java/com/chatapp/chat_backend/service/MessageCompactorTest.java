@@ -0,0 +1,166 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.dtos.CompactionStatsDto;
+import com.chatapp.chat_backend.repository.MessageReactionCountRepository;
+import com.chatapp.chat_backend.repository.MessageReactionRepository;
+import com.chatapp.chat_backend.repository.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MessageCompactorTest {
+
+	private static final LocalDateTime START = LocalDateTime.of(1970, 1, 1, 0, 0);
+	private static final LocalDateTime T1 = LocalDateTime.of(2024, 1, 1, 10, 0);
+	private static final LocalDateTime T2 = LocalDateTime.of(2024, 1, 2, 10, 0);
+
+	private final MessageRepository messageRepository = mock(MessageRepository.class);
+	private final MessageReactionRepository messageReactionRepository = mock(MessageReactionRepository.class);
+	private final MessageReactionCountRepository reactionCountRepository = mock(MessageReactionCountRepository.class);
+	private final MessageStore messageStore = mock(MessageStore.class);
+	private final JobLockService jobLockService = mock(JobLockService.class);
+	private final MessageCompactor compactor = new MessageCompactor(messageRepository, messageReactionRepository,
+			reactionCountRepository, messageStore, jobLockService, mock(PlatformTransactionManager.class));
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(compactor, "enabled", true);
+		ReflectionTestUtils.setField(compactor, "retentionDays", 30L);
+		ReflectionTestUtils.setField(compactor, "batchSize", 2);
+		ReflectionTestUtils.setField(compactor, "maxRowsPerSecond", 1_000_000);
+		ReflectionTestUtils.setField(compactor, "maxRunMs", 60_000L);
+		ReflectionTestUtils.setField(compactor, "lockLeaseMs", 60_000L);
+		when(jobLockService.tryAcquire(eq("message-compactor"), anyLong())).thenReturn(true);
+		doAnswer(invocation -> {
+			invocation.<IntConsumer>getArgument(0).accept(0);
+			return null;
+		}).when(messageStore).forEachShard(any());
+		when(messageRepository.findOldestDeletedAt()).thenReturn(Optional.empty());
+		when(messageRepository.deleteNewestFirst(any())).thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(0).size());
+	}
+
+	@Test
+	void eachBatchResumesAfterTheLastRowOfThePrevious() {
+		when(messageRepository.findPurgeCandidates(any(), eq(START), eq(0L), any(Pageable.class)))
+				.thenReturn(rows(row(1L, T1), row(2L, T1)));
+		when(messageRepository.findPurgeCandidates(any(), eq(T1), eq(2L), any(Pageable.class)))
+				.thenReturn(rows(row(3L, T1), row(4L, T2)));
+		when(messageRepository.findPurgeCandidates(any(), eq(T2), eq(4L), any(Pageable.class)))
+				.thenReturn(rows(row(5L, T2)));
+
+		compactor.compact();
+
+		verify(messageRepository, times(3)).findPurgeCandidates(any(), any(), anyLong(), any(Pageable.class));
+		verify(messageRepository).deleteNewestFirst(List.of(1L, 2L));
+		verify(messageRepository).deleteNewestFirst(List.of(3L, 4L));
+		verify(messageRepository).deleteNewestFirst(List.of(5L));
+		CompactionStatsDto stats = compactor.getStats();
+		assertThat(stats.getRowsPurged()).isEqualTo(5);
+		assertThat(stats.getBatches()).isEqualTo(3);
+	}
+
+	@Test
+	void aFullBatchFollowedByAnEmptyOneEndsTheWalk() {
+		when(messageRepository.findPurgeCandidates(any(), eq(START), eq(0L), any(Pageable.class)))
+				.thenReturn(rows(row(1L, T1), row(2L, T2)));
+		when(messageRepository.findPurgeCandidates(any(), eq(T2), eq(2L), any(Pageable.class)))
+				.thenReturn(List.of());
+
+		compactor.compact();
+
+		verify(messageRepository, times(2)).findPurgeCandidates(any(), any(), anyLong(), any(Pageable.class));
+		verify(messageRepository, times(1)).deleteNewestFirst(any());
+		assertThat(compactor.getStats().getBatches()).isEqualTo(1);
+	}
+
+	@Test
+	void repliesAndReactionsGoBeforeTheMessages() {
+		when(messageRepository.findPurgeCandidates(any(), any(), anyLong(), any(Pageable.class)))
+				.thenReturn(rows(row(7L, T1)));
+		when(messageRepository.detachReplies(List.of(7L))).thenReturn(2);
+
+		compactor.compact();
+
+		var order = inOrder(messageRepository, reactionCountRepository, messageReactionRepository);
+		order.verify(messageRepository).detachReplies(List.of(7L));
+		order.verify(reactionCountRepository).deleteByMessageIdIn(List.of(7L));
+		order.verify(messageReactionRepository).deleteByMessageIdIn(List.of(7L));
+		order.verify(messageRepository).deleteNewestFirst(List.of(7L));
+		assertThat(compactor.getStats().getRepliesDetached()).isEqualTo(2);
+	}
+
+	@Test
+	void aFailingShardDoesNotStopTheOthers() {
+		doAnswer(invocation -> {
+			invocation.<IntConsumer>getArgument(0).accept(0);
+			invocation.<IntConsumer>getArgument(0).accept(1);
+			return null;
+		}).when(messageStore).forEachShard(any());
+		when(messageRepository.findPurgeCandidates(any(), any(), anyLong(), any(Pageable.class)))
+				.thenThrow(new IllegalStateException("shard down"))
+				.thenReturn(rows(row(9L, T1)));
+
+		compactor.compact();
+
+		verify(messageRepository).deleteNewestFirst(List.of(9L));
+		assertThat(compactor.getStats().getRowsPurged()).isEqualTo(1);
+	}
+
+	@Test
+	void runsAreSkippedWhileAnotherNodeHoldsTheLease() {
+		when(jobLockService.tryAcquire(eq("message-compactor"), anyLong())).thenReturn(false);
+
+		compactor.compact();
+
+		verifyNoInteractions(messageRepository, messageStore);
+		verify(jobLockService, never()).release(any());
+	}
+
+	@Test
+	void theLeaseIsRenewedPerBatchAndARunThatLosesItStops() {
+		doAnswer(invocation -> {
+			invocation.<IntConsumer>getArgument(0).accept(0);
+			invocation.<IntConsumer>getArgument(0).accept(1);
+			return null;
+		}).when(messageStore).forEachShard(any());
+		when(jobLockService.tryAcquire(eq("message-compactor"), anyLong())).thenReturn(true, true, true, false);
+		when(messageRepository.findPurgeCandidates(any(), any(), anyLong(), any(Pageable.class)))
+				.thenReturn(rows(row(1L, T1), row(2L, T1)), rows(row(3L, T1), row(4L, T1)));
+
+		compactor.compact();
+
+		verify(jobLockService, times(4)).tryAcquire(eq("message-compactor"), eq(60_000L));
+		verify(messageRepository, times(2)).deleteNewestFirst(any());
+		verify(jobLockService).release("message-compactor");
+		assertThat(compactor.getStats().getLastRunAt()).isNull();
+	}
+
+	@Test
+	void disabledCompactionTouchesNothing() {
+		ReflectionTestUtils.setField(compactor, "enabled", false);
+
+		compactor.compact();
+
+		verifyNoInteractions(messageRepository, messageStore);
+	}
+
+	private static List<Object[]> rows(Object[]... rows) {
+		return List.of(rows);
+	}
+
+	private static Object[] row(long id, LocalDateTime deletedAt) {
+		return new Object[]{id, deletedAt};
+	}
+}
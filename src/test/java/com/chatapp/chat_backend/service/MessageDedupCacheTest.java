@@ -0,0 +1,44 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.dtos.MessageResponseDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageDedupCacheTest {
+
+	private MessageDedupCache cache;
+
+	@BeforeEach
+	void setUp() {
+		cache = new MessageDedupCache();
+		ReflectionTestUtils.setField(cache, "windowMs", 60_000L);
+		ReflectionTestUtils.setField(cache, "maxEntries", 10);
+	}
+
+	@Test
+	void retryInSameRoomReturnsOriginal() {
+		MessageResponseDto sent = MessageResponseDto.builder().id(1L).chatRoomId(7L).build();
+		cache.put(3L, 7L, "abc", sent);
+
+		assertThat(cache.get(3L, 7L, "abc")).containsSame(sent);
+	}
+
+	@Test
+	void sameClientIdInAnotherRoomIsNotADuplicate() {
+		cache.put(3L, 7L, "abc", MessageResponseDto.builder().id(1L).chatRoomId(7L).build());
+
+		assertThat(cache.get(3L, 8L, "abc")).isEmpty();
+		assertThat(cache.get(4L, 7L, "abc")).isEmpty();
+	}
+
+	@Test
+	void expiredEntriesAreDropped() {
+		ReflectionTestUtils.setField(cache, "windowMs", -1L);
+		cache.put(3L, 7L, "abc", MessageResponseDto.builder().id(1L).build());
+
+		assertThat(cache.get(3L, 7L, "abc")).isEmpty();
+	}
+}
@@ -0,0 +1,146 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.archive.MessageArchive;
+import com.chatapp.chat_backend.config.SecondLevelCacheConfig;
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ReadYourWrites;
+import com.chatapp.chat_backend.datasource.ShardWriteFence;
+import com.chatapp.chat_backend.dtos.SendMessageRequestDto;
+import com.chatapp.chat_backend.entity.ChatRoom;
+import com.chatapp.chat_backend.entity.User;
+import com.chatapp.chat_backend.repository.ArchivedMessageRepository;
+import com.chatapp.chat_backend.repository.ChatRoomRepository;
+import com.chatapp.chat_backend.repository.MessageReactionRepository;
+import com.chatapp.chat_backend.repository.MessageRepository;
+import com.chatapp.chat_backend.repository.PinnedMessageRepository;
+import com.chatapp.chat_backend.repository.UserRepository;
+import com.chatapp.chat_backend.websocket.ClusterPresence;
+import com.chatapp.chat_backend.websocket.StompSessionRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Statements per message send on H2, with the second-level and membership
+ * caches emptied before every send (as without them) and with them warm.
+ * The numbers are logged; only that warm caches save queries is asserted.
+ */
+@DataJpaTest
+@Import(SecondLevelCacheConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MessageSendQueryCountTest {
+
+	private static final Logger log = LoggerFactory.getLogger(MessageSendQueryCountTest.class);
+	private static final int SENDS = 50;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+	@Autowired
+	private MessageRepository messageRepository;
+	@Autowired
+	private ChatRoomRepository chatRoomRepository;
+	@Autowired
+	private UserRepository userRepository;
+
+	private final RoomMembershipCache membershipCache = mock(RoomMembershipCache.class);
+	// Stands in for the shared membership cache: loaded on a miss, cleared for cold sends
+	private final Map<Long, Set<Long>> cachedMembers = new ConcurrentHashMap<>();
+
+	private TransactionTemplate transactionTemplate;
+	private MessageService messageService;
+	private Long roomId;
+	private Long senderId;
+
+	@BeforeEach
+	void setUp() {
+		transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.executeWithoutResult(status -> {
+			User alice = userRepository.save(User.builder()
+					.username("alice")
+					.email("alice@example.com")
+					.password("secret")
+					.build());
+			User bob = userRepository.save(User.builder()
+					.username("bob")
+					.email("bob@example.com")
+					.password("secret")
+					.build());
+			ChatRoom room = ChatRoom.builder().name("room").creator(alice).build();
+			room.addMember(alice);
+			room.addMember(bob);
+			roomId = chatRoomRepository.save(room).getId();
+			senderId = alice.getId();
+		});
+
+		when(membershipCache.isMember(any(), any())).thenAnswer(invocation -> cachedMembers
+				.computeIfAbsent(invocation.getArgument(0), chatRoomRepository::findMemberIds)
+				.contains(invocation.<Long>getArgument(1)));
+
+		NotificationService notificationService = new NotificationService(mock(RabbitTemplate.class),
+				mock(ChatBroadcaster.class), mock(ClusterFanoutService.class), mock(StompSessionRegistry.class),
+				mock(ClusterPresence.class), mock(OfflineDeliveryService.class), false, 100, 20, 10_000);
+		messageService = new MessageService(messageRepository, chatRoomRepository, userRepository, new ModelMapper(),
+				mock(MessageDedupCache.class), notificationService, mock(OutboxService.class),
+				mock(MessageReactionRepository.class), mock(ReactionCounterService.class),
+				mock(PinnedMessageRepository.class), mock(PinnedMessageCache.class), membershipCache,
+				new ObjectMapper(), mock(MessageShardResolver.class), mock(MessageStore.class),
+				mock(MessageArchive.class), mock(ArchivedMessageRepository.class), mock(AttachmentService.class),
+				mock(ThumbnailService.class), mock(ReadYourWrites.class), mock(ShardWriteFence.class));
+	}
+
+	@Test
+	void warmCachesSaveQueriesPerSend() {
+		double cold = statementsPerSend(true);
+		double warm = statementsPerSend(false);
+
+		log.info("Statements per send: {} with cold caches, {} with warm caches", cold, warm);
+		assertThat(warm).isLessThan(cold);
+	}
+
+	private double statementsPerSend(boolean cold) {
+		SessionFactory sessionFactory = entityManagerFactory.unwrap(SessionFactory.class);
+		Statistics statistics = sessionFactory.getStatistics();
+		send();
+		statistics.clear();
+
+		for (int i = 0; i < SENDS; i++) {
+			if (cold) {
+				sessionFactory.getCache().evictAllRegions();
+				cachedMembers.clear();
+			}
+			send();
+		}
+		return (double) statistics.getPrepareStatementCount() / SENDS;
+	}
+
+	private void send() {
+		SendMessageRequestDto request = new SendMessageRequestDto();
+		request.setContent("hello @bob");
+		transactionTemplate.executeWithoutResult(status -> messageService.sendMessage(roomId, request, senderId));
+	}
+}
@@ -0,0 +1,167 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.archive.MessageArchive;
+import com.chatapp.chat_backend.datasource.ReadYourWrites;
+import com.chatapp.chat_backend.datasource.ShardWriteFence;
+import com.chatapp.chat_backend.dtos.MessageResponseDto;
+import com.chatapp.chat_backend.dtos.PinnedMessageDto;
+import com.chatapp.chat_backend.dtos.ThumbnailDto;
+import com.chatapp.chat_backend.entity.ArchivedMessage;
+import com.chatapp.chat_backend.repository.ArchivedMessageRepository;
+import com.chatapp.chat_backend.repository.MessageRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageServiceTest {
+
+	@Mock
+	private MessageRepository messageRepository;
+	@Mock
+	private ArchivedMessageRepository archivedMessageRepository;
+	@Mock
+	private OutboxService outboxService;
+	@Mock
+	private ShardWriteFence writeFence;
+	@Mock
+	private ReadYourWrites readYourWrites;
+	@Mock
+	private MessageArchive messageArchive;
+	@Mock
+	private ReactionCounterService reactionCounterService;
+	@Mock
+	private ThumbnailService thumbnailService;
+	@Mock
+	private RoomMembershipCache membershipCache;
+	@Mock
+	private PinnedMessageCache pinnedMessageCache;
+	@InjectMocks
+	private MessageService messageService;
+
+	@Test
+	void archivedMessagesCanBeDeletedByTheirSender() {
+		ArchivedMessage archived = archived(5L);
+		when(messageRepository.findById(40L)).thenReturn(Optional.empty());
+		when(archivedMessageRepository.findById(40L)).thenReturn(Optional.of(archived));
+
+		messageService.deleteMessage(40L, 5L);
+
+		assertThat(archived.getDeleted()).isTrue();
+		assertThat(archived.getDeletedAt()).isNotNull();
+		verify(writeFence).checkWritable(1L);
+		verify(archivedMessageRepository).save(archived);
+		verify(outboxService).enqueue("/topic/chat/1/delete", 40L);
+	}
+
+	@Test
+	void archivedMessagesOfOthersCannotBeDeleted() {
+		when(messageRepository.findById(40L)).thenReturn(Optional.empty());
+		when(archivedMessageRepository.findById(40L)).thenReturn(Optional.of(archived(6L)));
+
+		assertThatThrownBy(() -> messageService.deleteMessage(40L, 5L))
+				.hasMessage("You can only delete your own messages");
+		verify(archivedMessageRepository, never()).save(any());
+	}
+
+	@Test
+	void deletedArchivedMessagesAreNotFound() {
+		ArchivedMessage archived = archived(5L);
+		archived.setDeleted(true);
+		when(messageRepository.findById(40L)).thenReturn(Optional.empty());
+		when(archivedMessageRepository.findById(40L)).thenReturn(Optional.of(archived));
+
+		assertThatThrownBy(() -> messageService.deleteMessage(40L, 5L))
+				.hasMessage("Message not found with id: 40");
+		verifyNoInteractions(outboxService);
+	}
+
+	@Test
+	void archivedMessagesAreFoundByIdInTheirRoomsArchive() {
+		when(messageRepository.findById(40L)).thenReturn(Optional.empty());
+		when(archivedMessageRepository.findById(40L)).thenReturn(Optional.of(archived(5L)));
+		when(messageArchive.find(1L, 40L)).thenReturn(Optional.of(archivedResponse()));
+		when(reactionCounterService.getSummaries(List.of(40L))).thenReturn(Map.of(40L, Map.of("👍", 2L)));
+		when(thumbnailService.findThumbnails(Set.of(9L))).thenReturn(Map.of(9L, thumbnail()));
+
+		MessageResponseDto message = messageService.getMessageById(40L);
+
+		assertThat(message.getContent()).isEqualTo("archived hello");
+		assertThat(message.getReactions()).containsEntry("👍", 2L);
+		assertThat(message.getThumbnail()).isEqualTo(thumbnail());
+	}
+
+	@Test
+	void pinnedMessagesGetThumbnailsRenderedAfterThePinsWereCached() {
+		PinnedMessageDto cached = PinnedMessageDto.builder().message(archivedResponse()).build();
+		when(membershipCache.isMember(1L, 5L)).thenReturn(true);
+		when(pinnedMessageCache.get(eq(1L), any())).thenReturn(List.of(cached));
+		when(thumbnailService.findThumbnails(Set.of(9L))).thenReturn(Map.of(9L, thumbnail()));
+
+		List<PinnedMessageDto> pins = messageService.getPinnedMessages(1L, 5L);
+
+		assertThat(pins).singleElement()
+				.satisfies(pin -> assertThat(pin.getMessage().getThumbnail()).isEqualTo(thumbnail()));
+		// The cached pins are shared between readers and left as they were
+		assertThat(cached.getMessage().getThumbnail()).isNull();
+	}
+
+	@Test
+	void deletedArchivedMessagesAreMaskedWhenFoundById() {
+		ArchivedMessage archived = archived(5L);
+		archived.setDeleted(true);
+		when(messageRepository.findById(40L)).thenReturn(Optional.empty());
+		when(archivedMessageRepository.findById(40L)).thenReturn(Optional.of(archived));
+		when(messageArchive.find(1L, 40L)).thenReturn(Optional.of(archivedResponse()));
+		when(reactionCounterService.getSummaries(List.of(40L))).thenReturn(Map.of());
+
+		MessageResponseDto message = messageService.getMessageById(40L);
+
+		assertThat(message.getContent()).isEqualTo("[This message was deleted]");
+		assertThat(message.getAttachmentId()).isNull();
+	}
+
+	@Test
+	void messagesInNeitherTheTableNorTheArchiveAreNotFound() {
+		when(messageRepository.findById(40L)).thenReturn(Optional.empty());
+		when(archivedMessageRepository.findById(40L)).thenReturn(Optional.empty());
+
+		assertThatThrownBy(() -> messageService.getMessageById(40L))
+				.hasMessage("Message not found with id: 40");
+	}
+
+	private static ThumbnailDto thumbnail() {
+		return ThumbnailDto.builder().url("/api/attachments/9/thumbnail").width(320).height(240).build();
+	}
+
+	private static MessageResponseDto archivedResponse() {
+		return MessageResponseDto.builder()
+				.id(40L)
+				.content("archived hello")
+				.chatRoomId(1L)
+				.attachmentId(9L)
+				.build();
+	}
+
+	private static ArchivedMessage archived(Long senderId) {
+		return ArchivedMessage.builder()
+				.messageId(40L)
+				.chatRoomId(1L)
+				.senderId(senderId)
+				.attachmentId(9L)
+				.build();
+	}
+}
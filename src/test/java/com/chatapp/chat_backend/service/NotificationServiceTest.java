@@ -0,0 +1,115 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.dtos.DeliveryItemDto;
+import com.chatapp.chat_backend.dtos.NotificationEventDto;
+import com.chatapp.chat_backend.websocket.ClusterPresence;
+import com.chatapp.chat_backend.websocket.StompSessionRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class NotificationServiceTest {
+
+	private final ChatBroadcaster chatBroadcaster = mock(ChatBroadcaster.class);
+	private final ClusterFanoutService clusterFanoutService = mock(ClusterFanoutService.class);
+	private final StompSessionRegistry sessionRegistry = mock(StompSessionRegistry.class);
+	private final ClusterPresence clusterPresence = mock(ClusterPresence.class);
+	private final OfflineDeliveryService offlineDeliveryService = mock(OfflineDeliveryService.class);
+	private NotificationService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new NotificationService(mock(RabbitTemplate.class), chatBroadcaster, clusterFanoutService,
+				sessionRegistry, clusterPresence, offlineDeliveryService, false, 100, 50, 1000);
+		service.start();
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		service.stop();
+	}
+
+	@Test
+	void localEventsAreFoldedIntoOneBatch() {
+		when(sessionRegistry.isOnline(7L)).thenReturn(true);
+
+		for (long messageId = 1; messageId <= 5; messageId++) {
+			service.publish(event(messageId, 7L));
+		}
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<DeliveryItemDto>> items = ArgumentCaptor.forClass(List.class);
+		verify(chatBroadcaster, timeout(2000)).broadcast(eq("/user/7/queue/notifications"), items.capture());
+		assertThat(items.getValue()).singleElement().satisfies(item -> {
+			assertThat(item.getCount()).isEqualTo(5);
+			assertThat(item.getMessageId()).isEqualTo(5L);
+		});
+		assertThat(service.getStats().getConsumedBatches()).isEqualTo(1);
+	}
+
+	@Test
+	void userOnlineOnAnotherNodeIsReachedThroughTheFanout() {
+		when(clusterFanoutService.isEnabled()).thenReturn(true);
+		when(clusterPresence.onlineAmong(any())).thenReturn(Set.of(8L));
+
+		service.handleBatch(List.of(event(1L, 8L), event(2L, 9L)));
+
+		verify(chatBroadcaster).broadcast(eq("/user/8/queue/notifications"), any());
+		verify(offlineDeliveryService).enqueue(eq(9L), any());
+		// One presence lookup for the whole batch
+		verify(clusterPresence).onlineAmong(Set.of(8L, 9L));
+		verify(clusterPresence, never()).isOnline(anyLong());
+	}
+
+	@Test
+	void remotePresenceIsIgnoredWithoutFanout() {
+		when(clusterPresence.onlineAmong(any())).thenReturn(Set.of(8L));
+
+		service.handleBatch(List.of(event(1L, 8L)));
+
+		verify(offlineDeliveryService).enqueue(eq(8L), any());
+		verifyNoInteractions(chatBroadcaster);
+	}
+
+	@Test
+	void mentionsMatchWholeUsernames() {
+		assertThat(NotificationService.mentions("ping @al", "al")).isTrue();
+		assertThat(NotificationService.mentions("@al, see this.", "al")).isTrue();
+		assertThat(NotificationService.mentions("thanks @al.", "al")).isTrue();
+		assertThat(NotificationService.mentions("ping @alice", "al")).isFalse();
+		assertThat(NotificationService.mentions("mail me at bob@al", "al")).isFalse();
+		assertThat(NotificationService.mentions("@alice then @al", "al")).isTrue();
+	}
+
+	@Test
+	void stopDeliversQueuedEvents() throws InterruptedException {
+		service.stop();
+		service.publish(event(1L, 9L));
+
+		service.stop();
+
+		verify(offlineDeliveryService).enqueue(anyLong(), any());
+	}
+
+	private static NotificationEventDto event(Long messageId, Long recipientId) {
+		return NotificationEventDto.builder()
+				.chatRoomId(3L)
+				.messageId(messageId)
+				.senderId(1L)
+				.preview("hi")
+				.recipientIds(List.of(recipientId))
+				.mentionedUserIds(List.of())
+				.build();
+	}
+}
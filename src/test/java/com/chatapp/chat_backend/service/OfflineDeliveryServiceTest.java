@@ -0,0 +1,81 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.dtos.CatchUpBatchDto;
+import com.chatapp.chat_backend.dtos.DeliveryItemDto;
+import com.chatapp.chat_backend.utils.DeliveryKind;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class OfflineDeliveryServiceTest {
+
+	@TempDir
+	Path spillDir;
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+	private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+	private OfflineDeliveryService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new OfflineDeliveryService(messagingTemplate, objectMapper);
+		ReflectionTestUtils.setField(service, "memoryLimit", 200);
+		ReflectionTestUtils.setField(service, "spillLimit", 5000);
+		ReflectionTestUtils.setField(service, "batchSize", 100);
+		ReflectionTestUtils.setField(service, "spillDir", spillDir.toString());
+	}
+
+	@Test
+	void spillFilesFromAPreviousRunAreReplayedInOrder() throws Exception {
+		Files.writeString(spillDir.resolve("5-2.jsonl"), line(mention(2L)));
+		Files.writeString(spillDir.resolve("5-1.jsonl"), line(mention(1L)));
+
+		service.replaySpills();
+		service.drain(5L);
+
+		ArgumentCaptor<CatchUpBatchDto> batch = ArgumentCaptor.forClass(CatchUpBatchDto.class);
+		verify(messagingTemplate).convertAndSendToUser(eq("5"), eq(OfflineDeliveryService.CATCH_UP_DESTINATION), batch.capture());
+		assertThat(batch.getValue().getItems()).extracting(DeliveryItemDto::getMessageId).containsExactly(1L, 2L);
+		try (var files = Files.list(spillDir)) {
+			assertThat(files).isEmpty();
+		}
+	}
+
+	@Test
+	void replayWithoutSpillDirectoryDoesNothing() {
+		ReflectionTestUtils.setField(service, "spillDir", spillDir.resolve("missing").toString());
+
+		service.replaySpills();
+		service.drain(5L);
+
+		ArgumentCaptor<CatchUpBatchDto> batch = ArgumentCaptor.forClass(CatchUpBatchDto.class);
+		verify(messagingTemplate).convertAndSendToUser(eq("5"), eq(OfflineDeliveryService.CATCH_UP_DESTINATION), batch.capture());
+		assertThat(batch.getValue().getItems()).isEmpty();
+	}
+
+	private String line(DeliveryItemDto item) throws Exception {
+		return objectMapper.writeValueAsString(item) + System.lineSeparator();
+	}
+
+	private static DeliveryItemDto mention(Long messageId) {
+		return DeliveryItemDto.builder()
+				.kind(DeliveryKind.MENTION.name())
+				.chatRoomId(9L)
+				.messageId(messageId)
+				.count(1)
+				.build();
+	}
+}
@@ -0,0 +1,93 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ShardWriteFence;
+import com.chatapp.chat_backend.repository.MessageReactionCountRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReactionCounterServiceTest {
+
+	private final MessageReactionCountRepository repository = mock(MessageReactionCountRepository.class);
+	private final MessageShardResolver shardResolver = mock(MessageShardResolver.class);
+	private final MessageStore messageStore = mock(MessageStore.class);
+	private final ShardWriteFence writeFence = mock(ShardWriteFence.class);
+	private final ChatBroadcaster broadcaster = mock(ChatBroadcaster.class);
+	private final ReactionCounterService service = new ReactionCounterService(repository, broadcaster,
+			mock(PlatformTransactionManager.class), shardResolver, messageStore, writeFence);
+
+	@Test
+	void flushesRacingWithWritersLoseNoDeltas() throws Exception {
+		AtomicLong flushed = new AtomicLong();
+		doAnswer(invocation -> flushed.addAndGet(invocation.getArgument(2)))
+				.when(repository).addToCount(anyLong(), anyString(), anyLong());
+		when(messageStore.inShard(anyInt(), anyBoolean(), any()))
+				.thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(2).get());
+
+		int writers = 4;
+		int clicksPerWriter = 200_000;
+		ExecutorService pool = Executors.newFixedThreadPool(writers);
+		CountDownLatch done = new CountDownLatch(writers);
+		for (int i = 0; i < writers; i++) {
+			pool.execute(() -> {
+				for (int click = 0; click < clicksPerWriter; click++) {
+					service.record(1L, 10L + click % 3, "+1", 1);
+				}
+				done.countDown();
+			});
+		}
+		while (!done.await(1, TimeUnit.MILLISECONDS)) {
+			service.flush();
+		}
+		service.flush();
+		pool.shutdown();
+
+		assertThat(flushed.get()).isEqualTo((long) writers * clicksPerWriter);
+	}
+
+	@Test
+	void migratingRoomsKeepTheirDeltas() {
+		when(shardResolver.isMigrating(1L)).thenReturn(true);
+		service.record(1L, 10L, "+1", 2);
+
+		service.flush();
+
+		verifyNoInteractions(repository);
+		assertThat(service.getSummaries(List.of(10L))).isEqualTo(Map.of(10L, Map.of("+1", 2L)));
+	}
+
+	@Test
+	void fencedRoomsKeepTheirDeltasForTheNewShard() {
+		when(messageStore.inShard(anyInt(), anyBoolean(), any()))
+				.thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(2).get());
+		when(writeFence.fencedRooms(Set.of(1L, 2L))).thenReturn(Set.of(1L));
+		service.record(1L, 10L, "+1", 2);
+		service.record(2L, 20L, "+1", 1);
+
+		service.flush();
+
+		verify(repository).addToCount(20L, "+1", 1L);
+		verify(repository, never()).addToCount(eq(10L), anyString(), anyLong());
+		verify(broadcaster, never()).broadcast(eq("/topic/chat/1/reaction"), any());
+		assertThat(service.getSummaries(List.of(10L))).isEqualTo(Map.of(10L, Map.of("+1", 2L)));
+
+		when(writeFence.fencedRooms(Set.of(1L))).thenReturn(Set.of());
+		service.flush();
+
+		verify(repository).addToCount(10L, "+1", 2L);
+	}
+}
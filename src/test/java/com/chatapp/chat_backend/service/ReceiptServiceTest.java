@@ -0,0 +1,98 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ShardWriteFence;
+import com.chatapp.chat_backend.dtos.ReceiptAckDto;
+import com.chatapp.chat_backend.dtos.ReceiptDto;
+import com.chatapp.chat_backend.repository.RoomReceiptRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReceiptServiceTest {
+
+	private final RoomMembershipCache membershipCache = mock(RoomMembershipCache.class);
+	private final MessageStore messageStore = mock(MessageStore.class);
+	private final RoomReceiptRepository receiptRepository = mock(RoomReceiptRepository.class);
+	private final ShardWriteFence writeFence = mock(ShardWriteFence.class);
+	private final ReceiptService service = new ReceiptService(receiptRepository, membershipCache,
+			mock(ChatBroadcaster.class), mock(PlatformTransactionManager.class), mock(MessageShardResolver.class),
+			messageStore, writeFence);
+
+	@BeforeEach
+	void setUp() {
+		when(membershipCache.isMember(1L, 5L)).thenReturn(true);
+		when(membershipCache.getMemberIds(1L)).thenReturn(Set.of(5L));
+	}
+
+	@Test
+	void ackBeyondTheNewestMessageIsClamped() {
+		when(messageStore.findMaxMessageId(1L)).thenReturn(40L);
+
+		service.acknowledge(1L, 5L, ack("READ", Long.MAX_VALUE));
+
+		assertThat(service.getRoomReceipts(1L, 5L)).singleElement().satisfies(receipt -> {
+			assertThat(receipt.getReadUpTo()).isEqualTo(40L);
+			assertThat(receipt.getDeliveredUpTo()).isEqualTo(40L);
+		});
+	}
+
+	@Test
+	void acksWithinTheKnownRangeSkipTheLookup() {
+		when(messageStore.findMaxMessageId(1L)).thenReturn(40L);
+
+		service.acknowledge(1L, 5L, ack("DELIVERED", 40L));
+		service.acknowledge(1L, 5L, ack("READ", 30L));
+
+		verify(messageStore, times(1)).findMaxMessageId(1L);
+		assertThat(service.getRoomReceipts(1L, 5L)).extracting(ReceiptDto::getReadUpTo).containsExactly(30L);
+	}
+
+	@Test
+	void newMessagesRaiseTheClamp() {
+		when(messageStore.findMaxMessageId(1L)).thenReturn(40L, 45L);
+
+		service.acknowledge(1L, 5L, ack("READ", 40L));
+		service.acknowledge(1L, 5L, ack("READ", 45L));
+
+		assertThat(service.getRoomReceipts(1L, 5L)).extracting(ReceiptDto::getReadUpTo).containsExactly(45L);
+	}
+
+	@Test
+	void ackInAnEmptyRoomIsIgnored() {
+		when(messageStore.findMaxMessageId(1L)).thenReturn(0L);
+
+		service.acknowledge(1L, 5L, ack("READ", 7L));
+
+		assertThat(service.getRoomReceipts(1L, 5L)).isEmpty();
+	}
+
+	@Test
+	void fencedRoomsKeepTheirWatermarksDirty() {
+		when(messageStore.findMaxMessageId(1L)).thenReturn(40L);
+		when(messageStore.inShard(anyInt(), anyBoolean(), any()))
+				.thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(2).get());
+		when(writeFence.fencedRooms(Set.of(1L))).thenReturn(Set.of(1L), Set.of());
+		service.acknowledge(1L, 5L, ack("READ", 30L));
+
+		service.flush();
+		verify(receiptRepository, never()).advance(anyLong(), anyLong(), anyLong(), anyLong());
+
+		service.flush();
+		verify(receiptRepository).advance(1L, 5L, 30L, 30L);
+	}
+
+	private static ReceiptAckDto ack(String status, Long upToMessageId) {
+		ReceiptAckDto ack = new ReceiptAckDto();
+		ack.setStatus(status);
+		ack.setUpToMessageId(upToMessageId);
+		return ack;
+	}
+}
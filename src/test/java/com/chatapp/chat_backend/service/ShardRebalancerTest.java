@@ -0,0 +1,80 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.datasource.ShardRoutingDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ShardRebalancerTest {
+
+	private final ShardRoutingDataSource routing = mock(ShardRoutingDataSource.class);
+	private final MessageShardResolver shardResolver = mock(MessageShardResolver.class);
+	private final TwoLevelCache cache = mock(TwoLevelCache.class);
+	private ShardRebalancer rebalancer;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() throws SQLException {
+		ObjectProvider<ShardRoutingDataSource> provider = mock(ObjectProvider.class);
+		when(provider.getIfAvailable()).thenReturn(routing);
+		rebalancer = new ShardRebalancer(provider, shardResolver, cache);
+		ReflectionTestUtils.setField(rebalancer, "batchSize", 500);
+
+		DataSource unreachable = mock(DataSource.class);
+		when(unreachable.getConnection()).thenThrow(new SQLException("shard down"));
+		when(routing.getShardCount()).thenReturn(2);
+		when(routing.getShard(anyInt())).thenReturn(unreachable);
+		when(shardResolver.shardFor(7L)).thenReturn(0);
+	}
+
+	@Test
+	void movesAreRefusedWhileInvalidationsDoNotReachTheCluster() {
+		when(cache.isClusterWide()).thenReturn(false);
+
+		assertThatThrownBy(() -> rebalancer.moveRoom(7L, 1))
+				.hasMessageContaining("cluster-wide cache invalidation");
+		verify(shardResolver, never()).assign(anyLong(), anyInt(), anyBoolean());
+	}
+
+	@Test
+	void singleNodeDeploymentsMayMoveWithoutRedis() {
+		when(cache.isClusterWide()).thenReturn(false);
+		ReflectionTestUtils.setField(rebalancer, "singleNode", true);
+
+		assertThatThrownBy(() -> rebalancer.moveRoom(7L, 1))
+				.hasMessageStartingWith("Failed to move chat room 7");
+		verify(shardResolver).assign(7L, 0, true);
+	}
+
+	@Test
+	void failedMovesLeaveTheRoomOnItsShard() {
+		when(cache.isClusterWide()).thenReturn(true);
+
+		assertThatThrownBy(() -> rebalancer.moveRoom(7L, 1))
+				.hasMessageStartingWith("Failed to move chat room 7");
+
+		InOrder order = inOrder(shardResolver);
+		order.verify(shardResolver).assign(7L, 0, true);
+		order.verify(shardResolver).assign(7L, 0, false);
+		verify(shardResolver, never()).assign(eq(7L), eq(1), anyBoolean());
+	}
+
+	@Test
+	void aRoomCanOnlyBeMovedOnceAtATimeAndRetriedAfterAFailure() {
+		when(cache.isClusterWide()).thenReturn(true);
+
+		assertThatThrownBy(() -> rebalancer.moveRoom(7L, 1)).hasMessageStartingWith("Failed to move");
+		assertThatThrownBy(() -> rebalancer.moveRoom(7L, 1)).hasMessageStartingWith("Failed to move");
+		verify(shardResolver, times(2)).assign(7L, 0, true);
+	}
+}
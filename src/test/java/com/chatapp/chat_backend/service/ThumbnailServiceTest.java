@@ -0,0 +1,89 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.attachment.ThumbnailRenderer;
+import com.chatapp.chat_backend.dtos.MessageResponseDto;
+import com.chatapp.chat_backend.dtos.ThumbnailReadyDto;
+import com.chatapp.chat_backend.entity.Attachment;
+import com.chatapp.chat_backend.repository.AttachmentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.awt.Dimension;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ThumbnailServiceTest {
+
+	private final ThumbnailRenderer renderer = mock(ThumbnailRenderer.class);
+	private final AttachmentRepository attachmentRepository = mock(AttachmentRepository.class);
+	private final ChatBroadcaster broadcaster = mock(ChatBroadcaster.class);
+	private final ThumbnailService service = new ThumbnailService(renderer, attachmentRepository,
+			mock(MessageStore.class), broadcaster, mock(PlatformTransactionManager.class), true, 1, 10);
+
+	@BeforeEach
+	void setUp() {
+		when(renderer.canRender("image/png")).thenReturn(true);
+		service.start();
+	}
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		service.stop();
+	}
+
+	@Test
+	void aRenderedThumbnailIsAnnouncedAsASmallEvent() throws Exception {
+		when(renderer.render("ab".repeat(32), "image/png")).thenReturn(new Dimension(320, 240));
+		MessageResponseDto message = MessageResponseDto.builder()
+				.id(11L)
+				.chatRoomId(5L)
+				.attachmentId(7L)
+				.content("original text")
+				.build();
+
+		service.announceWhenReady(attachment(), message);
+
+		ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+		verify(broadcaster, timeout(5000)).broadcast(eq("/topic/chat/5/thumbnail"), payload.capture());
+		ThumbnailReadyDto event = (ThumbnailReadyDto) payload.getValue();
+		assertThat(event.getMessageId()).isEqualTo(11L);
+		assertThat(event.getAttachmentId()).isEqualTo(7L);
+		assertThat(event.getThumbnail().getUrl()).isEqualTo("/api/attachments/7/thumbnail");
+		assertThat(event.getThumbnail().getWidth()).isEqualTo(320);
+		assertThat(event.getThumbnail().getHeight()).isEqualTo(240);
+		verify(attachmentRepository).setThumbnail("ab".repeat(32), 320, 240);
+		verify(broadcaster, never()).broadcast(eq("/topic/chat/5"), any());
+	}
+
+	@Test
+	void failedRendersAnnounceNothing() throws Exception {
+		when(renderer.render(any(), any())).thenThrow(new IOException("corrupt"));
+
+		service.announceWhenReady(attachment(), MessageResponseDto.builder().id(11L).chatRoomId(5L).attachmentId(7L).build());
+
+		verify(renderer, timeout(5000)).render(any(), any());
+		Thread.sleep(100);
+		verifyNoInteractions(broadcaster);
+		assertThat(service.getStats().getFailed()).isEqualTo(1);
+	}
+
+	@Test
+	void onlyRenderableContentCountsAsRenderable() {
+		assertThat(service.isRenderable(attachment())).isTrue();
+		Attachment pdf = attachment();
+		pdf.setContentType("application/pdf");
+		assertThat(service.isRenderable(pdf)).isFalse();
+	}
+
+	private static Attachment attachment() {
+		return Attachment.builder()
+				.id(7L).uploaderId(1L).fileName("cat.png").contentType("image/png")
+				.fileSize(10L).sha256("ab".repeat(32)).build();
+	}
+}
@@ -0,0 +1,228 @@
+package com.chatapp.chat_backend.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.lettuce.core.ClientOptions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwoLevelCacheTest {
+
+	private static final TypeReference<Set<Long>> MEMBERS = new TypeReference<>() {};
+
+	private static RedisServer redisServer;
+	private static LettuceConnectionFactory connectionFactory;
+	private static StringRedisTemplate redisTemplate;
+
+	private RedisMessageListenerContainer listenerContainer;
+	private TwoLevelCache nodeA;
+	private TwoLevelCache nodeB;
+
+	@BeforeAll
+	static void startRedis() throws IOException {
+		int port;
+		try (ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		redisServer = new RedisServer(port);
+		redisServer.start();
+		connectionFactory = new LettuceConnectionFactory("localhost", port);
+		connectionFactory.afterPropertiesSet();
+		connectionFactory.start();
+		redisTemplate = new StringRedisTemplate(connectionFactory);
+	}
+
+	@AfterAll
+	static void stopRedis() throws IOException {
+		connectionFactory.destroy();
+		redisServer.stop();
+	}
+
+	@BeforeEach
+	void setUp() {
+		redisTemplate.getConnectionFactory().getConnection().serverCommands().flushAll();
+		nodeA = node("a");
+		nodeB = node("b");
+
+		listenerContainer = new RedisMessageListenerContainer();
+		listenerContainer.setConnectionFactory(connectionFactory);
+		listenerContainer.addMessageListener((message, pattern) -> {
+			String body = new String(message.getBody(), StandardCharsets.UTF_8);
+			nodeA.onInvalidation(body);
+			nodeB.onInvalidation(body);
+		}, new ChannelTopic(TwoLevelCache.INVALIDATION_CHANNEL));
+		listenerContainer.afterPropertiesSet();
+		listenerContainer.start();
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		listenerContainer.destroy();
+	}
+
+	@Test
+	void secondNodeIsServedFromRedis() {
+		AtomicInteger loads = new AtomicInteger();
+
+		assertThat(nodeA.get("room-members", 1, MEMBERS, () -> load(loads, 5L))).containsExactly(5L);
+		assertThat(nodeB.get("room-members", 1, MEMBERS, () -> load(loads, 6L))).containsExactly(5L);
+
+		assertThat(loads).hasValue(1);
+	}
+
+	@Test
+	void evictionDuringALoadLeavesNoStaleEntry() throws InterruptedException {
+		// Node A reads the old membership, then node B removes user 5 and evicts before A writes the cache
+		Set<Long> stale = nodeA.get("room-members", 1, MEMBERS, () -> {
+			nodeB.evict("room-members", 1);
+			return Set.of(5L);
+		});
+		assertThat(stale).containsExactly(5L);
+
+		awaitRemoteInvalidation(nodeA);
+		assertThat(redisTemplate.hasKey("chat:cache:room-members:1")).isFalse();
+		assertThat(nodeA.get("room-members", 1, MEMBERS, () -> Set.of(6L))).containsExactly(6L);
+		assertThat(nodeB.get("room-members", 1, MEMBERS, () -> Set.of(7L))).containsExactly(6L);
+	}
+
+	@Test
+	void batchLoadRacingAnEvictionIsNotCached() throws InterruptedException {
+		Map<Long, Set<Long>> stale = nodeA.getAll("room-members", List.of(1L, 2L), MEMBERS, missing -> {
+			nodeB.evict("room-members", 1L);
+			return Map.of(1L, Set.of(5L), 2L, Set.of(8L));
+		});
+		assertThat(stale).containsEntry(1L, Set.of(5L));
+
+		assertThat(redisTemplate.hasKey("chat:cache:room-members:1")).isFalse();
+		assertThat(redisTemplate.hasKey("chat:cache:room-members:2")).isTrue();
+		awaitRemoteInvalidation(nodeA);
+		assertThat(nodeA.get("room-members", 1L, MEMBERS, () -> Set.of(6L))).containsExactly(6L);
+	}
+
+	@Test
+	void evictionReachesOtherNodes() throws InterruptedException {
+		nodeA.get("room-members", 1, MEMBERS, () -> Set.of(5L));
+		nodeB.get("room-members", 1, MEMBERS, () -> Set.of(5L));
+
+		nodeA.evict("room-members", 1);
+
+		awaitRemoteInvalidation(nodeB);
+		assertThat(nodeB.get("room-members", 1, MEMBERS, () -> Set.of(6L))).containsExactly(6L);
+	}
+
+	@Test
+	void concurrentMissesShareOneLoad() throws Exception {
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Future<Set<Long>>> results = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			results.add(pool.submit(() -> nodeA.get("room-members", 1, MEMBERS, () -> {
+				loads.incrementAndGet();
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return Set.of(5L);
+			})));
+		}
+		Thread.sleep(100);
+		release.countDown();
+
+		for (Future<Set<Long>> result : results) {
+			assertThat(result.get(5, TimeUnit.SECONDS)).containsExactly(5L);
+		}
+		pool.shutdown();
+		assertThat(loads).hasValue(1);
+	}
+
+	@Test
+	void evictionWhileRedisIsDownIsReplayed() throws Exception {
+		LettuceConnectionFactory failFast = new LettuceConnectionFactory(
+				new RedisStandaloneConfiguration("localhost", connectionFactory.getPort()),
+				LettuceClientConfiguration.builder()
+						.commandTimeout(Duration.ofMillis(500))
+						.clientOptions(ClientOptions.builder()
+								.disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+								.build())
+						.build());
+		failFast.afterPropertiesSet();
+		failFast.start();
+		TwoLevelCache cache = new TwoLevelCache(new StringRedisTemplate(failFast), new ObjectMapper(),
+				"c", true, 60_000, 1000, 50, 5000);
+		cache.get("room-members", 1, MEMBERS, () -> Set.of(5L));
+
+		redisServer.stop();
+		try {
+			cache.evict("room-members", 2);
+			// Invalidations may have been missed, so nothing local is trusted any more
+			assertThat(cache.getStats().getLocalEntries()).isZero();
+			assertThat(cache.getStats().getPendingInvalidations()).isEqualTo(1);
+		} finally {
+			redisServer.start();
+		}
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (cache.getStats().getPendingInvalidations() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(60);
+			cache.retryInvalidations();
+		}
+		failFast.destroy();
+		assertThat(cache.getStats().getPendingInvalidations()).isZero();
+		assertThat(redisTemplate.opsForValue().get("chat:cache-version:room-members:2")).isEqualTo("1");
+	}
+
+	@Test
+	void localCacheStaysWithinItsBound() {
+		for (int key = 0; key < 5000; key++) {
+			nodeA.get("room-members", key, MEMBERS, () -> Set.of(5L));
+		}
+
+		assertThat(nodeA.getStats().getLocalEntries()).isLessThanOrEqualTo(1000);
+	}
+
+	// The eviction reaches the other node over pub/sub, a moment after it returns
+	private static void awaitRemoteInvalidation(TwoLevelCache node) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (node.getStats().getRemoteInvalidations() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+	}
+
+	private static TwoLevelCache node(String nodeId) {
+		return new TwoLevelCache(redisTemplate, new ObjectMapper(), nodeId, true, 60_000, 1000, 10_000, 5000);
+	}
+
+	private static Set<Long> load(AtomicInteger loads, Long memberId) {
+		loads.incrementAndGet();
+		return Set.of(memberId);
+	}
+}
@@ -0,0 +1,225 @@
+package com.chatapp.chat_backend.service;
+
+import com.chatapp.chat_backend.datasource.MessageShardResolver;
+import com.chatapp.chat_backend.dtos.LoggedMessageDto;
+import com.chatapp.chat_backend.dtos.SendMessageRequestDto;
+import com.chatapp.chat_backend.repository.MessageRepository;
+import com.chatapp.chat_backend.wal.MessageWal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class WalMessageServiceTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+	private final MessageService messageService = mock(MessageService.class);
+	private final RoomMembershipCache membershipCache = mock(RoomMembershipCache.class);
+	private final MessageShardResolver shardResolver = mock(MessageShardResolver.class);
+	private final List<String> applied = Collections.synchronizedList(new ArrayList<>());
+
+	@TempDir
+	Path dir;
+
+	private WalMessageService service;
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		if (service != null) {
+			service.stop();
+		}
+	}
+
+	@Test
+	void concurrentSendsToARoomAreAppliedInLogOrder() throws Exception {
+		service = start(new MessageWal(dir.toString(), 1 << 20, 100_000));
+		when(membershipCache.isMember(eq(1L), anyLong())).thenReturn(true);
+
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Future<?>> senders = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			long senderId = t;
+			senders.add(pool.submit(() -> {
+				for (int i = 0; i < 50; i++) {
+					service.accept(1L, request(senderId + "-" + i), senderId);
+				}
+			}));
+		}
+		for (Future<?> sender : senders) {
+			sender.get();
+		}
+		pool.shutdown();
+		awaitApplied(400);
+		service.stop();
+		service = null;
+
+		assertThat(applied).hasSize(400).isEqualTo(loggedOrder());
+	}
+
+	@Test
+	void unappliedRecordsAreReplayedOnStart() throws Exception {
+		MessageWal wal = new MessageWal(dir.toString(), 1 << 20, 100);
+		wal.open();
+		for (String id : List.of("a", "b", "c")) {
+			wal.append(logged(1L, id));
+		}
+		wal.markApplied(1);
+		wal.close();
+
+		service = start(new MessageWal(dir.toString(), 1 << 20, 100));
+		awaitApplied(2);
+
+		assertThat(applied).containsExactly("b", "c");
+		assertThat(service.getStats().getRejectedMessages()).isZero();
+	}
+
+	@Test
+	void aMovingRoomIsParkedWhileOtherRoomsAreApplied() throws Exception {
+		MessageWal wal = new MessageWal(dir.toString(), 1 << 20, 100);
+		wal.open();
+		wal.append(logged(1L, "a1"));
+		wal.append(logged(2L, "b1"));
+		wal.append(logged(1L, "a2"));
+		wal.append(logged(2L, "b2"));
+		wal.close();
+		AtomicBoolean moving = new AtomicBoolean(true);
+		when(shardResolver.isMigrating(1L)).thenAnswer(invocation -> moving.get());
+
+		MessageWal reopened = new MessageWal(dir.toString(), 1 << 20, 100);
+		service = start(reopened);
+		awaitApplied(2);
+
+		assertThat(applied).containsExactly("b1", "b2");
+		assertThat(service.getStats().getParkedRecords()).isEqualTo(2);
+		// Nothing at or after the first parked record counts as applied
+		assertThat(reopened.getAppliedSequence()).isZero();
+
+		moving.set(false);
+		awaitApplied(4);
+
+		assertThat(applied).containsExactly("b1", "b2", "a1", "a2");
+		awaitAppliedSequence(reopened, 4);
+		assertThat(service.getStats().getParkedRecords()).isZero();
+	}
+
+	@Test
+	void sendsAreRetriedWhileTheDatabaseIsUnavailableAndRefusedOnesRejected() throws Exception {
+		service = start(new MessageWal(dir.toString(), 1 << 20, 100));
+		when(membershipCache.isMember(eq(1L), anyLong())).thenReturn(true);
+		AtomicInteger attempts = new AtomicInteger();
+		doAnswer(invocation -> {
+			String id = invocation.<SendMessageRequestDto>getArgument(1).getClientMessageId();
+			if (id.equals("refused")) {
+				throw new RuntimeException("You are not a member of this chat room");
+			}
+			if (attempts.incrementAndGet() <= 2) {
+				throw new DataAccessResourceFailureException("Communications link failure");
+			}
+			applied.add(id);
+			return null;
+		}).when(messageService).sendMessage(anyLong(), any(), anyLong());
+
+		service.accept(1L, request("refused"), 5L);
+		service.accept(1L, request("a"), 5L);
+		awaitApplied(1);
+
+		assertThat(applied).containsExactly("a");
+		assertThat(service.getStats().getRejectedMessages()).isEqualTo(1);
+		assertThat(service.getStats().getRetries()).isEqualTo(2);
+		assertThat(service.getStats().getLastApplyLagMs()).isNotNegative();
+	}
+
+	@Test
+	void stoppingKeepsTheCheckpointWritable() throws Exception {
+		service = start(new MessageWal(dir.toString(), 1 << 20, 100));
+		when(membershipCache.isMember(eq(1L), anyLong())).thenReturn(true);
+		service.accept(1L, request("a"), 5L);
+		awaitApplied(1);
+
+		service.stop();
+		service = null;
+
+		assertThat(ByteBuffer.wrap(Files.readAllBytes(dir.resolve("checkpoint"))).getLong()).isEqualTo(1);
+	}
+
+	private WalMessageService start(MessageWal wal) {
+		doAnswer(invocation -> {
+			applied.add(invocation.<SendMessageRequestDto>getArgument(1).getClientMessageId());
+			return null;
+		}).when(messageService).sendMessage(anyLong(), any(), anyLong());
+		WalMessageService started = new WalMessageService(wal, messageService, mock(AttachmentService.class),
+				mock(MessageRepository.class), membershipCache, mock(MessageDedupCache.class),
+				shardResolver, mock(SimpMessagingTemplate.class), objectMapper, true, 50, 500);
+		started.start();
+		return started;
+	}
+
+	/**
+	 * Client message ids in the log's own order, read back from disk
+	 */
+	private List<String> loggedOrder() throws Exception {
+		// Forget the checkpoint so every record is returned
+		Files.write(dir.resolve("checkpoint"), new byte[Long.BYTES]);
+		MessageWal wal = new MessageWal(dir.toString(), 1 << 20, 100_000);
+		try {
+			List<String> ids = new ArrayList<>();
+			for (MessageWal.Record record : wal.open()) {
+				ids.add(objectMapper.readValue(record.payload(), LoggedMessageDto.class).getRequest().getClientMessageId());
+			}
+			return ids;
+		} finally {
+			wal.close();
+		}
+	}
+
+	private void awaitApplied(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (applied.size() < count && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertThat(applied).hasSize(count);
+	}
+
+	private void awaitAppliedSequence(MessageWal wal, long sequence) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (wal.getAppliedSequence() < sequence && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertThat(wal.getAppliedSequence()).isEqualTo(sequence);
+	}
+
+	private byte[] logged(Long chatRoomId, String clientMessageId) throws Exception {
+		return objectMapper.writeValueAsBytes(LoggedMessageDto.builder()
+				.chatRoomId(chatRoomId)
+				.senderId(5L)
+				.request(request(clientMessageId))
+				.acceptedAt(LocalDateTime.now())
+				.build());
+	}
+
+	private static SendMessageRequestDto request(String clientMessageId) {
+		SendMessageRequestDto request = new SendMessageRequestDto();
+		request.setContent("hello " + clientMessageId);
+		request.setClientMessageId(clientMessageId);
+		return request;
+	}
+}
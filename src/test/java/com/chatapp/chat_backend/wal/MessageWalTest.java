@@ -0,0 +1,170 @@
+package com.chatapp.chat_backend.wal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageWalTest {
+
+	@TempDir
+	Path dir;
+
+	private final List<MessageWal> opened = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		opened.forEach(MessageWal::close);
+	}
+
+	@Test
+	void unappliedRecordsAreReplayedInOrder() {
+		MessageWal wal = wal(1 << 16, 100);
+		wal.open();
+		assertThat(wal.append(bytes("one"))).isEqualTo(1);
+		assertThat(wal.append(bytes("two"))).isEqualTo(2);
+		assertThat(wal.append(bytes("three"))).isEqualTo(3);
+		wal.markApplied(1);
+		wal.close();
+
+		List<MessageWal.Record> replayed = wal(1 << 16, 100).open();
+
+		assertThat(replayed).extracting(MessageWal.Record::sequence).containsExactly(2L, 3L);
+		assertThat(replayed).extracting(record -> text(record.payload())).containsExactly("two", "three");
+	}
+
+	@Test
+	void aTornTailIsDroppedAndOverwritten() throws IOException {
+		MessageWal wal = wal(1 << 16, 100);
+		wal.open();
+		wal.append(bytes("one"));
+		wal.append(bytes("two"));
+		wal.append(bytes("three"));
+		wal.close();
+
+		// Flip a payload byte of the last record, as a crash mid-write would leave it
+		Path segment = segments().get(0);
+		long lastPayload = 16 + 3 + 16 + 3 + 16;
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer b = ByteBuffer.allocate(1);
+			channel.read(b, lastPayload);
+			channel.write(ByteBuffer.wrap(new byte[]{(byte) (b.get(0) ^ 0x20)}), lastPayload);
+		}
+
+		MessageWal reopened = wal(1 << 16, 100);
+		assertThat(reopened.open()).extracting(record -> text(record.payload())).containsExactly("one", "two");
+		assertThat(reopened.append(bytes("again"))).isEqualTo(3);
+		reopened.close();
+
+		assertThat(wal(1 << 16, 100).open()).extracting(record -> text(record.payload()))
+				.containsExactly("one", "two", "again");
+	}
+
+	@Test
+	void aRecordWithAGapInItsSequenceEndsTheLog() throws IOException {
+		MessageWal wal = wal(1 << 16, 100);
+		wal.open();
+		wal.append(bytes("one"));
+		wal.append(bytes("two"));
+		wal.close();
+
+		// Rewrite the second record's sequence; its CRC no longer matches either
+		try (FileChannel channel = FileChannel.open(segments().get(0), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, 7), 16 + 3 + 8);
+		}
+
+		assertThat(wal(1 << 16, 100).open()).extracting(MessageWal.Record::sequence).containsExactly(1L);
+	}
+
+	@Test
+	void segmentsRollAndAppliedOnesAreDeleted() throws IOException {
+		MessageWal wal = wal(64, 100);
+		wal.open();
+		for (int i = 1; i <= 4; i++) {
+			wal.append(bytes("record-" + i + "-padding-to-fill"));
+		}
+		assertThat(segments()).hasSize(4);
+
+		wal.markApplied(3);
+		wal.checkpoint();
+		assertThat(segments()).hasSize(1);
+		wal.close();
+
+		assertThat(wal(64, 100).open()).extracting(record -> text(record.payload()))
+				.containsExactly("record-4-padding-to-fill");
+	}
+
+	@Test
+	void appendsAreRefusedOnceTooManyAreUnapplied() {
+		MessageWal wal = wal(1 << 16, 2);
+		wal.open();
+		wal.append(bytes("one"));
+		wal.append(bytes("two"));
+
+		assertThatThrownBy(() -> wal.append(bytes("three"))).hasMessageContaining("full");
+		wal.markApplied(1);
+		assertThat(wal.append(bytes("three"))).isEqualTo(3);
+	}
+
+	@Test
+	void concurrentAppendersLearnTheirSequencesInLogOrder() throws Exception {
+		MessageWal wal = wal(1 << 20, 100_000);
+		wal.open();
+		List<Long> queued = new ArrayList<>();
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Future<?>> appenders = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			appenders.add(pool.submit(() -> {
+				for (int i = 0; i < 500; i++) {
+					wal.append(bytes("x"), queued::add);
+				}
+			}));
+		}
+		for (Future<?> appender : appenders) {
+			appender.get();
+		}
+		pool.shutdown();
+
+		assertThat(queued).hasSize(4000).isSorted();
+		assertThat(queued.get(queued.size() - 1)).isEqualTo(4000L);
+	}
+
+	private MessageWal wal(int segmentBytes, long maxPending) {
+		MessageWal wal = new MessageWal(dir.toString(), segmentBytes, maxPending);
+		opened.add(wal);
+		return wal;
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.filter(file -> file.getFileName().toString().endsWith(".wal"))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+	}
+
+	private static byte[] bytes(String text) {
+		return text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String text(byte[] payload) {
+		return new String(payload, StandardCharsets.UTF_8);
+	}
+}
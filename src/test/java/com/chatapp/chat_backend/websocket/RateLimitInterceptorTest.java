@@ -0,0 +1,98 @@
+package com.chatapp.chat_backend.websocket;
+
+import com.chatapp.chat_backend.config.WebSocketConfig;
+import com.chatapp.chat_backend.security.RateLimiter;
+import com.chatapp.chat_backend.security.StompPrincipal;
+import com.chatapp.chat_backend.service.RoomMembershipCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RateLimitInterceptorTest {
+
+	private static final StompPrincipal MEMBER = new StompPrincipal(5L, "member", Long.MAX_VALUE);
+	private static final StompPrincipal OUTSIDER = new StompPrincipal(6L, "outsider", Long.MAX_VALUE);
+
+	// send: 10/s per user with a burst of 2, 10/s per room with a burst of 2
+	private final RateLimiter rateLimiter = new RateLimiter(10, 2, 10, 2, 2, 4, 20, 40, 20, 40);
+	private final RoomMembershipCache membershipCache = mock(RoomMembershipCache.class);
+	private final RoomAuthorizationInterceptor roomAuthorizationInterceptor = new RoomAuthorizationInterceptor(membershipCache);
+	private final RateLimitInterceptor rateLimitInterceptor = new RateLimitInterceptor(rateLimiter);
+
+	@Test
+	void sendsBeyondTheUserBurstAreRefused() {
+		Message<?> frame = send("/app/chat/1/send", MEMBER);
+
+		assertThat(rateLimitInterceptor.preSend(frame, null)).isSameAs(frame);
+		assertThat(rateLimitInterceptor.preSend(frame, null)).isSameAs(frame);
+		assertThatThrownBy(() -> rateLimitInterceptor.preSend(frame, null))
+				.isInstanceOf(MessageDeliveryException.class);
+	}
+
+	@Test
+	void nonSendFramesAreNotLimited() {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+		accessor.setDestination("/topic/chat/1");
+		accessor.setUser(MEMBER);
+		Message<?> frame = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+
+		for (int i = 0; i < 10; i++) {
+			assertThat(rateLimitInterceptor.preSend(frame, null)).isSameAs(frame);
+		}
+	}
+
+	@Test
+	void roomAuthorizationRunsBeforeTheRateLimit() {
+		when(membershipCache.isMember(1L, 5L)).thenReturn(true);
+		List<ChannelInterceptor> chain = inboundChain();
+		assertThat(chain.indexOf(roomAuthorizationInterceptor)).isLessThan(chain.indexOf(rateLimitInterceptor));
+
+		// An outsider flooding the room is refused without draining the room's budget
+		for (int i = 0; i < 10; i++) {
+			assertThatThrownBy(() -> preSend(chain, send("/app/chat/1/send", OUTSIDER)))
+					.isInstanceOf(AccessDeniedException.class);
+		}
+		preSend(chain, send("/app/chat/1/send", MEMBER));
+		preSend(chain, send("/app/chat/1/send", MEMBER));
+	}
+
+	private List<ChannelInterceptor> inboundChain() {
+		WebSocketConfig config = new WebSocketConfig(mock(StompAuthInterceptor.class), roomAuthorizationInterceptor,
+				rateLimitInterceptor, mock(OutboundQueueMonitor.class), mock(WireFormatInterceptor.class),
+				mock(ShardBindingInterceptor.class));
+		ChannelRegistration registration = new ChannelRegistration();
+		config.configureClientInboundChannel(registration);
+		return ReflectionTestUtils.invokeMethod(registration, "getInterceptors");
+	}
+
+	// Runs the frame through the real interceptors in the configured order; the rest are mocks
+	private void preSend(List<ChannelInterceptor> chain, Message<?> frame) {
+		for (ChannelInterceptor interceptor : chain) {
+			if (interceptor == roomAuthorizationInterceptor || interceptor == rateLimitInterceptor) {
+				frame = interceptor.preSend(frame, null);
+			}
+		}
+	}
+
+	private static Message<?> send(String destination, StompPrincipal user) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+		accessor.setDestination(destination);
+		accessor.setUser(user);
+		accessor.setLeaveMutable(true);
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+}
@@ -0,0 +1,85 @@
+package com.chatapp.chat_backend.websocket;
+
+import com.chatapp.chat_backend.security.StompPrincipal;
+import com.chatapp.chat_backend.service.RoomMembershipCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+
+import java.security.Principal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RoomAuthorizationInterceptorTest {
+
+	private static final StompPrincipal MEMBER = new StompPrincipal(5L, "member", Long.MAX_VALUE);
+
+	private final RoomMembershipCache membershipCache = mock(RoomMembershipCache.class);
+	private final RoomAuthorizationInterceptor interceptor = new RoomAuthorizationInterceptor(membershipCache);
+
+	@BeforeEach
+	void setUp() {
+		when(membershipCache.isMember(1L, 5L)).thenReturn(true);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"/topic/chat/1", "/topic/chat/1/typing", "/topic/chat/1/thumbnail", "/user/queue/catch-up"})
+	void membersMaySubscribe(String destination) {
+		Message<?> frame = frame(StompCommand.SUBSCRIBE, destination, MEMBER);
+
+		assertThat(interceptor.preSend(frame, null)).isSameAs(frame);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"/topic/chat/*", "/topic/chat/**", "/topic/**", "/topic/chat/1/*",
+			"/topic/chat/{id}", "/topic/chat/?", "/queue/notifications", "/queue/catch-up-user1",
+			"/topic/other", "/topic/chat/2", "/topic/chat/1/../2"})
+	void patternsForeignRoomsAndUnknownDestinationsAreDenied(String destination) {
+		assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, destination, MEMBER), null))
+				.isInstanceOf(AccessDeniedException.class);
+	}
+
+	@Test
+	void membersMaySendIntoTheirRoom() {
+		Message<?> frame = frame(StompCommand.SEND, "/app/chat/1/send", MEMBER);
+
+		assertThat(interceptor.preSend(frame, null)).isSameAs(frame);
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"/app/chat/2/send", "/topic/chat/1", "/queue/notifications", "/app/other"})
+	void sendsOutsideMemberRoomsAreDenied(String destination) {
+		assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.SEND, destination, MEMBER), null))
+				.isInstanceOf(AccessDeniedException.class);
+	}
+
+	@Test
+	void unauthenticatedSessionsAreDenied() {
+		assertThatThrownBy(() -> interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/chat/1", null), null))
+				.isInstanceOf(AccessDeniedException.class);
+	}
+
+	@Test
+	void otherCommandsPassThrough() {
+		Message<?> frame = frame(StompCommand.UNSUBSCRIBE, null, null);
+
+		assertThat(interceptor.preSend(frame, null)).isSameAs(frame);
+	}
+
+	private static Message<?> frame(StompCommand command, String destination, Principal user) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+		accessor.setDestination(destination);
+		accessor.setUser(user);
+		accessor.setLeaveMutable(true);
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+}
@@ -0,0 +1,124 @@
+package com.chatapp.chat_backend.websocket;
+
+import com.chatapp.chat_backend.security.StompPrincipal;
+import com.chatapp.chat_backend.service.RoomMembershipCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.when;
+
+class RoomSubscriptionRevokerTest {
+
+	private final StompSessionRegistry registry = new StompSessionRegistry();
+	private final RoomMembershipCache membershipCache = mock(RoomMembershipCache.class);
+	private final ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+	private final List<Message<?>> delivered = new CopyOnWriteArrayList<>();
+	private SimpleBrokerMessageHandler broker;
+	private RoomSubscriptionRevoker revoker;
+
+	@BeforeEach
+	@SuppressWarnings("unchecked")
+	void setUp() {
+		broker = new SimpleBrokerMessageHandler(mock(SubscribableChannel.class), clientOutbound,
+				mock(SubscribableChannel.class), List.of("/topic"));
+		broker.start();
+		clientOutbound.subscribe(delivered::add);
+		ObjectProvider<SimpleBrokerMessageHandler> provider = mock(ObjectProvider.class);
+		when(provider.getIfAvailable()).thenReturn(broker);
+		revoker = new RoomSubscriptionRevoker(registry, membershipCache, provider);
+
+		connect("s1", 1L);
+		connect("s2", 2L);
+		subscribe("s1", "sub-1", "/topic/chat/9");
+		subscribe("s1", "sub-2", "/topic/chat/9/typing");
+		subscribe("s2", "sub-1", "/topic/chat/9");
+		subscribe("s2", "sub-2", "/topic/chat/10");
+		delivered.clear();
+	}
+
+	@AfterEach
+	void tearDown() {
+		broker.stop();
+	}
+
+	@Test
+	void removedMembersStopReceivingTheRoom() {
+		when(membershipCache.getMemberIds(9L)).thenReturn(Set.of(1L));
+
+		revoker.revokeNonMembers(9L);
+
+		publish("/topic/chat/9");
+		assertThat(delivered).extracting(message -> SimpMessageHeaderAccessor.getSessionId(message.getHeaders())).containsExactly("s1");
+		assertThat(registry.getRoomSubscriptions(9L)).extracting(StompSessionRegistry.RoomSubscription::sessionId)
+				.containsOnly("s1");
+		assertThat(revoker.getRevoked()).isEqualTo(1);
+	}
+
+	@Test
+	void subTopicsAreRevokedWithTheRoomAndOtherRoomsAreKept() {
+		when(membershipCache.getMemberIds(9L)).thenReturn(Set.of());
+
+		revoker.revokeNonMembers(9L);
+
+		publish("/topic/chat/9/typing");
+		publish("/topic/chat/10");
+		assertThat(delivered).extracting(message -> SimpMessageHeaderAccessor.getSessionId(message.getHeaders())).containsExactly("s2");
+		assertThat(revoker.getRevoked()).isEqualTo(3);
+	}
+
+	@Test
+	void roomsWithoutLocalSubscribersSkipTheMembershipLookup() {
+		revoker.revokeNonMembers(11L);
+
+		assertThat(mockingDetails(membershipCache).getInvocations()).isEmpty();
+	}
+
+	private void connect(String sessionId, Long userId) {
+		SimpMessageHeaderAccessor connect = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+		connect.setSessionId(sessionId);
+		broker.handleMessage(MessageBuilder.createMessage(new byte[0], connect.getMessageHeaders()));
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECTED);
+		accessor.setSessionId(sessionId);
+		StompPrincipal user = new StompPrincipal(userId, "user" + userId, Long.MAX_VALUE);
+		registry.handleSessionConnected(new SessionConnectedEvent(this,
+				MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), user));
+	}
+
+	private void subscribe(String sessionId, String subscriptionId, String destination) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+		accessor.setSessionId(sessionId);
+		accessor.setSubscriptionId(subscriptionId);
+		accessor.setDestination(destination);
+		Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+		broker.handleMessage(message);
+		registry.handleSessionSubscribe(new SessionSubscribeEvent(this, message));
+	}
+
+	private void publish(String destination) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setDestination(destination);
+		broker.handleMessage(MessageBuilder.createMessage("hi".getBytes(StandardCharsets.UTF_8),
+				accessor.getMessageHeaders()));
+	}
+}
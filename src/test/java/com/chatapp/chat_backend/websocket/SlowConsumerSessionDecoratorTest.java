@@ -0,0 +1,131 @@
+package com.chatapp.chat_backend.websocket;
+
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.standard.StandardWebSocketSession;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SlowConsumerSessionDecoratorTest {
+
+	private final OutboundQueueMonitor monitor = new OutboundQueueMonitor(1000, 200, List.of("/typing"), 1, 2);
+
+	@AfterEach
+	void tearDown() {
+		monitor.shutdown();
+	}
+
+	@Test
+	void blockedSessionDoesNotStallOthersAndIsClosedAfterTheSendTimeout() throws Exception {
+		CountDownLatch closed = new CountDownLatch(1);
+		WebSocketSession slow = session("slow");
+		doAnswer(invocation -> closed.await(5, TimeUnit.SECONDS)).when(slow).sendMessage(any());
+		doAnswer(invocation -> {
+			closed.countDown();
+			return null;
+		}).when(slow).close(any());
+		WebSocketSession fast = session("fast");
+
+		// One core flush thread, taken by the blocked write
+		monitor.register(slow).sendMessage(frame("/topic/chat/1"));
+		monitor.register(fast).sendMessage(frame("/topic/chat/1"));
+
+		verify(fast, timeout(1000)).sendMessage(any());
+		Thread.sleep(300);
+		monitor.checkSendTimeouts();
+		verify(slow).close(SlowConsumerSessionDecorator.RESYNC_REQUIRED);
+		assertThat(monitor.getStats().getSlowConsumerDisconnects()).isEqualTo(1);
+	}
+
+	@Test
+	void sessionsThatFindTheFlushPoolExhaustedAreClosed() throws Exception {
+		OutboundQueueMonitor bounded = new OutboundQueueMonitor(1000, 10_000, List.of("/typing"), 1, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			WebSocketSession blocked = session("blocked");
+			doAnswer(invocation -> release.await(5, TimeUnit.SECONDS)).when(blocked).sendMessage(any());
+			WebSocketSession starved = session("starved");
+
+			bounded.register(blocked).sendMessage(frame("/topic/chat/1"));
+			verify(blocked, timeout(1000)).sendMessage(any());
+			SlowConsumerSessionDecorator session = bounded.register(starved);
+			session.sendMessage(frame("/topic/chat/1"));
+
+			verify(starved).close(SlowConsumerSessionDecorator.RESYNC_REQUIRED);
+			verify(starved, never()).sendMessage(any());
+			assertThat(session.isFlaggedForResync()).isTrue();
+			assertThat(bounded.getStats().getFlushRejections()).isEqualTo(1);
+			assertThat(bounded.getStats().getSlowConsumerDisconnects()).isEqualTo(1);
+		} finally {
+			release.countDown();
+			bounded.shutdown();
+		}
+	}
+
+	@Test
+	void nativeSessionsAreWrittenAsynchronouslyOneFrameAtATime() throws Exception {
+		RemoteEndpoint.Async remote = mock(RemoteEndpoint.Async.class);
+		Session nativeSession = mock(Session.class);
+		when(nativeSession.getAsyncRemote()).thenReturn(remote);
+		StandardWebSocketSession standard = mock(StandardWebSocketSession.class);
+		when(standard.getId()).thenReturn("native");
+		when(standard.getNativeSession()).thenReturn(nativeSession);
+
+		SlowConsumerSessionDecorator session = monitor.register(standard);
+		session.sendMessage(frame("/topic/chat/1"));
+		session.sendMessage(frame("/topic/chat/2"));
+
+		ArgumentCaptor<SendHandler> handler = ArgumentCaptor.forClass(SendHandler.class);
+		verify(remote, timeout(1000)).sendText(anyString(), handler.capture());
+		Thread.sleep(50);
+		verify(remote, times(1)).sendText(anyString(), any());
+		assertThat(session.getQueueDepth()).isEqualTo(1);
+
+		handler.getValue().onResult(new SendResult());
+		verify(remote, timeout(1000).times(2)).sendText(anyString(), any());
+		verify(standard, never()).sendMessage(any());
+	}
+
+	@Test
+	void typingFramesAreConflated() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		WebSocketSession blocked = session("blocked");
+		doAnswer(invocation -> release.await(5, TimeUnit.SECONDS)).when(blocked).sendMessage(any());
+
+		SlowConsumerSessionDecorator session = monitor.register(blocked);
+		session.sendMessage(frame("/topic/chat/1"));
+		Thread.sleep(50);
+		session.sendMessage(frame("/topic/chat/1/typing"));
+		session.sendMessage(frame("/topic/chat/1/typing"));
+
+		assertThat(session.getQueueDepth()).isEqualTo(1);
+		assertThat(monitor.getStats().getConflatedFrames()).isEqualTo(1);
+		release.countDown();
+		verify(blocked, timeout(1000).times(2)).sendMessage(any());
+	}
+
+	private static WebSocketSession session(String id) {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn(id);
+		return session;
+	}
+
+	private static TextMessage frame(String destination) {
+		return new TextMessage("MESSAGE\ndestination:" + destination + "\n\n{}\u0000");
+	}
+}
@@ -0,0 +1,81 @@
+package com.chatapp.chat_backend.websocket;
+
+import com.chatapp.chat_backend.entity.User;
+import com.chatapp.chat_backend.repository.UserRepository;
+import com.chatapp.chat_backend.security.JwtUtil;
+import com.chatapp.chat_backend.security.StompPrincipal;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
+
+import java.util.Date;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StompAuthInterceptorTest {
+
+	private final JwtUtil jwtUtil = mock(JwtUtil.class);
+	private final UserRepository userRepository = mock(UserRepository.class);
+	private final StompAuthInterceptor interceptor = new StompAuthInterceptor(jwtUtil, userRepository);
+
+	private final Claims claims = Jwts.claims()
+			.subject("alice")
+			.expiration(new Date(System.currentTimeMillis() + 60_000))
+			.build();
+
+	@BeforeEach
+	void setUp() {
+		when(jwtUtil.extractAllClaims("token")).thenReturn(claims);
+		when(jwtUtil.extractUserId(claims)).thenReturn(5L);
+	}
+
+	@Test
+	void activeUsersGetAPrincipalAtConnect() {
+		when(userRepository.findById(5L)).thenReturn(Optional.of(user(true)));
+		Message<?> connect = connect("Bearer token");
+
+		interceptor.preSend(connect, null);
+
+		StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(connect, StompHeaderAccessor.class);
+		assertThat(accessor.getUser()).isEqualTo(new StompPrincipal(5L, "alice", claims.getExpiration().getTime()));
+	}
+
+	@Test
+	void inactiveUsersAreRejectedAtConnect() {
+		when(userRepository.findById(5L)).thenReturn(Optional.of(user(false)));
+
+		assertThatThrownBy(() -> interceptor.preSend(connect("Bearer token"), null))
+				.isInstanceOf(DisabledException.class);
+	}
+
+	@Test
+	void missingTokensAreRejected() {
+		assertThatThrownBy(() -> interceptor.preSend(connect(null), null))
+				.isInstanceOf(BadCredentialsException.class);
+	}
+
+	private static User user(boolean active) {
+		return User.builder().id(5L).username("alice").isActive(active).build();
+	}
+
+	private static Message<?> connect(String authorization) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+		if (authorization != null) {
+			accessor.setNativeHeader("Authorization", authorization);
+		}
+		accessor.setLeaveMutable(true);
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+}
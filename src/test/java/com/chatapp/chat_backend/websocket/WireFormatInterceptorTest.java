@@ -0,0 +1,175 @@
+package com.chatapp.chat_backend.websocket;
+
+import com.chatapp.chat_backend.dtos.MessageResponseDto;
+import com.chatapp.chat_backend.dtos.UserResponseDto;
+import com.chatapp.chat_backend.service.TwoLevelCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.sockjs.transport.SockJsSession;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Also reports bytes and encode time per message for CBOR against JSON;
+ * the numbers are logged, only the size reduction is asserted.
+ */
+class WireFormatInterceptorTest {
+
+	private static final Logger log = LoggerFactory.getLogger(WireFormatInterceptorTest.class);
+	private static final int ITERATIONS = 20_000;
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+	private final OutboundQueueMonitor monitor = new OutboundQueueMonitor(1000, 10_000, List.of("/typing"), 1, 1);
+	private final WireFormatInterceptor interceptor = new WireFormatInterceptor(objectMapper, monitor, mock(TwoLevelCache.class));
+
+	@BeforeEach
+	void setUp() {
+		monitor.register(session("raw", WebSocketSession.class));
+		monitor.register(session("sockjs", SockJsSession.class));
+		interceptor.preSend(connect("raw"), null);
+		interceptor.preSend(connect("sockjs"), null);
+	}
+
+	@AfterEach
+	void tearDown() {
+		monitor.shutdown();
+	}
+
+	@Test
+	void rawWebSocketSessionsGetCborWithSendersReplacedById() throws Exception {
+		Message<?> encoded = interceptor.preSend(broadcast("raw", json(message(1L))), null);
+
+		JsonNode frame = new CBORMapper().readTree((byte[]) encoded.getPayload());
+		assertThat(frame.at("/d/senderId").asLong()).isEqualTo(7L);
+		assertThat(frame.at("/d/sender").isMissingNode()).isTrue();
+		assertThat(frame.at("/u/7/username").asText()).isEqualTo("alice");
+
+		// The profile is only sent once per session, once the session took the frame
+		interceptor.afterMessageHandled(encoded, null, null, null);
+		JsonNode next = new CBORMapper().readTree((byte[]) interceptor.preSend(broadcast("raw", json(message(2L))), null).getPayload());
+		assertThat(next.has("u")).isFalse();
+	}
+
+	@Test
+	void profilesAreResentUntilAFrameCarryingThemIsHandled() throws Exception {
+		Message<?> failed = interceptor.preSend(broadcast("raw", json(message(1L))), null);
+		interceptor.afterMessageHandled(failed, null, null, new IllegalStateException("closed"));
+		// Encoded but never handed to the session
+		interceptor.preSend(broadcast("raw", json(message(2L))), null);
+
+		JsonNode frame = new CBORMapper().readTree((byte[]) interceptor.preSend(broadcast("raw", json(message(3L))), null).getPayload());
+		assertThat(frame.at("/u/7/username").asText()).isEqualTo("alice");
+	}
+
+	@Test
+	void editedProfilesAreSentAgain() throws Exception {
+		interceptor.afterMessageHandled(interceptor.preSend(broadcast("raw", json(message(1L))), null), null, null, null);
+
+		interceptor.forgetProfile(7L);
+
+		JsonNode frame = new CBORMapper().readTree((byte[]) interceptor.preSend(broadcast("raw", json(message(2L))), null).getPayload());
+		assertThat(frame.at("/u/7/username").asText()).isEqualTo("alice");
+	}
+
+	@Test
+	void sockJsSessionsStayOnJson() throws Exception {
+		byte[] payload = json(message(1L));
+		Message<?> frame = broadcast("sockjs", payload);
+
+		assertThat(interceptor.preSend(frame, null)).isSameAs(frame);
+		assertThat(interceptor.isCborSession("sockjs")).isFalse();
+	}
+
+	@Test
+	void cborIsSmallerThanJsonPerMessage() throws Exception {
+		long jsonBytes = 0;
+		long cborBytes = 0;
+		// Warm up both paths before timing
+		for (int i = 0; i < ITERATIONS; i++) {
+			json(message(i));
+			interceptor.afterMessageHandled(interceptor.preSend(broadcast("raw", json(message(i))), null), null, null, null);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			jsonBytes += json(message(i)).length;
+		}
+		long jsonNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			// One fresh payload per broadcast, as the broker sees it
+			Message<?> frame = interceptor.preSend(broadcast("raw", json(message(i))), null);
+			interceptor.afterMessageHandled(frame, null, null, null);
+			cborBytes += ((byte[]) frame.getPayload()).length;
+		}
+		long cborNanos = System.nanoTime() - start - jsonNanos;
+
+		log.info("JSON: {} bytes/message, {} ns/message", jsonBytes / ITERATIONS, jsonNanos / ITERATIONS);
+		log.info("CBOR: {} bytes/message, {} ns/message on top of JSON serialization",
+				cborBytes / ITERATIONS, cborNanos / ITERATIONS);
+		assertThat(cborBytes).isLessThan(jsonBytes * 3 / 4);
+	}
+
+	private byte[] json(MessageResponseDto message) throws Exception {
+		return objectMapper.writeValueAsBytes(message);
+	}
+
+	private static MessageResponseDto message(long id) {
+		return MessageResponseDto.builder()
+				.id(id)
+				.content("See you at the standup in five minutes")
+				.type("TEXT")
+				.status("SENT")
+				.chatRoomId(3L)
+				.isEdited(false)
+				.createdAt(LocalDateTime.of(2024, 1, 1, 9, 0))
+				.sender(UserResponseDto.builder()
+						.id(7L)
+						.username("alice")
+						.email("alice@example.com")
+						.fullName("Alice Example")
+						.status("ONLINE")
+						.createdAt(LocalDateTime.of(2023, 6, 1, 12, 0))
+						.build())
+				.build();
+	}
+
+	private static <T extends WebSocketSession> T session(String id, Class<T> type) {
+		T session = mock(type);
+		when(session.getId()).thenReturn(id);
+		return session;
+	}
+
+	private static Message<?> connect(String sessionId) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+		accessor.setSessionId(sessionId);
+		accessor.setNativeHeader(WireFormatInterceptor.FORMAT_HEADER, WireFormatInterceptor.CBOR_FORMAT);
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+
+	private static Message<?> broadcast(String sessionId, byte[] payload) {
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		accessor.setSessionId(sessionId);
+		accessor.setDestination("/topic/chat/3");
+		return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+	}
+}